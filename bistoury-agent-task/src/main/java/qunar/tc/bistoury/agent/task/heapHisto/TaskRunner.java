@@ -24,11 +24,7 @@ import qunar.tc.bistoury.agent.common.pid.PidUtils;
 import qunar.tc.bistoury.clientside.common.meta.MetaStores;
 import qunar.tc.bistoury.commands.heapHisto.HeapHistoBeanHandle;
 import qunar.tc.bistoury.commands.heapHisto.HeapHistoStore;
-import qunar.tc.bistoury.commands.heapHisto.HistogramBean;
-
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import qunar.tc.bistoury.commands.heapHisto.HeapHistogram;
 
 /**
  * @author: leix.xie
@@ -55,22 +51,8 @@ public class TaskRunner implements Runnable {
         try {
             int pid = PidUtils.getPid();
             HeapHistoBeanHandle heapHistoBeanHandle = new HeapHistoBeanHandle("-all", pid);
-            List<HistogramBean> histogramBeans = heapHistoBeanHandle.heapHisto();
-
-            Collections.sort(histogramBeans, new Comparator<HistogramBean>() {
-                @Override
-                public int compare(HistogramBean a, HistogramBean b) {
-                    return Long.compare(b.getBytes(), a.getBytes());
-                }
-            });
-
-            List<HistogramBean> result;
-            if (histogramBeans.size() <= agentConfig.getHeapHistoStoreSize()) {
-                result = histogramBeans;
-            } else {
-                result = histogramBeans.subList(0, agentConfig.getHeapHistoStoreSize());
-            }
-            heapHistoStore.store(result);
+            HeapHistogram histogram = heapHistoBeanHandle.histogram(heapHistoStore.getClassNameDictionary());
+            heapHistoStore.store(histogram.topByBytes(agentConfig.getHeapHistoStoreSize()));
         } catch (Exception e) {
             logger.error("heap histo dump error", e);
         }
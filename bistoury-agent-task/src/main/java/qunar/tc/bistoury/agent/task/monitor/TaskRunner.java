@@ -21,6 +21,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.bistoury.clientside.common.monitor.MetricsSnapshot;
+import qunar.tc.bistoury.clientside.common.monitor.MetricsSnapshotCodec;
 import qunar.tc.bistoury.commands.arthas.telnet.DebugTelnetStore;
 import qunar.tc.bistoury.commands.arthas.telnet.Telnet;
 import qunar.tc.bistoury.commands.arthas.telnet.TelnetStore;
@@ -40,6 +41,14 @@ public class TaskRunner implements Runnable {
     private MonitorReceiver receiver;
     private static final String COMMAND = BistouryConstants.REQ_MONITOR_SNAPSHOT;
 
+    private static final String BINARY_COMMAND = COMMAND + " -b";
+
+    //从这个版本开始qmonitorsnapshot支持二进制输出，同版本号的旧包不支持，返回的结果解析不了时退回json
+    private static final String BINARY_MIN_VERSION = "2.0.6";
+
+    //二进制结果解析失败的版本，之后不再尝试二进制输出
+    private static volatile String binaryUnsupportedVersion;
+
     private static final String MIN_VERSION = "1.2.5";
 
     private static final TypeReference<TypeResponse<MetricsSnapshot>> TYPE_REFERENCE = new TypeReference<TypeResponse<MetricsSnapshot>>() {
@@ -62,6 +71,15 @@ public class TaskRunner implements Runnable {
             if (!legalVersion(telnet.getVersion())) {
                 return;
             }
+            if (binaryVersion(telnet.getVersion())) {
+                telnet.write(BINARY_COMMAND);
+                telnet.read(BINARY_COMMAND, receiver);
+                if (storeBinaryMetricsSnapshot(receiver.getAndReset())) {
+                    return;
+                }
+                logger.warn("qmonitorsnapshot binary output is not supported by version {}, fall back to json", telnet.getVersion());
+                binaryUnsupportedVersion = telnet.getVersion();
+            }
             telnet.write(COMMAND);
             telnet.read(COMMAND, receiver);
             storeMetricsSnapshot(receiver.getAndReset());
@@ -72,6 +90,29 @@ public class TaskRunner implements Runnable {
         }
     }
 
+    /**
+     * 二进制结果是一行base64，出错时仍然是json
+     *
+     * @return 结果既不是json也解析不了时返回false
+     */
+    private boolean storeBinaryMetricsSnapshot(final String content) {
+        String trimmed = content.trim();
+        if (trimmed.startsWith("{")) {
+            storeMetricsSnapshot(trimmed);
+            return true;
+        }
+
+        MetricsSnapshot snapshot;
+        try {
+            snapshot = MetricsSnapshotCodec.decodeFromString(trimmed);
+        } catch (IllegalArgumentException e) {
+            logger.debug("decode metrics snapshot fail, {}", trimmed, e);
+            return false;
+        }
+        MONITOR_STORE.store(snapshot, trimmed);
+        return true;
+    }
+
     private void storeMetricsSnapshot(final String content) {
         TypeResponse<MetricsSnapshot> typeResponse = JacksonSerializer.deSerialize(content, TYPE_REFERENCE);
         if (!BistouryConstants.REQ_MONITOR_SNAPSHOT.equals(typeResponse.getType())) {
@@ -102,4 +143,15 @@ public class TaskRunner implements Runnable {
             return false;
         }
     }
+
+    private boolean binaryVersion(final String version) {
+        if (version.equals(binaryUnsupportedVersion)) {
+            return false;
+        }
+        try {
+            return VersionUtil.greaterEqualThanVersion(version, BINARY_MIN_VERSION);
+        } catch (Exception e) {
+            return false;
+        }
+    }
 }
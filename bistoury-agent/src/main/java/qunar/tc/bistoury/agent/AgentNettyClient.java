@@ -56,11 +56,17 @@ class AgentNettyClient {
 
     private final SettableFuture<Void> started = SettableFuture.create();
 
+    private final Runnable closeListener;
+
     private volatile Channel channel;
 
-    public AgentNettyClient(ProxyConfig proxyConfig, EventLoopGroup workGroup) {
+    /**
+     * @param closeListener 连接建立成功后又断开时回调
+     */
+    public AgentNettyClient(ProxyConfig proxyConfig, EventLoopGroup workGroup, Runnable closeListener) {
         this.proxyConfig = proxyConfig;
         this.workGroup = workGroup;
+        this.closeListener = closeListener;
     }
 
     public void start() {
@@ -98,8 +104,9 @@ class AgentNettyClient {
                 if (future.isSuccess()) {
                     logger.info("bistoury netty client start success, {}", proxyConfig);
                     channel = future.channel();
+                    //先置为running再注册关闭监听，连接已经关闭时监听会立即执行并把running置回false
+                    running.set(true);
                     closeFuture(taskStore);
-                    running.compareAndSet(false, true);
                     started.set(null);
                     heartbeatTask.start(channel, running);
                     refreshTask.start(channel, running);
@@ -125,11 +132,26 @@ class AgentNettyClient {
         return running.get();
     }
 
+    /**
+     * running并且channel仍然可用
+     */
+    public boolean isAlive() {
+        Channel current = channel;
+        return running.get() && current != null && current.isActive();
+    }
+
     private void closeFuture(final DefaultTaskStore taskStore) {
         channel.closeFuture().addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
+                //proxy在agent连接断开时会结束对应的ui会话，所以任务无法在新连接上继续，直接取消
                 taskStore.close();
+                running.set(false);
+                try {
+                    closeListener.run();
+                } catch (Throwable e) {
+                    logger.error("agent netty client close listener error", e);
+                }
             }
         });
     }
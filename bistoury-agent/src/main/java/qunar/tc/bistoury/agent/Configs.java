@@ -18,6 +18,7 @@
 package qunar.tc.bistoury.agent;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.Response;
@@ -27,6 +28,9 @@ import qunar.tc.bistoury.common.AsyncHttpClientHolder;
 import qunar.tc.bistoury.common.JacksonSerializer;
 import qunar.tc.bistoury.common.JsonResult;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author zhenyu.nie created on 2018 2018/10/25 17:08
  */
@@ -40,13 +44,26 @@ class Configs {
 
     private static final String PROXY_URI = "/proxy/config/foragent";
 
+    private static final Splitter HOST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
 
-    public static ProxyConfig getProxyConfig() {
+    /**
+     * bistoury.proxy.host可以配置多个地址，用逗号分隔，获取失败的地址会被忽略
+     */
+    public static List<ProxyConfig> getProxyConfigs() {
         String bistouryProxyHost = System.getProperty("bistoury.proxy.host");
         if (Strings.isNullOrEmpty(bistouryProxyHost)) {
             throw new RuntimeException("system property [bistoury.proxy.host] cannot be null or empty");
         }
-        return getProxyConfig(bistouryProxyHost);
+
+        List<ProxyConfig> result = new ArrayList<>();
+        for (String host : HOST_SPLITTER.split(bistouryProxyHost)) {
+            ProxyConfig proxyConfig = getProxyConfig(host);
+            if (proxyConfig != null) {
+                result.add(proxyConfig);
+            }
+        }
+        return result;
     }
 
 
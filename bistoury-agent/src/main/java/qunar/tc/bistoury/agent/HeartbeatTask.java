@@ -30,6 +30,7 @@ import qunar.tc.bistoury.remoting.protocol.ResponseCode;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -52,7 +53,7 @@ class HeartbeatTask {
     }
 
     public void start(final Channel channel, final AtomicBoolean running) {
-        executor.submit(new Runnable() {
+        final ScheduledFuture<?> future = executor.scheduleWithFixedDelay(new Runnable() {
             @Override
             public void run() {
                 if (running.get()) {
@@ -66,10 +67,16 @@ class HeartbeatTask {
                             }
                         }
                     });
-
-                    executor.schedule(this, heartbeatSec, TimeUnit.SECONDS);
                 }
             }
+        }, 0, heartbeatSec, TimeUnit.SECONDS);
+
+        //连接断开后停止心跳，重连时由新的连接重新开始
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture closeFuture) throws Exception {
+                future.cancel(false);
+            }
         });
     }
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package qunar.tc.bistoury.agent;
+
+import com.google.common.collect.Lists;
+import io.netty.channel.EventLoopGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.bistoury.common.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 管理agent到proxy的连接
+ * <p>
+ * 维护一个按失败次数和建连耗时排序的proxy列表，断开后按指数退避加随机抖动的时间重连，
+ * 避免proxy重启时所有agent同时重连把新proxy再次打垮；每次重连都会依次尝试列表中的proxy
+ * <p>
+ * 同一时间最多只有一个待执行的重连，另外定时检查连接状态，漏掉断开通知时也能重连
+ */
+class ProxyConnectionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyConnectionManager.class);
+
+    private static final long INITIAL_BACKOFF_MILLIS = Long.getLong("bistoury.agent.reconnect.initial.ms", 5000L);
+
+    private static final long MAX_BACKOFF_MILLIS = Long.getLong("bistoury.agent.reconnect.max.ms", 120000L);
+
+    private static final long STABLE_CONNECTION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int MAX_PROXIES = 8;
+
+    private static final int MAX_FAILURES = 5;
+
+    private static final long LIVENESS_CHECK_SECONDS = 60;
+
+    private final EventLoopGroup workGroup;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("bistoury-agent-reconnect", true));
+
+    private final Random random = new Random();
+
+    private final List<ProxyTarget> targets = new ArrayList<>();
+
+    private volatile AgentNettyClient nettyClient;
+
+    private volatile boolean stopped = false;
+
+    private volatile long connectedTime = 0;
+
+    private volatile long disconnectedTime = 0;
+
+    private int attemptsSinceDisconnect = 0;
+
+    private final AtomicBoolean connectPending = new AtomicBoolean(false);
+
+    private int backoffAttempts = 0;
+
+    ProxyConnectionManager(EventLoopGroup workGroup) {
+        this.workGroup = workGroup;
+    }
+
+    void start() {
+        scheduleConnect(0);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                checkLiveness();
+            }
+        }, LIVENESS_CHECK_SECONDS, LIVENESS_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        stopped = true;
+        executor.shutdownNow();
+        AgentNettyClient client = nettyClient;
+        if (client != null) {
+            client.destroyAndSync();
+        }
+    }
+
+    private void scheduleConnect(long delayMillis) {
+        if (stopped || !connectPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    connectPending.set(false);
+                    try {
+                        connect();
+                    } catch (Throwable e) {
+                        logger.error("connect to bistoury proxy error", e);
+                        scheduleConnect(nextBackoff());
+                    }
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            connectPending.set(false);
+            logger.warn("schedule connect to proxy fail, {}", e.getMessage());
+        }
+    }
+
+    private void checkLiveness() {
+        if (stopped || connectPending.get()) {
+            return;
+        }
+        AgentNettyClient current = nettyClient;
+        if (current != null && current.isAlive()) {
+            return;
+        }
+
+        logger.warn("bistoury proxy connection not alive, reconnect now");
+        if (current != null) {
+            current.destroyAndSync();
+        }
+        scheduleConnect(0);
+    }
+
+    private void connect() {
+        if (stopped) {
+            return;
+        }
+        AgentNettyClient current = nettyClient;
+        if (current != null && current.isRunning()) {
+            return;
+        }
+
+        try {
+            refreshTargets();
+        } catch (Throwable e) {
+            logger.error("refresh bistoury proxy config fail, use known proxies {}", targets, e);
+        }
+
+        for (ProxyTarget target : rankTargets()) {
+            if (stopped) {
+                return;
+            }
+            attemptsSinceDisconnect++;
+            long start = System.currentTimeMillis();
+            AgentNettyClient client = new AgentNettyClient(target.config, workGroup, new Runnable() {
+                @Override
+                public void run() {
+                    onDisconnected();
+                }
+            });
+            client.start();
+            if (client.isRunning()) {
+                target.success(System.currentTimeMillis() - start);
+                nettyClient = client;
+                connectedTime = System.currentTimeMillis();
+                if (disconnectedTime > 0) {
+                    logger.info("reconnect to bistoury proxy success, {}, cost {} ms, {} attempts", target.config, connectedTime - disconnectedTime, attemptsSinceDisconnect);
+                } else {
+                    logger.info("connect to bistoury proxy success, {}, {} attempts", target.config, attemptsSinceDisconnect);
+                }
+                attemptsSinceDisconnect = 0;
+                AgentGlobalTaskInitializer.init();
+                return;
+            }
+            target.failure();
+        }
+
+        long delay = nextBackoff();
+        logger.warn("connect to all bistoury proxies fail, retry after {} ms, proxies: {}", delay, targets);
+        scheduleConnect(delay);
+    }
+
+    private void onDisconnected() {
+        if (stopped) {
+            return;
+        }
+        disconnectedTime = System.currentTimeMillis();
+        //连接稳定一段时间后才重置退避，避免proxy接受连接后马上断开时退化成频繁重连
+        if (System.currentTimeMillis() - connectedTime > STABLE_CONNECTION_MILLIS) {
+            resetBackoff();
+        }
+        long delay = nextBackoff();
+        logger.warn("bistoury proxy disconnected, reconnect after {} ms", delay);
+        scheduleConnect(delay);
+    }
+
+    /**
+     * full jitter：在[0, min(max, initial * 2^n))之间随机
+     */
+    private synchronized void resetBackoff() {
+        backoffAttempts = 0;
+    }
+
+    private synchronized long nextBackoff() {
+        long window = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(backoffAttempts, 20));
+        backoffAttempts++;
+        return (long) (random.nextDouble() * window);
+    }
+
+    private void refreshTargets() {
+        List<ProxyConfig> configs = Configs.getProxyConfigs();
+        for (ProxyConfig config : configs) {
+            ProxyTarget target = findTarget(config);
+            if (target == null) {
+                targets.add(new ProxyTarget(config));
+            } else {
+                target.config = config;
+            }
+        }
+
+        //失败过多的proxy在有其它proxy可选时直接丢弃
+        List<ProxyTarget> sorted = rankTargets();
+        targets.clear();
+        for (ProxyTarget target : sorted) {
+            if (targets.size() < MAX_PROXIES && (target.failures < MAX_FAILURES || targets.isEmpty())) {
+                targets.add(target);
+            }
+        }
+    }
+
+    private ProxyTarget findTarget(ProxyConfig config) {
+        for (ProxyTarget target : targets) {
+            if (target.config.getIp().equals(config.getIp()) && target.config.getPort() == config.getPort()) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    private List<ProxyTarget> rankTargets() {
+        List<ProxyTarget> result = Lists.newArrayList(targets);
+        Collections.sort(result, new Comparator<ProxyTarget>() {
+            @Override
+            public int compare(ProxyTarget o1, ProxyTarget o2) {
+                if (o1.failures != o2.failures) {
+                    return o1.failures < o2.failures ? -1 : 1;
+                }
+                return Long.compare(o1.connectMillis, o2.connectMillis);
+            }
+        });
+        return result;
+    }
+
+    private static class ProxyTarget {
+        private ProxyConfig config;
+        private int failures = 0;
+        private long connectMillis = 0;
+
+        ProxyTarget(ProxyConfig config) {
+            this.config = config;
+        }
+
+        void success(long connectMillis) {
+            this.failures = 0;
+            this.connectMillis = connectMillis;
+        }
+
+        void failure() {
+            failures++;
+        }
+
+        @Override
+        public String toString() {
+            return config.getIp() + ":" + config.getPort() + "(failures=" + failures + ")";
+        }
+    }
+}
@@ -20,6 +20,7 @@ package qunar.tc.bistoury.application.api;
 import qunar.tc.bistoury.application.api.pojo.AppServer;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author leix.xie
@@ -29,6 +30,11 @@ import java.util.List;
 public interface AppServerService {
     List<AppServer> getAppServerByAppCode(String appCode);
 
+    /**
+     * 一次查询多个应用的机器，key为appCode，没有机器的应用对应空列表
+     */
+    Map<String, List<AppServer>> getAppServersByAppCodes(List<String> appCodes);
+
     int changeAutoJMapHistoEnable(String serverId, boolean enable, String loginUser);
 
     int changeAutoJStackEnable(String serverId, boolean enable, String loginUser);
@@ -37,6 +43,11 @@ public interface AppServerService {
 
     int saveAppServer(AppServer appServer, String loginUser);
 
+    /**
+     * 批量新增或更新机器，没有serverId的新增，有serverId的更新；任意一台机器ip冲突时整批失败
+     */
+    int batchSaveAppServer(List<AppServer> appServers, String loginUser);
+
     AppServer getAppServerByIp(String ip);
 }
 
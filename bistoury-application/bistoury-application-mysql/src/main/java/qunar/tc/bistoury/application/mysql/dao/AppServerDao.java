@@ -29,6 +29,10 @@ import java.util.List;
 public interface AppServerDao {
     List<AppServer> getAppServerByAppCode(String appCode);
 
+    List<AppServer> getAppServersByAppCodes(List<String> appCodes);
+
+    List<AppServer> getAppServersByIps(List<String> ips);
+
     AppServer getAppServerByIp(String ip);
 
     AppServer getAppServerByServerId(String serverId);
@@ -37,6 +41,10 @@ public interface AppServerDao {
 
     int updateAppServer(AppServer appServer);
 
+    int[] batchAddAppServer(List<AppServer> appServers);
+
+    int[] batchUpdateAppServer(List<AppServer> appServers);
+
     int changeAutoJMapHistoEnable(String serverId, boolean enable);
 
     int changeAutoJStackEnable(String serverId, boolean enable);
@@ -17,17 +17,25 @@
 
 package qunar.tc.bistoury.application.mysql.dao.impl;
 
+import com.google.common.collect.Lists;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.CollectionUtils;
 
 import qunar.tc.bistoury.application.api.pojo.AppServer;
 import qunar.tc.bistoury.application.mysql.dao.AppServerDao;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -39,6 +47,10 @@ import java.util.List;
 public class AppServerDaoImpl implements AppServerDao {
     private static final String SELECT_APP_SERVER_BY_APPCODE = "select server_id,ip,port,host,log_dir,room,app_code,auto_jstack_enable,auto_jmap_histo_enable from bistoury_server where app_code=?";
 
+    private static final String SELECT_APP_SERVER_BY_APPCODES = "select server_id,ip,port,host,log_dir,room,app_code,auto_jstack_enable,auto_jmap_histo_enable from bistoury_server where app_code in (:appCode)";
+
+    private static final String SELECT_APP_SERVER_BY_IPS = "select server_id,ip,port,host,log_dir,room,app_code,auto_jstack_enable,auto_jmap_histo_enable from bistoury_server where ip in (:ip)";
+
     private static final String SELECT_APP_SERVER_BY_IP = "select server_id,ip,port,host,log_dir,room,app_code,auto_jstack_enable,auto_jmap_histo_enable from bistoury_server where ip=?";
 
     private static final String SELECT_APP_SERVER_BY_SERVER_ID = "select server_id,ip,port,host,log_dir,room,app_code,auto_jstack_enable,auto_jmap_histo_enable from bistoury_server where server_id=?";
@@ -54,14 +66,46 @@ public class AppServerDaoImpl implements AppServerDao {
     private static final String CHANGE_AUTO_JMAP_HISTO_ENABLE = "update bistoury_server set auto_jmap_histo_enable=? where server_id=?";
 
     private static final String CHANGE_AUTO_JSTACK_ENABLE = "update bistoury_server set auto_jstack_enable=? where server_id=?";
+
+    /**
+     * in查询每次最多带的参数个数，避免sql过长
+     */
+    private static final int MAX_IN_SIZE = 500;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
     @Override
     public List<AppServer> getAppServerByAppCode(final String appCode) {
         return this.jdbcTemplate.query(SELECT_APP_SERVER_BY_APPCODE, APPLICATION_SERVER_ROW_MAPPER, appCode);
     }
 
+    @Override
+    public List<AppServer> getAppServersByAppCodes(final List<String> appCodes) {
+        return queryIn(SELECT_APP_SERVER_BY_APPCODES, "appCode", appCodes);
+    }
+
+    @Override
+    public List<AppServer> getAppServersByIps(final List<String> ips) {
+        return queryIn(SELECT_APP_SERVER_BY_IPS, "ip", ips);
+    }
+
+    private List<AppServer> queryIn(final String sql, final String name, final List<String> values) {
+        if (CollectionUtils.isEmpty(values)) {
+            return Collections.emptyList();
+        }
+        List<AppServer> result = new ArrayList<>();
+        for (List<String> partition : Lists.partition(values, MAX_IN_SIZE)) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource();
+            parameters.addValue(name, partition);
+            result.addAll(this.namedParameterJdbcTemplate.query(sql, parameters, APPLICATION_SERVER_ROW_MAPPER));
+        }
+        return result;
+    }
+
     @Override
     public AppServer getAppServerByIp(final String ip) {
         return this.jdbcTemplate.query(SELECT_APP_SERVER_BY_IP, APPLICATION_SERVER_MAPPER, ip);
@@ -82,6 +126,51 @@ public class AppServerDaoImpl implements AppServerDao {
         return this.jdbcTemplate.update(UPDATE_APP_SERVER_BY_SERVER_ID, appServer.getIp(), appServer.getPort(), appServer.getHost(), appServer.getLogDir(), appServer.getRoom(), appServer.getServerId());
     }
 
+    @Override
+    public int[] batchAddAppServer(final List<AppServer> appServers) {
+        return this.jdbcTemplate.batchUpdate(INSERT_APP_SERVER, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
+                AppServer appServer = appServers.get(i);
+                preparedStatement.setString(1, appServer.getServerId());
+                preparedStatement.setString(2, appServer.getIp());
+                preparedStatement.setInt(3, appServer.getPort());
+                preparedStatement.setString(4, appServer.getHost());
+                preparedStatement.setString(5, appServer.getLogDir());
+                preparedStatement.setString(6, appServer.getRoom());
+                preparedStatement.setString(7, appServer.getAppCode());
+                preparedStatement.setBoolean(8, appServer.isAutoJStackEnable());
+                preparedStatement.setBoolean(9, appServer.isAutoJMapHistoEnable());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return appServers.size();
+            }
+        });
+    }
+
+    @Override
+    public int[] batchUpdateAppServer(final List<AppServer> appServers) {
+        return this.jdbcTemplate.batchUpdate(UPDATE_APP_SERVER_BY_SERVER_ID, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
+                AppServer appServer = appServers.get(i);
+                preparedStatement.setString(1, appServer.getIp());
+                preparedStatement.setInt(2, appServer.getPort());
+                preparedStatement.setString(3, appServer.getHost());
+                preparedStatement.setString(4, appServer.getLogDir());
+                preparedStatement.setString(5, appServer.getRoom());
+                preparedStatement.setString(6, appServer.getServerId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return appServers.size();
+            }
+        });
+    }
+
     @Override
     public int changeAutoJMapHistoEnable(final String serverId, final boolean enable) {
         return this.jdbcTemplate.update(CHANGE_AUTO_JMAP_HISTO_ENABLE, enable, serverId);
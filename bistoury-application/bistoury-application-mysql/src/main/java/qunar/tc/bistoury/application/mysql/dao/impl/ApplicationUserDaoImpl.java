@@ -83,6 +83,22 @@ public class ApplicationUserDaoImpl implements ApplicationUserDao {
         return jdbcTemplate.update(REMOVE_USER_FROM_APP, userCode, appCode);
     }
 
+    @Override
+    public void batchRemoveAppUser(final List<String> userCodes, final String appCode) {
+        jdbcTemplate.batchUpdate(REMOVE_USER_FROM_APP, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
+                preparedStatement.setString(1, userCodes.get(i));
+                preparedStatement.setString(2, appCode);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return userCodes.size();
+            }
+        });
+    }
+
     private static final RowMapper<String> LIST_APPCODE = (rs, rowNum) -> rs.getString("app_code");
 
     private static final RowMapper<String> LIST_USER = (rs, rowNum) -> rs.getString("user_code");
@@ -19,17 +19,26 @@ package qunar.tc.bistoury.application.mysql.service;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
 
 import qunar.tc.bistoury.application.api.AppServerService;
 import qunar.tc.bistoury.application.api.pojo.AppServer;
 import qunar.tc.bistoury.application.mysql.dao.AppServerDao;
 import qunar.tc.bistoury.application.mysql.utils.UUIDUtil;
 
+import java.sql.Statement;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author leix.xie
@@ -50,6 +59,25 @@ public class AppServerServiceImpl implements AppServerService {
         return this.appServerDao.getAppServerByAppCode(appCode);
     }
 
+    @Override
+    public Map<String, List<AppServer>> getAppServersByAppCodes(final List<String> appCodes) {
+        if (CollectionUtils.isEmpty(appCodes)) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<AppServer>> result = Maps.newHashMapWithExpectedSize(appCodes.size());
+        for (String appCode : appCodes) {
+            Preconditions.checkArgument(!Strings.isNullOrEmpty(appCode), "app code cannot be null or empty");
+            result.put(appCode, Lists.newArrayList());
+        }
+        for (AppServer appServer : this.appServerDao.getAppServersByAppCodes(Lists.newArrayList(result.keySet()))) {
+            List<AppServer> appServers = result.get(appServer.getAppCode());
+            if (appServers != null) {
+                appServers.add(appServer);
+            }
+        }
+        return result;
+    }
+
     @Override
     public int changeAutoJMapHistoEnable(final String serverId, final boolean enable, String loginUser) {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(serverId), "serverId cannot be null or empty");
@@ -73,10 +101,7 @@ public class AppServerServiceImpl implements AppServerService {
 
     @Override
     public int saveAppServer(AppServer appServer, String loginUser) {
-        Preconditions.checkArgument(!Strings.isNullOrEmpty(appServer.getAppCode()), "app code cannot be null or empty");
-        Preconditions.checkArgument(!Strings.isNullOrEmpty(appServer.getIp()), "ip cannot be null or empty");
-        Preconditions.checkArgument(appServer.getPort() > 0, "port cannot be less than 0");
-        Preconditions.checkArgument(!Strings.isNullOrEmpty(appServer.getLogDir()), "log dir cannot be null or empty");
+        checkAppServer(appServer);
         if (Strings.isNullOrEmpty(appServer.getServerId())) {
             logger.info("{} add a server {}", loginUser, appServer);
             appServer.setServerId(UUIDUtil.generateUniqueId());
@@ -92,6 +117,73 @@ public class AppServerServiceImpl implements AppServerService {
         }
     }
 
+    @Override
+    @Transactional
+    public int batchSaveAppServer(List<AppServer> appServers, String loginUser) {
+        if (CollectionUtils.isEmpty(appServers)) {
+            return 0;
+        }
+
+        Set<String> ips = Sets.newHashSetWithExpectedSize(appServers.size());
+        for (AppServer appServer : appServers) {
+            checkAppServer(appServer);
+            if (!ips.add(appServer.getIp())) {
+                throw new RuntimeException("IP地址" + appServer.getIp() + "重复，批量保存失败");
+            }
+        }
+
+        //一次查出所有ip已有的机器，ip属于其它server的视为冲突
+        Map<String, AppServer> oldAppServers = Maps.newHashMap();
+        for (AppServer oldAppServer : this.appServerDao.getAppServersByIps(Lists.newArrayList(ips))) {
+            oldAppServers.put(oldAppServer.getIp(), oldAppServer);
+        }
+        List<String> conflicts = Lists.newArrayList();
+        List<AppServer> newAppServers = Lists.newArrayList();
+        List<AppServer> updateAppServers = Lists.newArrayList();
+        for (AppServer appServer : appServers) {
+            AppServer oldAppServer = oldAppServers.get(appServer.getIp());
+            if (oldAppServer != null && !oldAppServer.getServerId().equals(appServer.getServerId())) {
+                conflicts.add(appServer.getIp() + "(" + oldAppServer.getAppCode() + ")");
+            } else if (Strings.isNullOrEmpty(appServer.getServerId())) {
+                newAppServers.add(appServer);
+            } else {
+                updateAppServers.add(appServer);
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new RuntimeException("IP地址与已有主机冲突，批量保存失败：" + conflicts);
+        }
+
+        for (AppServer appServer : newAppServers) {
+            appServer.setServerId(UUIDUtil.generateUniqueId());
+        }
+        logger.info("{} batch save servers, add {}, update {}", loginUser, newAppServers.size(), updateAppServers.size());
+        int count = 0;
+        if (!newAppServers.isEmpty()) {
+            count += sum(this.appServerDao.batchAddAppServer(newAppServers));
+        }
+        if (!updateAppServers.isEmpty()) {
+            count += sum(this.appServerDao.batchUpdateAppServer(updateAppServers));
+        }
+        return count;
+    }
+
+    private static void checkAppServer(AppServer appServer) {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(appServer.getAppCode()), "app code cannot be null or empty");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(appServer.getIp()), "ip cannot be null or empty");
+        Preconditions.checkArgument(appServer.getPort() > 0, "port cannot be less than 0");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(appServer.getLogDir()), "log dir cannot be null or empty");
+    }
+
+    private static int sum(int[] updateCounts) {
+        int count = 0;
+        for (int updateCount : updateCounts) {
+            //驱动开启rewriteBatchedStatements时只返回SUCCESS_NO_INFO
+            count += updateCount == Statement.SUCCESS_NO_INFO ? 1 : Math.max(updateCount, 0);
+        }
+        return count;
+    }
+
 	@Override
 	public AppServer getAppServerByIp(String ip) {
 		return this.appServerDao.getAppServerByIp(ip);
@@ -91,9 +91,7 @@ public class ApplicationServiceImpl implements ApplicationService {
 
 			oldOwners.removeAll(newOwners);
 			newOwners.removeAll(oldOwnersCopy);
-			for (String owner : oldOwners) {
-				this.applicationUserDao.removeAppUser(owner, appCode);
-			}
+			this.applicationUserDao.batchRemoveAppUser(oldOwners, appCode);
 			this.applicationUserDao.batchAddAppUser(newOwners, appCode);
 			return this.applicationDao.updateApplication(application);
 		}
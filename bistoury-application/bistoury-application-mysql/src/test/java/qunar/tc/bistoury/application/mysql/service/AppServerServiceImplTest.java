@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package qunar.tc.bistoury.application.mysql.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import qunar.tc.bistoury.application.api.pojo.AppServer;
+import qunar.tc.bistoury.application.mysql.dao.impl.AppServerDaoImpl;
+import qunar.tc.bistoury.application.mysql.dao.impl.ApplicationUserDaoImpl;
+import qunar.tc.bistoury.serverside.database.H2DataBeseUtil;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+public class AppServerServiceImplTest {
+
+    private static final String SCHEMA = "../../script/h2/schema.sql";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private AppServerServiceImpl appServerService;
+
+    private ApplicationUserDaoImpl applicationUserDao;
+
+    @Before
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(H2DataBeseUtil.getEmbeddedUrl("app_server_test"));
+        dataSource.setDriverClassName("org.h2.Driver");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("RUNSCRIPT FROM '" + new File(SCHEMA).getAbsolutePath() + "' CHARSET 'UTF-8'");
+
+        AppServerDaoImpl appServerDao = new AppServerDaoImpl();
+        ReflectionTestUtils.setField(appServerDao, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(appServerDao, "namedParameterJdbcTemplate", new NamedParameterJdbcTemplate(dataSource));
+        appServerService = new AppServerServiceImpl();
+        ReflectionTestUtils.setField(appServerService, "appServerDao", appServerDao);
+
+        applicationUserDao = new ApplicationUserDaoImpl();
+        ReflectionTestUtils.setField(applicationUserDao, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void testBatchAddAndQueryByAppCodes() {
+        List<AppServer> servers = Lists.newArrayList();
+        for (int i = 0; i < 1200; ++i) {
+            servers.add(server(null, "10.0." + (i / 256) + "." + (i % 256), "app" + (i % 3)));
+        }
+
+        Assert.assertEquals(1200, appServerService.batchSaveAppServer(servers, "test"));
+
+        Map<String, List<AppServer>> result = appServerService.getAppServersByAppCodes(ImmutableList.of("app0", "app1", "app2", "none"));
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(400, result.get("app0").size());
+        Assert.assertEquals(400, result.get("app1").size());
+        Assert.assertEquals(400, result.get("app2").size());
+        Assert.assertTrue(result.get("none").isEmpty());
+        for (AppServer server : result.get("app1")) {
+            Assert.assertEquals("app1", server.getAppCode());
+            Assert.assertEquals(32, server.getServerId().length());
+        }
+    }
+
+    @Test
+    public void testBatchUpdate() {
+        appServerService.batchSaveAppServer(Lists.newArrayList(server(null, "10.0.0.1", "app"), server(null, "10.0.0.2", "app")), "test");
+        List<AppServer> saved = appServerService.getAppServerByAppCode("app");
+
+        List<AppServer> updates = Lists.newArrayList();
+        for (AppServer server : saved) {
+            updates.add(server(server.getServerId(), server.getIp(), "app"));
+            updates.get(updates.size() - 1).setRoom("room2");
+        }
+        updates.add(server(null, "10.0.0.3", "app"));
+
+        Assert.assertEquals(3, appServerService.batchSaveAppServer(updates, "test"));
+        List<AppServer> result = appServerService.getAppServerByAppCode("app");
+        Assert.assertEquals(3, result.size());
+        for (AppServer server : result) {
+            Assert.assertEquals(server.getIp().equals("10.0.0.3") ? "room" : "room2", server.getRoom());
+        }
+    }
+
+    @Test
+    public void testConflictWithExistingServer() {
+        appServerService.batchSaveAppServer(Lists.newArrayList(server(null, "10.0.0.1", "other")), "test");
+
+        try {
+            appServerService.batchSaveAppServer(Lists.newArrayList(server(null, "10.0.0.2", "app"), server(null, "10.0.0.1", "app")), "test");
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("10.0.0.1(other)"));
+        }
+        Assert.assertTrue(appServerService.getAppServerByAppCode("app").isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDuplicateIpInBatch() {
+        appServerService.batchSaveAppServer(Lists.newArrayList(server(null, "10.0.0.1", "app"), server(null, "10.0.0.1", "app")), "test");
+    }
+
+    @Test
+    public void testBatchRemoveAppUser() {
+        applicationUserDao.batchAddAppUser(Lists.newArrayList("a", "b", "c"), "app");
+        applicationUserDao.batchRemoveAppUser(Lists.newArrayList("a", "c"), "app");
+
+        Assert.assertEquals(ImmutableList.of("b"), applicationUserDao.getUsersByAppCode("app"));
+    }
+
+    private static AppServer server(String serverId, String ip, String appCode) {
+        return new AppServer(serverId, ip, 8080, "host-" + ip, "/tmp/logs", "room", appCode);
+    }
+}
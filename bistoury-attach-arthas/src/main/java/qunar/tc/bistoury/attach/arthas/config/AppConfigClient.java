@@ -19,11 +19,11 @@ package qunar.tc.bistoury.attach.arthas.config;
 
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.arthas.instrument.InstrumentClient;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
-import qunar.tc.bistoury.attach.file.FileOperateFactory;
 import qunar.tc.bistoury.attach.file.bean.FileBean;
 import qunar.tc.bistoury.clientside.common.meta.MetaStore;
 import qunar.tc.bistoury.clientside.common.meta.MetaStores;
@@ -32,7 +32,6 @@ import qunar.tc.bistoury.instrument.client.common.InstrumentInfo;
 import java.net.URI;
 import java.net.URL;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -57,20 +56,23 @@ public class AppConfigClient implements InstrumentClient {
     private static final Set<String> DEFAULT_EXCLUSION_FILE_SUFFIX = parseExclusionFileSuffix(DEFAULT_EXCLUSION_SUFFIX_LINE);
 
     private final URI uri;
+    private final AppConfigIndex index;
     private MetaStore metaStore = MetaStores.getMetaStore();
-    private List<String> filesPath = new ArrayList<>();
 
     public AppConfigClient(InstrumentInfo instrumentInfo) {
         logger.info("start init app config client");
         URI theUri = null;
+        AppConfigIndex theIndex = null;
         try {
             URL resource = instrumentInfo.getSystemClass().getClassLoader().getResource("/");
             theUri = resource.toURI();
+            theIndex = new AppConfigIndex(ImmutableList.of(Paths.get(theUri.toString()).getParent().toString(), BASE_PATH + "/conf"));
             logger.info("init app config client success");
         } catch (Throwable e) {
             logger.error("", "app config client init error", e);
         }
         uri = theUri;
+        index = theIndex;
     }
 
     /**
@@ -78,32 +80,61 @@ public class AppConfigClient implements InstrumentClient {
      *
      * @return
      */
-    public synchronized List<FileBean> listAppConfigFiles() {
-        filesPath = new ArrayList<>();
-        if (uri == null) {
+    public List<FileBean> listAppConfigFiles() {
+        if (index == null) {
             return Collections.emptyList();
         }
-        List<FileBean> result = new ArrayList<>();
-        final Set<String> exclusionFileSuffix = getExclusionFileSuffix();
-        final Set<String> exclusionFile = getExclusionFile();
-        List<FileBean> webAppConfigFiles = FileOperateFactory.listFiles(exclusionFileSuffix, exclusionFile, Paths.get(uri.toString()).getParent().toString());
-        List<FileBean> tomcatConfigFiles = FileOperateFactory.listFiles(exclusionFileSuffix, exclusionFile, BASE_PATH + "/conf");
-        result.addAll(webAppConfigFiles);
-        result.addAll(tomcatConfigFiles);
-        for (FileBean fileBean : result) {
-            filesPath.add(fileBean.getName());
+        return index.list(getExclusionFileSuffix(), getExclusionFile()).getFiles();
+    }
+
+    /**
+     * 获取应用配置文件，与指定版本相同时不返回文件列表
+     *
+     * @param sinceVersion 上一次获取到的列表版本
+     * @return
+     */
+    public AppConfigFiles listAppConfigFiles(String sinceVersion) {
+        if (index == null) {
+            return new AppConfigFiles(null, true, Collections.<FileBean>emptyList());
+        }
+        AppConfigFiles files = index.list(getExclusionFileSuffix(), getExclusionFile());
+        if (!Strings.isNullOrEmpty(sinceVersion) && sinceVersion.equals(files.getVersion())) {
+            return new AppConfigFiles(files.getVersion(), false, null);
+        }
+        return files;
+    }
+
+    public String queryFileByPath(String path) {
+        if (Strings.isNullOrEmpty(path)) {
+            return null;
         }
-        return result;
+        return queryFile(path).getContent();
     }
 
-    public synchronized String queryFileByPath(String path) {
+    /**
+     * 获取配置文件内容，与指定hash相同时不返回内容
+     *
+     * @param path      文件路径
+     * @param sinceHash 上一次获取到的内容hash
+     * @return
+     */
+    public AppConfigFile queryFileByPath(String path, String sinceHash) {
         if (Strings.isNullOrEmpty(path)) {
             return null;
         }
-        if (filesPath.contains(path)) {
-            return FileOperateFactory.getFile(path);
+        AppConfigFile file = queryFile(path);
+        if (!Strings.isNullOrEmpty(sinceHash) && sinceHash.equals(file.getHash())) {
+            return file.unchanged();
         }
-        throw new RuntimeException("仅支持获取列表中文件的内容！！！");
+        return file;
+    }
+
+    private AppConfigFile queryFile(String path) {
+        AppConfigFile file = index == null ? null : index.getFile(path);
+        if (file == null) {
+            throw new RuntimeException("仅支持获取列表中文件的内容！！！");
+        }
+        return file;
     }
 
     private Set<String> getExclusionFileSuffix() {
@@ -133,7 +164,9 @@ public class AppConfigClient implements InstrumentClient {
     }
 
     @Override
-    public synchronized void destroy() {
-        filesPath.clear();
+    public void destroy() {
+        if (index != null) {
+            index.destroy();
+        }
     }
 }
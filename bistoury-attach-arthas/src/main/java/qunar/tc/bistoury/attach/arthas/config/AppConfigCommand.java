@@ -20,6 +20,7 @@ package qunar.tc.bistoury.attach.arthas.config;
 import com.taobao.arthas.core.shell.command.AnnotatedCommand;
 import com.taobao.arthas.core.shell.command.CommandProcess;
 import com.taobao.middleware.cli.annotations.Name;
+import com.taobao.middleware.cli.annotations.Option;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.attach.file.bean.FileBean;
@@ -36,18 +37,31 @@ import java.util.List;
 public class AppConfigCommand extends AnnotatedCommand {
     private static final Logger logger = BistouryLoggger.getLogger();
 
+    private String since;
+
+    /**
+     * 指定上一次获取到的列表版本，返回{@link AppConfigFiles}，列表没有变化时不返回文件
+     */
+    @Option(shortName = "s", longName = "since")
+    public void setSince(String since) {
+        this.since = since;
+    }
+
     @Override
     public void process(CommandProcess process) {
-        logger.info("receive app config command");
-        CodeProcessResponse<List<FileBean>> response = new CodeProcessResponse<>();
-        TypeResponse<List<FileBean>> typeResponse = new TypeResponse<>();
+        logger.info("receive app config command, since: {}", since);
+        CodeProcessResponse<Object> response = new CodeProcessResponse<>();
+        TypeResponse<Object> typeResponse = new TypeResponse<>();
         typeResponse.setType(BistouryConstants.REQ_APP_CONFIG);
         typeResponse.setData(response);
         try {
             AppConfigClient client = AppConfigClients.getInstance();
-            List<FileBean> config = getAppConfig(client);
             response.setCode(0);
-            response.setData(config);
+            if (since == null) {
+                response.setData(getAppConfig(client));
+            } else {
+                response.setData(client.listAppConfigFiles(since));
+            }
         } catch (Exception e) {
             logger.error("get app config error, {}", e.getMessage(), e);
             response.setCode(-1);
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.config;
+
+/**
+ * 配置文件内容，hash相同时modified为false且不返回内容
+ */
+public class AppConfigFile {
+    private String path;
+    private String hash;
+    private long modifiedTime;
+    private long size;
+    private boolean modified = true;
+    private String content;
+
+    public AppConfigFile() {
+    }
+
+    public AppConfigFile(String path, String hash, long modifiedTime, long size, String content) {
+        this.path = path;
+        this.hash = hash;
+        this.modifiedTime = modifiedTime;
+        this.size = size;
+        this.content = content;
+    }
+
+    public AppConfigFile unchanged() {
+        AppConfigFile file = new AppConfigFile(path, hash, modifiedTime, size, null);
+        file.setModified(false);
+        return file;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getModifiedTime() {
+        return modifiedTime;
+    }
+
+    public void setModifiedTime(long modifiedTime) {
+        this.modifiedTime = modifiedTime;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    @Override
+    public String toString() {
+        return "AppConfigFile{" +
+                "path='" + path + '\'' +
+                ", hash='" + hash + '\'' +
+                ", modifiedTime=" + modifiedTime +
+                ", size=" + size +
+                ", modified=" + modified +
+                '}';
+    }
+}
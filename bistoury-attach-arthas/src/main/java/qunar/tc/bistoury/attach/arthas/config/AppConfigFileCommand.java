@@ -21,6 +21,7 @@ import com.taobao.arthas.core.shell.command.AnnotatedCommand;
 import com.taobao.arthas.core.shell.command.CommandProcess;
 import com.taobao.middleware.cli.annotations.Argument;
 import com.taobao.middleware.cli.annotations.Name;
+import com.taobao.middleware.cli.annotations.Option;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.common.*;
@@ -37,24 +38,37 @@ public class AppConfigFileCommand extends AnnotatedCommand {
 
     private String path;
 
+    private String since;
+
     @Argument(index = 0, argName = "path")
     public void setPath(String path) {
         this.path = URLCoder.decode(path);
     }
 
+    /**
+     * 指定上一次获取到的内容hash，返回{@link AppConfigFile}，内容没有变化时不返回内容
+     */
+    @Option(shortName = "s", longName = "since")
+    public void setSince(String since) {
+        this.since = since;
+    }
+
     @Override
     public void process(CommandProcess process) {
-        logger.info("receive app config file command, path [{}]", path);
-        CodeProcessResponse<String> response = new CodeProcessResponse<>();
-        TypeResponse<String> typeResponse = new TypeResponse<>();
+        logger.info("receive app config file command, path [{}], since [{}]", path, since);
+        CodeProcessResponse<Object> response = new CodeProcessResponse<>();
+        TypeResponse<Object> typeResponse = new TypeResponse<>();
         typeResponse.setType(BistouryConstants.REQ_APP_CONFIG_FILE);
         typeResponse.setData(response);
         response.setId(path);
         try {
             AppConfigClient client = AppConfigClients.getInstance();
-            String file = getAppConfigFile(client);
             response.setCode(0);
-            response.setData(file);
+            if (since == null) {
+                response.setData(getAppConfigFile(client));
+            } else {
+                response.setData(client.queryFileByPath(path, since));
+            }
         } catch (Exception e) {
             logger.error("get config error, {}", e.getMessage(), e);
             response.setCode(-1);
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.config;
+
+import qunar.tc.bistoury.attach.file.bean.FileBean;
+
+import java.util.List;
+
+/**
+ * 配置文件列表，version相同时modified为false且不返回文件列表
+ */
+public class AppConfigFiles {
+    private String version;
+    private boolean modified;
+    private List<FileBean> files;
+
+    public AppConfigFiles() {
+    }
+
+    public AppConfigFiles(String version, boolean modified, List<FileBean> files) {
+        this.version = version;
+        this.modified = modified;
+        this.files = files;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    public List<FileBean> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileBean> files) {
+        this.files = files;
+    }
+
+    @Override
+    public String toString() {
+        return "AppConfigFiles{" +
+                "version='" + version + '\'' +
+                ", modified=" + modified +
+                ", files=" + files +
+                '}';
+    }
+}
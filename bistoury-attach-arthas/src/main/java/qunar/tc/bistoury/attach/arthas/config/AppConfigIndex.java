@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.config;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.attach.file.FileOperateFactory;
+import qunar.tc.bistoury.attach.file.URLUtil;
+import qunar.tc.bistoury.attach.file.bean.FileBean;
+import qunar.tc.bistoury.common.JarIdentity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 应用配置文件索引，列表和文件内容都从内存返回，只有在文件发生变化时才重新遍历目录
+ * <p>
+ * 解压的目录通过{@link WatchService}感知变化，jar包中的配置通过jar文件的大小和修改时间感知变化；
+ * 目录过多或者不支持watch时退化为定时重新遍历
+ * <p>
+ * 事件在访问时才取出处理，但jdk的WatchService实现自己会启动一个后台线程(linux下为inotify的poller)，
+ * 这个线程在{@link #destroy()}时随WatchService一起关闭
+ * <p>
+ * 退化为定时遍历时文件列表最多落后{@link #FALLBACK_REFRESH_MILLIS}；文件内容每次读取时都用文件当前的修改时间和大小校验，不会返回过期内容
+ */
+class AppConfigIndex {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private static final String JAR_FILE_PATH_SPLITTER = "!/";
+
+    private static final int MAX_WATCH_DIRECTORIES = 512;
+
+    private static final long FALLBACK_REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final long MAX_CONTENT_CACHE_CHARS = 8 * 1024 * 1024;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final List<String> roots;
+
+    private final Map<String, JarIdentity> jarIdentities = new HashMap<>();
+
+    private final Cache<String, AppConfigFile> contents = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CONTENT_CACHE_CHARS)
+            .weigher(new Weigher<String, AppConfigFile>() {
+                @Override
+                public int weigh(String key, AppConfigFile value) {
+                    return key.length() + (value.getContent() == null ? 0 : value.getContent().length());
+                }
+            })
+            .build();
+
+    private WatchService watchService;
+
+    private final Set<Path> watchedDirectories = new HashSet<>();
+
+    private boolean dirty = true;
+
+    private long lastBuildTime = 0;
+
+    private Set<String> exclusionFileSuffix;
+
+    private Set<String> exclusionFile;
+
+    private AppConfigFiles snapshot;
+
+    private Map<String, FileBean> fileMapping = ImmutableMap.of();
+
+    AppConfigIndex(List<String> roots) {
+        this.roots = ImmutableList.copyOf(roots);
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (Throwable e) {
+            logger.warn("app config watch service not available, {}", e.getMessage());
+            this.watchService = null;
+        }
+    }
+
+    synchronized AppConfigFiles list(Set<String> exclusionFileSuffix, Set<String> exclusionFile) {
+        if (!exclusionFileSuffix.equals(this.exclusionFileSuffix) || !exclusionFile.equals(this.exclusionFile)) {
+            this.exclusionFileSuffix = exclusionFileSuffix;
+            this.exclusionFile = exclusionFile;
+            dirty = true;
+        }
+
+        checkChanges();
+        if (dirty || snapshot == null) {
+            rebuild();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 获取文件内容，文件的修改时间和大小与索引一致时直接返回缓存内容
+     */
+    AppConfigFile getFile(String path) {
+        FileBean fileBean;
+        synchronized (this) {
+            if (snapshot == null) {
+                return null;
+            }
+            checkChanges();
+            if (dirty) {
+                rebuild();
+            }
+            fileBean = fileMapping.get(path);
+        }
+        if (fileBean == null) {
+            return null;
+        }
+
+        long modifiedTime = fileBean.getModifiedTime();
+        long size = fileBean.getSize();
+        File localFile = new File(path);
+        if (localFile.isFile()) {
+            modifiedTime = localFile.lastModified();
+            size = localFile.length();
+        }
+
+        AppConfigFile cached = contents.getIfPresent(path);
+        if (cached != null && cached.getModifiedTime() == modifiedTime && cached.getSize() == size) {
+            return cached;
+        }
+
+        String content = FileOperateFactory.getFile(path);
+        AppConfigFile file = new AppConfigFile(path, hash(content), modifiedTime, size, content);
+        if (content != null) {
+            contents.put(path, file);
+        }
+        return file;
+    }
+
+    synchronized void destroy() {
+        contents.invalidateAll();
+        fileMapping = ImmutableMap.of();
+        snapshot = null;
+        dirty = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.error("", "close app config watch service error", e);
+            }
+            watchService = null;
+            watchedDirectories.clear();
+        }
+    }
+
+    private void checkChanges() {
+        if (dirty) {
+            return;
+        }
+
+        for (Map.Entry<String, JarIdentity> entry : jarIdentities.entrySet()) {
+            if (!entry.getValue().equals(JarIdentity.of(entry.getKey()))) {
+                dirty = true;
+                return;
+            }
+        }
+
+        if (watchService == null) {
+            dirty = System.currentTimeMillis() - lastBuildTime > FALLBACK_REFRESH_MILLIS;
+            return;
+        }
+
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            List<WatchEvent<?>> events = key.pollEvents();
+            if (!events.isEmpty()) {
+                dirty = true;
+            }
+            if (!key.reset()) {
+                dirty = true;
+            }
+        }
+    }
+
+    private void rebuild() {
+        List<FileBean> files = new ArrayList<>();
+        jarIdentities.clear();
+        for (String root : roots) {
+            files.addAll(FileOperateFactory.listFiles(exclusionFileSuffix, exclusionFile, root));
+            watch(root);
+        }
+
+        Map<String, FileBean> mapping = new HashMap<>();
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        for (FileBean file : files) {
+            mapping.put(file.getName(), file);
+            hasher.putString(file.getName(), Charsets.UTF_8).putLong(file.getModifiedTime()).putLong(file.getSize());
+        }
+
+        fileMapping = ImmutableMap.copyOf(mapping);
+        snapshot = new AppConfigFiles(hasher.hash().toString(), true, ImmutableList.copyOf(files));
+        lastBuildTime = System.currentTimeMillis();
+        dirty = false;
+    }
+
+    private void watch(String root) {
+        String localPath = URLUtil.removeProtocol(root);
+        int index = localPath.indexOf(JAR_FILE_PATH_SPLITTER);
+        if (index >= 0) {
+            String jarPath = localPath.substring(0, index);
+            jarIdentities.put(jarPath, JarIdentity.of(jarPath));
+            return;
+        }
+
+        File dir = new File(localPath);
+        if (watchService == null || !dir.isDirectory()) {
+            return;
+        }
+
+        try {
+            Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (watchedDirectories.contains(dir)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (watchedDirectories.size() >= MAX_WATCH_DIRECTORIES) {
+                        throw new IOException("too many directories to watch");
+                    }
+                    watchedDirectories.add(dir);
+                    dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("watch app config directory fail, fallback to periodic refresh, {}", e.getMessage());
+            try {
+                watchService.close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+            watchService = null;
+            watchedDirectories.clear();
+        }
+    }
+
+    private static String hash(String content) {
+        if (content == null) {
+            return null;
+        }
+        return HASH_FUNCTION.hashString(content, Charsets.UTF_8).toString();
+    }
+}
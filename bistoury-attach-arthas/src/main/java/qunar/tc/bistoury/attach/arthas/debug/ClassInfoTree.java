@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.debug;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按包分桶的不可变类树，增量更新时只重建发生变化的包，其余包的节点在新旧版本之间共享
+ */
+class ClassInfoTree {
+
+    static final ClassInfoTree EMPTY = new ClassInfoTree(ImmutableMap.<String, ImmutableMap<String, ClassInfo>>of(), 0);
+
+    private static final String DEFAULT_PACKAGE = "";
+
+    private final ImmutableMap<String, ImmutableMap<String, ClassInfo>> packages;
+
+    private final int size;
+
+    private final Supplier<Set<String>> classNames = Suppliers.memoize(new Supplier<Set<String>>() {
+        @Override
+        public Set<String> get() {
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (ImmutableMap<String, ClassInfo> classes : packages.values()) {
+                builder.addAll(classes.keySet());
+            }
+            return builder.build();
+        }
+    });
+
+    private ClassInfoTree(ImmutableMap<String, ImmutableMap<String, ClassInfo>> packages, int size) {
+        this.packages = packages;
+        this.size = size;
+    }
+
+    ClassInfo get(String className) {
+        ImmutableMap<String, ClassInfo> classes = packages.get(packageOf(className));
+        return classes == null ? null : classes.get(className);
+    }
+
+    boolean contains(String className) {
+        return get(className) != null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Set<String> classNames() {
+        return classNames.get();
+    }
+
+    /**
+     * 返回加入新类之后的树，未涉及的包直接复用当前版本的节点
+     */
+    ClassInfoTree plus(Map<String, ClassInfo> added) {
+        if (added.isEmpty()) {
+            return this;
+        }
+
+        Map<String, Map<String, ClassInfo>> addedByPackage = new HashMap<>();
+        for (Map.Entry<String, ClassInfo> entry : added.entrySet()) {
+            String packageName = packageOf(entry.getKey());
+            Map<String, ClassInfo> classes = addedByPackage.get(packageName);
+            if (classes == null) {
+                classes = new HashMap<>();
+                addedByPackage.put(packageName, classes);
+            }
+            classes.put(entry.getKey(), entry.getValue());
+        }
+
+        Map<String, ImmutableMap<String, ClassInfo>> newPackages = Maps.newHashMapWithExpectedSize(packages.size() + addedByPackage.size());
+        newPackages.putAll(packages);
+        int newSize = size;
+        for (Map.Entry<String, Map<String, ClassInfo>> entry : addedByPackage.entrySet()) {
+            ImmutableMap<String, ClassInfo> old = newPackages.get(entry.getKey());
+            Map<String, ClassInfo> merged;
+            if (old == null) {
+                merged = entry.getValue();
+            } else {
+                merged = new HashMap<>(old);
+                merged.putAll(entry.getValue());
+                newSize -= old.size();
+            }
+            newSize += merged.size();
+            newPackages.put(entry.getKey(), ImmutableMap.copyOf(merged));
+        }
+        return new ClassInfoTree(ImmutableMap.copyOf(newPackages), newSize);
+    }
+
+    static ClassInfoTree of(Map<String, ClassInfo> classes) {
+        return EMPTY.plus(classes);
+    }
+
+    private static String packageOf(String className) {
+        int index = className.lastIndexOf('.');
+        return index < 0 ? DEFAULT_PACKAGE : className.substring(0, index);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.debug;
+
+import qunar.tc.bistoury.instrument.client.common.InstrumentInfo;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.ref.WeakReference;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录新加载的类，只在类定义时入队，不做任何解析，解析延迟到下一次刷新类列表时进行
+ * <p>
+ * 队列有上限，超过上限后丢弃并标记溢出，由调用方退化为全量扫描；
+ * 队列中只弱引用classloader，不保留ProtectionDomain，不会因为等待刷新而阻止已卸载应用的classloader被回收
+ */
+class ClassLoadRecorder implements ClassFileTransformer {
+
+    private static final int MAX_PENDING = 100000;
+
+    private final Queue<LoadedClass> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    private final AtomicBoolean overflow = new AtomicBoolean(false);
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (classBeingRedefined != null || className == null || loader == null) {
+            return null;
+        }
+
+        if (className.indexOf('$') >= 0 || InstrumentInfo.IGNORE_CLASS.contains(loader.getClass().getName())) {
+            return null;
+        }
+
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            overflow.set(true);
+            return null;
+        }
+        CodeSource codeSource = protectionDomain == null ? null : protectionDomain.getCodeSource();
+        pending.offer(new LoadedClass(className.replace('/', '.'), loader, codeSource));
+        return null;
+    }
+
+    /**
+     * 取出所有待处理的类，返回null表示期间发生过溢出，需要全量扫描
+     */
+    List<LoadedClass> drain() {
+        boolean overflowed = overflow.getAndSet(false);
+        List<LoadedClass> result = new ArrayList<>(Math.max(pendingCount.get(), 0));
+        LoadedClass loadedClass;
+        while ((loadedClass = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            result.add(loadedClass);
+        }
+        return overflowed ? null : result;
+    }
+
+    void clear() {
+        pending.clear();
+        pendingCount.set(0);
+        overflow.set(false);
+    }
+
+    static class LoadedClass {
+        private final String name;
+        private final WeakReference<ClassLoader> classLoader;
+        private final CodeSource codeSource;
+
+        LoadedClass(String name, ClassLoader classLoader, CodeSource codeSource) {
+            this.name = name;
+            this.classLoader = new WeakReference<>(classLoader);
+            this.codeSource = codeSource;
+        }
+
+        LoadedClass(Class<?> clazz) {
+            this(clazz.getName(), clazz.getClassLoader(), codeSource(clazz.getProtectionDomain()));
+        }
+
+        private static CodeSource codeSource(ProtectionDomain protectionDomain) {
+            return protectionDomain == null ? null : protectionDomain.getCodeSource();
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return classloader已经被回收时返回null
+         */
+        ClassLoader getClassLoader() {
+            return classLoader.get();
+        }
+
+        CodeSource getCodeSource() {
+            return codeSource;
+        }
+    }
+}
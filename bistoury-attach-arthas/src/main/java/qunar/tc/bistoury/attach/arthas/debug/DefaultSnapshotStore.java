@@ -17,19 +17,33 @@
 
 package qunar.tc.bistoury.attach.arthas.debug;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.common.NamedThreadFactory;
 import qunar.tc.bistoury.common.Snapshot;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 断点按过期时间排在优先队列中，定时只检查队头，过期的断点在executor中移除，不持有instrument的全局锁
+ * <p>
+ * 所有断点的快照共享一个内存上限，超过后从最早的断点开始移除
+ *
  * @author zhenyu.nie created on 2018 2018/9/21 17:12
  */
 public class DefaultSnapshotStore implements SnapshotStore {
@@ -38,39 +52,274 @@ public class DefaultSnapshotStore implements SnapshotStore {
 
     private static final long EXPIRE_MINUTES = 10;
 
+    private static final long EXPIRE_CHECK_SECONDS = 5;
+
+    //所有断点的快照占用内存的上限
+    static final long MAX_TOTAL_BYTES = 32 * 1024 * 1024;
+
     private final long expireTime = TimeUnit.MINUTES.toMillis(EXPIRE_MINUTES);
 
+    //断点的状态和最近一次的快照
     private final ConcurrentHashMap<String, Snapshot> snapshotCache = new ConcurrentHashMap<>();
 
+    private final ConcurrentHashMap<String, SnapshotRing> rings = new ConcurrentHashMap<>();
+
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    //每个断点一项，刷新过期时间时不更新队列，到期时发现过期时间变了再重新入队
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>();
+
+    //通知在executor中执行，不占用触发断点的业务线程
+    private final Map<String, Map<SnapshotListener, Registration>> listeners = new HashMap<>();
+
+    private final ScheduledThreadPoolExecutor executor;
+
     private final RemoveListener removeListener;
-    private final Lock lock;
 
-    public DefaultSnapshotStore(Lock lock, RemoveListener removeListener) {
+    public DefaultSnapshotStore(RemoveListener removeListener) {
         this.removeListener = removeListener;
-        this.lock = lock;
 
-        Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("snapshot-cache-clean")).scheduleAtFixedRate(new Runnable() {
+        this.executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("snapshot-cache-clean"));
+        //监听通知后会取消超时任务，取消的任务直接移出队列，不用等到超时
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.executor.scheduleWithFixedDelay(new Runnable() {
             @Override
             public void run() {
-                for (String breakpointId : snapshotCache.keySet()) {
-                    cleanCache(breakpointId);
+                try {
+                    expire(System.currentTimeMillis());
+                } catch (Throwable e) {
+                    logger.error("", "expire snapshot error", e);
+                }
+            }
+        }, EXPIRE_CHECK_SECONDS, EXPIRE_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void expire(long now) {
+        List<Deadline> expired = new ArrayList<>();
+        synchronized (deadlines) {
+            while (!deadlines.isEmpty() && deadlines.peek().time <= now) {
+                Deadline deadline = deadlines.poll();
+                if (snapshotCache.get(deadline.id) != deadline.snapshot) {
+                    continue;
+                }
+
+                long expireTime = deadline.snapshot.getExpireTime();
+                if (expireTime > now) {
+                    deadlines.add(new Deadline(expireTime, deadline.id, deadline.snapshot));
+                } else {
+                    expired.add(deadline);
+                }
+            }
+        }
+
+        for (Deadline deadline : expired) {
+            if (!evictExpired(deadline.id, deadline.snapshot, now)) {
+                //出队之后过期时间又被刷新了，重新入队
+                synchronized (deadlines) {
+                    deadlines.add(new Deadline(deadline.snapshot.getExpireTime(), deadline.id, deadline.snapshot));
+                }
+            }
+        }
+    }
+
+    /**
+     * 断点过期时移除，出队之后过期时间被刷新过的不移除
+     *
+     * @return 过期时间被刷新过时返回false
+     */
+    private boolean evictExpired(String breakpointId, Snapshot snapshot, long now) {
+        if (snapshot.getExpireTime() > now) {
+            return false;
+        }
+        evict(breakpointId, snapshot);
+        return true;
+    }
+
+    /**
+     * 移除断点和它的快照，断点已经被移除或者重新注册过时不做处理
+     */
+    private void evict(String breakpointId, Snapshot snapshot) {
+        if (!snapshotCache.remove(breakpointId, snapshot)) {
+            return;
+        }
+        release(breakpointId);
+        removeListener.remove(breakpointId, snapshot);
+        notifyListeners(breakpointId);
+    }
+
+    /**
+     * 释放断点的快照，队列中对应的项不在这里移除，到期出队时发现断点已经不在了再丢弃
+     */
+    private void release(String breakpointId) {
+        SnapshotRing ring = rings.remove(breakpointId);
+        if (ring != null) {
+            ring.release();
+        }
+    }
+
+    /**
+     * 快照总内存超过上限时，按过期时间从早到晚移除断点，直到回到上限以内
+     */
+    private void evictOverBudget() {
+        if (totalBytes.get() <= MAX_TOTAL_BYTES || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<Deadline> candidates = new ArrayList<>();
+                    for (Map.Entry<String, Snapshot> entry : snapshotCache.entrySet()) {
+                        candidates.add(new Deadline(entry.getValue().getExpireTime(), entry.getKey(), entry.getValue()));
+                    }
+                    Collections.sort(candidates);
+
+                    //排序之后过期时间被刷新过的断点正在被使用，先移除其他断点，还不够时再移除
+                    List<Deadline> refreshed = new ArrayList<>();
+                    for (Deadline candidate : candidates) {
+                        if (candidate.snapshot.getExpireTime() != candidate.time) {
+                            refreshed.add(candidate);
+                        } else if (!evictForBudget(candidate)) {
+                            return;
+                        }
+                    }
+                    for (Deadline candidate : refreshed) {
+                        if (!evictForBudget(candidate)) {
+                            return;
+                        }
+                    }
+                } catch (Throwable e) {
+                    logger.error("", "evict snapshot error", e);
+                } finally {
+                    evicting.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return 移除前已经回到上限以内时返回false
+     */
+    private boolean evictForBudget(Deadline candidate) {
+        if (totalBytes.get() <= MAX_TOTAL_BYTES) {
+            return false;
+        }
+        logger.warn("snapshots exceed {} bytes, remove breakpoint {}", MAX_TOTAL_BYTES, candidate.id);
+        evict(candidate.id, candidate.snapshot);
+        return true;
+    }
+
+    @Override
+    public void addListener(final String id, int afterHits, final SnapshotListener listener, long timeoutMs) {
+        synchronized (listeners) {
+            if (isComplete(snapshotCache.get(id), afterHits)) {
+                notifyListener(id, listener);
+                return;
+            }
+
+            Map<SnapshotListener, Registration> idListeners = listeners.get(id);
+            if (idListeners == null) {
+                idListeners = new LinkedHashMap<>();
+                listeners.put(id, idListeners);
+            }
+            ScheduledFuture<?> timeout = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (doRemoveListener(id, listener)) {
+                        notifyListener(id, listener);
+                    }
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+            Registration old = idListeners.put(listener, new Registration(afterHits, timeout));
+            if (old != null) {
+                old.cancelTimeout();
+            }
+        }
+    }
+
+    @Override
+    public void removeListener(String id, SnapshotListener listener) {
+        doRemoveListener(id, listener);
+    }
+
+    private boolean doRemoveListener(String id, SnapshotListener listener) {
+        synchronized (listeners) {
+            Map<SnapshotListener, Registration> idListeners = listeners.get(id);
+            Registration registration = idListeners == null ? null : idListeners.remove(listener);
+            if (registration == null) {
+                return false;
+            }
+            registration.cancelTimeout();
+            if (idListeners.isEmpty()) {
+                listeners.remove(id);
+            }
+            return true;
+        }
+    }
+
+    private void notifyListeners(String id) {
+        List<SnapshotListener> completed = new ArrayList<>();
+        synchronized (listeners) {
+            Map<SnapshotListener, Registration> idListeners = listeners.get(id);
+            if (idListeners == null) {
+                return;
+            }
+            Snapshot snapshot = snapshotCache.get(id);
+            Iterator<Map.Entry<SnapshotListener, Registration>> it = idListeners.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<SnapshotListener, Registration> entry = it.next();
+                if (isComplete(snapshot, entry.getValue().afterHits)) {
+                    entry.getValue().cancelTimeout();
+                    completed.add(entry.getKey());
+                    it.remove();
                 }
             }
-        }, EXPIRE_MINUTES, 1, TimeUnit.MINUTES);
+            if (idListeners.isEmpty()) {
+                listeners.remove(id);
+            }
+        }
+        for (SnapshotListener listener : completed) {
+            notifyListener(id, listener);
+        }
     }
 
-    private void cleanCache(final String breakpointId) {
-        lock.lock();
-        try {
-            Snapshot snapshot = snapshotCache.get(breakpointId);
-            if (snapshot != null && System.currentTimeMillis() >= snapshot.getExpireTime()) {
-                snapshotCache.remove(breakpointId);
-                removeListener.remove(breakpointId, snapshot);
+    private void notifyListener(final String id, final SnapshotListener listener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listener.onComplete(id);
+                } catch (Throwable e) {
+                    logger.error("", "notify snapshot listener error, " + id, e);
+                }
             }
-        } finally {
-            lock.unlock();
+        });
+    }
+
+    private static class Registration {
+
+        //监听时已经看到的快照数
+        private final int afterHits;
+
+        private final ScheduledFuture<?> timeout;
+
+        private Registration(int afterHits, ScheduledFuture<?> timeout) {
+            this.afterHits = afterHits;
+            this.timeout = timeout;
         }
 
+        private void cancelTimeout() {
+            timeout.cancel(false);
+        }
+    }
+
+    private static boolean isComplete(Snapshot snapshot, int afterHits) {
+        return snapshot == null
+                || snapshot.isFail()
+                || (snapshot.isInit() && (snapshot.getHits() > afterHits || snapshot.isFinished()));
     }
 
     private long computeExpireTime() {
@@ -79,12 +328,30 @@ public class DefaultSnapshotStore implements SnapshotStore {
 
     @Override
     public Snapshot getSnapshot(String id) {
-        return snapshotCache.get(id);
+        //断点上只有状态，快照数据从环中最新的一项读取，环中的快照不会再被修改
+        Snapshot head = snapshotCache.get(id);
+        if (head == null || !head.isInit()) {
+            return head;
+        }
+        SnapshotRing ring = rings.get(id);
+        Snapshot latest = ring == null ? null : ring.latest();
+        return latest == null ? head : latest;
+    }
+
+    @Override
+    public List<Snapshot> getSnapshots(String id, int afterHits) {
+        SnapshotRing ring = rings.get(id);
+        if (ring == null) {
+            return ImmutableList.of();
+        }
+        return ring.after(afterHits);
     }
 
     @Override
     public void remove(String id) {
         snapshotCache.remove(id);
+        release(id);
+        notifyListeners(id);
     }
 
     @Override
@@ -96,14 +363,35 @@ public class DefaultSnapshotStore implements SnapshotStore {
     }
 
     @Override
-    public void initBreakPoint(String breakpointId, String source, int line) {
-        snapshotCache.put(breakpointId, new Snapshot(breakpointId, source, line, computeExpireTime()));
+    public void initBreakPoint(String breakpointId, String source, int line, int maxHits) {
+        Snapshot snapshot = new Snapshot(breakpointId, source, line, computeExpireTime());
+        snapshot.setMaxHits(maxHits);
+        SnapshotRing old = rings.put(breakpointId, new SnapshotRing(maxHits, totalBytes));
+        if (old != null) {
+            old.release();
+        }
+        snapshotCache.put(breakpointId, snapshot);
+        synchronized (deadlines) {
+            deadlines.add(new Deadline(snapshot.getExpireTime(), breakpointId, snapshot));
+        }
+    }
+
+    /**
+     * @return 当前线程上正在收集的快照，断点不存在时返回null
+     */
+    private Snapshot receiving(String breakpointId) {
+        Snapshot head = snapshotCache.get(breakpointId);
+        SnapshotRing ring = rings.get(breakpointId);
+        if (head == null || ring == null) {
+            return null;
+        }
+        return ring.receiving(head);
     }
 
     @Override
     public void putLocalVariables(String breakpointId, Map<String, Object> localVariables) {
         logger.debug("start put local variables, {}", breakpointId);
-        Snapshot snapshot = snapshotCache.get(breakpointId);
+        Snapshot snapshot = receiving(breakpointId);
         if (snapshot == null) {
             logger.debug("end put local variables, {}, breakpoint not exist now", breakpointId);
             return;
@@ -121,7 +409,7 @@ public class DefaultSnapshotStore implements SnapshotStore {
     @Override
     public void putFields(String breakpointId, Map<String, Object> fields) {
         logger.debug("start put fields, {}", breakpointId);
-        Snapshot snapshot = snapshotCache.get(breakpointId);
+        Snapshot snapshot = receiving(breakpointId);
         if (snapshot == null) {
             logger.debug("end put fields, {}, breakpoint not exist now", breakpointId);
             return;
@@ -139,7 +427,7 @@ public class DefaultSnapshotStore implements SnapshotStore {
     @Override
     public void putStaticFields(String breakpointId, Map<String, Object> staticFields) {
         logger.debug("start put static fields, {}", breakpointId);
-        Snapshot snapshot = snapshotCache.get(breakpointId);
+        Snapshot snapshot = receiving(breakpointId);
         if (snapshot == null) {
             logger.debug("end put static fields, {}, breakpoint not exist now", breakpointId);
             return;
@@ -157,7 +445,7 @@ public class DefaultSnapshotStore implements SnapshotStore {
     @Override
     public void fillStacktrace(String breakpointId, StackTraceElement[] stacktrace) {
         logger.debug("start fill stacktrace, {}", breakpointId);
-        Snapshot snapshot = snapshotCache.get(breakpointId);
+        Snapshot snapshot = receiving(breakpointId);
         if (snapshot == null) {
             logger.debug("end fill stacktrace, {}, breakpoint not exist now", breakpointId);
             return;
@@ -179,15 +467,27 @@ public class DefaultSnapshotStore implements SnapshotStore {
     }
 
     @Override
-    public void endReceive(String breakpointId) {
+    public void endReceive(final String breakpointId) {
         logger.debug("start end receive, {}", breakpointId);
-        Snapshot snapshot = snapshotCache.get(breakpointId);
-        if (snapshot == null) {
+        final Snapshot snapshot = snapshotCache.get(breakpointId);
+        SnapshotRing ring = rings.get(breakpointId);
+        if (snapshot == null || ring == null || !ring.complete(snapshot)) {
             logger.debug("end end receive, {}, breakpoint not exist now", breakpointId);
             return;
         }
 
-        snapshot.markInited();
+        if (ring.isFull() && snapshot.getHits() < snapshot.getMaxHits()) {
+            //快照次数没用完但是内存超过上限，在executor中移除断点，不占用业务线程
+            logger.warn("breakpoint {} snapshots exceed {} bytes, stop capture after {} hits", breakpointId, SnapshotRing.MAX_BYTES, snapshot.getHits());
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    removeListener.remove(breakpointId, snapshot);
+                }
+            });
+        }
+        evictOverBudget();
+        notifyListeners(breakpointId);
         logger.debug("end end receive, {}", breakpointId);
     }
 
@@ -200,6 +500,24 @@ public class DefaultSnapshotStore implements SnapshotStore {
             return;
         }
         snapshot.markFail();
+        notifyListeners(breakpointId);
         logger.debug("end end fail, {}", breakpointId);
     }
+
+    private static final class Deadline implements Comparable<Deadline> {
+        private final long time;
+        private final String id;
+        private final Snapshot snapshot;
+
+        private Deadline(long time, String id, Snapshot snapshot) {
+            this.time = time;
+            this.id = id;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public int compareTo(Deadline o) {
+            return Long.compare(time, o.time);
+        }
+    }
 }
@@ -17,11 +17,7 @@
 
 package qunar.tc.bistoury.attach.arthas.debug;
 
-import com.google.common.base.Optional;
 import com.google.common.base.Strings;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.arthas.instrument.InstrumentClient;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
@@ -30,15 +26,11 @@ import qunar.tc.bistoury.attach.file.URLUtil;
 import qunar.tc.bistoury.instrument.client.common.InstrumentInfo;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.security.CodeSource;
 import java.util.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 /**
  * @author: leix.xie
@@ -53,13 +45,20 @@ public class JarDebugClient implements InstrumentClient {
 
     private final InstrumentInfo instrumentInfo;
 
-    private volatile Map<String, ClassInfo> classNameToClassInfoMapping = Maps.newHashMap();
+    private final ClassLoadRecorder classLoadRecorder = new ClassLoadRecorder();
+
+    private final JarMetadataCache jarMetadataCache = new JarMetadataCache();
+
+    private volatile ClassInfoTree classInfoTree = ClassInfoTree.EMPTY;
+
+    private volatile boolean indexed = false;
 
     JarDebugClient(InstrumentInfo instrumentInfo) {
         this.instrumentInfo = instrumentInfo;
         logger.info("start init jar debugg client");
         try {
-            classNameToClassInfoMapping = initAllClassInfo(instrumentInfo, true);
+            //先注册加载钩子，全量扫描延迟到第一次使用时，扫描期间新加载的类会在下一次刷新时补上
+            instrumentInfo.getInstrumentation().addTransformer(classLoadRecorder, false);
             logger.info("success init jar decompiler client");
         } catch (Exception e) {
             destroy();
@@ -68,50 +67,73 @@ public class JarDebugClient implements InstrumentClient {
         }
     }
 
-    private Map<String, ClassInfo> initAllClassInfo(InstrumentInfo instrumentInfo, boolean isLoadAll) {
+    private ClassInfoTree getClassInfoTree() {
+        if (!indexed) {
+            synchronized (this) {
+                if (!indexed) {
+                    doReloadAllClass();
+                }
+            }
+        }
+        return classInfoTree;
+    }
+
+    private void doReloadAllClass() {
+        classLoadRecorder.clear();
+        classInfoTree = ClassInfoTree.of(resolveClassInfo(allLoadedClasses(), ClassInfoTree.EMPTY));
+        indexed = true;
+    }
+
+    private List<ClassLoadRecorder.LoadedClass> allLoadedClasses() {
         Class[] loadedClasses = instrumentInfo.getInstrumentation().getAllLoadedClasses();
-        Map<String, ClassInfo> classInfoMap;
-        if (isLoadAll) {
-            classInfoMap = Maps.newHashMap();
-        } else {
-            classInfoMap = Maps.newHashMap(classNameToClassInfoMapping);
+        List<ClassLoadRecorder.LoadedClass> result = new ArrayList<>(loadedClasses.length);
+        for (Class clazz : loadedClasses) {
+            final String clazzName = clazz.getName();
+            if (Strings.isNullOrEmpty(clazzName) || clazzName.startsWith("[") || clazzName.contains("$")) {
+                continue;
+            }
+            result.add(new ClassLoadRecorder.LoadedClass(clazz));
         }
-        Map<String, JarFile> jarFileMap = new HashMap<>();
-        Map<String, Optional<Properties>> mavenInfoMap = new HashMap<>();
-        try {
-            for (Class clazz : loadedClasses) {
-                final String clazzName = clazz.getName();
-                if (Strings.isNullOrEmpty(clazzName) || clazzName.startsWith("[") || clazzName.contains("$")) {
-                    continue;
-                }
+        return result;
+    }
 
-                if (!isLoadAll && classInfoMap.containsKey(clazzName)) {
-                    continue;
-                }
+    private Map<String, ClassInfo> resolveClassInfo(List<ClassLoadRecorder.LoadedClass> loadedClasses, ClassInfoTree existing) {
+        Map<String, ClassInfo> classInfoMap = new HashMap<>();
+        Map<ClassInfo, String> jarPathMap = new IdentityHashMap<>();
+        for (ClassLoadRecorder.LoadedClass loadedClass : loadedClasses) {
+            final String clazzName = loadedClass.getName();
+            if (existing.contains(clazzName) || classInfoMap.containsKey(clazzName)) {
+                continue;
+            }
 
-                final ClassLoader classLoader = clazz.getClassLoader();
-                if (classLoader == null || InstrumentInfo.IGNORE_CLASS.contains(classLoader.getClass().getName())) {
-                    continue;
-                }
-                ClassInfo classInfo = getClassInfo(clazz, jarFileMap, mavenInfoMap);
-                if (classInfo != null) {
-                    classInfoMap.put(clazzName, classInfo);
-                }
+            final ClassLoader classLoader = loadedClass.getClassLoader();
+            if (classLoader == null || InstrumentInfo.IGNORE_CLASS.contains(classLoader.getClass().getName())) {
+                continue;
             }
-            return ImmutableMap.copyOf(classInfoMap);
-        } finally {
-            for (Map.Entry<String, JarFile> entry : jarFileMap.entrySet()) {
-                try {
-                    entry.getValue().close();
-                } catch (IOException e) {
-                    logger.error("", "close jar file error，{}", entry.getKey(), e);
-                }
+            ClassInfo classInfo = getClassInfo(loadedClass, jarPathMap);
+            if (classInfo != null) {
+                classInfoMap.put(clazzName, classInfo);
             }
         }
+
+        Map<String, JarMetadataCache.JarMetadata> jarMetadataMap = jarMetadataCache.get(new HashSet<>(jarPathMap.values()));
+        for (Map.Entry<ClassInfo, String> entry : jarPathMap.entrySet()) {
+            JarMetadataCache.JarMetadata metadata = jarMetadataMap.get(entry.getValue());
+            if (metadata == null) {
+                continue;
+            }
+            ClassInfo classInfo = entry.getKey();
+            classInfo.setJarName(metadata.getJarName());
+            if (metadata.getMavenInfo().isPresent()) {
+                classInfo.setMavenInfo(metadata.getMavenInfo().get());
+                classInfo.setMaven(true);
+            }
+        }
+        return classInfoMap;
     }
 
     public Set<String> getAllClass() {
-        return ImmutableSet.copyOf(classNameToClassInfoMapping.keySet());
+        return getClassInfoTree().classNames();
     }
 
     /**
@@ -119,64 +141,76 @@ public class JarDebugClient implements InstrumentClient {
      *
      * @return
      */
-    public boolean reloadAllClass() {
+    public synchronized boolean reloadAllClass() {
         logger.info("begin reload all class");
-        classNameToClassInfoMapping = initAllClassInfo(instrumentInfo, true);
-        logger.info("end reload all class");
+        doReloadAllClass();
+        logger.info("", "end reload all class, class count: {}", classInfoTree.size());
         return true;
     }
 
     /**
-     * 只加载没有加载的类
+     * 只加载没有加载的类，新类由加载钩子记录，只有钩子队列溢出时才退化为全量扫描
      *
      * @return
      */
-    public boolean reLoadNewClass() {
+    public synchronized boolean reLoadNewClass() {
         logger.info("begin reload new class");
-        classNameToClassInfoMapping = initAllClassInfo(instrumentInfo, false);
-        logger.info("end reload new class");
+        if (!indexed) {
+            doReloadAllClass();
+            logger.info("", "end reload new class, class count: {}", classInfoTree.size());
+            return true;
+        }
+        List<ClassLoadRecorder.LoadedClass> newClasses = classLoadRecorder.drain();
+        if (newClasses == null) {
+            logger.info("class load record overflow, scan all loaded class");
+            newClasses = allLoadedClasses();
+        }
+        ClassInfoTree current = classInfoTree;
+        classInfoTree = current.plus(resolveClassInfo(newClasses, current));
+        logger.info("", "end reload new class, class count: {}", classInfoTree.size());
         return true;
     }
 
 
     public ClassInfo getClassPath(final String className) {
-        return classNameToClassInfoMapping.get(className);
+        return getClassInfoTree().get(className);
     }
 
-    private ClassInfo getClassInfo(Class clazz, Map<String, JarFile> jarFileMap, Map<String, Optional<Properties>> mavenInfoMap) {
-        final String classPath = clazz.getName().replace('.', '/') + ".class";
+    private ClassInfo getClassInfo(ClassLoadRecorder.LoadedClass loadedClass, Map<ClassInfo, String> jarPathMap) {
+        final String classPath = loadedClass.getName().replace('.', '/') + ".class";
         try {
-            ClassInfo classInfo = getClassInfoBySource(clazz, classPath, jarFileMap, mavenInfoMap);
+            ClassInfo classInfo = getClassInfoBySource(loadedClass, classPath, jarPathMap);
             if (classInfo == null) {
-                classInfo = getClassInfoByDomain(clazz, classPath, jarFileMap, mavenInfoMap);
+                classInfo = getClassInfoByDomain(loadedClass, classPath, jarPathMap);
             }
 
             return classInfo;
         } catch (Exception e) {
-            logger.error("", "get class info error, class: {}, class path: {}", clazz, classPath, e);
+            logger.error("", "get class info error, class: {}, class path: {}", loadedClass.getName(), classPath, e);
             return null;
         }
     }
 
-    private ClassInfo getClassInfoBySource(Class clazz, final String classPath, Map<String, JarFile> jarFileMap, Map<String, Optional<Properties>> mavenInfoMap) {
+    private ClassInfo getClassInfoBySource(ClassLoadRecorder.LoadedClass loadedClass, final String classPath, Map<ClassInfo, String> jarPathMap) {
         URL url = ClassLoader.getSystemResource(classPath);
         if (url != null) {
-            return generateClassInfo(url, clazz, jarFileMap, mavenInfoMap);
+            return generateClassInfo(url, loadedClass, jarPathMap);
         }
-        url = clazz.getClassLoader().getResource(classPath);
+        final ClassLoader classLoader = loadedClass.getClassLoader();
+        url = classLoader == null ? null : classLoader.getResource(classPath);
         if (url != null) {
-            return generateClassInfo(url, clazz, jarFileMap, mavenInfoMap);
+            return generateClassInfo(url, loadedClass, jarPathMap);
         }
         return null;
     }
 
-    private ClassInfo getClassInfoByDomain(Class clazz, final String classPath, Map<String, JarFile> jarFileMap, Map<String, Optional<Properties>> mavenInfoMap) {
-        CodeSource source = clazz.getProtectionDomain().getCodeSource();
+    private ClassInfo getClassInfoByDomain(ClassLoadRecorder.LoadedClass loadedClass, final String classPath, Map<ClassInfo, String> jarPathMap) {
+        CodeSource source = getCodeSource(loadedClass);
         if (source != null) {
             URL url = source.getLocation();
             if (url != null) {
                 String ur = url.toString();
-                ClassInfo classInfo = generateClassInfo(url, clazz, jarFileMap, mavenInfoMap);
+                ClassInfo classInfo = generateClassInfo(url, loadedClass, jarPathMap);
                 if (ur.endsWith(".jar")) {
                     classInfo.setClassPath(ur + "!" + File.separator + classPath);
                 } else {
@@ -188,16 +222,19 @@ public class JarDebugClient implements InstrumentClient {
         return null;
     }
 
-    private ClassInfo generateClassInfo(URL url, final Class clazz, Map<String, JarFile> jarFileMap, Map<String, Optional<Properties>> mavenInfoMap) {
+    /**
+     * 生成类信息，jar包的名称和maven信息在批量扫描jar之后再填充
+     */
+    private ClassInfo generateClassInfo(URL url, final ClassLoadRecorder.LoadedClass loadedClass, Map<ClassInfo, String> jarPathMap) {
         final ClassInfo classInfo = new ClassInfo();
         String newUrl = FileOperateFactory.replaceJarWithUnPackDir(url.toString());
         classInfo.setClassPath(newUrl);
         try {
             url = new URL(newUrl);
             if (isJarFile(url)) {
-                final CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+                final CodeSource codeSource = getCodeSource(loadedClass);
                 String path;
-                if (codeSource == null || Strings.isNullOrEmpty(path = URLDecoder.decode(codeSource.getLocation().getPath(), "utf-8"))) {
+                if (codeSource == null || codeSource.getLocation() == null || Strings.isNullOrEmpty(path = URLDecoder.decode(codeSource.getLocation().getPath(), "utf-8"))) {
                     return classInfo;
                 }
 
@@ -207,31 +244,7 @@ public class JarDebugClient implements InstrumentClient {
                 } else {
                     path = FileOperateFactory.replaceJarWithUnPackDir(path);
                 }
-                path = URLUtil.removeProtocol(path);
-
-                JarFile jarFile = jarFileMap.get(path);
-                if (jarFile == null) {
-                    jarFile = new JarFile(path);
-                    jarFileMap.put(path, jarFile);
-                }
-
-                classInfo.setJarName(jarFile.getName());
-                Optional<Properties> mavenInfo = mavenInfoMap.get(path);
-                if (mavenInfo == null) {
-                    Properties properties = getMavenInfo(jarFile);
-                    if (properties != null) {
-                        classInfo.setMavenInfo(properties);
-                        classInfo.setMaven(true);
-                        mavenInfoMap.put(path, Optional.of(properties));
-                    } else {
-                        mavenInfoMap.put(path, Optional.<Properties>absent());
-                    }
-                } else {
-                    if (mavenInfo.isPresent()) {
-                        classInfo.setMavenInfo(mavenInfo.get());
-                        classInfo.setMaven(true);
-                    }
-                }
+                jarPathMap.put(classInfo, URLUtil.removeProtocol(path));
             }
             return classInfo;
         } catch (Exception e) {
@@ -240,24 +253,8 @@ public class JarDebugClient implements InstrumentClient {
         }
     }
 
-    private Properties getMavenInfo(JarFile jarFile) throws IOException {
-        Enumeration<JarEntry> entries = jarFile.entries();
-        while (entries.hasMoreElements()) {
-            JarEntry jarEntry = entries.nextElement();
-            if (jarEntry.getName().endsWith("/pom.properties")) {
-                Properties properties = readJarFile(jarFile, jarEntry);
-                return properties;
-            }
-        }
-        return null;
-    }
-
-    private Properties readJarFile(JarFile jarFile, JarEntry jarEntry) throws IOException {
-        try (InputStream stream = jarFile.getInputStream(jarEntry)) {
-            Properties properties = new Properties();
-            properties.load(stream);
-            return properties;
-        }
+    private CodeSource getCodeSource(ClassLoadRecorder.LoadedClass loadedClass) {
+        return loadedClass.getCodeSource();
     }
 
     private boolean isJarFile(URL resource) {
@@ -266,5 +263,8 @@ public class JarDebugClient implements InstrumentClient {
 
     @Override
     public void destroy() {
+        instrumentInfo.getInstrumentation().removeTransformer(classLoadRecorder);
+        classLoadRecorder.clear();
+        jarMetadataCache.destroy();
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.debug;
+
+import com.google.common.base.Optional;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.common.JarIdentity;
+import qunar.tc.bistoury.common.NamedThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * jar包元信息缓存，以路径+大小+修改时间标识一个jar，jar没有变化时不会再次打开扫描pom.properties
+ * <p>
+ * 未命中的jar在有界线程池上并行扫描，线程空闲后自动回收，不在目标jvm中常驻
+ */
+class JarMetadataCache {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private static final int SCAN_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final ConcurrentMap<String, JarMetadata> cache = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    JarMetadataCache() {
+        executor = new ThreadPoolExecutor(SCAN_THREADS, SCAN_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("jar-debug-scan", true));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 获取一批jar的元信息，key为jar路径，读取失败的jar不会出现在返回结果中
+     */
+    Map<String, JarMetadata> get(Collection<String> jarPaths) {
+        Map<String, JarMetadata> result = new HashMap<>();
+        Map<String, Future<JarMetadata>> futures = new HashMap<>();
+        for (final String path : jarPaths) {
+            final JarIdentity identity = JarIdentity.of(path);
+            JarMetadata metadata = cache.get(path);
+            if (metadata != null && metadata.identity.equals(identity)) {
+                result.put(path, metadata);
+                continue;
+            }
+
+            futures.put(path, executor.submit(new Callable<JarMetadata>() {
+                @Override
+                public JarMetadata call() throws Exception {
+                    return scan(path, identity);
+                }
+            }));
+        }
+
+        for (Map.Entry<String, Future<JarMetadata>> entry : futures.entrySet()) {
+            try {
+                JarMetadata metadata = entry.getValue().get();
+                cache.put(entry.getKey(), metadata);
+                result.put(entry.getKey(), metadata);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                logger.error("", "{} get pom.properties fail,", entry.getKey(), e.getCause());
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    void destroy() {
+        executor.shutdownNow();
+        cache.clear();
+    }
+
+    private static JarMetadata scan(String path, JarIdentity identity) throws IOException {
+        try (JarFile jarFile = new JarFile(path)) {
+            return new JarMetadata(identity, jarFile.getName(), Optional.fromNullable(getMavenInfo(jarFile)));
+        }
+    }
+
+    private static Properties getMavenInfo(JarFile jarFile) throws IOException {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry jarEntry = entries.nextElement();
+            if (jarEntry.getName().endsWith("/pom.properties")) {
+                return readJarFile(jarFile, jarEntry);
+            }
+        }
+        return null;
+    }
+
+    private static Properties readJarFile(JarFile jarFile, JarEntry jarEntry) throws IOException {
+        try (InputStream stream = jarFile.getInputStream(jarEntry)) {
+            Properties properties = new Properties();
+            properties.load(stream);
+            return properties;
+        }
+    }
+
+    static class JarMetadata {
+        private final JarIdentity identity;
+        private final String jarName;
+        private final Optional<Properties> mavenInfo;
+
+        JarMetadata(JarIdentity identity, String jarName, Optional<Properties> mavenInfo) {
+            this.identity = identity;
+            this.jarName = jarName;
+            this.mavenInfo = mavenInfo;
+        }
+
+        String getJarName() {
+            return jarName;
+        }
+
+        Optional<Properties> getMavenInfo() {
+            return mavenInfo;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import com.taobao.middleware.cli.annotations.Option;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.common.*;
+import qunar.tc.bistoury.instrument.client.debugger.HitPolicy;
 
 /**
  * @author zhenyu.nie created on 2018 2018/11/22 17:16
@@ -42,6 +43,12 @@ public class QDebugAddCommand extends AnnotatedCommand {
 
     private String condition;
 
+    private int hits = 1;
+
+    private int sampleEvery = 1;
+
+    private int maxPerSecond = 0;
+
     @Argument(index = 0, argName = "id")
     public void setId(String id) {
         this.id = id;
@@ -62,16 +69,32 @@ public class QDebugAddCommand extends AnnotatedCommand {
         this.condition = URLCoder.decode(condition);
     }
 
+    @Option(shortName = "n", longName = "hits")
+    public void setHits(int hits) {
+        this.hits = hits;
+    }
+
+    @Option(shortName = "s", longName = "sample")
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+
+    @Option(shortName = "r", longName = "rate")
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
     @Override
     public void process(CommandProcess process) {
-        logger.info("receive debug command, source [{}], line [{}], condition [{}], id [{}]", (Object) source, line, condition, id);
+        logger.info("receive debug command, source [{}], line [{}], condition [{}], id [{}], hits [{}], sample [{}], rate [{}]", (Object) source, line, condition, id, hits, sampleEvery, maxPerSecond);
         CodeProcessResponse<String> codeResponse = new CodeProcessResponse<>();
         TypeResponse<String> typeResponse = new TypeResponse<>();
         typeResponse.setType(BistouryConstants.REQ_DEBUG_ADD);
         typeResponse.setData(codeResponse);
         try {
             QDebugClient debugClient = QDebugClients.getInstance();
-            String breakPointId = debugClient.registerBreakpoint(source, line, condition);
+            HitPolicy policy = HitPolicy.of(hits, sampleEvery, maxPerSecond);
+            String breakPointId = debugClient.registerBreakpoint(source, line, condition, policy);
             codeResponse.setId(id);
             codeResponse.setCode(0);
             codeResponse.setData(breakPointId);
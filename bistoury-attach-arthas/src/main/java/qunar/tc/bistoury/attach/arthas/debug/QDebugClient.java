@@ -24,6 +24,9 @@ import qunar.tc.bistoury.common.Snapshot;
 import qunar.tc.bistoury.instrument.client.common.InstrumentInfo;
 import qunar.tc.bistoury.instrument.client.debugger.Debugger;
 import qunar.tc.bistoury.instrument.client.debugger.DefaultDebugger;
+import qunar.tc.bistoury.instrument.client.debugger.HitPolicy;
+
+import java.util.List;
 
 /**
  * @author zhenyu.nie created on 2018 2018/11/22 20:15
@@ -46,7 +49,7 @@ public class QDebugClient implements InstrumentClient {
                     debugger.unRegisterBreakpoint(snapshot.getSource(), snapshot.getLine(), snapshot.getId());
                 }
             };
-            DefaultSnapshotStore snapshotStore = new DefaultSnapshotStore(instrumentInfo.getLock(), removeListener);
+            DefaultSnapshotStore snapshotStore = new DefaultSnapshotStore(removeListener);
             debugger.startup(instrumentInfo, snapshotStore);
 
             this.debugger = debugger;
@@ -59,8 +62,8 @@ public class QDebugClient implements InstrumentClient {
         }
     }
 
-    public String registerBreakpoint(String source, int line, String breakpointCondition) {
-        return debugger.registerBreakpoint(source, line, breakpointCondition);
+    public String registerBreakpoint(String source, int line, String breakpointCondition, HitPolicy policy) {
+        return debugger.registerBreakpoint(source, line, breakpointCondition, policy);
     }
 
     public void remoteBreakPoint(String breakpointId) {
@@ -75,6 +78,18 @@ public class QDebugClient implements InstrumentClient {
         return snapshotCache.getSnapshot(id);
     }
 
+    public List<Snapshot> getSnapshots(String id, int afterHits) {
+        return snapshotCache.getSnapshots(id, afterHits);
+    }
+
+    public void addSnapshotListener(String breakpointId, int afterHits, SnapshotListener listener, long timeoutMs) {
+        snapshotCache.addListener(breakpointId, afterHits, listener, timeoutMs);
+    }
+
+    public void removeSnapshotListener(String breakpointId, SnapshotListener listener) {
+        snapshotCache.removeListener(breakpointId, listener);
+    }
+
     @Override
     public void destroy() {
         try {
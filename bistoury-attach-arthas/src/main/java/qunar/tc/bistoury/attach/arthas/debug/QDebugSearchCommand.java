@@ -51,9 +51,15 @@ public class QDebugSearchCommand extends AnnotatedCommand {
     @Override
     public void process(CommandProcess process) {
         logger.info("receive debug search command, id [" + id + "]");
+        TypeResponse<Snapshot> typeResponse = search(BistouryConstants.REQ_DEBUG_SEARCH, id);
+        process.write(URLCoder.encode(JacksonSerializer.serialize(typeResponse)));
+        process.end();
+    }
+
+    static TypeResponse<Snapshot> search(String type, String id) {
         CodeProcessResponse<Snapshot> codeResponse = new CodeProcessResponse<>();
         TypeResponse<Snapshot> typeResponse = new TypeResponse<>();
-        typeResponse.setType(BistouryConstants.REQ_DEBUG_SEARCH);
+        typeResponse.setType(type);
         typeResponse.setData(codeResponse);
         try {
             QDebugClient client = QDebugClients.getInstance();
@@ -75,8 +81,6 @@ public class QDebugSearchCommand extends AnnotatedCommand {
             codeResponse.setCode(-1);
             codeResponse.setMessage(e.getMessage());
         }
-
-        process.write(URLCoder.encode(JacksonSerializer.serialize(typeResponse)));
-        process.end();
+        return typeResponse;
     }
 }
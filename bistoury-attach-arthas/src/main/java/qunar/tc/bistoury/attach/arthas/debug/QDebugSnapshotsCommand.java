@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.debug;
+
+import com.taobao.arthas.core.shell.command.AnnotatedCommand;
+import com.taobao.arthas.core.shell.command.CommandProcess;
+import com.taobao.middleware.cli.annotations.Argument;
+import com.taobao.middleware.cli.annotations.Name;
+import com.taobao.middleware.cli.annotations.Option;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.common.*;
+
+import java.util.List;
+
+/**
+ * 获取多次命中断点在第-a次之后的快照，断点只保留最近的若干次快照
+ */
+@Name(BistouryConstants.REQ_DEBUG_SNAPSHOTS)
+public class QDebugSnapshotsCommand extends AnnotatedCommand {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private String id;
+
+    private int afterHits = 0;
+
+    @Argument(index = 0, argName = "id")
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @Option(shortName = "a", longName = "after")
+    public void setAfterHits(int afterHits) {
+        this.afterHits = afterHits;
+    }
+
+    @Override
+    public void process(CommandProcess process) {
+        logger.info("receive debug snapshots command, id [{}], after [{}]", id, afterHits);
+        CodeProcessResponse<List<Snapshot>> codeResponse = new CodeProcessResponse<>();
+        TypeResponse<List<Snapshot>> typeResponse = new TypeResponse<>();
+        typeResponse.setType(BistouryConstants.REQ_DEBUG_SNAPSHOTS);
+        typeResponse.setData(codeResponse);
+        try {
+            QDebugClient client = QDebugClients.getInstance();
+            codeResponse.setId(id);
+            codeResponse.setCode(0);
+            codeResponse.setData(client.getSnapshots(id, afterHits));
+        } catch (Throwable e) {
+            logger.error("qdebug-snapshots-error", e.getMessage(), e);
+            codeResponse.setId(id);
+            codeResponse.setCode(-1);
+            codeResponse.setMessage(e.getMessage());
+        }
+        process.write(URLCoder.encode(JacksonSerializer.serialize(typeResponse)));
+        process.end();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.debug;
+
+import com.taobao.arthas.core.shell.command.AnnotatedCommand;
+import com.taobao.arthas.core.shell.command.CommandProcess;
+import com.taobao.arthas.core.shell.handlers.Handler;
+import com.taobao.middleware.cli.annotations.Argument;
+import com.taobao.middleware.cli.annotations.Name;
+import com.taobao.middleware.cli.annotations.Option;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.common.BistouryConstants;
+import qunar.tc.bistoury.common.JacksonSerializer;
+import qunar.tc.bistoury.common.Snapshot;
+import qunar.tc.bistoury.common.TypeResponse;
+import qunar.tc.bistoury.common.URLCoder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 等待断点完成，断点拿到快照、条件执行失败、被移除或者等待超时时返回一次结果，结果格式与qdebugsearch相同
+ * <p>
+ * 多次命中的断点通过-a传入已经看到的快照数，拿到之后的快照或者断点不会再有新快照时返回
+ * <p>
+ * 等待期间不占用线程，快照只序列化一次；超时返回未就绪，由ui重新发起等待，超时时间需要小于agent上任务的最长运行时间
+ */
+@Name(BistouryConstants.REQ_DEBUG_WAIT)
+public class QDebugWaitCommand extends AnnotatedCommand {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private static final int DEFAULT_TIMEOUT_SECONDS = 240;
+
+    private static final int MAX_TIMEOUT_SECONDS = 280;
+
+    private String id;
+
+    private int timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+
+    private int afterHits = 0;
+
+    @Argument(index = 0, argName = "id")
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @Option(shortName = "t", longName = "timeout")
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Option(shortName = "a", longName = "after")
+    public void setAfterHits(int afterHits) {
+        this.afterHits = afterHits;
+    }
+
+    @Override
+    public void process(final CommandProcess process) {
+        logger.info("receive debug wait command, id [{}], timeout [{}], after [{}]", id, timeoutSeconds, afterHits);
+        final QDebugClient client;
+        try {
+            client = QDebugClients.getInstance();
+        } catch (Throwable e) {
+            reply(process);
+            return;
+        }
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final SnapshotListener listener = new SnapshotListener() {
+            @Override
+            public void onComplete(String breakpointId) {
+                if (done.compareAndSet(false, true)) {
+                    reply(process);
+                }
+            }
+        };
+
+        process.interruptHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                client.removeSnapshotListener(id, listener);
+                if (done.compareAndSet(false, true)) {
+                    process.end();
+                }
+            }
+        });
+        process.endHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                done.set(true);
+                client.removeSnapshotListener(id, listener);
+            }
+        });
+
+        int timeout = timeoutSeconds > 0 ? Math.min(timeoutSeconds, MAX_TIMEOUT_SECONDS) : DEFAULT_TIMEOUT_SECONDS;
+        client.addSnapshotListener(id, afterHits, listener, TimeUnit.SECONDS.toMillis(timeout));
+    }
+
+    private void reply(CommandProcess process) {
+        try {
+            TypeResponse<Snapshot> typeResponse = QDebugSearchCommand.search(BistouryConstants.REQ_DEBUG_WAIT, id);
+            process.write(URLCoder.encode(JacksonSerializer.serialize(typeResponse)));
+        } catch (Throwable e) {
+            logger.error("qdebug-wait-error", e.getMessage(), e);
+        } finally {
+            process.end();
+        }
+    }
+}
@@ -19,6 +19,8 @@ package qunar.tc.bistoury.attach.arthas.debug;
 
 import qunar.tc.bistoury.common.Snapshot;
 
+import java.util.List;
+
 /**
  * @author zhenyu.nie created on 2018 2018/9/21 17:00
  */
@@ -26,5 +28,17 @@ public interface SnapshotCache {
 
     Snapshot getSnapshot(String id);
 
+    /**
+     * @return 第afterHits次之后命中的快照，只保留最近的若干次
+     */
+    List<Snapshot> getSnapshots(String id, int afterHits);
+
     void remove(String id);
+
+    /**
+     * 注册一次性的完成通知，断点拿到第afterHits次之后的快照、不会再有新快照或者不存在时立即通知，超过timeoutMs还没有完成时也会通知
+     */
+    void addListener(String id, int afterHits, SnapshotListener listener, long timeoutMs);
+
+    void removeListener(String id, SnapshotListener listener);
 }
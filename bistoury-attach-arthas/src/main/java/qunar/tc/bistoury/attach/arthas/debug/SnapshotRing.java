@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.debug;
+
+import com.google.common.collect.Lists;
+import qunar.tc.bistoury.common.Snapshot;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个断点最近的若干次快照，按字符数统计占用的内存
+ * <p>
+ * 同一个断点可能在多个线程上同时命中，命中时先按线程id收集数据，收集完成后再放入环中；
+ * 放入环中的快照不再修改，读取最新快照时直接返回环中的最后一项
+ * <p>
+ * 占用的内存同时计入所有断点共享的totalBytes，断点移除时通过release归还
+ */
+class SnapshotRing {
+
+    //单个断点的快照占用内存的上限，超过后淘汰最早的快照，并且断点不再采集
+    static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    //收集过程中抛异常时不会调用complete，超过这个时间的收集数据视为中断残留
+    static final long RECEIVE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int capacity;
+
+    private final AtomicLong totalBytes;
+
+    private final ConcurrentMap<Long, Receiving> receiving = new ConcurrentHashMap<>();
+
+    private final ArrayDeque<Entry> snapshots;
+
+    private long bytes;
+
+    private int hits;
+
+    private boolean full;
+
+    private boolean released;
+
+    SnapshotRing(int capacity, AtomicLong totalBytes) {
+        this.capacity = capacity;
+        this.totalBytes = totalBytes;
+        this.snapshots = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * @return 当前线程正在收集的快照
+     */
+    Snapshot receiving(Snapshot head) {
+        return receiving(head, System.currentTimeMillis());
+    }
+
+    Snapshot receiving(Snapshot head, long now) {
+        Long threadId = Thread.currentThread().getId();
+        Receiving current = receiving.get(threadId);
+        if (current == null || now - current.startTime > RECEIVE_TIMEOUT_MS) {
+            current = new Receiving(new Snapshot(head.getId(), head.getSource(), head.getLine(), head.getExpireTime()), now);
+            receiving.put(threadId, current);
+        }
+        return current.snapshot;
+    }
+
+    /**
+     * 当前线程的快照收集完成，放入环中，只把命中次数和是否结束更新到head上
+     *
+     * @return 当前线程没有正在收集的快照或者已经释放时返回false
+     */
+    boolean complete(Snapshot head) {
+        return complete(head, System.currentTimeMillis());
+    }
+
+    synchronized boolean complete(Snapshot head, long now) {
+        Receiving current = receiving.remove(Thread.currentThread().getId());
+        expireReceiving(now);
+        if (current == null || released) {
+            return false;
+        }
+
+        Snapshot snapshot = current.snapshot;
+        ++hits;
+        long size = sizeOf(snapshot);
+        snapshots.addLast(new Entry(snapshot, size));
+        long before = bytes;
+        bytes += size;
+        if (bytes > MAX_BYTES) {
+            full = true;
+        }
+        while (snapshots.size() > capacity || (bytes > MAX_BYTES && snapshots.size() > 1)) {
+            bytes -= snapshots.removeFirst().size;
+        }
+        totalBytes.addAndGet(bytes - before);
+
+        boolean finished = full || hits >= head.getMaxHits();
+        snapshot.setHits(hits);
+        snapshot.setMaxHits(head.getMaxHits());
+        snapshot.setFinished(finished);
+        snapshot.markInited();
+
+        head.setHits(hits);
+        if (finished) {
+            head.setFinished(true);
+        }
+        head.markInited();
+        return true;
+    }
+
+    /**
+     * 清理中断的收集留下的数据
+     */
+    private void expireReceiving(long now) {
+        Iterator<Receiving> it = receiving.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().startTime > RECEIVE_TIMEOUT_MS) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 断点移除时释放所有快照，之后完成的快照不再放入环中
+     */
+    synchronized void release() {
+        released = true;
+        totalBytes.addAndGet(-bytes);
+        bytes = 0;
+        snapshots.clear();
+        receiving.clear();
+    }
+
+    /**
+     * @return 最近一次完成的快照，还没有快照时返回null
+     */
+    synchronized Snapshot latest() {
+        Entry entry = snapshots.peekLast();
+        return entry == null ? null : entry.snapshot;
+    }
+
+    /**
+     * @return 快照占用的内存超过了上限
+     */
+    synchronized boolean isFull() {
+        return full;
+    }
+
+    /**
+     * @return 第afterHits次之后命中的快照
+     */
+    synchronized List<Snapshot> after(int afterHits) {
+        List<Snapshot> result = Lists.newArrayListWithCapacity(snapshots.size());
+        for (Entry entry : snapshots) {
+            if (entry.snapshot.getHits() > afterHits) {
+                result.add(entry.snapshot);
+            }
+        }
+        return result;
+    }
+
+    private static long sizeOf(Snapshot snapshot) {
+        long chars = sizeOf(snapshot.getStaticFields()) + sizeOf(snapshot.getFields()) + sizeOf(snapshot.getLocalVariables());
+        if (snapshot.getStacktrace() != null) {
+            chars += snapshot.getStacktrace().length();
+        }
+        return chars * 2;
+    }
+
+    private static long sizeOf(Map<String, String> records) {
+        if (records == null) {
+            return 0;
+        }
+        long chars = 0;
+        for (Map.Entry<String, String> entry : records.entrySet()) {
+            chars += entry.getKey().length();
+            if (entry.getValue() != null) {
+                chars += entry.getValue().length();
+            }
+        }
+        return chars;
+    }
+
+    private static final class Receiving {
+        private final Snapshot snapshot;
+        private final long startTime;
+
+        private Receiving(Snapshot snapshot, long startTime) {
+            this.snapshot = snapshot;
+            this.startTime = startTime;
+        }
+    }
+
+    private static final class Entry {
+        private final Snapshot snapshot;
+        private final long size;
+
+        private Entry(Snapshot snapshot, long size) {
+            this.snapshot = snapshot;
+            this.size = size;
+        }
+    }
+}
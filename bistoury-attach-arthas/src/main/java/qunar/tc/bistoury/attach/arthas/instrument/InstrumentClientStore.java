@@ -35,6 +35,7 @@ import qunar.tc.bistoury.instrument.client.common.InstrumentInfo;
 
 import java.lang.instrument.Instrumentation;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -52,6 +53,8 @@ public class InstrumentClientStore {
 
     private static InstrumentInfo instrumentInfo;
 
+    private static volatile StartupTimeline startupTimeline;
+
     public static synchronized void init(final Instrumentation instrumentation) {
         if (init) {
             return;
@@ -77,39 +80,46 @@ public class InstrumentClientStore {
                 appClassPathSupplier,
                 DefaultClassFileBuffer.getInstance());
 
-        ImmutableList.Builder<InstrumentClient> builder = new ImmutableList.Builder<>();
-
-        //jar debug放在最前面，因为在里面会对jar包启动的项目进行解压
-        try {
-            builder.add(JarDebugClients.create(instrumentInfo));
-        } catch (Exception e) {
-            logger.error("", "jar decompiler init error", e);
-        }
-
-        try {
-            builder.add(AppConfigClients.create(instrumentInfo));
-        } catch (Exception e) {
-            logger.error("", "app config client init error", e);
-        }
-
-        try {
-            builder.add(QDebugClients.create(instrumentInfo));
-        } catch (Exception e) {
-            logger.error("", "qdebug client init error", e);
-        }
-        try {
-            builder.add(QMonitorClients.create(instrumentInfo));
-        } catch (Exception e) {
-            logger.error("", "qmonitor client init error", e);
-        }
-
-        try {
-            builder.add(JarInfoClients.create(instrumentInfo));
-        } catch (Exception e) {
-            logger.error("", "jar info client init error", e);
-        }
+        //jar包启动的项目在第一次用到解压目录时才解压（JarFileServiceWrapper内部串行化，只解压一次），client之间没有启动依赖，并行启动
+        StagedBootstrap.Result result = new StagedBootstrap()
+                .stage("jarDebug", new Callable<InstrumentClient>() {
+                    @Override
+                    public InstrumentClient call() throws Exception {
+                        return JarDebugClients.create(instrumentInfo);
+                    }
+                })
+                .stage("appConfig", new Callable<InstrumentClient>() {
+                    @Override
+                    public InstrumentClient call() throws Exception {
+                        return AppConfigClients.create(instrumentInfo);
+                    }
+                })
+                .stage("qdebug", new Callable<InstrumentClient>() {
+                    @Override
+                    public InstrumentClient call() throws Exception {
+                        return QDebugClients.create(instrumentInfo);
+                    }
+                })
+                .stage("qmonitor", new Callable<InstrumentClient>() {
+                    @Override
+                    public InstrumentClient call() throws Exception {
+                        return QMonitorClients.create(instrumentInfo);
+                    }
+                })
+                .stage("jarInfo", new Callable<InstrumentClient>() {
+                    @Override
+                    public InstrumentClient call() throws Exception {
+                        return JarInfoClients.create(instrumentInfo);
+                    }
+                })
+                .start();
+
+        clients = result.getClients();
+        startupTimeline = result.getTimeline();
+    }
 
-        clients = builder.build();
+    public static StartupTimeline getStartupTimeline() {
+        return startupTimeline;
     }
 
     public static synchronized void destroy() {
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.instrument;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.common.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 并行启动各个client，并记录每个client的启动时间线
+ * <p>
+ * client之间没有启动依赖，一个client启动失败不影响其它client
+ */
+class StagedBootstrap {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private final Map<String, Callable<InstrumentClient>> stages = new LinkedHashMap<>();
+
+    /**
+     * 增加一个启动阶段
+     */
+    StagedBootstrap stage(String name, Callable<InstrumentClient> factory) {
+        Preconditions.checkArgument(!stages.containsKey(name), "duplicate stage %s", name);
+        stages.put(name, factory);
+        return this;
+    }
+
+    Result start() {
+        final long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, stages.size()), new NamedThreadFactory("bistoury-client-bootstrap", true));
+        List<Future<InstrumentClient>> futures = new ArrayList<>(stages.size());
+        List<StartupTimeline.Stage> records = new ArrayList<>(stages.size());
+        ImmutableList.Builder<InstrumentClient> clients = ImmutableList.builder();
+        try {
+            for (Map.Entry<String, Callable<InstrumentClient>> stage : stages.entrySet()) {
+                final String name = stage.getKey();
+                final Callable<InstrumentClient> factory = stage.getValue();
+
+                final StartupTimeline.Stage record = new StartupTimeline.Stage();
+                record.setName(name);
+                records.add(record);
+
+                futures.add(executor.submit(new Callable<InstrumentClient>() {
+                    @Override
+                    public InstrumentClient call() throws Exception {
+                        long start = System.currentTimeMillis();
+                        record.setThread(Thread.currentThread().getName());
+                        record.setStartOffsetMillis(start - startTime);
+                        try {
+                            InstrumentClient client = factory.call();
+                            record.setSuccess(true);
+                            return client;
+                        } catch (Exception | Error e) {
+                            record.setError(e.toString());
+                            logger.error("", "{} client init error", name, e);
+                            throw e;
+                        } finally {
+                            record.setCostMillis(System.currentTimeMillis() - start);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<InstrumentClient> future : futures) {
+                try {
+                    clients.add(future.get());
+                } catch (ExecutionException e) {
+                    // 已经在启动线程中记录
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("", "client bootstrap interrupted", e);
+        } finally {
+            executor.shutdown();
+        }
+
+        StartupTimeline timeline = new StartupTimeline(startTime, System.currentTimeMillis() - startTime, ImmutableList.copyOf(records));
+        logger.info("", "client bootstrap finished in {} ms, timeline: {}", timeline.getCostMillis(), timeline);
+        return new Result(clients.build(), timeline);
+    }
+
+    static class Result {
+        private final List<InstrumentClient> clients;
+        private final StartupTimeline timeline;
+
+        private Result(List<InstrumentClient> clients, StartupTimeline timeline) {
+            this.clients = clients;
+            this.timeline = timeline;
+        }
+
+        List<InstrumentClient> getClients() {
+            return clients;
+        }
+
+        StartupTimeline getTimeline() {
+            return timeline;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.instrument;
+
+import java.util.List;
+
+/**
+ * attach之后各个client的启动时间线
+ */
+public class StartupTimeline {
+
+    private long startTime;
+
+    private long costMillis;
+
+    private List<Stage> stages;
+
+    public StartupTimeline() {
+    }
+
+    public StartupTimeline(long startTime, long costMillis, List<Stage> stages) {
+        this.startTime = startTime;
+        this.costMillis = costMillis;
+        this.stages = stages;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getCostMillis() {
+        return costMillis;
+    }
+
+    public void setCostMillis(long costMillis) {
+        this.costMillis = costMillis;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    public void setStages(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    @Override
+    public String toString() {
+        return "StartupTimeline{" +
+                "startTime=" + startTime +
+                ", costMillis=" + costMillis +
+                ", stages=" + stages +
+                '}';
+    }
+
+    public static class Stage {
+
+        private String name;
+
+        private String thread;
+
+        /**
+         * 相对于启动开始时间的偏移
+         */
+        private long startOffsetMillis;
+
+        private long costMillis;
+
+        private boolean success;
+
+        private String error;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public void setThread(String thread) {
+            this.thread = thread;
+        }
+
+        public long getStartOffsetMillis() {
+            return startOffsetMillis;
+        }
+
+        public void setStartOffsetMillis(long startOffsetMillis) {
+            this.startOffsetMillis = startOffsetMillis;
+        }
+
+        public long getCostMillis() {
+            return costMillis;
+        }
+
+        public void setCostMillis(long costMillis) {
+            this.costMillis = costMillis;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public void setSuccess(boolean success) {
+            this.success = success;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return "Stage{" +
+                    "name='" + name + '\'' +
+                    ", thread='" + thread + '\'' +
+                    ", startOffsetMillis=" + startOffsetMillis +
+                    ", costMillis=" + costMillis +
+                    ", success=" + success +
+                    ", error='" + error + '\'' +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.instrument;
+
+import com.taobao.arthas.core.shell.command.AnnotatedCommand;
+import com.taobao.arthas.core.shell.command.CommandProcess;
+import com.taobao.middleware.cli.annotations.Name;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.common.BistouryConstants;
+import qunar.tc.bistoury.common.CodeProcessResponse;
+import qunar.tc.bistoury.common.JacksonSerializer;
+import qunar.tc.bistoury.common.TypeResponse;
+import qunar.tc.bistoury.common.URLCoder;
+
+/**
+ * 查看各个client的启动耗时
+ */
+@Name(BistouryConstants.REQ_STARTUP_TIMELINE)
+public class StartupTimelineCommand extends AnnotatedCommand {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    @Override
+    public void process(CommandProcess process) {
+        logger.info("receive startup timeline command");
+        CodeProcessResponse<StartupTimeline> response = new CodeProcessResponse<>();
+        TypeResponse<StartupTimeline> typeResponse = new TypeResponse<>();
+        typeResponse.setType(BistouryConstants.REQ_STARTUP_TIMELINE);
+        typeResponse.setData(response);
+        try {
+            StartupTimeline timeline = InstrumentClientStore.getStartupTimeline();
+            if (timeline == null) {
+                response.setCode(-1);
+                response.setMessage("client not started");
+            } else {
+                response.setData(timeline);
+                response.setCode(0);
+            }
+        } catch (Throwable e) {
+            logger.error("", "startup timeline error", e);
+            response.setCode(-1);
+            response.setMessage("startup timeline error: " + e.getMessage());
+        } finally {
+            process.write(URLCoder.encode(JacksonSerializer.serialize(typeResponse)));
+            process.end();
+        }
+    }
+}
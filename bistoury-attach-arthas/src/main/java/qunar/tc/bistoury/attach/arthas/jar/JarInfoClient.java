@@ -18,6 +18,8 @@
 package qunar.tc.bistoury.attach.arthas.jar;
 
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.taobao.middleware.logger.Logger;
@@ -39,23 +41,29 @@ public class JarInfoClient implements InstrumentClient {
 
     private static final Logger logger = BistouryLoggger.getLogger();
 
-    private final List<String> jarInfos;
+    private final Supplier<List<String>> jarInfos;
 
-    JarInfoClient(InstrumentInfo instrumentInfo) {
+    JarInfoClient(final InstrumentInfo instrumentInfo) {
         logger.info("start init jar info client");
-        List<String> jarInfoList = ImmutableList.of();
-        try {
-            jarInfoList = listJar(instrumentInfo);
-            logger.info("init jar info client success");
-        } catch (Throwable e) {
-            destroy();
-            logger.error("", "jar info client init error", e);
-        }
-        jarInfos = jarInfoList;
+        //扫描jar目录放到第一次查询时进行，不占用attach时间
+        jarInfos = Suppliers.memoize(new Supplier<List<String>>() {
+            @Override
+            public List<String> get() {
+                try {
+                    List<String> jarInfoList = ImmutableList.copyOf(listJar(instrumentInfo));
+                    logger.info("init jar info success");
+                    return jarInfoList;
+                } catch (Throwable e) {
+                    logger.error("", "jar info init error", e);
+                    return ImmutableList.of();
+                }
+            }
+        });
+        logger.info("init jar info client success");
     }
 
     public List<String> jarInfo() {
-        return jarInfos;
+        return jarInfos.get();
     }
 
     private List<String> listJar(InstrumentInfo instrumentation) {
@@ -60,6 +60,10 @@ public class QMonitorClient implements InstrumentClient {
         return monitor.addMonitor(source, line);
     }
 
+    public boolean removeMonitor(String source, int line, String monitorId) {
+        return monitor.removeMonitor(source, line, monitorId);
+    }
+
     public MetricsSnapshot reportMonitor(final String name) {
         return REPORTOR.report(name);
     }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.monitor;
+
+import com.taobao.arthas.core.shell.command.AnnotatedCommand;
+import com.taobao.arthas.core.shell.command.CommandProcess;
+import com.taobao.middleware.cli.annotations.Argument;
+import com.taobao.middleware.cli.annotations.Name;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.common.*;
+
+/**
+ * 移除监控，类上的监控全部移除后恢复成增强前的字节码
+ */
+@Name(BistouryConstants.REQ_MONITOR_REMOVE)
+public class QMonitorRemoveCommand extends AnnotatedCommand {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private static final int SUCCESS = 0;
+
+    //监控已经移除，但类在监控之后被其它功能增强过，监控代码在重置前仍然保留
+    private static final int PROBE_RETAINED = 1;
+
+    private String source;
+
+    private int line;
+
+    public String id;
+
+    @Argument(index = 0, argName = "id")
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @Argument(index = 1, argName = "source")
+    public void setSource(String source) {
+        this.source = URLCoder.decode(source);
+    }
+
+    @Argument(index = 2, argName = "line")
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+
+    @Override
+    public void process(CommandProcess process) {
+        logger.info("receive monitor remove command, source: {}, line: {}", source, line);
+        CodeProcessResponse<String> response = new CodeProcessResponse<>();
+        TypeResponse<String> typeResponse = new TypeResponse<>();
+        typeResponse.setType(BistouryConstants.REQ_MONITOR_REMOVE);
+        typeResponse.setData(response);
+        response.setId(id);
+        try {
+            final QMonitorClient monitorClient = QMonitorClients.getInstance();
+            response.setData(id);
+            if (monitorClient.removeMonitor(source, line, id)) {
+                response.setCode(SUCCESS);
+            } else {
+                response.setCode(PROBE_RETAINED);
+                response.setMessage("监控已移除，但类在监控之后被其它功能增强过，监控代码在重置前仍然保留");
+            }
+        } catch (Throwable e) {
+            logger.error("qmonitor remove error, {}", e.getMessage(), e);
+            response.setCode(-1);
+            response.setMessage("qmonitor remove error: " + e.getMessage());
+        } finally {
+            process.write(URLCoder.encode(JacksonSerializer.serialize(typeResponse)));
+            process.end();
+        }
+    }
+}
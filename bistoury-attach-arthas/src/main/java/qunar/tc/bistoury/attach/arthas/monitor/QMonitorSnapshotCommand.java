@@ -25,6 +25,7 @@ import com.taobao.middleware.cli.annotations.Option;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.clientside.common.monitor.MetricsSnapshot;
+import qunar.tc.bistoury.clientside.common.monitor.MetricsSnapshotCodec;
 import qunar.tc.bistoury.common.BistouryConstants;
 import qunar.tc.bistoury.common.CodeProcessResponse;
 import qunar.tc.bistoury.common.JacksonSerializer;
@@ -33,7 +34,7 @@ import qunar.tc.bistoury.common.TypeResponse;
 /**
  * @author: leix.xie
  * @date: 2019/1/9 11:40
- * @describe：
+ * @describe：带-b时成功的结果直接输出MetricsSnapshotCodec编码后的一行，失败时仍然输出json
  */
 @Name(BistouryConstants.REQ_MONITOR_SNAPSHOT)
 public class QMonitorSnapshotCommand extends AnnotatedCommand {
@@ -41,12 +42,18 @@ public class QMonitorSnapshotCommand extends AnnotatedCommand {
 
     private String name;
 
+    private boolean binary;
 
     @Option(shortName = "n", longName = "name")
     public void setName(String name) {
         this.name = name;
     }
 
+    @Option(shortName = "b", longName = "binary", flag = true)
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
     @Override
     public void process(CommandProcess process) {
         logger.debug("receive monitor snapshot command");
@@ -54,16 +61,21 @@ public class QMonitorSnapshotCommand extends AnnotatedCommand {
         TypeResponse<MetricsSnapshot> typeResponse = new TypeResponse<>();
         typeResponse.setType(BistouryConstants.REQ_MONITOR_SNAPSHOT);
         typeResponse.setData(response);
+        String encoded = null;
         try {
             final QMonitorClient monitorClient = QMonitorClients.getInstance();
             MetricsSnapshot snapshot = monitorClient.reportMonitor(Strings.nullToEmpty(this.name));
-            response.setData(snapshot);
+            if (binary) {
+                encoded = MetricsSnapshotCodec.encodeToString(snapshot);
+            } else {
+                response.setData(snapshot);
+            }
             response.setCode(0);
         } catch (Throwable e) {
             response.setCode(-1);
             response.setMessage("qmonitor snapshot get error, " + e.getClass() + ", " + e.getMessage());
         } finally {
-            process.write(JacksonSerializer.serialize(typeResponse));
+            process.write(encoded != null ? encoded : JacksonSerializer.serialize(typeResponse));
             process.end();
             logger.debug("finish monitor snapshot command");
         }
@@ -29,8 +29,10 @@ import qunar.tc.bistoury.attach.arthas.agentInfo.AgentInfoCommand;
 import qunar.tc.bistoury.attach.arthas.config.AppConfigCommand;
 import qunar.tc.bistoury.attach.arthas.config.AppConfigFileCommand;
 import qunar.tc.bistoury.attach.arthas.debug.*;
+import qunar.tc.bistoury.attach.arthas.instrument.StartupTimelineCommand;
 import qunar.tc.bistoury.attach.arthas.jar.JarInfoCommand;
 import qunar.tc.bistoury.attach.arthas.monitor.QMonitorAddCommand;
+import qunar.tc.bistoury.attach.arthas.monitor.QMonitorRemoveCommand;
 import qunar.tc.bistoury.attach.arthas.monitor.QMonitorSnapshotCommand;
 
 import java.util.ArrayList;
@@ -94,10 +96,13 @@ public class QBuiltinCommandPack extends BuiltinCommandPack {
         commands.add(Command.create(QDebugAddCommand.class));
         commands.add(Command.create(QDebugRemoveCommand.class));
         commands.add(Command.create(QDebugSearchCommand.class));
+        commands.add(Command.create(QDebugWaitCommand.class));
+        commands.add(Command.create(QDebugSnapshotsCommand.class));
         commands.add(Command.create(QDebugReleaseInfoCommand.class));
         commands.add(Command.create(QShutdownCommand.class));
 
         commands.add(Command.create(QMonitorAddCommand.class));
+        commands.add(Command.create(QMonitorRemoveCommand.class));
         commands.add(Command.create(QMonitorSnapshotCommand.class));
 
         commands.add(Command.create(JarInfoCommand.class));
@@ -107,5 +112,7 @@ public class QBuiltinCommandPack extends BuiltinCommandPack {
 
         commands.add(Command.create(AppConfigCommand.class));
         commands.add(Command.create(AppConfigFileCommand.class));
+
+        commands.add(Command.create(StartupTimelineCommand.class));
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.arthas.debug;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.common.Snapshot;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 快照环：环中的快照完成后不再修改，按次数和内存淘汰，中断的收集不会一直残留
+ */
+public class SnapshotRingTest {
+
+    private AtomicLong totalBytes;
+
+    private Snapshot head;
+
+    @Before
+    public void before() {
+        totalBytes = new AtomicLong();
+        head = new Snapshot("id", "Test.java", 10, Long.MAX_VALUE);
+        head.setMaxHits(3);
+    }
+
+    @Test
+    public void completedSnapshotShouldNotBeShared() {
+        SnapshotRing ring = new SnapshotRing(3, totalBytes);
+        Assert.assertNull(ring.latest());
+
+        capture(ring, "first");
+        Snapshot first = ring.latest();
+        capture(ring, "second");
+        Snapshot second = ring.latest();
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("first", first.getLocalVariables().get("value"));
+        Assert.assertEquals(1, first.getHits());
+        Assert.assertFalse(first.isFinished());
+        Assert.assertEquals("second", second.getLocalVariables().get("value"));
+        Assert.assertEquals(2, second.getHits());
+        Assert.assertEquals(3, second.getMaxHits());
+        Assert.assertTrue(second.isInit());
+
+        //断点上只更新状态，不带快照数据
+        Assert.assertNull(head.getLocalVariables());
+        Assert.assertEquals(2, head.getHits());
+        Assert.assertTrue(head.isInit());
+        Assert.assertFalse(head.isFinished());
+
+        capture(ring, "third");
+        Assert.assertTrue(ring.latest().isFinished());
+        Assert.assertTrue(head.isFinished());
+    }
+
+    @Test
+    public void ringShouldKeepLatestSnapshots() {
+        head.setMaxHits(5);
+        SnapshotRing ring = new SnapshotRing(2, totalBytes);
+        for (int i = 0; i < 5; ++i) {
+            capture(ring, "value" + i);
+        }
+
+        List<Snapshot> snapshots = ring.after(0);
+        Assert.assertEquals(2, snapshots.size());
+        Assert.assertEquals(4, snapshots.get(0).getHits());
+        Assert.assertEquals(5, snapshots.get(1).getHits());
+        Assert.assertEquals(1, ring.after(4).size());
+        Assert.assertTrue(ring.after(5).isEmpty());
+    }
+
+    @Test
+    public void overBytesShouldFinishBreakpoint() {
+        SnapshotRing ring = new SnapshotRing(3, totalBytes);
+        capture(ring, Strings.repeat("x", (int) SnapshotRing.MAX_BYTES));
+
+        Assert.assertTrue(ring.isFull());
+        Assert.assertTrue(head.isFinished());
+        Assert.assertEquals(1, head.getHits());
+        Assert.assertTrue(totalBytes.get() > SnapshotRing.MAX_BYTES);
+
+        ring.release();
+        Assert.assertEquals(0, totalBytes.get());
+        Assert.assertNull(ring.latest());
+        Assert.assertFalse(ring.complete(head));
+    }
+
+    @Test
+    public void completeWithoutReceivingShouldBeIgnored() {
+        SnapshotRing ring = new SnapshotRing(3, totalBytes);
+        Assert.assertFalse(ring.complete(head));
+        Assert.assertEquals(0, head.getHits());
+        Assert.assertFalse(head.isInit());
+    }
+
+    @Test
+    public void abortedCaptureShouldBeDropped() {
+        SnapshotRing ring = new SnapshotRing(3, totalBytes);
+        long now = System.currentTimeMillis();
+
+        Snapshot aborted = ring.receiving(head, now);
+        aborted.setLocalVariables(ImmutableMap.of("value", "aborted"));
+        Assert.assertSame(aborted, ring.receiving(head, now + 1));
+
+        Snapshot fresh = ring.receiving(head, now + SnapshotRing.RECEIVE_TIMEOUT_MS + 1);
+        Assert.assertNotSame(aborted, fresh);
+        Assert.assertNull(fresh.getLocalVariables());
+    }
+
+    @Test
+    public void abortedCaptureOnOtherThreadShouldBeCleaned() throws Exception {
+        final SnapshotRing ring = new SnapshotRing(3, totalBytes);
+        final long now = System.currentTimeMillis();
+        final Snapshot[] aborted = new Snapshot[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                aborted[0] = ring.receiving(head, now);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        ring.receiving(head, now);
+        Assert.assertTrue(ring.complete(head, now + SnapshotRing.RECEIVE_TIMEOUT_MS + 1));
+        Assert.assertEquals(1, ring.after(0).size());
+        Assert.assertNotSame(aborted[0], ring.latest());
+    }
+
+    private void capture(SnapshotRing ring, String value) {
+        Snapshot snapshot = ring.receiving(head);
+        snapshot.setLocalVariables(ImmutableMap.of("value", value));
+        Assert.assertTrue(ring.complete(head));
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.file.impl;
+
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打开的jar包缓存，带引用计数和entry名称索引
+ * <p>
+ * 文件大小或修改时间变化、长时间未使用、或者超过最大打开数量时会被淘汰，
+ * 被淘汰的jar在最后一个使用者释放之后才真正关闭
+ */
+class JarFileCache {
+
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private static final String JAR_FILE_PATH_SPLITTER = "!/";
+
+    private static final int MAX_OPEN_JARS = 16;
+
+    private static final long MAX_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final LinkedHashMap<String, CachedJar> jars = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 获取普通jar包
+     */
+    JarHandle acquire(String jarPath) throws IOException {
+        File file = new File(jarPath);
+        synchronized (this) {
+            CachedJar jar = getValid(jarPath, file);
+            if (jar == null) {
+                jar = openJar(file);
+                put(jarPath, jar);
+            }
+            return jar.retain();
+        }
+    }
+
+    /**
+     * 获取fat jar中的嵌套jar，嵌套jar不是以STORED方式存放时返回null，由调用方回退到解压目录
+     */
+    JarHandle acquireNested(String jarPath, String nestedJarName) throws IOException {
+        String key = jarPath + JAR_FILE_PATH_SPLITTER + nestedJarName;
+        File file = new File(jarPath);
+        synchronized (this) {
+            CachedJar jar = getValid(key, file);
+            if (jar != null) {
+                return jar.retain();
+            }
+        }
+
+        long offset;
+        long length;
+        try (JarHandle outer = acquire(jarPath)) {
+            ZipDirectory.Entry entry = outer.getEntry(nestedJarName);
+            if (entry == null) {
+                throw new FileNotFoundException(key);
+            }
+            if (entry.getMethod() != ZipDirectory.STORED) {
+                return null;
+            }
+            offset = outer.jar.directory.getDataOffset(entry);
+            length = entry.getSize();
+        }
+
+        synchronized (this) {
+            CachedJar jar = getValid(key, file);
+            if (jar == null) {
+                jar = openJar(file, offset, length);
+                put(key, jar);
+            }
+            return jar.retain();
+        }
+    }
+
+    private CachedJar getValid(String key, File file) {
+        expireIdle();
+        CachedJar jar = jars.get(key);
+        if (jar == null) {
+            return null;
+        }
+        if (jar.length != file.length() || jar.lastModified != file.lastModified() || !jar.channel.isOpen()) {
+            logger.info("", "jar file changed, evict cache: {}", key);
+            jars.remove(key);
+            jar.evict();
+            return null;
+        }
+        return jar;
+    }
+
+    private void put(String key, CachedJar jar) {
+        CachedJar old = jars.put(key, jar);
+        if (old != null) {
+            old.evict();
+        }
+        if (jars.size() > MAX_OPEN_JARS) {
+            Iterator<CachedJar> iterator = jars.values().iterator();
+            while (jars.size() > MAX_OPEN_JARS && iterator.hasNext()) {
+                CachedJar eldest = iterator.next();
+                if (eldest != jar) {
+                    iterator.remove();
+                    eldest.evict();
+                }
+            }
+        }
+    }
+
+    private void expireIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<CachedJar> iterator = jars.values().iterator();
+        while (iterator.hasNext()) {
+            CachedJar jar = iterator.next();
+            if (jar.refCount == 0 && now - jar.lastAccessTime > MAX_IDLE_MILLIS) {
+                iterator.remove();
+                jar.evict();
+            }
+        }
+    }
+
+    private CachedJar openJar(File file) throws IOException {
+        return openJar(file, 0, -1);
+    }
+
+    private CachedJar openJar(File file, long offset, long length) throws IOException {
+        long fileLength = file.length();
+        long lastModified = file.lastModified();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ZipDirectory directory = ZipDirectory.read(channel, offset, length < 0 ? channel.size() : length);
+            return new CachedJar(randomAccessFile, channel, directory, fileLength, lastModified);
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    private synchronized void release(CachedJar jar) {
+        jar.refCount--;
+        jar.lastAccessTime = System.currentTimeMillis();
+        if (jar.refCount == 0 && jar.evicted) {
+            jar.close();
+        }
+    }
+
+    private class CachedJar {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ZipDirectory directory;
+        private final long length;
+        private final long lastModified;
+        private int refCount = 0;
+        private boolean evicted = false;
+        private long lastAccessTime = System.currentTimeMillis();
+
+        CachedJar(RandomAccessFile file, FileChannel channel, ZipDirectory directory, long length, long lastModified) {
+            this.file = file;
+            this.channel = channel;
+            this.directory = directory;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        JarHandle retain() {
+            refCount++;
+            lastAccessTime = System.currentTimeMillis();
+            return new JarHandle(this);
+        }
+
+        void evict() {
+            evicted = true;
+            if (refCount == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                logger.error("", "close jar file error", e);
+            }
+        }
+    }
+
+    class JarHandle implements Closeable {
+        private final CachedJar jar;
+        private boolean released = false;
+
+        private JarHandle(CachedJar jar) {
+            this.jar = jar;
+        }
+
+        ZipDirectory.Entry getEntry(String name) {
+            return jar.directory.getEntry(name);
+        }
+
+        /**
+         * 按名称前缀列出非目录entry，基于有序索引，不需要遍历整个jar
+         */
+        List<ZipDirectory.Entry> listEntries(String prefix) {
+            List<ZipDirectory.Entry> result = new ArrayList<>();
+            NavigableMap<String, ZipDirectory.Entry> tail = jar.directory.entries().tailMap(prefix, true);
+            for (Map.Entry<String, ZipDirectory.Entry> entry : tail.entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                if (!entry.getValue().isDirectory()) {
+                    result.add(entry.getValue());
+                }
+            }
+            return result;
+        }
+
+        InputStream getInputStream(String name) throws IOException {
+            ZipDirectory.Entry entry = getEntry(name);
+            if (entry == null) {
+                throw new FileNotFoundException(name);
+            }
+            return jar.directory.getInputStream(entry);
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(jar);
+            }
+        }
+    }
+}
@@ -28,9 +28,10 @@ import qunar.tc.bistoury.common.FileUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -49,6 +50,8 @@ public class JarFileServiceImpl extends AbstractFileService {
 
     private JarFileServiceWrapper jarFileServiceWrapper = new JarFileServiceWrapper();
 
+    private final JarFileCache jarFileCache = new JarFileCache();
+
 
     @Override
     public String replaceJarWithUnPackDir(String url) {
@@ -75,6 +78,18 @@ public class JarFileServiceImpl extends AbstractFileService {
     }
 
     private String readFileInJar(URL url) throws IOException {
+        List<String> list = JAR_PATH_SPLITTER.splitToList(url.toString());
+        if (list.size() == 2) {
+            try (JarFileCache.JarHandle jar = jarFileCache.acquire(toFilePath(list.get(0)))) {
+                return FileUtil.read(jar.getInputStream(list.get(1)));
+            } catch (IOException e) {
+                logger.warn("read jar with cache fail, fallback to url, {}", url, e);
+            }
+        }
+        return readUrl(url);
+    }
+
+    private String readUrl(URL url) throws IOException {
         InputStream in = null;
         try {
             in = url.openStream();
@@ -88,8 +103,53 @@ public class JarFileServiceImpl extends AbstractFileService {
 
     private String readFileInNestJar(final URL url) throws IOException {
         List<String> list = JAR_PATH_SPLITTER.splitToList(url.toString());
+        String content = readFileInNestJarWithoutUnpack(list.get(0), list.get(1), list.get(2));
+        if (content != null) {
+            return content;
+        }
         String nestJarUrl = getNestJarUrl(list.get(0), list.get(1), list.get(2));
-        return readFileInJar(new URL(nestJarUrl));
+        return readUrl(new URL(nestJarUrl));
+    }
+
+    /**
+     * 直接从fat jar中读取，BOOT-INF/classes下的文件直接读外层jar，STORED方式存放的嵌套jar按偏移读取；
+     * 不支持的情况返回null，回退到解压目录
+     */
+    private String readFileInNestJarWithoutUnpack(final String jarFile, final String jarFileChild, final String filePath) throws IOException {
+        final String jarPath = toFilePath(jarFile);
+        final String child = cleanSuffix(jarFileChild);
+        try {
+            if (child.endsWith(".jar")) {
+                try (JarFileCache.JarHandle jar = jarFileCache.acquireNested(jarPath, child)) {
+                    if (jar == null) {
+                        return null;
+                    }
+                    return FileUtil.read(jar.getInputStream(filePath));
+                }
+            } else {
+                try (JarFileCache.JarHandle jar = jarFileCache.acquire(jarPath)) {
+                    return FileUtil.read(jar.getInputStream(child + "/" + filePath));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("read nest jar with cache fail, fallback to unpack dir, {}!/{}!/{}", jarFile, jarFileChild, filePath, e);
+            return null;
+        }
+    }
+
+    /**
+     * url中的路径是转义过的（空格、中文等），转换成本地文件路径，无法解析时按原样去掉协议
+     */
+    private static String toFilePath(String jarFileUrl) {
+        String fileUrl = jarFileUrl.startsWith("jar:") ? jarFileUrl.substring(4) : jarFileUrl;
+        if (fileUrl.startsWith("file:")) {
+            try {
+                return new File(new URI(fileUrl)).getPath();
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                logger.debug("decode jar file url fail, use raw path, {}", jarFileUrl);
+            }
+        }
+        return URLUtil.removeProtocol(jarFileUrl);
     }
 
     private String getNestJarUrl(final String jarFile, final String jarFileChild, final String filePath) {
@@ -122,7 +182,25 @@ public class JarFileServiceImpl extends AbstractFileService {
         final String[] array = jarFilePath.split(JAR_FILE_PATH_SPLITTER);
         final String jarPath = array[0];
         final String libPath = array[1];
-        try (JarFile jarFile = new JarFile(jarPath)) {
+        final String filePath = toFilePath(url.toString().split(JAR_FILE_PATH_SPLITTER)[0]);
+        try (JarFileCache.JarHandle jar = jarFileCache.acquire(filePath)) {
+            for (ZipDirectory.Entry element : jar.listEntries(libPath)) {
+                if (!isExclusionFile(exclusionFileSuffix, exclusionFile, element.getName())) {
+                    result.add(new FileBean(jarPath + JAR_FILE_PATH_SPLITTER + element.getName(), element.getTime(), element.getSize()));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("list jar with cache fail, fallback to jar file, url: {}", url, e);
+            return listFilesByJarFile(exclusionFileSuffix, exclusionFile, filePath, jarPath, libPath);
+        } catch (Exception e) {
+            logger.error("", "list file error, url: {}", url, e);
+        }
+        return result;
+    }
+
+    private List<FileBean> listFilesByJarFile(Set<String> exclusionFileSuffix, Set<String> exclusionFile, String filePath, String jarPath, String libPath) {
+        List<FileBean> result = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(filePath)) {
             Enumeration<JarEntry> entries = jarFile.entries();
             while (entries.hasMoreElements()) {
                 JarEntry element = entries.nextElement();
@@ -131,7 +209,7 @@ public class JarFileServiceImpl extends AbstractFileService {
                 }
             }
         } catch (Exception e) {
-            logger.error("", "list file error, url: {}", url, e);
+            logger.error("", "list file error, jar: {}", jarPath, e);
         }
         return result;
     }
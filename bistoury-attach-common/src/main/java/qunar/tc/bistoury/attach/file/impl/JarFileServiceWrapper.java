@@ -42,22 +42,31 @@ public class JarFileServiceWrapper {
 
     private static final AtomicBoolean STARTED = new AtomicBoolean(false);
 
+    private static final Object UNPACK_LOCK = new Object();
+
     public JarFileServiceWrapper() {
 
     }
 
     /**
      * 通过jarFile获取解压后jar包存储位置
+     * <p>
+     * 解压在第一次请求时进行，多个client可能并发调用，检查、删除和解压在同一把锁下完成，保证只解压一次
      *
      * @param jarFile
      * @return
      */
     public String getJarPath(final String jarFile) {
         File file = new File(JarStorePathUtil.getJarStorePath());
-        if (!file.exists() || !file.isDirectory() || !STARTED.get()) {
-            deleteDirectory(file);
-            unPackJar(jarFile, file);
-            STARTED.compareAndSet(false, true);
+        if (STARTED.get() && file.isDirectory()) {
+            return file.getPath();
+        }
+        synchronized (UNPACK_LOCK) {
+            if (!file.exists() || !file.isDirectory() || !STARTED.get()) {
+                deleteDirectory(file);
+                unPackJar(jarFile, file);
+                STARTED.set(true);
+            }
         }
         return file.getPath();
     }
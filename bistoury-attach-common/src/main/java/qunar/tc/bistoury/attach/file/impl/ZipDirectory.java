@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.file.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * zip中央目录索引，zip可以是文件中的任意一段，用来直接读取fat jar中以STORED方式存放的嵌套jar，不需要解压
+ * <p>
+ * 只支持普通zip格式，zip64等情况抛出{@link ZipException}，由调用方回退到原有的读取方式
+ */
+class ZipDirectory {
+
+    static final int STORED = 0;
+
+    static final int DEFLATED = 8;
+
+    private static final int END_SIG = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int CEN_HEADER_SIZE = 46;
+
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int LOC_HEADER_SIZE = 30;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final FileChannel channel;
+
+    private final long start;
+
+    private final long length;
+
+    private final NavigableMap<String, Entry> entries;
+
+    private ZipDirectory(FileChannel channel, long start, long length, NavigableMap<String, Entry> entries) {
+        this.channel = channel;
+        this.start = start;
+        this.length = length;
+        this.entries = entries;
+    }
+
+    static ZipDirectory read(FileChannel channel, long start, long length) throws IOException {
+        int tailSize = (int) Math.min(length, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readFully(channel, start + length - tailSize, tailSize);
+
+        int endPos = -1;
+        for (int i = tailSize - END_HEADER_SIZE; i >= 0; --i) {
+            if (tail.getInt(i) == END_SIG) {
+                endPos = i;
+                break;
+            }
+        }
+        if (endPos < 0) {
+            throw new ZipException("end of central directory not found");
+        }
+
+        int entryCount = tail.getShort(endPos + 10) & 0xFFFF;
+        long cenSize = tail.getInt(endPos + 12) & 0xFFFFFFFFL;
+        long cenOffset = tail.getInt(endPos + 16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || cenSize == ZIP64_MAGIC || cenOffset == ZIP64_MAGIC) {
+            throw new ZipException("zip64 not supported");
+        }
+        if (cenOffset + cenSize > length) {
+            throw new ZipException("invalid central directory offset");
+        }
+
+        ByteBuffer cen = readFully(channel, start + cenOffset, (int) cenSize);
+        NavigableMap<String, Entry> entries = new TreeMap<>();
+        int pos = 0;
+        for (int i = 0; i < entryCount; ++i) {
+            if (pos + CEN_HEADER_SIZE > cenSize || cen.getInt(pos) != CEN_SIG) {
+                throw new ZipException("invalid central directory header");
+            }
+            int method = cen.getShort(pos + 10) & 0xFFFF;
+            int dosTime = cen.getShort(pos + 12) & 0xFFFF;
+            int dosDate = cen.getShort(pos + 14) & 0xFFFF;
+            long compressedSize = cen.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = cen.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+            long localHeaderOffset = cen.getInt(pos + 42) & 0xFFFFFFFFL;
+            if (compressedSize == ZIP64_MAGIC || size == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+                throw new ZipException("zip64 not supported");
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            cen.position(pos + CEN_HEADER_SIZE);
+            cen.get(nameBytes);
+            String name = new String(nameBytes, UTF_8);
+            entries.put(name, new Entry(name, method, compressedSize, size, dosToJavaTime(dosDate, dosTime), localHeaderOffset));
+
+            pos += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return new ZipDirectory(channel, start, length, Collections.unmodifiableNavigableMap(entries));
+    }
+
+    NavigableMap<String, Entry> entries() {
+        return entries;
+    }
+
+    Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * 返回entry数据在文件中的绝对偏移
+     */
+    long getDataOffset(Entry entry) throws IOException {
+        ByteBuffer header = readFully(channel, start + entry.localHeaderOffset, LOC_HEADER_SIZE);
+        if (header.getInt(0) != LOC_SIG) {
+            throw new ZipException("invalid local header: " + entry.name);
+        }
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        long offset = entry.localHeaderOffset + LOC_HEADER_SIZE + nameLength + extraLength;
+        if (offset + entry.compressedSize > length) {
+            throw new ZipException("invalid entry data range: " + entry.name);
+        }
+        return start + offset;
+    }
+
+    InputStream getInputStream(Entry entry) throws IOException {
+        InputStream in = new ChannelRangeInputStream(channel, getDataOffset(entry), entry.compressedSize);
+        if (entry.method == STORED) {
+            return in;
+        } else if (entry.method == DEFLATED) {
+            //raw deflate需要在末尾补一个字节，与ZipFile的处理方式一致
+            final Inflater inflater = new Inflater(true);
+            return new InflaterInputStream(new SequenceInputStream(in, new ByteArrayInputStream(new byte[1])), inflater) {
+                private boolean closed = false;
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        inflater.end();
+                        super.close();
+                    }
+                }
+            };
+        } else {
+            throw new ZipException("unsupported compression method " + entry.method + ": " + entry.name);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long dosToJavaTime(int date, int time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(((date >> 9) & 0x7f) + 1980, ((date >> 5) & 0x0f) - 1, date & 0x1f,
+                (time >> 11) & 0x1f, (time >> 5) & 0x3f, (time << 1) & 0x3e);
+        return calendar.getTimeInMillis();
+    }
+
+    static class Entry {
+        private final String name;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long time;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int method, long compressedSize, long size, long time, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.time = time;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getMethod() {
+            return method;
+        }
+
+        long getCompressedSize() {
+            return compressedSize;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getTime() {
+            return time;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private static class ChannelRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        ChannelRangeInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int toRead = (int) Math.min(len, remaining);
+            int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.file.impl;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.common.FileUtil;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+
+import static qunar.tc.bistoury.attach.file.impl.TestJars.deflated;
+import static qunar.tc.bistoury.attach.file.impl.TestJars.dir;
+import static qunar.tc.bistoury.attach.file.impl.TestJars.jar;
+import static qunar.tc.bistoury.attach.file.impl.TestJars.stored;
+
+/**
+ * jar缓存：中央目录索引的读取和按前缀列举，嵌套jar直接按偏移读取，文件变化后重新打开
+ */
+public class JarFileCacheTest {
+
+    private File root;
+
+    private JarFileCache cache;
+
+    @Before
+    public void before() {
+        root = Files.createTempDir();
+        cache = new JarFileCache();
+    }
+
+    @After
+    public void after() {
+        TestJars.delete(root);
+    }
+
+    @Test
+    public void indexShouldListEntriesByPrefix() throws IOException {
+        File file = TestJars.write(new File(root, "app.jar"), jar(
+                dir("conf/"),
+                deflated("conf/app.properties", "name=app"),
+                stored("conf/db.properties", "url=jdbc"),
+                dir("conf/sub/"),
+                deflated("conf/sub/log.xml", "<log/>"),
+                deflated("config.txt", "other"),
+                deflated("lib/a.txt", "a")));
+
+        try (JarFileCache.JarHandle jar = cache.acquire(file.getPath())) {
+            List<ZipDirectory.Entry> entries = jar.listEntries("conf/");
+            Assert.assertEquals(3, entries.size());
+            Assert.assertEquals("conf/app.properties", entries.get(0).getName());
+            Assert.assertEquals("conf/db.properties", entries.get(1).getName());
+            Assert.assertEquals("conf/sub/log.xml", entries.get(2).getName());
+            Assert.assertEquals("name=app".length(), entries.get(0).getSize());
+            Assert.assertEquals(ZipDirectory.DEFLATED, entries.get(0).getMethod());
+            Assert.assertEquals(ZipDirectory.STORED, entries.get(1).getMethod());
+
+            Assert.assertTrue(jar.getEntry("conf/").isDirectory());
+            Assert.assertNull(jar.getEntry("missing.txt"));
+            Assert.assertEquals(0, jar.listEntries("missing/").size());
+        }
+    }
+
+    @Test
+    public void entriesShouldBeReadFromIndex() throws IOException {
+        File file = TestJars.write(new File(root, "app.jar"), jar(
+                deflated("a.txt", "deflated content"),
+                stored("b.txt", "stored content"),
+                deflated("empty.txt", "")));
+
+        try (JarFileCache.JarHandle jar = cache.acquire(file.getPath())) {
+            Assert.assertEquals("deflated content", FileUtil.read(jar.getInputStream("a.txt")));
+            Assert.assertEquals("stored content", FileUtil.read(jar.getInputStream("b.txt")));
+            Assert.assertEquals("", FileUtil.read(jar.getInputStream("empty.txt")));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingEntryShouldThrow() throws IOException {
+        File file = TestJars.write(new File(root, "app.jar"), jar(deflated("a.txt", "a")));
+        try (JarFileCache.JarHandle jar = cache.acquire(file.getPath())) {
+            jar.getInputStream("b.txt");
+        }
+    }
+
+    @Test
+    public void jarUnderPathWithSpacesShouldBeIndexed() throws IOException {
+        File file = TestJars.write(new File(root, "with space/中文 目录/app.jar"), jar(deflated("conf/app.properties", "name=app")));
+
+        try (JarFileCache.JarHandle jar = cache.acquire(file.getPath())) {
+            Assert.assertEquals(1, jar.listEntries("conf/").size());
+            Assert.assertEquals("name=app", FileUtil.read(jar.getInputStream("conf/app.properties")));
+        }
+    }
+
+    @Test
+    public void storedNestedJarShouldBeReadInPlace() throws IOException {
+        byte[] inner = jar(deflated("inner/a.txt", "inner content"), stored("inner/b.txt", "stored inner"));
+        File file = TestJars.write(new File(root, "fat.jar"), jar(
+                deflated("BOOT-INF/classes/app.properties", "name=app"),
+                stored("BOOT-INF/lib/inner.jar", inner),
+                deflated("BOOT-INF/lib/deflated.jar", "not stored")));
+
+        try (JarFileCache.JarHandle jar = cache.acquireNested(file.getPath(), "BOOT-INF/lib/inner.jar")) {
+            Assert.assertNotNull(jar);
+            Assert.assertEquals(2, jar.listEntries("inner/").size());
+            Assert.assertEquals("inner content", FileUtil.read(jar.getInputStream("inner/a.txt")));
+            Assert.assertEquals("stored inner", FileUtil.read(jar.getInputStream("inner/b.txt")));
+        }
+        Assert.assertNull(cache.acquireNested(file.getPath(), "BOOT-INF/lib/deflated.jar"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingNestedJarShouldThrow() throws IOException {
+        File file = TestJars.write(new File(root, "fat.jar"), jar(deflated("BOOT-INF/classes/a.txt", "a")));
+        cache.acquireNested(file.getPath(), "BOOT-INF/lib/missing.jar");
+    }
+
+    @Test
+    public void changedJarShouldBeReopened() throws IOException {
+        File file = TestJars.write(new File(root, "app.jar"), jar(deflated("a.txt", "old")));
+        try (JarFileCache.JarHandle jar = cache.acquire(file.getPath())) {
+            Assert.assertEquals("old", FileUtil.read(jar.getInputStream("a.txt")));
+        }
+
+        File replacement = TestJars.write(new File(root, "new.jar"), jar(deflated("a.txt", "new content"), deflated("b.txt", "b")));
+        Assert.assertTrue(file.delete());
+        Assert.assertTrue(replacement.renameTo(file));
+
+        try (JarFileCache.JarHandle jar = cache.acquire(file.getPath())) {
+            Assert.assertEquals("new content", FileUtil.read(jar.getInputStream("a.txt")));
+            Assert.assertNotNull(jar.getEntry("b.txt"));
+        }
+    }
+
+    @Test
+    public void handleShouldStayReadableWhileCacheIsFull() throws IOException {
+        File first = TestJars.write(new File(root, "first.jar"), jar(deflated("a.txt", "first")));
+        try (JarFileCache.JarHandle jar = cache.acquire(first.getPath())) {
+            for (int i = 0; i < 20; ++i) {
+                File other = TestJars.write(new File(root, "other" + i + ".jar"), jar(deflated("a.txt", "other" + i)));
+                try (JarFileCache.JarHandle otherJar = cache.acquire(other.getPath())) {
+                    Assert.assertEquals("other" + i, FileUtil.read(otherJar.getInputStream("a.txt")));
+                }
+            }
+            Assert.assertEquals("first", FileUtil.read(jar.getInputStream("a.txt")));
+        }
+    }
+
+    @Test(expected = java.util.zip.ZipException.class)
+    public void notZipShouldThrowZipException() throws IOException {
+        File file = TestJars.write(new File(root, "broken.jar"), "not a zip file".getBytes("UTF-8"));
+        cache.acquire(file.getPath());
+    }
+}
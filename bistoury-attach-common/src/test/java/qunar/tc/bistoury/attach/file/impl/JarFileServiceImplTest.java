@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.file.impl;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.attach.file.bean.FileBean;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import static qunar.tc.bistoury.attach.file.impl.TestJars.deflated;
+import static qunar.tc.bistoury.attach.file.impl.TestJars.jar;
+import static qunar.tc.bistoury.attach.file.impl.TestJars.stored;
+
+/**
+ * jar包路径中带空格、中文等需要转义的字符时，url解码后仍然走缓存读取
+ */
+public class JarFileServiceImplTest {
+
+    private File root;
+
+    private JarFileServiceImpl service;
+
+    @Before
+    public void before() {
+        root = Files.createTempDir();
+        service = new JarFileServiceImpl();
+    }
+
+    @After
+    public void after() {
+        TestJars.delete(root);
+    }
+
+    @Test
+    public void readFileInJarWithEscapedPath() throws IOException {
+        File file = TestJars.write(new File(root, "with space/中文/app.jar"), jar(deflated("conf/app.properties", "name=app")));
+        String jarUrl = "jar:" + file.toURI().toASCIIString();
+        Assert.assertTrue(jarUrl.contains("%20"));
+
+        Assert.assertEquals("name=app", service.readFile(new URL(jarUrl + "!/conf/app.properties")));
+        Assert.assertNull(service.readFile(new URL(jarUrl + "!/conf/missing.properties")));
+    }
+
+    @Test
+    public void listFilesInJarWithEscapedPath() throws IOException {
+        File file = TestJars.write(new File(root, "with space/app.jar"), jar(
+                deflated("conf/app.properties", "name=app"),
+                deflated("conf/db.properties", "url=jdbc"),
+                deflated("lib/a.txt", "a")));
+        String jarUrl = "jar:" + file.toURI().toASCIIString();
+
+        List<FileBean> files = service.listFiles(new URL(jarUrl + "!/conf/"));
+        Assert.assertEquals(2, files.size());
+        Assert.assertTrue(files.get(0).getName().endsWith("!/conf/app.properties"));
+        Assert.assertTrue(files.get(1).getName().endsWith("!/conf/db.properties"));
+    }
+
+    @Test
+    public void readFileInFatJarWithEscapedPath() throws IOException {
+        byte[] inner = jar(deflated("inner.properties", "inner=true"));
+        File file = TestJars.write(new File(root, "with space/fat.jar"), jar(
+                deflated("BOOT-INF/classes/app.properties", "name=app"),
+                stored("BOOT-INF/lib/inner.jar", inner)));
+        String jarUrl = "jar:" + file.toURI().toASCIIString();
+
+        Assert.assertEquals("name=app", service.readFile(new URL(jarUrl + "!/BOOT-INF/classes!/app.properties")));
+        Assert.assertEquals("inner=true", service.readFile(new URL(jarUrl + "!/BOOT-INF/lib/inner.jar!/inner.properties")));
+    }
+}
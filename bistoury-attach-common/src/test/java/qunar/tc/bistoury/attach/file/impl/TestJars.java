@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.attach.file.impl;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * 测试用的jar构造工具
+ */
+class TestJars {
+
+    static byte[] jar(Entry... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(bytes)) {
+            for (Entry entry : entries) {
+                JarEntry jarEntry = new JarEntry(entry.name);
+                if (entry.stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.content);
+                    jarEntry.setMethod(ZipEntry.STORED);
+                    jarEntry.setSize(entry.content.length);
+                    jarEntry.setCompressedSize(entry.content.length);
+                    jarEntry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(jarEntry);
+                out.write(entry.content);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static Entry stored(String name, byte[] content) {
+        return new Entry(name, content, true);
+    }
+
+    static Entry stored(String name, String content) {
+        return stored(name, content.getBytes(Charsets.UTF_8));
+    }
+
+    static Entry deflated(String name, String content) {
+        return new Entry(name, content.getBytes(Charsets.UTF_8), false);
+    }
+
+    static Entry dir(String name) {
+        return new Entry(name, new byte[0], true);
+    }
+
+    static File write(File file, byte[] bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(bytes, file);
+        return file;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    static class Entry {
+        private final String name;
+        private final byte[] content;
+        private final boolean stored;
+
+        private Entry(String name, byte[] content, boolean stored) {
+            this.name = name;
+            this.content = content;
+            this.stored = stored;
+        }
+    }
+}
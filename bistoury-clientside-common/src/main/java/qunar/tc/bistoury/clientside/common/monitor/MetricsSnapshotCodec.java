@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.clientside.common.monitor;
+
+import com.google.common.io.BaseEncoding;
+import qunar.tc.bistoury.common.CharsetUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监控快照的二进制编码，从qmonitorsnapshot命令到agent的kv存储都使用这个格式，只在查询时转成json
+ * <p>
+ * 格式：版本号、时间戳、名称、指标名字典、指标列表，每个指标由字典下标、类型和数值组成；
+ * 数值都是整数时（比如counter）按zigzag varint写入，否则按4字节float写入
+ * <p>
+ * telnet只能传输文本，所以传输和存储时使用base64
+ */
+public final class MetricsSnapshotCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final int FLOAT_VALUES = 0;
+
+    private static final int INT_VALUES = 1;
+
+    private static final BaseEncoding ENCODING = BaseEncoding.base64();
+
+    private MetricsSnapshotCodec() {
+    }
+
+    public static String encodeToString(MetricsSnapshot snapshot) {
+        return ENCODING.encode(encode(snapshot));
+    }
+
+    public static MetricsSnapshot decodeFromString(String content) {
+        return decode(ENCODING.decode(content.trim()));
+    }
+
+    public static byte[] encode(MetricsSnapshot snapshot) {
+        List<MetricsData> metrics = snapshot.getMetricsData();
+        if (metrics == null) {
+            metrics = new ArrayList<>();
+        }
+
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (MetricsData data : metrics) {
+            if (!dictionary.containsKey(data.getName())) {
+                dictionary.put(data.getName(), names.size());
+                names.add(data.getName());
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + metrics.size() * 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeBoolean(snapshot.getTimestamp() != null);
+            if (snapshot.getTimestamp() != null) {
+                writeVarLong(out, snapshot.getTimestamp());
+            }
+            writeString(out, snapshot.getName());
+
+            writeVarLong(out, names.size());
+            for (String name : names) {
+                writeString(out, name);
+            }
+
+            writeVarLong(out, metrics.size());
+            for (MetricsData data : metrics) {
+                writeVarLong(out, dictionary.get(data.getName()));
+                writeVarLong(out, data.getType());
+                writeValues(out, data.getData());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static MetricsSnapshot decode(byte[] content) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        try {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported metrics snapshot version " + version);
+            }
+            Long timestamp = in.readBoolean() ? readVarLong(in) : null;
+            String name = readString(in);
+
+            int nameCount = readLength(in);
+            String[] names = new String[nameCount];
+            for (int i = 0; i < nameCount; i++) {
+                names[i] = readString(in);
+            }
+
+            int metricCount = readLength(in);
+            List<MetricsData> metrics = new ArrayList<>(metricCount);
+            for (int i = 0; i < metricCount; i++) {
+                String metricName = names[(int) readVarLong(in)];
+                int type = (int) readVarLong(in);
+                metrics.add(new MetricsData(metricName, type, readValues(in)));
+            }
+            return new MetricsSnapshot(name, timestamp, metrics);
+        } catch (IOException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("illegal metrics snapshot content", e);
+        }
+    }
+
+    private static void writeValues(DataOutput out, float[] values) throws IOException {
+        if (values == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        writeVarLong(out, values.length + 1);
+        boolean integral = true;
+        for (float value : values) {
+            if (value != (int) value) {
+                integral = false;
+                break;
+            }
+        }
+
+        if (integral) {
+            out.writeByte(INT_VALUES);
+            for (float value : values) {
+                writeVarLong(out, zigzag((int) value));
+            }
+        } else {
+            out.writeByte(FLOAT_VALUES);
+            for (float value : values) {
+                out.writeFloat(value);
+            }
+        }
+    }
+
+    private static float[] readValues(DataInputStream in) throws IOException {
+        int length = readLength(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        float[] values = new float[length];
+        int mode = in.readByte();
+        for (int i = 0; i < length; i++) {
+            if (mode == INT_VALUES) {
+                values[i] = unzigzag(readVarLong(in));
+            } else {
+                values[i] = in.readFloat();
+            }
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = CharsetUtils.toUTF8Bytes(value);
+        writeVarLong(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readLength(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return CharsetUtils.toUTF8String(bytes);
+    }
+
+    /**
+     * 每一项至少占一个字节，长度超过剩余字节数时说明内容不合法，不按这个长度分配数组
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.available() + 1L) {
+            throw new IOException("illegal length " + length);
+        }
+        return (int) length;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        int n = (int) value;
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
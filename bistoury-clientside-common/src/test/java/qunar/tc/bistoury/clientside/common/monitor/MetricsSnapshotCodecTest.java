@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.clientside.common.monitor;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MetricsSnapshotCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+        MetricsSnapshot snapshot = new MetricsSnapshot("monitor", 1546272000000L, ImmutableList.of(
+                new MetricsData("counter", 0, new float[]{0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}),
+                new MetricsData("timer", 1, new float[]{1.5f, -0.25f, 3, Float.NaN, 3e10f}),
+                new MetricsData("counter", 0, new float[]{-42}),
+                new MetricsData("empty", 0, new float[0]),
+                new MetricsData("nullValues", 1, null),
+                new MetricsData(null, -1, new float[]{7})));
+
+        assertEquals(snapshot, MetricsSnapshotCodec.decode(MetricsSnapshotCodec.encode(snapshot)));
+        assertEquals(snapshot, MetricsSnapshotCodec.decodeFromString(MetricsSnapshotCodec.encodeToString(snapshot)));
+    }
+
+    @Test
+    public void testIntegralValuesAreCompact() {
+        float[] integral = new float[100];
+        float[] fractional = new float[100];
+        for (int i = 0; i < integral.length; ++i) {
+            integral[i] = i - 50;
+            fractional[i] = i + 0.5f;
+        }
+        int integralSize = MetricsSnapshotCodec.encode(snapshot(new MetricsData("a", 0, integral))).length;
+        int fractionalSize = MetricsSnapshotCodec.encode(snapshot(new MetricsData("a", 0, fractional))).length;
+        Assert.assertTrue(integralSize < integral.length * 2);
+        Assert.assertTrue(fractionalSize >= fractional.length * 4);
+    }
+
+    @Test
+    public void testNullFields() {
+        MetricsSnapshot snapshot = new MetricsSnapshot(null, null, null);
+        MetricsSnapshot decoded = MetricsSnapshotCodec.decode(MetricsSnapshotCodec.encode(snapshot));
+        Assert.assertNull(decoded.getName());
+        Assert.assertNull(decoded.getTimestamp());
+        Assert.assertTrue(decoded.getMetricsData().isEmpty());
+    }
+
+    @Test
+    public void testNegativeTimestamp() {
+        for (long timestamp : new long[]{-1, 0, Long.MIN_VALUE, Long.MAX_VALUE}) {
+            MetricsSnapshot snapshot = new MetricsSnapshot("", timestamp, Collections.<MetricsData>emptyList());
+            assertEquals(snapshot, MetricsSnapshotCodec.decode(MetricsSnapshotCodec.encode(snapshot)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeTruncated() {
+        byte[] data = MetricsSnapshotCodec.encode(snapshot(new MetricsData("counter", 0, new float[]{1, 2, 3})));
+        MetricsSnapshotCodec.decode(Arrays.copyOf(data, data.length - 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeText() {
+        MetricsSnapshotCodec.decodeFromString("qmonitorsnapshot: illegal option -b");
+    }
+
+    private static MetricsSnapshot snapshot(MetricsData data) {
+        return new MetricsSnapshot("monitor", 1L, ImmutableList.of(data));
+    }
+
+    private static void assertEquals(MetricsSnapshot expected, MetricsSnapshot actual) {
+        Assert.assertEquals(expected.getName(), actual.getName());
+        Assert.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        List<MetricsData> expectedData = expected.getMetricsData();
+        List<MetricsData> actualData = actual.getMetricsData();
+        Assert.assertEquals(expectedData.size(), actualData.size());
+        for (int i = 0; i < expectedData.size(); ++i) {
+            Assert.assertEquals(expectedData.get(i).getName(), actualData.get(i).getName());
+            Assert.assertEquals(expectedData.get(i).getType(), actualData.get(i).getType());
+            Assert.assertTrue(Arrays.equals(expectedData.get(i).getData(), actualData.get(i).getData()));
+        }
+    }
+}
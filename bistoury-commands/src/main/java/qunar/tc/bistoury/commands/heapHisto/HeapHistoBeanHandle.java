@@ -21,15 +21,12 @@ import com.google.common.base.Strings;
 import com.sun.tools.attach.VirtualMachine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import qunar.tc.bistoury.common.FileUtil;
 import sun.tools.attach.HotSpotVirtualMachine;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author: leix.xie
@@ -38,12 +35,6 @@ import java.util.regex.Pattern;
  */
 public class HeapHistoBeanHandle {
     private static final Logger logger = LoggerFactory.getLogger(HeapHistoBeanHandle.class);
-    private static final Pattern PATTERN = Pattern.compile("\\s+(\\d+):{1}\\s+(\\d+)\\s+(\\d+)\\s+(.+)");
-
-    private static final int COUNT_INDEX = 2;
-    private static final int BYTES_INDEX = 3;
-    private static final int CLASSNAME_INDEX = 4;
-
     private String param;
 
     private int pid;
@@ -54,10 +45,30 @@ public class HeapHistoBeanHandle {
     }
 
     public List<HistogramBean> heapHisto() {
+        final List<HistogramBean> histogramBeans = new ArrayList<>();
+        heapHisto(new HeapHistoParser.Visitor() {
+            @Override
+            public void visit(long count, long bytes, String className) {
+                histogramBeans.add(new HistogramBean(count, bytes, className));
+            }
+        });
+        return histogramBeans;
+    }
+
+    /**
+     * 解析为以类id索引的基本类型数组，同名的类合并
+     */
+    public HeapHistogram histogram(ClassNameDictionary dictionary) {
+        HeapHistogram.Builder builder = new HeapHistogram.Builder(dictionary);
+        heapHisto(builder);
+        return builder.build();
+    }
+
+    private void heapHisto(HeapHistoParser.Visitor visitor) {
         VirtualMachine vm = null;
         try {
             vm = VirtualMachine.attach(String.valueOf(pid));
-            return processHeapHisto(vm);
+            processHeapHisto(vm, visitor);
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
@@ -71,47 +82,23 @@ public class HeapHistoBeanHandle {
         }
     }
 
-    private List<HistogramBean> processHeapHisto(VirtualMachine vm) throws Exception {
+    private void processHeapHisto(VirtualMachine vm, HeapHistoParser.Visitor visitor) throws Exception {
         if (isHotSpotVm()) {
-            return this.getHistogramBeans(vm);
+            readHistogram(vm, visitor);
         } else {
             throw new RuntimeException("support HotSpot Virtual Machine only");
         }
     }
 
-    private List<HistogramBean> getHistogramBeans(VirtualMachine vm) throws Exception {
+    private void readHistogram(VirtualMachine vm, HeapHistoParser.Visitor visitor) throws Exception {
         try (InputStream inputStream = ((HotSpotVirtualMachine) vm).heapHisto(this.param)) {
-            final String heapHisto = FileUtil.read(inputStream);
-            return parse(heapHisto);
+            HeapHistoParser.parse(inputStream, visitor);
         } catch (IOException e) {
             logger.info("get Heap Histo error", e);
             throw e;
         }
     }
 
-    private List<HistogramBean> parse(final String histogram) {
-        final Matcher matcher = PATTERN.matcher("");
-        final String[] lines = histogram.split("\\n");
-        final List<HistogramBean> entries = new ArrayList<>(lines.length);
-
-        for (final String line : lines) {
-            HistogramBean histogramBean = parseHistogramBean(matcher, line);
-            if (histogramBean != null) {
-                entries.add(histogramBean);
-            }
-        }
-
-        return entries;
-    }
-
-    private HistogramBean parseHistogramBean(Matcher matcher, String line) {
-        matcher.reset(line);
-        if (matcher.matches()) {
-            return new HistogramBean(matcher.group(COUNT_INDEX), matcher.group(BYTES_INDEX), matcher.group(CLASSNAME_INDEX));
-        }
-        return null;
-    }
-
     private boolean isHotSpotVm() {
         String vmName = System.getProperty("java.vm.name");
         return !Strings.isNullOrEmpty(vmName) && vmName.toLowerCase().contains("hotspot");
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.commands.heapHisto;
+
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * heap histo的二进制编码，一组记录由一个全量记录和若干个相对前一条记录的增量记录组成
+ * <p>
+ * 记录格式：version, type, [baseMinute], 新出现的类名(id, name)列表, 条目列表；
+ * 条目按类id升序，id记录与前一条的差值，全量记录保存实际值，增量记录保存zigzag编码的差值，数字都使用varint编码
+ */
+class HeapHistoCodec {
+
+    private static final byte VERSION = 1;
+
+    static final byte TYPE_FULL = 0;
+
+    static final byte TYPE_DELTA = 1;
+
+    /**
+     * @param namedIds 本组记录中已经写过类名的id，会被重置为本条记录中的id
+     */
+    static byte[] encodeFull(HeapHistogram histogram, BitSet namedIds) {
+        Output out = new Output();
+        out.write(VERSION);
+        out.write(TYPE_FULL);
+
+        namedIds.clear();
+        out.writeVarLong(histogram.size());
+        int lastId = 0;
+        for (int i = 0; i < histogram.size(); ++i) {
+            int id = histogram.getClassId(i);
+            out.writeVarLong(id - lastId);
+            out.writeString(histogram.getClassName(i));
+            namedIds.set(id);
+            lastId = id;
+        }
+
+        out.writeVarLong(histogram.size());
+        lastId = 0;
+        for (int i = 0; i < histogram.size(); ++i) {
+            int id = histogram.getClassId(i);
+            out.writeVarLong(id - lastId);
+            out.writeVarLong(histogram.getCount(i));
+            out.writeVarLong(histogram.getBytes(i));
+            lastId = id;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param namedIds 本组记录中已经写过类名的id，新出现的id会被加入
+     */
+    static byte[] encodeDelta(long baseMinute, HeapHistogram base, HeapHistogram current, BitSet namedIds) {
+        Output out = new Output();
+        out.write(VERSION);
+        out.write(TYPE_DELTA);
+        out.writeVarLong(baseMinute);
+
+        int newNames = 0;
+        for (int i = 0; i < current.size(); ++i) {
+            if (!namedIds.get(current.getClassId(i))) {
+                ++newNames;
+            }
+        }
+        out.writeVarLong(newNames);
+        int lastId = 0;
+        for (int i = 0; i < current.size(); ++i) {
+            int id = current.getClassId(i);
+            if (!namedIds.get(id)) {
+                out.writeVarLong(id - lastId);
+                out.writeString(current.getClassName(i));
+                namedIds.set(id);
+                lastId = id;
+            }
+        }
+
+        Output entries = new Output();
+        int entryCount = 0;
+        lastId = 0;
+        int i = 0;
+        int j = 0;
+        while (i < base.size() || j < current.size()) {
+            int baseId = i < base.size() ? base.getClassId(i) : Integer.MAX_VALUE;
+            int currentId = j < current.size() ? current.getClassId(j) : Integer.MAX_VALUE;
+            int id;
+            long countDelta;
+            long bytesDelta;
+            if (baseId < currentId) {
+                id = baseId;
+                countDelta = -base.getCount(i);
+                bytesDelta = -base.getBytes(i);
+                ++i;
+            } else if (currentId < baseId) {
+                id = currentId;
+                countDelta = current.getCount(j);
+                bytesDelta = current.getBytes(j);
+                ++j;
+            } else {
+                id = currentId;
+                countDelta = current.getCount(j) - base.getCount(i);
+                bytesDelta = current.getBytes(j) - base.getBytes(i);
+                ++i;
+                ++j;
+            }
+
+            if (countDelta != 0 || bytesDelta != 0) {
+                entries.writeVarLong(id - lastId);
+                entries.writeVarLong(zigzag(countDelta));
+                entries.writeVarLong(zigzag(bytesDelta));
+                lastId = id;
+                ++entryCount;
+            }
+        }
+        out.writeVarLong(entryCount);
+        out.write(entries);
+        return out.toByteArray();
+    }
+
+    static Record decode(byte[] data) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(data);
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unknown heap histo record version " + version);
+            }
+            byte type = in.get();
+            long baseMinute = type == TYPE_DELTA ? readVarLong(in) : -1;
+
+            int nameCount = (int) readVarLong(in);
+            int[] nameIds = new int[nameCount];
+            String[] names = new String[nameCount];
+            int lastId = 0;
+            for (int i = 0; i < nameCount; ++i) {
+                lastId += (int) readVarLong(in);
+                nameIds[i] = lastId;
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                in.get(bytes);
+                names[i] = new String(bytes, Charsets.UTF_8);
+            }
+
+            int entryCount = (int) readVarLong(in);
+            int[] ids = new int[entryCount];
+            long[] counts = new long[entryCount];
+            long[] bytes = new long[entryCount];
+            lastId = 0;
+            for (int i = 0; i < entryCount; ++i) {
+                lastId += (int) readVarLong(in);
+                ids[i] = lastId;
+                if (type == TYPE_DELTA) {
+                    counts[i] = unzigzag(readVarLong(in));
+                    bytes[i] = unzigzag(readVarLong(in));
+                } else {
+                    counts[i] = readVarLong(in);
+                    bytes[i] = readVarLong(in);
+                }
+            }
+            return new Record(type, baseMinute, nameIds, names, ids, counts, bytes);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated heap histo record", e);
+        }
+    }
+
+    /**
+     * 依次应用一组记录，第一条必须是全量记录
+     */
+    static HeapHistogram replay(Deque<Record> records) {
+        Iterator<Record> iterator = records.iterator();
+        Record first = iterator.next();
+        if (first.type != TYPE_FULL) {
+            throw new IllegalArgumentException("heap histo records must start with a full record");
+        }
+
+        String[] nameById = new String[0];
+        nameById = addNames(nameById, first);
+        int[] ids = first.ids;
+        long[] counts = first.counts;
+        long[] bytes = first.bytes;
+        int size = ids.length;
+
+        while (iterator.hasNext()) {
+            Record delta = iterator.next();
+            nameById = addNames(nameById, delta);
+
+            int capacity = size + delta.ids.length;
+            int[] newIds = new int[capacity];
+            long[] newCounts = new long[capacity];
+            long[] newBytes = new long[capacity];
+            int pos = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < delta.ids.length) {
+                int baseId = i < size ? ids[i] : Integer.MAX_VALUE;
+                int deltaId = j < delta.ids.length ? delta.ids[j] : Integer.MAX_VALUE;
+                if (baseId < deltaId) {
+                    newIds[pos] = baseId;
+                    newCounts[pos] = counts[i];
+                    newBytes[pos] = bytes[i];
+                    ++pos;
+                    ++i;
+                } else {
+                    long count = delta.counts[j];
+                    long byteSize = delta.bytes[j];
+                    if (baseId == deltaId) {
+                        count += counts[i];
+                        byteSize += bytes[i];
+                        ++i;
+                    }
+                    if (count != 0 || byteSize != 0) {
+                        newIds[pos] = deltaId;
+                        newCounts[pos] = count;
+                        newBytes[pos] = byteSize;
+                        ++pos;
+                    }
+                    ++j;
+                }
+            }
+            ids = newIds;
+            counts = newCounts;
+            bytes = newBytes;
+            size = pos;
+        }
+
+        String[] names = new String[size];
+        for (int i = 0; i < size; ++i) {
+            if (ids[i] >= nameById.length || nameById[ids[i]] == null) {
+                throw new IllegalArgumentException("heap histo class name not found, id " + ids[i]);
+            }
+            names[i] = nameById[ids[i]];
+        }
+        return new HeapHistogram(Arrays.copyOf(ids, size), names, Arrays.copyOf(counts, size), Arrays.copyOf(bytes, size));
+    }
+
+    private static String[] addNames(String[] nameById, Record record) {
+        for (int i = 0; i < record.nameIds.length; ++i) {
+            int id = record.nameIds[i];
+            if (id >= nameById.length) {
+                nameById = Arrays.copyOf(nameById, Math.max(id + 1, nameById.length * 2));
+            }
+            nameById[id] = record.names[i];
+        }
+        return nameById;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    static class Record {
+        private final byte type;
+        private final long baseMinute;
+        private final int[] nameIds;
+        private final String[] names;
+        private final int[] ids;
+        private final long[] counts;
+        private final long[] bytes;
+
+        private Record(byte type, long baseMinute, int[] nameIds, String[] names, int[] ids, long[] counts, long[] bytes) {
+            this.type = type;
+            this.baseMinute = baseMinute;
+            this.nameIds = nameIds;
+            this.names = names;
+            this.ids = ids;
+            this.counts = counts;
+            this.bytes = bytes;
+        }
+
+        boolean isFull() {
+            return type == TYPE_FULL;
+        }
+
+        long getBaseMinute() {
+            return baseMinute;
+        }
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(1024);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(Charsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void write(Output other) {
+            write(other.buf, 0, other.count);
+        }
+    }
+}
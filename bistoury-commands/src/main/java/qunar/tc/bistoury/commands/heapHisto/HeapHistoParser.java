@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.commands.heapHisto;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 流式解析heap histo的输出，直接按字节读取，不需要先把整个输出读成字符串再按行拆分和正则匹配
+ * <p>
+ * 格式为"   1:    instances    bytes  class name"，不符合格式的行(表头、Total等)直接跳过
+ */
+class HeapHistoParser {
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    interface Visitor {
+        void visit(long count, long bytes, String className);
+    }
+
+    static void parse(InputStream inputStream, Visitor visitor) throws IOException {
+        byte[] buffer = new byte[8192];
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        boolean tooLong = false;
+
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            for (int i = 0; i < read; ++i) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    if (!tooLong) {
+                        parseLine(line, lineLength, visitor);
+                    }
+                    lineLength = 0;
+                    tooLong = false;
+                } else if (lineLength < line.length) {
+                    line[lineLength++] = b;
+                } else if (line.length < MAX_LINE_LENGTH) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                    line[lineLength++] = b;
+                } else {
+                    tooLong = true;
+                }
+            }
+        }
+
+        if (lineLength > 0 && !tooLong) {
+            parseLine(line, lineLength, visitor);
+        }
+    }
+
+    private static void parseLine(byte[] line, int length, Visitor visitor) {
+        while (length > 0 && (line[length - 1] == '\r' || isSpace(line[length - 1]))) {
+            --length;
+        }
+
+        int pos = skipSpaces(line, 0, length);
+        int numEnd = skipDigits(line, pos, length);
+        if (numEnd == pos || numEnd >= length || line[numEnd] != ':') {
+            return;
+        }
+
+        int countStart = skipSpaces(line, numEnd + 1, length);
+        int countEnd = skipDigits(line, countStart, length);
+        if (countStart == numEnd + 1 || countEnd == countStart) {
+            return;
+        }
+
+        int bytesStart = skipSpaces(line, countEnd, length);
+        int bytesEnd = skipDigits(line, bytesStart, length);
+        if (bytesStart == countEnd || bytesEnd == bytesStart) {
+            return;
+        }
+
+        int nameStart = skipSpaces(line, bytesEnd, length);
+        if (nameStart == bytesEnd || nameStart >= length) {
+            return;
+        }
+
+        visitor.visit(parseLong(line, countStart, countEnd), parseLong(line, bytesStart, bytesEnd),
+                new String(line, nameStart, length - nameStart, Charsets.UTF_8));
+    }
+
+    private static int skipSpaces(byte[] line, int pos, int length) {
+        while (pos < length && isSpace(line[pos])) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private static int skipDigits(byte[] line, int pos, int length) {
+        while (pos < length && line[pos] >= '0' && line[pos] <= '9') {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private static long parseLong(byte[] line, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; ++i) {
+            result = result * 10 + (line[i] - '0');
+        }
+        return result;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
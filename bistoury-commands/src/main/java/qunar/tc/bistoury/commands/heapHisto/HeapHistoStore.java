@@ -19,6 +19,7 @@ package qunar.tc.bistoury.commands.heapHisto;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.bistoury.agent.common.kv.KvDb;
@@ -26,10 +27,23 @@ import qunar.tc.bistoury.agent.common.kv.KvDbs;
 import qunar.tc.bistoury.common.DateUtil;
 import qunar.tc.bistoury.common.JacksonSerializer;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 每分钟的heap histo以二进制编码保存，每组记录以一条全量记录开始，之后每分钟只保存相对前一分钟的增量
+ * <p>
+ * 类名在每组记录中只保存一次；读取时从目标分钟沿增量链回溯到全量记录再依次应用，旧版本保存的json格式仍然可以读取
+ *
  * @author: leix.xie
  * @date: 2019/4/1 10:45
  * @describe：
@@ -37,9 +51,27 @@ import java.util.List;
 public class HeapHistoStore {
     private static final Logger logger = LoggerFactory.getLogger(HeapHistoStore.class);
     private static final String PREFIX = "hh-";
+    private static final String VALUE_PREFIX = "hh2:";
+    private static final int MAX_DELTA_RECORDS = 30;
+    //同一组记录的时间跨度不能太长，避免全量记录先于增量记录过期
+    private static final long MAX_CHAIN_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_CHAIN_LENGTH = 64;
+    private static final BaseEncoding ENCODING = BaseEncoding.base64();
     private static final KvDb KV_DB = KvDbs.getKvDb();
     private static final HeapHistoStore INSTANCE = new HeapHistoStore();
 
+    private final ClassNameDictionary dictionary = new ClassNameDictionary();
+
+    private final BitSet namedIds = new BitSet();
+
+    private HeapHistogram previous;
+
+    private long previousMinute = -1;
+
+    private long chainStartMinute = -1;
+
+    private int deltaRecords = 0;
+
     private HeapHistoStore() {
 
     }
@@ -48,14 +80,36 @@ public class HeapHistoStore {
         return INSTANCE;
     }
 
-    public void store(List<HistogramBean> histogramBeans) {
+    public ClassNameDictionary getClassNameDictionary() {
+        return dictionary;
+    }
+
+    public synchronized void store(HeapHistogram histogram) {
         try {
-            if (!histogramBeans.isEmpty()) {
-                String currentMinute = String.valueOf(DateUtil.getMinute());
-                KV_DB.put(addPrefix(currentMinute), JacksonSerializer.serialize(histogramBeans));
-                logger.debug("store heap histo dump, time: {}, heap histo: {}", currentMinute, histogramBeans);
+            if (histogram.size() == 0) {
+                return;
+            }
+
+            long currentMinute = DateUtil.getMinute();
+            byte[] data;
+            if (previous == null
+                    || currentMinute <= previousMinute
+                    || deltaRecords >= MAX_DELTA_RECORDS
+                    || currentMinute - chainStartMinute > MAX_CHAIN_MILLIS) {
+                data = HeapHistoCodec.encodeFull(histogram, namedIds);
+                chainStartMinute = currentMinute;
+                deltaRecords = 0;
+            } else {
+                data = HeapHistoCodec.encodeDelta(previousMinute, previous, histogram, namedIds);
+                ++deltaRecords;
             }
+
+            KV_DB.put(addPrefix(String.valueOf(currentMinute)), VALUE_PREFIX + ENCODING.encode(data));
+            previous = histogram;
+            previousMinute = currentMinute;
+            logger.debug("store heap histo dump, time: {}, classes: {}, bytes: {}", currentMinute, histogram.size(), data.length);
         } catch (Throwable e) {
+            previous = null;
             logger.error("store heap histo dump error", e);
         }
     }
@@ -66,12 +120,102 @@ public class HeapHistoStore {
         if (Strings.isNullOrEmpty(res)) {
             return Collections.emptyList();
         }
-        List<HistogramBean> histogramBeans = JacksonSerializer.deSerialize(res, new TypeReference<List<HistogramBean>>() {
+        if (!res.startsWith(VALUE_PREFIX)) {
+            return deserializeJson(res);
+        }
+
+        HeapHistogram histogram = load(minute, res);
+        return histogram == null ? Collections.<HistogramBean>emptyList() : histogram.toBeans();
+    }
+
+    /**
+     * 两个时间点之间占用内存增长最多的类，按增长量降序
+     */
+    public List<HistogramDiffBean> diff(long beforeTimestamp, long afterTimestamp, int top) {
+        HeapHistogram before = load(DateUtil.transformToMinute(beforeTimestamp));
+        HeapHistogram after = load(DateUtil.transformToMinute(afterTimestamp));
+        if (before == null || after == null || top <= 0) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Integer> beforeIndex = new HashMap<>(before.size() * 2);
+        for (int i = 0; i < before.size(); ++i) {
+            beforeIndex.put(before.getClassName(i), i);
+        }
+
+        PriorityQueue<HistogramDiffBean> queue = new PriorityQueue<>(top, BYTES_DELTA_ASC);
+        for (int i = 0; i < after.size(); ++i) {
+            Integer index = beforeIndex.get(after.getClassName(i));
+            long beforeCount = index == null ? 0 : before.getCount(index);
+            long beforeBytes = index == null ? 0 : before.getBytes(index);
+            long growth = after.getBytes(i) - beforeBytes;
+            if (growth <= 0 || (queue.size() >= top && growth <= queue.peek().getBytesDelta())) {
+                continue;
+            }
+
+            queue.add(new HistogramDiffBean(after.getClassName(i), beforeCount, beforeBytes, after.getCount(i), after.getBytes(i)));
+            if (queue.size() > top) {
+                queue.poll();
+            }
+        }
+
+        List<HistogramDiffBean> result = new ArrayList<>(queue);
+        Collections.sort(result, Collections.reverseOrder(BYTES_DELTA_ASC));
+        return result;
+    }
+
+    private HeapHistogram load(long minute) {
+        String value = KV_DB.get(addPrefix(String.valueOf(minute)));
+        if (Strings.isNullOrEmpty(value)) {
+            return null;
+        }
+        if (!value.startsWith(VALUE_PREFIX)) {
+            return HeapHistogram.fromBeans(deserializeJson(value));
+        }
+        return load(minute, value);
+    }
+
+    private HeapHistogram load(long minute, String value) {
+        try {
+            Deque<HeapHistoCodec.Record> records = new ArrayDeque<>();
+            long key = minute;
+            for (int i = 0; i < MAX_CHAIN_LENGTH; ++i) {
+                if (i > 0) {
+                    value = KV_DB.get(addPrefix(String.valueOf(key)));
+                }
+                if (Strings.isNullOrEmpty(value) || !value.startsWith(VALUE_PREFIX)) {
+                    logger.warn("heap histo base record missing, minute: {}, base: {}", minute, key);
+                    return null;
+                }
+
+                HeapHistoCodec.Record record = HeapHistoCodec.decode(ENCODING.decode(value.substring(VALUE_PREFIX.length())));
+                records.addFirst(record);
+                if (record.isFull()) {
+                    return HeapHistoCodec.replay(records);
+                }
+                key = record.getBaseMinute();
+            }
+            logger.warn("heap histo record chain too long, minute: {}", minute);
+            return null;
+        } catch (IllegalArgumentException e) {
+            logger.error("decode heap histo error, minute: {}", minute, e);
+            return null;
+        }
+    }
+
+    private List<HistogramBean> deserializeJson(String value) {
+        return JacksonSerializer.deSerialize(value, new TypeReference<List<HistogramBean>>() {
         });
-        return histogramBeans;
     }
 
     private String addPrefix(final String key) {
         return PREFIX + key;
     }
+
+    private static final Comparator<HistogramDiffBean> BYTES_DELTA_ASC = new Comparator<HistogramDiffBean>() {
+        @Override
+        public int compare(HistogramDiffBean a, HistogramDiffBean b) {
+            return Long.compare(a.getBytesDelta(), b.getBytesDelta());
+        }
+    };
 }
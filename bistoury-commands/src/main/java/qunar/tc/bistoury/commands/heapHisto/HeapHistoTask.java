@@ -58,12 +58,18 @@ public class HeapHistoTask implements Task {
 
     private final long selectTimestamp;
 
+    private final long compareTimestamp;
+
+    private final int top;
+
     private volatile ListenableFuture<Integer> future;
 
-    public HeapHistoTask(String id, int pid, final long selectTimestamp, final String param, ResponseHandler handler, long maxRunningMs) {
+    public HeapHistoTask(String id, int pid, final long selectTimestamp, final long compareTimestamp, final int top, final String param, ResponseHandler handler, long maxRunningMs) {
         this.id = id;
         this.pid = pid;
         this.selectTimestamp = selectTimestamp;
+        this.compareTimestamp = compareTimestamp;
+        this.top = top;
         this.param = param;
         this.handler = handler;
         this.maxRunningMs = maxRunningMs;
@@ -75,6 +81,11 @@ public class HeapHistoTask implements Task {
             @Override
             public Integer call() throws Exception {
                 try {
+                    if (selectTimestamp > 0 && compareTimestamp > 0) {
+                        handlerSuccess("heapHistoDiff", HEAPHISTO_STORE.diff(selectTimestamp, compareTimestamp, top));
+                        return null;
+                    }
+
                     List<HistogramBean> histogramBeans;
                     if (selectTimestamp > 0) {
                         histogramBeans = HEAPHISTO_STORE.getHistogramBean(selectTimestamp);
@@ -82,7 +93,7 @@ public class HeapHistoTask implements Task {
                         HeapHistoBeanHandle heapHistoBeanHandle = new HeapHistoBeanHandle(param, pid);
                         histogramBeans = heapHistoBeanHandle.heapHisto();
                     }
-                    handlerSuccess(histogramBeans);
+                    handlerSuccess("heapHisto", histogramBeans);
                 } catch (Exception e) {
                     logger.error("get heap histo error", e);
                     handlerError("get heap histo error, " + e.getClass().getName() + ", " + e.getMessage());
@@ -93,9 +104,9 @@ public class HeapHistoTask implements Task {
         return future;
     }
 
-    private void handlerSuccess(Object data) {
+    private void handlerSuccess(String type, Object data) {
         Map<String, Object> result = new HashMap<>();
-        result.put("type", "heapHisto");
+        result.put("type", type);
         result.put("code", 0);
         result.put("data", data);
         handlerResult(result);
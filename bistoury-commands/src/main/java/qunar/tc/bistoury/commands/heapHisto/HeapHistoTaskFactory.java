@@ -39,6 +39,8 @@ public class HeapHistoTaskFactory implements TaskFactory<HeapHistoCommand> {
 
     private static final String NAME = "heapHisto";
 
+    private static final int DEFAULT_DIFF_TOP = 50;
+
     @Override
     public Set<Integer> codes() {
         return ImmutableSet.of(CommandCode.REQ_TYPE_HOST_HEAP_HISTO.getCode());
@@ -53,9 +55,11 @@ public class HeapHistoTaskFactory implements TaskFactory<HeapHistoCommand> {
     public Task create(RemotingHeader header, HeapHistoCommand command, ResponseHandler handler) {
         final String param = command.getParam();
         final long selectTimestamp = command.getTimestamp();
+        final long compareTimestamp = command.getCompareTimestamp() == null ? 0 : command.getCompareTimestamp();
+        final int top = command.getTop() == null ? DEFAULT_DIFF_TOP : command.getTop();
         int pid = Integer.valueOf(command.getPid());
         logger.info("get heap histo command: {}", command);
-        HeapHistoTask task = new HeapHistoTask(header.getId(), pid, selectTimestamp, param, handler, header.getMaxRunningMs());
+        HeapHistoTask task = new HeapHistoTask(header.getId(), pid, selectTimestamp, compareTimestamp, top, param, handler, header.getMaxRunningMs());
         return task;
     }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.commands.heapHisto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 以基本类型数组保存的heap histo，条目按类id升序排列
+ * <p>
+ * 同名的类(比如被不同classloader加载)合并为一条
+ */
+public class HeapHistogram {
+
+    static final HeapHistogram EMPTY = new HeapHistogram(new int[0], new String[0], new long[0], new long[0]);
+
+    private final int[] classIds;
+
+    private final String[] classNames;
+
+    private final long[] counts;
+
+    private final long[] bytes;
+
+    HeapHistogram(int[] classIds, String[] classNames, long[] counts, long[] bytes) {
+        this.classIds = classIds;
+        this.classNames = classNames;
+        this.counts = counts;
+        this.bytes = bytes;
+    }
+
+    public int size() {
+        return classIds.length;
+    }
+
+    public int getClassId(int index) {
+        return classIds[index];
+    }
+
+    public String getClassName(int index) {
+        return classNames[index];
+    }
+
+    public long getCount(int index) {
+        return counts[index];
+    }
+
+    public long getBytes(int index) {
+        return bytes[index];
+    }
+
+    /**
+     * 占用内存最多的n个类，保持类id升序
+     */
+    public HeapHistogram topByBytes(int n) {
+        if (size() <= n) {
+            return this;
+        }
+        if (n <= 0) {
+            return EMPTY;
+        }
+
+        long[] sorted = bytes.clone();
+        Arrays.sort(sorted);
+        long threshold = sorted[sorted.length - n];
+        int equalsAllowed = n;
+        for (long value : bytes) {
+            if (value > threshold) {
+                --equalsAllowed;
+            }
+        }
+
+        int[] newIds = new int[n];
+        String[] newNames = new String[n];
+        long[] newCounts = new long[n];
+        long[] newBytes = new long[n];
+        int pos = 0;
+        for (int i = 0; i < size(); ++i) {
+            boolean selected = bytes[i] > threshold;
+            if (!selected && bytes[i] == threshold && equalsAllowed > 0) {
+                --equalsAllowed;
+                selected = true;
+            }
+            if (selected) {
+                newIds[pos] = classIds[i];
+                newNames[pos] = classNames[i];
+                newCounts[pos] = counts[i];
+                newBytes[pos] = bytes[i];
+                ++pos;
+            }
+        }
+        return new HeapHistogram(newIds, newNames, newCounts, newBytes);
+    }
+
+    /**
+     * 按占用内存降序转换为bean
+     */
+    public List<HistogramBean> toBeans() {
+        List<HistogramBean> beans = new ArrayList<>(size());
+        for (int i = 0; i < size(); ++i) {
+            beans.add(new HistogramBean(counts[i], bytes[i], classNames[i]));
+        }
+        Collections.sort(beans, new Comparator<HistogramBean>() {
+            @Override
+            public int compare(HistogramBean a, HistogramBean b) {
+                return Long.compare(b.getBytes(), a.getBytes());
+            }
+        });
+        return beans;
+    }
+
+    /**
+     * 旧格式数据没有类id，以下标作为id
+     */
+    static HeapHistogram fromBeans(List<HistogramBean> beans) {
+        int size = beans.size();
+        int[] ids = new int[size];
+        String[] names = new String[size];
+        long[] counts = new long[size];
+        long[] bytes = new long[size];
+        for (int i = 0; i < size; ++i) {
+            HistogramBean bean = beans.get(i);
+            ids[i] = i;
+            names[i] = bean.getClassName();
+            counts[i] = bean.getCount();
+            bytes[i] = bean.getBytes();
+        }
+        return new HeapHistogram(ids, names, counts, bytes);
+    }
+
+    /**
+     * 解析时按类id直接累加到数组中
+     */
+    static class Builder implements HeapHistoParser.Visitor {
+
+        private final ClassNameDictionary dictionary;
+
+        private String[] names = new String[1024];
+
+        private long[] counts = new long[1024];
+
+        private long[] bytes = new long[1024];
+
+        private int size = 0;
+
+        private int maxId = -1;
+
+        Builder(ClassNameDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public void visit(long count, long bytes, String className) {
+            int id = dictionary.getId(className);
+            ensureCapacity(id + 1);
+            if (names[id] == null) {
+                names[id] = className;
+                ++size;
+            }
+            this.counts[id] += count;
+            this.bytes[id] += bytes;
+            maxId = Math.max(maxId, id);
+        }
+
+        HeapHistogram build() {
+            int[] resultIds = new int[size];
+            String[] resultNames = new String[size];
+            long[] resultCounts = new long[size];
+            long[] resultBytes = new long[size];
+            int pos = 0;
+            for (int id = 0; id <= maxId; ++id) {
+                if (names[id] != null) {
+                    resultIds[pos] = id;
+                    resultNames[pos] = names[id];
+                    resultCounts[pos] = counts[id];
+                    resultBytes[pos] = bytes[id];
+                    ++pos;
+                }
+            }
+            return new HeapHistogram(resultIds, resultNames, resultCounts, resultBytes);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > names.length) {
+                int newLength = Math.max(capacity, names.length * 2);
+                names = Arrays.copyOf(names, newLength);
+                counts = Arrays.copyOf(counts, newLength);
+                bytes = Arrays.copyOf(bytes, newLength);
+            }
+        }
+    }
+}
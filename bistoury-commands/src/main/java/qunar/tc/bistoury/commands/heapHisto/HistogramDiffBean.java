@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.commands.heapHisto;
+
+/**
+ * 两个时间点之间某个类的实例数和占用内存变化
+ */
+public class HistogramDiffBean {
+    private String className;
+    private long beforeCount;
+    private long beforeBytes;
+    private long afterCount;
+    private long afterBytes;
+
+    public HistogramDiffBean() {
+
+    }
+
+    public HistogramDiffBean(String className, long beforeCount, long beforeBytes, long afterCount, long afterBytes) {
+        this.className = className;
+        this.beforeCount = beforeCount;
+        this.beforeBytes = beforeBytes;
+        this.afterCount = afterCount;
+        this.afterBytes = afterBytes;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public long getBeforeCount() {
+        return beforeCount;
+    }
+
+    public void setBeforeCount(long beforeCount) {
+        this.beforeCount = beforeCount;
+    }
+
+    public long getBeforeBytes() {
+        return beforeBytes;
+    }
+
+    public void setBeforeBytes(long beforeBytes) {
+        this.beforeBytes = beforeBytes;
+    }
+
+    public long getAfterCount() {
+        return afterCount;
+    }
+
+    public void setAfterCount(long afterCount) {
+        this.afterCount = afterCount;
+    }
+
+    public long getAfterBytes() {
+        return afterBytes;
+    }
+
+    public void setAfterBytes(long afterBytes) {
+        this.afterBytes = afterBytes;
+    }
+
+    public long getCountDelta() {
+        return afterCount - beforeCount;
+    }
+
+    public long getBytesDelta() {
+        return afterBytes - beforeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramDiffBean{" +
+                "className='" + className + '\'' +
+                ", beforeCount=" + beforeCount +
+                ", beforeBytes=" + beforeBytes +
+                ", afterCount=" + afterCount +
+                ", afterBytes=" + afterBytes +
+                '}';
+    }
+}
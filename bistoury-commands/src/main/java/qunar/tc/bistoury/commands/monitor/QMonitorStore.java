@@ -27,6 +27,7 @@ import qunar.tc.bistoury.agent.common.util.Response;
 import qunar.tc.bistoury.clientside.common.monitor.MetricType;
 import qunar.tc.bistoury.clientside.common.monitor.MetricsData;
 import qunar.tc.bistoury.clientside.common.monitor.MetricsSnapshot;
+import qunar.tc.bistoury.clientside.common.monitor.MetricsSnapshotCodec;
 import qunar.tc.bistoury.common.DateUtil;
 
 import java.util.*;
@@ -47,6 +48,7 @@ public class QMonitorStore {
     private static final String MERTICS_SNAPSHOT_FORMAT = "{\"name\":\"%s\",\"timestamp\":%d,\"metricsData\":[]}";
     private static final String EMPTY_STRING = "";
     private static final String EMPTY_CHAR = "''";
+    private static final String JSON_PREFIX = "{";
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final int HOUR = (int) TimeUnit.HOURS.toMinutes(1);
 
@@ -66,11 +68,24 @@ public class QMonitorStore {
     }
 
     public void store(MetricsSnapshot snapshot) {
+        try {
+            if (!isEmpty(snapshot.getMetricsData())) {
+                store(snapshot, MetricsSnapshotCodec.encodeToString(snapshot));
+            }
+        } catch (Throwable e) {
+            logger.error("store metrics snapshot error", e);
+        }
+    }
+
+    /**
+     * @param encoded snapshot经过MetricsSnapshotCodec编码后的内容，直接存储，查询时再转成json
+     */
+    public void store(MetricsSnapshot snapshot, String encoded) {
         try {
             String currentMinute = String.valueOf(DateUtil.transformToMinute(snapshot.getTimestamp()));
             if (!isEmpty(snapshot.getMetricsData())) {
                 KV_DB.put(LATEST_TIME, currentMinute);
-                KV_DB.put(addPrefix(currentMinute), MAPPER.writeValueAsString(snapshot));
+                KV_DB.put(addPrefix(currentMinute), encoded);
             }
         } catch (Throwable e) {
             logger.error("store metrics snapshot error", e);
@@ -91,7 +106,15 @@ public class QMonitorStore {
         if (Strings.isNullOrEmpty(metric)) {
             return handlerError("latest", -2, "监控数据保存失败，跳过这个点");
         }
-        return handlerSuccess("latest", metric);
+        if (metric.startsWith(JSON_PREFIX)) {
+            return handlerSuccess("latest", metric);
+        }
+        try {
+            return handlerSuccess("latest", MAPPER.writeValueAsString(MetricsSnapshotCodec.decodeFromString(metric)));
+        } catch (Exception e) {
+            logger.error("监控数据解析错误", e);
+            return handlerError("latest", -2, "监控数据解析失败，跳过这个点");
+        }
     }
 
     public Response reportList(String name, Long startTime, Long endTime) {
@@ -230,10 +253,13 @@ public class QMonitorStore {
     private MetricsSnapshot getMetricsSnapshot(final String name, long key) {
         try {
             String metric = KV_DB.get(addPrefix(key));
-            if (!Strings.isNullOrEmpty(metric)) {
+            if (Strings.isNullOrEmpty(metric)) {
+                return new MetricsSnapshot(name, key, Collections.EMPTY_LIST);
+            } else if (metric.startsWith(JSON_PREFIX)) {
+                //升级前按json存储的数据
                 return MAPPER.readValue(metric, MetricsSnapshot.class);
             } else {
-                return new MetricsSnapshot(name, key, Collections.EMPTY_LIST);
+                return MetricsSnapshotCodec.decodeFromString(metric);
             }
         } catch (Exception e) {
             throw new RuntimeException("rocks db 数据反序列化失败");
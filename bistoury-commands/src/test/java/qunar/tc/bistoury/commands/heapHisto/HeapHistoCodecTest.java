@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.commands.heapHisto;
+
+import com.google.common.base.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+
+public class HeapHistoCodecTest {
+
+    private static final String HISTO = "\n" +
+            " num     #instances         #bytes  class name\n" +
+            "----------------------------------------------\n" +
+            "   1:         46588        5961832  [C\n" +
+            "   2:          7281        1203768  [B\n" +
+            "   3:         46279        1110696  java.lang.String\n" +
+            "   4:            10            400  java.lang.String\n" +
+            "12345:           1             16  sun.misc.Unsafe (java.base@11.0.2)\r\n" +
+            "Total        100159        8276712\n";
+
+    @Test
+    public void testParse() throws IOException {
+        HeapHistogram histogram = parse(HISTO, new ClassNameDictionary());
+        Assert.assertEquals(4, histogram.size());
+        Assert.assertEquals("[C", histogram.getClassName(0));
+        Assert.assertEquals(5961832, histogram.getBytes(0));
+        Assert.assertEquals("java.lang.String", histogram.getClassName(2));
+        Assert.assertEquals(46289, histogram.getCount(2));
+        Assert.assertEquals(1111096, histogram.getBytes(2));
+        Assert.assertEquals("sun.misc.Unsafe (java.base@11.0.2)", histogram.getClassName(3));
+
+        HeapHistogram top = histogram.topByBytes(2);
+        Assert.assertEquals(2, top.size());
+        Assert.assertEquals("[C", top.getClassName(0));
+        Assert.assertEquals("[B", top.getClassName(1));
+    }
+
+    @Test
+    public void testDeltaReplay() throws IOException {
+        ClassNameDictionary dictionary = new ClassNameDictionary();
+        HeapHistogram first = parse(" 1: 10 100 a.A\n 2: 20 200 b.B\n 3: 30 300 c.C\n", dictionary);
+        HeapHistogram second = parse(" 1: 10 100 a.A\n 2: 25 260 b.B\n 3: 5 50 d.D\n", dictionary);
+        HeapHistogram third = parse(" 1: 1 10 e.E\n 2: 25 260 b.B\n 3: 30 300 c.C\n", dictionary);
+
+        BitSet namedIds = new BitSet();
+        Deque<HeapHistoCodec.Record> records = new ArrayDeque<>();
+        records.addLast(HeapHistoCodec.decode(HeapHistoCodec.encodeFull(first, namedIds)));
+        records.addLast(HeapHistoCodec.decode(HeapHistoCodec.encodeDelta(1, first, second, namedIds)));
+        assertEquals(second, HeapHistoCodec.replay(records));
+
+        records.addLast(HeapHistoCodec.decode(HeapHistoCodec.encodeDelta(2, second, third, namedIds)));
+        assertEquals(third, HeapHistoCodec.replay(records));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeTruncated() throws IOException {
+        byte[] data = HeapHistoCodec.encodeFull(parse(HISTO, new ClassNameDictionary()), new BitSet());
+        HeapHistoCodec.decode(Arrays.copyOf(data, data.length / 2));
+    }
+
+    private static void assertEquals(HeapHistogram expected, HeapHistogram actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertEquals(expected.getClassId(i), actual.getClassId(i));
+            Assert.assertEquals(expected.getClassName(i), actual.getClassName(i));
+            Assert.assertEquals(expected.getCount(i), actual.getCount(i));
+            Assert.assertEquals(expected.getBytes(i), actual.getBytes(i));
+        }
+    }
+
+    private static HeapHistogram parse(String histo, ClassNameDictionary dictionary) throws IOException {
+        HeapHistogram.Builder builder = new HeapHistogram.Builder(dictionary);
+        HeapHistoParser.parse(new ByteArrayInputStream(histo.getBytes(Charsets.UTF_8)), builder);
+        return builder.build();
+    }
+}
@@ -38,11 +38,19 @@ public class BistouryConstants {
 
     public static final String REQ_DEBUG_SEARCH = "qdebugsearch";
 
+    //断点拿到快照或者被移除时才返回，代替qdebugsearch轮询
+    public static final String REQ_DEBUG_WAIT = "qdebugwait";
+
+    //多次命中的断点保留的最近若干次快照
+    public static final String REQ_DEBUG_SNAPSHOTS = "qdebugsnapshots";
+
     //获取项目发布的分支或TAG
     public static final String REQ_DEBUG_RELEASE_INFO = "qdebugreleaseinfo";
 
     public static final String REQ_MONITOR_ADD = "qmonitoradd";
 
+    public static final String REQ_MONITOR_REMOVE = "qmonitorremove";
+
     public static final String REQ_MONITOR_SNAPSHOT = "qmonitorsnapshot";
 
     public static final String REQ_JAR_INFO = "jarinfo";
@@ -53,6 +61,8 @@ public class BistouryConstants {
 
     public static final String REQ_AGENT_INFO = "agentinfopush";
 
+    public static final String REQ_STARTUP_TIMELINE = "startuptimeline";
+
     public static final String SPY_CLASSNAME = "qunar.tc.bistoury.instrument.spy.BistourySpys1";
 
     // todo: 先这么写吧
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.common;
+
+import java.io.File;
+
+/**
+ * 用文件大小和修改时间标识一个jar包的版本，jar包被替换后两者至少有一个会变化，用来判断缓存是否失效
+ */
+public final class JarIdentity {
+    private final long length;
+    private final long lastModified;
+
+    private JarIdentity(long length, long lastModified) {
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    public static JarIdentity of(String path) {
+        File file = new File(path);
+        return new JarIdentity(file.length(), file.lastModified());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        JarIdentity that = (JarIdentity) o;
+        return length == that.length && lastModified == that.lastModified;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (length ^ (length >>> 32));
+        result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "JarIdentity{" +
+                "length=" + length +
+                ", lastModified=" + lastModified +
+                '}';
+    }
+}
@@ -47,6 +47,14 @@ public class Snapshot {
 
     private String stacktrace;
 
+    //断点上是已经拿到的快照数，环中的快照上是第几次命中
+    private volatile int hits;
+
+    private int maxHits = 1;
+
+    //断点不会再产生新的快照
+    private volatile boolean finished;
+
     private volatile long expireTime;
 
     public Snapshot(String id, String source, int line, long expireTime) {
@@ -119,6 +127,30 @@ public class Snapshot {
     }
 
 
+    public int getHits() {
+        return hits;
+    }
+
+    public void setHits(int hits) {
+        this.hits = hits;
+    }
+
+    public int getMaxHits() {
+        return maxHits;
+    }
+
+    public void setMaxHits(int maxHits) {
+        this.maxHits = maxHits;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+
     public long getExpireTime() {
         return expireTime;
     }
@@ -142,6 +174,9 @@ public class Snapshot {
                 ", fields=" + fields +
                 ", localVariables=" + localVariables +
                 ", stacktrace='" + stacktrace + '\'' +
+                ", hits=" + hits +
+                ", maxHits=" + maxHits +
+                ", finished=" + finished +
                 ", expireTime=" + expireTime +
                 '}';
     }
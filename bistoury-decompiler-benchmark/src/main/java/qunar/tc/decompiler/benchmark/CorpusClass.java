@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+/**
+ * 语料中的一个class文件
+ */
+public final class CorpusClass {
+
+    private final DecompilerCorpus.Group group;
+
+    private final String name;
+
+    private final byte[] bytes;
+
+    CorpusClass(DecompilerCorpus.Group group, String name, byte[] bytes) {
+        this.group = group;
+        this.name = name;
+        this.bytes = bytes;
+    }
+
+    public DecompilerCorpus.Group getGroup() {
+        return group;
+    }
+
+    /**
+     * class的内部名称，如java/util/HashMap
+     */
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return group + ":" + name;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import qunar.tc.decompiler.benchmark.corpus.ControlFlowCorpus;
+import qunar.tc.decompiler.benchmark.corpus.LambdaCorpus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 反编译基准测试使用的语料，每个分组的内容是确定的，可以用{@link #fingerprint(List)}确认两次运行使用的是同一份语料
+ * <p>
+ * JDK和JAVAC分组的字节码取决于运行时的jdk和编译用的javac，其余分组用asm生成，与环境无关
+ */
+public final class DecompilerCorpus {
+
+    public enum Group {
+        /**
+         * 运行时jdk中的大型类
+         */
+        JDK,
+        /**
+         * javac编译的lambda、try-with-resources、字符串switch等
+         */
+        JAVAC,
+        /**
+         * 超大的switch、多层嵌套的try/catch/finally和分支
+         */
+        SYNTHETIC,
+        /**
+         * 模拟kotlinc生成的字节码
+         */
+        KOTLIN_STYLE,
+        /**
+         * 模拟scalac生成的字节码
+         */
+        SCALA_STYLE
+    }
+
+    private static final List<String> JDK_CLASSES = ImmutableList.of(
+            "java/util/HashMap",
+            "java/util/TreeMap",
+            "java/util/concurrent/ConcurrentHashMap",
+            "java/util/regex/Pattern",
+            "java/math/BigInteger",
+            "java/util/Formatter");
+
+    private static final List<Class<?>> JAVAC_CLASSES = ImmutableList.<Class<?>>of(
+            LambdaCorpus.class,
+            ControlFlowCorpus.class);
+
+    private static final int MAX_ANONYMOUS_CLASSES = 64;
+
+    private DecompilerCorpus() {
+    }
+
+    public static List<CorpusClass> load(Group group) {
+        switch (group) {
+            case JDK:
+                return loadJdk();
+            case JAVAC:
+                return loadJavac();
+            case SYNTHETIC:
+                return toCorpus(group, SyntheticCorpus.generateSynthetic());
+            case KOTLIN_STYLE:
+                return toCorpus(group, SyntheticCorpus.generateKotlinStyle());
+            case SCALA_STYLE:
+                return toCorpus(group, SyntheticCorpus.generateScalaStyle());
+            default:
+                throw new IllegalArgumentException("unknown corpus group: " + group);
+        }
+    }
+
+    public static List<CorpusClass> loadAll() {
+        List<CorpusClass> result = new ArrayList<>();
+        for (Group group : Group.values()) {
+            result.addAll(load(group));
+        }
+        return result;
+    }
+
+    /**
+     * 语料的指纹，类名和字节码都参与计算
+     */
+    public static String fingerprint(List<CorpusClass> classes) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (CorpusClass corpusClass : classes) {
+            hasher.putString(corpusClass.getName(), StandardCharsets.UTF_8);
+            hasher.putInt(corpusClass.getBytes().length);
+            hasher.putBytes(corpusClass.getBytes());
+        }
+        return hasher.hash().toString();
+    }
+
+    private static List<CorpusClass> loadJdk() {
+        List<CorpusClass> result = new ArrayList<>();
+        for (String name : JDK_CLASSES) {
+            byte[] bytes = readClass(ClassLoader.getSystemClassLoader(), name);
+            if (bytes == null) {
+                throw new IllegalStateException("jdk class not found: " + name);
+            }
+            result.add(new CorpusClass(Group.JDK, name, bytes));
+        }
+        return result;
+    }
+
+    private static List<CorpusClass> loadJavac() {
+        List<CorpusClass> result = new ArrayList<>();
+        for (Class<?> clazz : JAVAC_CLASSES) {
+            addWithNested(clazz, result);
+        }
+        return result;
+    }
+
+    private static void addWithNested(Class<?> clazz, List<CorpusClass> result) {
+        ClassLoader classLoader = clazz.getClassLoader();
+        String name = clazz.getName().replace('.', '/');
+        result.add(new CorpusClass(Group.JAVAC, name, readClass(classLoader, name)));
+
+        //匿名类没有办法通过反射获取，按照javac的命名规则依次查找
+        for (int i = 1; i <= MAX_ANONYMOUS_CLASSES; ++i) {
+            byte[] bytes = readClass(classLoader, name + "$" + i);
+            if (bytes == null) {
+                break;
+            }
+            result.add(new CorpusClass(Group.JAVAC, name + "$" + i, bytes));
+        }
+
+        Class<?>[] nestedClasses = clazz.getDeclaredClasses();
+        Arrays.sort(nestedClasses, Comparator.comparing(Class::getName));
+        for (Class<?> nested : nestedClasses) {
+            addWithNested(nested, result);
+        }
+    }
+
+    private static byte[] readClass(ClassLoader classLoader, String name) {
+        try (InputStream in = classLoader.getResourceAsStream(name + ".class")) {
+            return in == null ? null : ByteStreams.toByteArray(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("read class fail: " + name, e);
+        }
+    }
+
+    private static List<CorpusClass> toCorpus(Group group, Map<String, byte[]> classes) {
+        List<CorpusClass> result = new ArrayList<>(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            result.add(new CorpusClass(group, entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+}
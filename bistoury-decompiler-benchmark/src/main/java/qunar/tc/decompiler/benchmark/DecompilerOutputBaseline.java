@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * 反编译结果的基线，记录每个分组的语料指纹和每个类反编译结果的sha256
+ * <p>
+ * 调整或并行化反编译器之后用check确认输出没有变化；语料指纹不一致的分组（比如换了jdk）无法比较，会被跳过
+ * <pre>
+ *     java ... DecompilerOutputBaseline record src/test/resources/baseline/decompiled-output.properties
+ *     java ... DecompilerOutputBaseline check src/test/resources/baseline/decompiled-output.properties
+ * </pre>
+ */
+public final class DecompilerOutputBaseline {
+
+    public static final String RESOURCE = "/baseline/decompiled-output.properties";
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private final Map<String, String> digests;
+
+    private DecompilerOutputBaseline(Map<String, String> digests) {
+        this.digests = digests;
+    }
+
+    public static DecompilerOutputBaseline compute(DecompilerCorpus.Group... groups) {
+        Map<String, String> digests = new TreeMap<>();
+        for (DecompilerCorpus.Group group : groups) {
+            List<CorpusClass> classes = DecompilerCorpus.load(group);
+            digests.put(key(group, FINGERPRINT), DecompilerCorpus.fingerprint(classes));
+            for (Map.Entry<String, String> entry : InMemoryDecompiler.decompile(classes, InMemoryDecompiler.options(false)).entrySet()) {
+                digests.put(key(group, entry.getKey()), digest(entry.getValue()));
+            }
+        }
+        return new DecompilerOutputBaseline(digests);
+    }
+
+    public static DecompilerOutputBaseline load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        Map<String, String> digests = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            digests.put(name, properties.getProperty(name));
+        }
+        return new DecompilerOutputBaseline(digests);
+    }
+
+    public static String digest(String source) {
+        return Hashing.sha256().hashString(source, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * 当前语料与基线记录时的语料是否一致，不一致时反编译结果没有可比性
+     */
+    public boolean sameCorpus(DecompilerOutputBaseline other, DecompilerCorpus.Group group) {
+        String fingerprint = digests.get(key(group, FINGERPRINT));
+        return fingerprint != null && fingerprint.equals(other.digests.get(key(group, FINGERPRINT)));
+    }
+
+    /**
+     * 返回与基线不一致的类，包括新增和缺失的类
+     */
+    public List<String> diff(DecompilerOutputBaseline baseline, DecompilerCorpus.Group group) {
+        Map<String, String> actual = select(group);
+        Map<String, String> expected = baseline.select(group);
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            if (!entry.getValue().equals(actual.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        for (String name : actual.keySet()) {
+            if (!expected.containsKey(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    public void store(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Properties.store输出的顺序不固定并且带有时间戳，这里按顺序写出，方便review基线的变化
+        StringBuilder content = new StringBuilder("# generated by DecompilerOutputBaseline, do not edit\n");
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        try (OutputStream out = Files.newOutputStream(path)) {
+            out.write(content.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private Map<String, String> select(DecompilerCorpus.Group group) {
+        String prefix = group.name() + ".";
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && !entry.getKey().equals(key(group, FINGERPRINT))) {
+                result.put(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static String key(DecompilerCorpus.Group group, String name) {
+        return group.name() + "." + name;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !("record".equals(args[0]) || "check".equals(args[0]))) {
+            System.err.println("usage: DecompilerOutputBaseline record|check <file>");
+            System.exit(2);
+        }
+
+        Path path = Paths.get(args[1]);
+        DecompilerOutputBaseline current = compute(DecompilerCorpus.Group.values());
+        if ("record".equals(args[0])) {
+            current.store(path);
+            System.out.println("baseline recorded to " + path);
+            return;
+        }
+
+        DecompilerOutputBaseline baseline;
+        try (InputStream in = Files.newInputStream(path)) {
+            baseline = load(in);
+        }
+        boolean changed = false;
+        for (DecompilerCorpus.Group group : DecompilerCorpus.Group.values()) {
+            if (!current.sameCorpus(baseline, group)) {
+                System.out.println(group + ": corpus changed, skipped");
+                continue;
+            }
+            List<String> diff = current.diff(baseline, group);
+            System.out.println(group + ": " + (diff.isEmpty() ? "ok" : diff.size() + " classes changed " + diff));
+            changed |= !diff.isEmpty();
+        }
+        if (changed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import qunar.tc.decompiler.main.Fernflower;
+import qunar.tc.decompiler.main.extern.IBytecodeProvider;
+import qunar.tc.decompiler.main.extern.IFernflowerLogger;
+import qunar.tc.decompiler.main.extern.IFernflowerPreferences;
+import qunar.tc.decompiler.main.extern.IResultSaver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Manifest;
+
+/**
+ * 在内存中完成反编译，字节码和结果都不落盘，选项与bistoury-commands中的Decompiler保持一致
+ */
+public final class InMemoryDecompiler {
+
+    private static final String PATH_PREFIX = "/corpus/";
+
+    private InMemoryDecompiler() {
+    }
+
+    public static Map<String, Object> defaultOptions() {
+        Map<String, Object> options = new HashMap<>();
+        options.put(IFernflowerPreferences.BANNER, "");
+        options.put(IFernflowerPreferences.DECOMPILE_GENERIC_SIGNATURES, "1");
+        options.put(IFernflowerPreferences.INDENT_STRING, "    ");
+        options.put(IFernflowerPreferences.LOG_LEVEL, "error");
+        options.put(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING, "1");
+        options.put(IFernflowerPreferences.UNIT_TEST_MODE, "1");
+        return options;
+    }
+
+    public static Map<String, Object> options(boolean parallel) {
+        Map<String, Object> options = defaultOptions();
+        options.put(IFernflowerPreferences.PARALLEL_METHOD_PROCESSING, parallel ? "1" : "0");
+        return options;
+    }
+
+    /**
+     * 反编译一组class，返回类名到源码的映射，内部类包含在外部类的源码中
+     */
+    public static Map<String, String> decompile(List<CorpusClass> classes, Map<String, Object> options) {
+        ResultCollector collector = new ResultCollector();
+        Fernflower engine = newEngine(classes, options, collector);
+        try {
+            engine.decompileContext();
+        } finally {
+            engine.clearContext();
+        }
+        return collector.sources;
+    }
+
+    /**
+     * 创建反编译引擎并加入所有class，引擎的上下文绑定在当前线程上，用完之后需要调用{@link Fernflower#clearContext()}
+     */
+    static Fernflower newEngine(List<CorpusClass> classes, Map<String, Object> options, IResultSaver saver) {
+        final Map<String, byte[]> bytecode = new HashMap<>();
+        Fernflower engine = new Fernflower(new IBytecodeProvider() {
+            @Override
+            public byte[] getBytecode(String externalPath, String internalPath) throws IOException {
+                byte[] bytes = bytecode.get(externalPath);
+                if (bytes == null) {
+                    throw new IOException("class not in corpus: " + externalPath);
+                }
+                return bytes;
+            }
+        }, saver, options, SilentLogger.INSTANCE);
+
+        for (CorpusClass corpusClass : classes) {
+            String path = PATH_PREFIX + corpusClass.getName() + ".class";
+            bytecode.put(path, corpusClass.getBytes());
+            engine.addStream(new ByteArrayInputStream(corpusClass.getBytes()), corpusClass.getName() + ".class", path);
+        }
+        return engine;
+    }
+
+    static final class ResultCollector implements IResultSaver {
+        private final Map<String, String> sources = new TreeMap<>();
+
+        @Override
+        public void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping) {
+            sources.put(qualifiedName, content);
+        }
+
+        @Override
+        public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+            sources.put(qualifiedName, content);
+        }
+
+        @Override
+        public void saveFolder(String path) {
+        }
+
+        @Override
+        public void copyFile(String source, String path, String entryName) {
+        }
+
+        @Override
+        public void createArchive(String path, String archiveName, Manifest manifest) {
+        }
+
+        @Override
+        public void saveDirEntry(String path, String archiveName, String entryName) {
+        }
+
+        @Override
+        public void copyEntry(String source, String path, String archiveName, String entry) {
+        }
+
+        @Override
+        public void closeArchive(String path, String archiveName) {
+        }
+    }
+
+    static final class SilentLogger extends IFernflowerLogger {
+        static final SilentLogger INSTANCE = new SilentLogger();
+
+        @Override
+        public void writeMessage(String message, Severity severity) {
+        }
+
+        @Override
+        public void writeMessage(String message, Severity severity, Throwable t) {
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import qunar.tc.decompiler.code.cfg.ControlFlowGraph;
+import qunar.tc.decompiler.main.ClassesProcessor;
+import qunar.tc.decompiler.main.ClassesProcessor.ClassNode;
+import qunar.tc.decompiler.main.DecompilerContext;
+import qunar.tc.decompiler.main.Fernflower;
+import qunar.tc.decompiler.main.collectors.CounterContainer;
+import qunar.tc.decompiler.main.collectors.ImportCollector;
+import qunar.tc.decompiler.main.extern.IFernflowerPreferences;
+import qunar.tc.decompiler.main.rels.LambdaProcessor;
+import qunar.tc.decompiler.modules.code.DeadCodeHelper;
+import qunar.tc.decompiler.modules.decompiler.ClearStructHelper;
+import qunar.tc.decompiler.modules.decompiler.DomHelper;
+import qunar.tc.decompiler.modules.decompiler.ExprProcessor;
+import qunar.tc.decompiler.modules.decompiler.FinallyProcessor;
+import qunar.tc.decompiler.modules.decompiler.SequenceHelper;
+import qunar.tc.decompiler.modules.decompiler.deobfuscator.ExceptionDeobfuscator;
+import qunar.tc.decompiler.modules.decompiler.sforms.SSAConstructorSparseEx;
+import qunar.tc.decompiler.modules.decompiler.sforms.SSAUConstructorSparseEx;
+import qunar.tc.decompiler.modules.decompiler.stats.RootStatement;
+import qunar.tc.decompiler.modules.decompiler.stats.Statement;
+import qunar.tc.decompiler.modules.decompiler.vars.VarProcessor;
+import qunar.tc.decompiler.struct.StructClass;
+import qunar.tc.decompiler.struct.StructMethod;
+import qunar.tc.decompiler.struct.gen.MethodDescriptor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把语料中的方法按照MethodProcessorRunnable#codeToJava的顺序处理到指定阶段，供单个处理步骤的基准测试使用
+ * <p>
+ * 反编译上下文绑定在创建它的线程上，只能在同一个线程中使用
+ */
+final class MethodPipeline implements Closeable {
+
+    private final Fernflower engine;
+
+    private final DecompilerContext rootContext;
+
+    private final List<StructMethod> methods = new ArrayList<>();
+
+    MethodPipeline(List<CorpusClass> classes) {
+        engine = InMemoryDecompiler.newEngine(classes, InMemoryDecompiler.defaultOptions(), new InMemoryDecompiler.ResultCollector());
+        rootContext = DecompilerContext.getCurrentContext();
+        ClassesProcessor classProcessor = DecompilerContext.getClassProcessor();
+        classProcessor.loadClasses(null);
+
+        Map<String, ClassNode> nodes = classProcessor.getMapRootClasses();
+        try {
+            for (CorpusClass corpusClass : classes) {
+                ClassNode node = nodes.get(corpusClass.getName());
+                if (node != null && node.type == ClassNode.CLASS_ROOT) {
+                    enterClass(node.classStruct);
+                    new LambdaProcessor().processClass(node);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (CorpusClass corpusClass : classes) {
+            StructClass cl = DecompilerContext.getStructContext().getClass(corpusClass.getName());
+            for (StructMethod mt : cl.getMethods()) {
+                if (mt.containsCode()) {
+                    methods.add(mt);
+                }
+            }
+        }
+    }
+
+    List<StructMethod> getMethods() {
+        return methods;
+    }
+
+    /**
+     * 重新从字节码读取方法体，之前阶段对指令的修改不会影响下一次处理；每个方法有自己的方法上下文，可以交替处理多个方法
+     */
+    MethodState start(StructMethod mt) {
+        DecompilerContext.setCurrentContext(rootContext);
+        enterClass(mt.getClassStruct());
+        try {
+            mt.releaseResources();
+            mt.expandData();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MethodDescriptor md = MethodDescriptor.parseDescriptor(mt.getDescriptor());
+        VarProcessor varProc = new VarProcessor(mt, md);
+        return new MethodState(mt, md, varProc, rootContext.newMethodContext(varProc, 0));
+    }
+
+    /**
+     * 构造控制流图并清理死代码和异常范围，对应codeToJava中DomHelper.parseGraph之前的部分
+     */
+    static void buildGraph(MethodState state) {
+        state.enter();
+        StructMethod mt = state.mt;
+        ControlFlowGraph graph = new ControlFlowGraph(mt.getInstructionSequence());
+
+        DeadCodeHelper.removeDeadBlocks(graph);
+        graph.inlineJsr(mt);
+        DeadCodeHelper.connectDummyExitBlock(graph);
+        DeadCodeHelper.removeGotos(graph);
+
+        ExceptionDeobfuscator.removeCircularRanges(graph);
+        ExceptionDeobfuscator.restorePopRanges(graph);
+        if (DecompilerContext.getOption(IFernflowerPreferences.REMOVE_EMPTY_RANGES)) {
+            ExceptionDeobfuscator.removeEmptyRanges(graph);
+        }
+        if (DecompilerContext.getOption(IFernflowerPreferences.ENSURE_SYNCHRONIZED_MONITOR)) {
+            DeadCodeHelper.extendSynchronizedRangeToMonitorexit(graph);
+        }
+        if (DecompilerContext.getOption(IFernflowerPreferences.NO_EXCEPTIONS_RETURN)) {
+            DeadCodeHelper.incorporateValueReturns(graph);
+        }
+        ExceptionDeobfuscator.insertEmptyExceptionHandlerBlocks(graph);
+        DeadCodeHelper.mergeBasicBlocks(graph);
+
+        DecompilerContext.getCounterContainer().setCounter(CounterContainer.VAR_COUNTER, mt.getLocalVariables());
+        if (ExceptionDeobfuscator.hasObfuscatedExceptions(graph)) {
+            ExceptionDeobfuscator.handleMultipleEntryExceptionRanges(graph);
+            ExceptionDeobfuscator.insertDummyExceptionHandlerBlocks(graph, mt.getClassStruct().getBytecodeVersion());
+        }
+        state.graph = graph;
+    }
+
+    static void parseGraph(MethodState state) {
+        state.enter();
+        state.root = DomHelper.parseGraph(state.graph);
+    }
+
+    static void processFinally(MethodState state) {
+        state.enter();
+        FinallyProcessor fProc = new FinallyProcessor(state.md, state.varProc);
+        while (fProc.iterateGraph(state.mt, state.root, state.graph)) {
+            state.root = DomHelper.parseGraph(state.graph);
+        }
+    }
+
+    /**
+     * 生成表达式，之后就是StackVarsProcessor和SSA
+     */
+    static void processExpressions(MethodState state) {
+        state.enter();
+        RootStatement root = state.root;
+        DomHelper.removeSynchronizedHandler(root);
+        SequenceHelper.condenseSequences(root);
+        ClearStructHelper.clearStatements(root);
+        new ExprProcessor(state.md, state.varProc).processStatement(root, state.mt.getClassStruct());
+        SequenceHelper.condenseSequences(root);
+    }
+
+    /**
+     * StackVarsProcessor每一轮开始时的SSA构造
+     */
+    static SSAConstructorSparseEx splitVariables(MethodState state) {
+        state.enter();
+        SSAConstructorSparseEx ssa = new SSAConstructorSparseEx();
+        ssa.splitVariables(state.root, state.mt);
+        return ssa;
+    }
+
+    /**
+     * StackVarsProcessor中用来删除无用赋值的SSAU构造
+     */
+    static SSAUConstructorSparseEx splitVariablesUnified(MethodState state) {
+        state.enter();
+        SSAUConstructorSparseEx ssau = new SSAUConstructorSparseEx();
+        ssau.splitVariables(state.root, state.mt);
+        return ssau;
+    }
+
+    /**
+     * 收集所有包含子语句的语句，DomHelper在这些语句上计算强连通分量
+     */
+    static void collectContainers(Statement stat, List<Statement> result) {
+        if (!stat.getStats().isEmpty()) {
+            result.add(stat);
+        }
+        for (Statement child : stat.getStats()) {
+            collectContainers(child, result);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (StructMethod mt : methods) {
+            mt.releaseResources();
+        }
+        DecompilerContext.setCurrentContext(rootContext);
+        engine.clearContext();
+    }
+
+    private static void enterClass(StructClass cl) {
+        ClassNode node = DecompilerContext.getClassProcessor().getMapRootClasses().get(cl.qualifiedName);
+        while (node.parent != null) {
+            node = node.parent;
+        }
+        DecompilerContext.startClass(new ImportCollector(node));
+        DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS, cl);
+    }
+
+    static final class MethodState {
+        final StructMethod mt;
+        final MethodDescriptor md;
+        final VarProcessor varProc;
+        final DecompilerContext context;
+        ControlFlowGraph graph;
+        RootStatement root;
+
+        MethodState(StructMethod mt, MethodDescriptor md, VarProcessor varProc, DecompilerContext context) {
+            this.mt = mt;
+            this.md = md;
+            this.varProc = varProc;
+            this.context = context;
+        }
+
+        void enter() {
+            DecompilerContext.setCurrentContext(context);
+            DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS, mt.getClassStruct());
+        }
+    }
+}
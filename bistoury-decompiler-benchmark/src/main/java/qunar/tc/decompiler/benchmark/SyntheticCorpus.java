@@ -0,0 +1,1176 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用asm生成的语料，输出只取决于这里的代码，不受jdk和编译器版本影响
+ * <p>
+ * kotlin和scala风格的类按照kotlinc和scalac的输出手工构造，覆盖它们与javac不同的字节码模式，
+ * 比如kotlin不在异常范围内的monitorexit、协程状态机，scala的尾递归、$deserializeLambda$和trait的$init$
+ */
+final class SyntheticCorpus implements Opcodes {
+
+    private static final String OBJECT = "java/lang/Object";
+
+    private static final String STRING = "java/lang/String";
+
+    private static final String HUGE_SWITCH = "bench/synthetic/HugeSwitch";
+
+    private static final String TRY_FINALLY = "bench/synthetic/TryFinally";
+
+    private static final String KOTLIN_STYLE = "bench/kotlin/KotlinStyle";
+
+    private static final String KOTLIN_CONTINUATION = "bench/kotlin/KotlinStyle$fetchAll$1";
+
+    private static final String KOTLIN_INTRINSICS = "kotlin/jvm/internal/Intrinsics";
+
+    private static final String SCALA_MODULE = "bench/scala/ScalaStyle$";
+
+    private static final String SCALA_FORWARDER = "bench/scala/ScalaStyle";
+
+    private static final String SCALA_TRAIT = "bench/scala/Shape";
+
+    private static final String SCALA_TRAIT_IMPL = "bench/scala/Square";
+
+    private static final String SCALA_FUNCTION = "scala/runtime/java8/JFunction1$mcII$sp";
+
+    private static final int DENSE_SWITCH_CASES = 256;
+
+    private static final int SPARSE_SWITCH_CASES = 128;
+
+    private static final int BRANCHES = 96;
+
+    private static final int NESTED_LOOPS = 6;
+
+    private static final int[] FINALLY_DEPTHS = {3, 5, 7};
+
+    private SyntheticCorpus() {
+    }
+
+    static Map<String, byte[]> generateSynthetic() {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        result.put(HUGE_SWITCH, hugeSwitch());
+        result.put(TRY_FINALLY, tryFinally());
+        return result;
+    }
+
+    static Map<String, byte[]> generateKotlinStyle() {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        result.put(KOTLIN_STYLE, kotlinStyle());
+        result.put(KOTLIN_CONTINUATION, kotlinContinuation());
+        return result;
+    }
+
+    static Map<String, byte[]> generateScalaStyle() {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        result.put(SCALA_MODULE, scalaModule());
+        result.put(SCALA_FORWARDER, scalaForwarder());
+        result.put(SCALA_TRAIT, scalaTrait());
+        result.put(SCALA_TRAIT_IMPL, scalaTraitImpl());
+        return result;
+    }
+
+    // ------------------------------------------------------------------
+    // synthetic
+    // ------------------------------------------------------------------
+
+    private static byte[] hugeSwitch() {
+        ClassWriter cw = newClass(V1_6, ACC_PUBLIC | ACC_SUPER, HUGE_SWITCH, OBJECT);
+        defaultConstructor(cw, OBJECT);
+        denseSwitch(cw);
+        sparseSwitch(cw);
+        branchy(cw);
+        nestedLoops(cw);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * 连续case的tableswitch，部分case贯穿到下一个case
+     */
+    private static void denseSwitch(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "dense", "(I)I", null, null);
+        mv.visitCode();
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 1);
+
+        Label[] cases = newLabels(DENSE_SWITCH_CASES);
+        Label defaultCase = new Label();
+        Label end = new Label();
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitTableSwitchInsn(0, DENSE_SWITCH_CASES - 1, defaultCase, cases);
+        for (int i = 0; i < DENSE_SWITCH_CASES; ++i) {
+            mv.visitLabel(cases[i]);
+            mv.visitVarInsn(ILOAD, 0);
+            push(mv, i * 31 + 7);
+            mv.visitInsn(IMUL);
+            push(mv, i);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, 1);
+
+            Label skip = new Label();
+            mv.visitVarInsn(ILOAD, 1);
+            push(mv, i);
+            mv.visitJumpInsn(IF_ICMPLE, skip);
+            mv.visitVarInsn(ILOAD, 1);
+            push(mv, i);
+            mv.visitInsn(IXOR);
+            mv.visitVarInsn(ISTORE, 1);
+            mv.visitLabel(skip);
+
+            if (i % 3 != 0 || i == DENSE_SWITCH_CASES - 1) {
+                mv.visitJumpInsn(GOTO, end);
+            }
+        }
+        mv.visitLabel(defaultCase);
+        mv.visitInsn(ICONST_M1);
+        mv.visitVarInsn(ISTORE, 1);
+        mv.visitLabel(end);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 稀疏case的lookupswitch
+     */
+    private static void sparseSwitch(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "sparse", "(I)Ljava/lang/String;", null, null);
+        mv.visitCode();
+        int[] keys = new int[SPARSE_SWITCH_CASES];
+        for (int i = 0; i < SPARSE_SWITCH_CASES; ++i) {
+            keys[i] = i * 7919 - 100000;
+        }
+        Label[] cases = newLabels(SPARSE_SWITCH_CASES);
+        Label defaultCase = new Label();
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitLookupSwitchInsn(defaultCase, keys, cases);
+        for (int i = 0; i < SPARSE_SWITCH_CASES; ++i) {
+            mv.visitLabel(cases[i]);
+            mv.visitLdcInsn("case" + i);
+            mv.visitInsn(ARETURN);
+        }
+        mv.visitLabel(defaultCase);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 大量顺序的if/else和小循环，主要压力在SSA和语句结构化
+     */
+    private static void branchy(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "branchy", "([I)I", null, null);
+        mv.visitCode();
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 1);
+        for (int i = 0; i < BRANCHES; ++i) {
+            Label otherwise = new Label();
+            Label next = new Label();
+            mv.visitVarInsn(ALOAD, 0);
+            push(mv, i % 8);
+            mv.visitInsn(IALOAD);
+            push(mv, i);
+            mv.visitJumpInsn(IF_ICMPLE, otherwise);
+            mv.visitVarInsn(ILOAD, 1);
+            push(mv, i);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, 1);
+            mv.visitJumpInsn(GOTO, next);
+            mv.visitLabel(otherwise);
+            mv.visitVarInsn(ILOAD, 1);
+            push(mv, i);
+            mv.visitInsn(ISUB);
+            mv.visitVarInsn(ISTORE, 1);
+            mv.visitLabel(next);
+
+            if (i % 16 == 15) {
+                Label loop = new Label();
+                Label out = new Label();
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ISTORE, 2);
+                mv.visitLabel(loop);
+                mv.visitVarInsn(ILOAD, 2);
+                push(mv, i % 5 + 1);
+                mv.visitJumpInsn(IF_ICMPGE, out);
+                mv.visitIincInsn(1, 1);
+                mv.visitIincInsn(2, 1);
+                mv.visitJumpInsn(GOTO, loop);
+                mv.visitLabel(out);
+            }
+        }
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 多层嵌套循环，每层都有break和continue
+     */
+    private static void nestedLoops(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "nestedLoops", "(I)J", null, null);
+        mv.visitCode();
+        mv.visitInsn(LCONST_0);
+        mv.visitVarInsn(LSTORE, 1);
+        nestedLoop(mv, 0);
+        mv.visitVarInsn(LLOAD, 1);
+        mv.visitInsn(LRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void nestedLoop(MethodVisitor mv, int level) {
+        int slot = 3 + level;
+        Label condition = new Label();
+        Label increment = new Label();
+        Label exit = new Label();
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, slot);
+        mv.visitLabel(condition);
+        mv.visitVarInsn(ILOAD, slot);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitJumpInsn(IF_ICMPGE, exit);
+
+        mv.visitVarInsn(ILOAD, slot);
+        push(mv, level + 7);
+        mv.visitJumpInsn(IF_ICMPEQ, exit);
+        mv.visitVarInsn(ILOAD, slot);
+        mv.visitInsn(ICONST_3);
+        mv.visitInsn(IREM);
+        mv.visitJumpInsn(IFEQ, increment);
+
+        if (level < NESTED_LOOPS - 1) {
+            nestedLoop(mv, level + 1);
+        } else {
+            mv.visitVarInsn(LLOAD, 1);
+            mv.visitVarInsn(ILOAD, slot);
+            mv.visitInsn(I2L);
+            mv.visitInsn(LADD);
+            mv.visitVarInsn(LSTORE, 1);
+        }
+
+        mv.visitLabel(increment);
+        mv.visitIincInsn(slot, 1);
+        mv.visitJumpInsn(GOTO, condition);
+        mv.visitLabel(exit);
+    }
+
+    private static byte[] tryFinally() {
+        ClassWriter cw = newClass(V1_6, ACC_PUBLIC | ACC_SUPER, TRY_FINALLY, OBJECT);
+        defaultConstructor(cw, OBJECT);
+
+        MethodVisitor sink = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "sink", "(I)V", null, null);
+        sink.visitCode();
+        sink.visitInsn(RETURN);
+        sink.visitMaxs(0, 0);
+        sink.visitEnd();
+
+        for (int depth : FINALLY_DEPTHS) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "finally" + depth, "(I)I", null, null);
+            mv.visitCode();
+            new FinallyGenerator(mv, depth).generate();
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * 按照javac的方式生成多层嵌套的try/catch/finally：每个出口都内联所有外层的finally块，
+     * 内联的finally块不在本层的异常范围内，奇数层额外带一个catch
+     */
+    private static final class FinallyGenerator {
+        private static final int X = 0;
+        private static final int RESULT = 1;
+
+        private final MethodVisitor mv;
+        private final int depth;
+        private final List<Level> open = new ArrayList<>();
+        private final List<Object[]> handlers = new ArrayList<>();
+
+        FinallyGenerator(MethodVisitor mv, int depth) {
+            this.mv = mv;
+            this.depth = depth;
+        }
+
+        void generate() {
+            generateLevel(1);
+            mv.visitInsn(ICONST_0);
+            mv.visitInsn(IRETURN);
+            for (Object[] handler : handlers) {
+                mv.visitTryCatchBlock((Label) handler[0], (Label) handler[1], (Label) handler[2], (String) handler[3]);
+            }
+        }
+
+        private void generateLevel(int k) {
+            Level level = new Level(k);
+            mv.visitLabel(level.start);
+            open.add(level);
+
+            push(mv, k);
+            sink();
+
+            Label skip = new Label();
+            mv.visitVarInsn(ILOAD, X);
+            push(mv, k);
+            mv.visitJumpInsn(IF_ICMPNE, skip);
+            push(mv, k);
+            mv.visitVarInsn(ISTORE, RESULT);
+            earlyReturn();
+            mv.visitLabel(skip);
+
+            if (k < depth) {
+                generateLevel(k + 1);
+            }
+            push(mv, -k);
+            sink();
+
+            Label end = new Label();
+            mv.visitLabel(end);
+            open.remove(open.size() - 1);
+
+            Label after = new Label();
+            finalizer(k);
+            mv.visitJumpInsn(GOTO, after);
+
+            Label any = new Label();
+            List<Label[]> ranges = level.ranges(end);
+            if (k % 2 == 1) {
+                Label catchStart = new Label();
+                Label catchEnd = new Label();
+                int exceptionSlot = 2 * k;
+                mv.visitLabel(catchStart);
+                mv.visitVarInsn(ASTORE, exceptionSlot);
+                mv.visitVarInsn(ALOAD, exceptionSlot);
+                mv.visitMethodInsn(INVOKEVIRTUAL, OBJECT, "hashCode", "()I", false);
+                sink();
+                mv.visitLabel(catchEnd);
+                finalizer(k);
+                mv.visitJumpInsn(GOTO, after);
+
+                for (Label[] range : ranges) {
+                    handlers.add(new Object[]{range[0], range[1], catchStart, "java/lang/IllegalStateException"});
+                }
+                ranges.add(new Label[]{catchStart, catchEnd});
+            }
+            for (Label[] range : ranges) {
+                handlers.add(new Object[]{range[0], range[1], any, null});
+            }
+
+            int throwableSlot = 2 * k + 1;
+            mv.visitLabel(any);
+            mv.visitVarInsn(ASTORE, throwableSlot);
+            finalizer(k);
+            mv.visitVarInsn(ALOAD, throwableSlot);
+            mv.visitInsn(ATHROW);
+            mv.visitLabel(after);
+        }
+
+        private void earlyReturn() {
+            Label[] gapStarts = new Label[open.size()];
+            for (int i = open.size() - 1; i >= 0; --i) {
+                gapStarts[i] = new Label();
+                mv.visitLabel(gapStarts[i]);
+                finalizer(open.get(i).k);
+            }
+            mv.visitVarInsn(ILOAD, RESULT);
+            mv.visitInsn(IRETURN);
+            Label gapEnd = new Label();
+            mv.visitLabel(gapEnd);
+            for (int i = 0; i < open.size(); ++i) {
+                open.get(i).gaps.add(new Label[]{gapStarts[i], gapEnd});
+            }
+        }
+
+        private void finalizer(int k) {
+            push(mv, k * 100);
+            sink();
+            Label skip = new Label();
+            mv.visitVarInsn(ILOAD, X);
+            push(mv, k);
+            mv.visitJumpInsn(IF_ICMPLE, skip);
+            push(mv, k * 100 + 1);
+            sink();
+            mv.visitLabel(skip);
+        }
+
+        private void sink() {
+            mv.visitMethodInsn(INVOKESTATIC, TRY_FINALLY, "sink", "(I)V", false);
+        }
+    }
+
+    private static final class Level {
+        private final int k;
+        private final Label start = new Label();
+        private final List<Label[]> gaps = new ArrayList<>();
+
+        Level(int k) {
+            this.k = k;
+        }
+
+        /**
+         * 去掉内联finally块之后的异常范围
+         */
+        List<Label[]> ranges(Label end) {
+            List<Label[]> ranges = new ArrayList<>();
+            Label from = start;
+            for (Label[] gap : gaps) {
+                ranges.add(new Label[]{from, gap[0]});
+                from = gap[1];
+            }
+            ranges.add(new Label[]{from, end});
+            return ranges;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // kotlin style
+    // ------------------------------------------------------------------
+
+    private static byte[] kotlinStyle() {
+        ClassWriter cw = newClass(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, KOTLIN_STYLE, OBJECT);
+        kotlinMetadata(cw);
+        cw.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, "INSTANCE", "L" + KOTLIN_STYLE + ";", null, null).visitEnd();
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "lock", "Ljava/lang/Object;", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitTypeInsn(NEW, OBJECT);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitFieldInsn(PUTFIELD, KOTLIN_STYLE, "lock", "Ljava/lang/Object;");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // object声明的单例
+        mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, KOTLIN_STYLE);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, KOTLIN_STYLE, "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, 0);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(PUTSTATIC, KOTLIN_STYLE, "INSTANCE", "L" + KOTLIN_STYLE + ";");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, "consume", "(I)V", null, null);
+        mv.visitCode();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        kotlinGreet(cw);
+        kotlinGreetDefault(cw);
+        kotlinSafeLength(cw);
+        kotlinWhen(cw);
+        kotlinSynchronized(cw);
+        kotlinFetchAll(cw);
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void kotlinMetadata(ClassWriter cw) {
+        AnnotationVisitor av = cw.visitAnnotation("Lkotlin/Metadata;", true);
+        AnnotationVisitor mv = av.visitArray("mv");
+        mv.visit(null, 1);
+        mv.visit(null, 1);
+        mv.visit(null, 13);
+        mv.visitEnd();
+        av.visit("k", 1);
+        AnnotationVisitor d2 = av.visitArray("d2");
+        d2.visit(null, "Lbench/kotlin/KotlinStyle;");
+        d2.visit(null, "");
+        d2.visitEnd();
+        av.visitEnd();
+    }
+
+    /**
+     * 参数非空检查、until循环和apply
+     */
+    private static void kotlinGreet(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "greet", "(Ljava/lang/String;I)Ljava/lang/String;", null, null);
+        mv.visitParameterAnnotation(0, "Lorg/jetbrains/annotations/NotNull;", false).visitEnd();
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitLdcInsn("name");
+        mv.visitMethodInsn(INVOKESTATIC, KOTLIN_INTRINSICS, "checkParameterIsNotNull", "(Ljava/lang/Object;Ljava/lang/String;)V", false);
+        mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, 3);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 4);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitVarInsn(ISTORE, 5);
+        Label loop = new Label();
+        Label end = new Label();
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ILOAD, 4);
+        mv.visitVarInsn(ILOAD, 5);
+        mv.visitJumpInsn(IF_ICMPGE, end);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+        mv.visitInsn(POP);
+        mv.visitIincInsn(4, 1);
+        mv.visitJumpInsn(GOTO, loop);
+        mv.visitLabel(end);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn("StringBuilder().apply(builderAction).toString()");
+        mv.visitMethodInsn(INVOKESTATIC, KOTLIN_INTRINSICS, "checkExpressionValueIsNotNull", "(Ljava/lang/Object;Ljava/lang/String;)V", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 默认参数生成的$default方法
+     */
+    private static void kotlinGreetDefault(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC | ACC_SYNTHETIC, "greet$default",
+                "(L" + KOTLIN_STYLE + ";Ljava/lang/String;IILjava/lang/Object;)Ljava/lang/String;", null, null);
+        mv.visitCode();
+        Label call = new Label();
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitInsn(ICONST_2);
+        mv.visitInsn(IAND);
+        mv.visitJumpInsn(IFEQ, call);
+        mv.visitInsn(ICONST_1);
+        mv.visitVarInsn(ISTORE, 2);
+        mv.visitLabel(call);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, KOTLIN_STYLE, "greet", "(Ljava/lang/String;I)Ljava/lang/String;", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * s?.length ?: 0，分支之间通过操作数栈传值
+     */
+    private static void kotlinSafeLength(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "safeLength", "(Ljava/lang/String;)I", null, null);
+        mv.visitCode();
+        Label isNull = new Label();
+        Label end = new Label();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitInsn(DUP);
+        mv.visitJumpInsn(IFNULL, isNull);
+        mv.visitMethodInsn(INVOKEVIRTUAL, STRING, "length", "()I", false);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(isNull);
+        mv.visitInsn(POP);
+        mv.visitInsn(ICONST_0);
+        mv.visitLabel(end);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 字符串上的when，只有一次hashCode分派，没有javac的第二个tableswitch
+     */
+    private static void kotlinWhen(ClassWriter cw) {
+        String[] values = {"alpha", "beta", "gamma", "delta"};
+        int[] hashes = new int[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            hashes[i] = values[i].hashCode();
+        }
+        int[] keys = hashes.clone();
+        Arrays.sort(keys);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "whenString", "(Ljava/lang/String;)I", null, null);
+        mv.visitCode();
+        Label[] cases = newLabels(values.length);
+        Label otherwise = new Label();
+        Label end = new Label();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, STRING, "hashCode", "()I", false);
+        Label[] sortedCases = new Label[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            for (int j = 0; j < hashes.length; ++j) {
+                if (hashes[j] == keys[i]) {
+                    sortedCases[i] = cases[j];
+                }
+            }
+        }
+        mv.visitLookupSwitchInsn(otherwise, keys, sortedCases);
+        for (int i = 0; i < values.length; ++i) {
+            mv.visitLabel(cases[i]);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(values[i]);
+            mv.visitMethodInsn(INVOKEVIRTUAL, STRING, "equals", "(Ljava/lang/Object;)Z", false);
+            mv.visitJumpInsn(IFEQ, otherwise);
+            push(mv, i + 1);
+            mv.visitJumpInsn(GOTO, end);
+        }
+        mv.visitLabel(otherwise);
+        mv.visitInsn(ICONST_0);
+        mv.visitLabel(end);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * kotlin的synchronized：正常路径上的monitorexit不在异常范围内，内联函数留下$i$a$局部变量
+     */
+    private static void kotlinSynchronized(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "locked", "(I)V", null, null);
+        mv.visitCode();
+        Label methodStart = new Label();
+        Label start = new Label();
+        Label end = new Label();
+        Label handler = new Label();
+        Label after = new Label();
+        mv.visitTryCatchBlock(start, end, handler, null);
+        mv.visitLabel(methodStart);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, KOTLIN_STYLE, "lock", "Ljava/lang/Object;");
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitInsn(MONITORENTER);
+        mv.visitLabel(start);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 4);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitMethodInsn(INVOKESTATIC, KOTLIN_STYLE, "consume", "(I)V", false);
+        mv.visitFieldInsn(GETSTATIC, "kotlin/Unit", "INSTANCE", "Lkotlin/Unit;");
+        mv.visitVarInsn(ASTORE, 3);
+        mv.visitLabel(end);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitInsn(MONITOREXIT);
+        mv.visitJumpInsn(GOTO, after);
+        mv.visitLabel(handler);
+        mv.visitVarInsn(ASTORE, 3);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitInsn(MONITOREXIT);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(after);
+        mv.visitInsn(RETURN);
+        Label methodEnd = new Label();
+        mv.visitLabel(methodEnd);
+        mv.visitLocalVariable("this", "L" + KOTLIN_STYLE + ";", null, methodStart, methodEnd, 0);
+        mv.visitLocalVariable("x", "I", null, methodStart, methodEnd, 1);
+        mv.visitLocalVariable("$i$a$-synchronized-KotlinStyle$locked$1", "I", null, start, end, 4);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void kotlinFetchAll(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "fetchAll", "(Lkotlin/coroutines/Continuation;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, KOTLIN_CONTINUATION);
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESPECIAL, KOTLIN_CONTINUATION, "<init>", "(L" + KOTLIN_STYLE + ";Lkotlin/coroutines/Continuation;)V", false);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitMethodInsn(INVOKEVIRTUAL, KOTLIN_CONTINUATION, "invokeSuspend", "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 挂起函数编译出的状态机：按label分派，case之间通过操作数栈在合并点传递结果
+     */
+    private static byte[] kotlinContinuation() {
+        String superName = "kotlin/coroutines/jvm/internal/ContinuationImpl";
+        ClassWriter cw = newClass(V1_6, ACC_FINAL | ACC_SUPER, KOTLIN_CONTINUATION, superName);
+        kotlinMetadata(cw);
+        cw.visitField(0, "label", "I", null, null).visitEnd();
+        cw.visitField(0, "L$0", "Ljava/lang/Object;", null, null).visitEnd();
+        cw.visitField(ACC_FINAL | ACC_SYNTHETIC, "this$0", "L" + KOTLIN_STYLE + ";", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(0, "<init>", "(L" + KOTLIN_STYLE + ";Lkotlin/coroutines/Continuation;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, KOTLIN_CONTINUATION, "this$0", "L" + KOTLIN_STYLE + ";");
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "(Lkotlin/coroutines/Continuation;)V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        String continuation = "Lkotlin/coroutines/Continuation;";
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "invokeSuspend", "(Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        Label state0 = new Label();
+        Label state1 = new Label();
+        Label state2 = new Label();
+        Label resume1 = new Label();
+        Label resume2 = new Label();
+        Label illegal = new Label();
+
+        mv.visitMethodInsn(INVOKESTATIC, "kotlin/coroutines/intrinsics/IntrinsicsKt", "getCOROUTINE_SUSPENDED", "()Ljava/lang/Object;", false);
+        mv.visitVarInsn(ASTORE, 3);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, KOTLIN_CONTINUATION, "label", "I");
+        mv.visitTableSwitchInsn(0, 2, illegal, state0, state1, state2);
+
+        mv.visitLabel(state0);
+        throwOnFailure(mv);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ICONST_1);
+        mv.visitFieldInsn(PUTFIELD, KOTLIN_CONTINUATION, "label", "I");
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, KOTLIN_STYLE, "fetch", "(" + continuation + ")Ljava/lang/Object;", false);
+        suspendPoint(mv, resume1);
+
+        mv.visitLabel(state1);
+        throwOnFailure(mv);
+        mv.visitVarInsn(ALOAD, 1);
+
+        mv.visitLabel(resume1);
+        mv.visitTypeInsn(CHECKCAST, STRING);
+        mv.visitVarInsn(ASTORE, 4);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitFieldInsn(PUTFIELD, KOTLIN_CONTINUATION, "L$0", "Ljava/lang/Object;");
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ICONST_2);
+        mv.visitFieldInsn(PUTFIELD, KOTLIN_CONTINUATION, "label", "I");
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, KOTLIN_STYLE, "process", "(Ljava/lang/String;" + continuation + ")Ljava/lang/Object;", false);
+        suspendPoint(mv, resume2);
+
+        mv.visitLabel(state2);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, KOTLIN_CONTINUATION, "L$0", "Ljava/lang/Object;");
+        mv.visitTypeInsn(CHECKCAST, STRING);
+        mv.visitVarInsn(ASTORE, 4);
+        throwOnFailure(mv);
+        mv.visitVarInsn(ALOAD, 1);
+
+        mv.visitLabel(resume2);
+        mv.visitInsn(ARETURN);
+
+        mv.visitLabel(illegal);
+        mv.visitTypeInsn(NEW, "java/lang/IllegalStateException");
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn("call to 'resume' before 'invoke' with coroutine");
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalStateException", "<init>", "(Ljava/lang/String;)V", false);
+        mv.visitInsn(ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void throwOnFailure(MethodVisitor mv) {
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESTATIC, "kotlin/ResultKt", "throwOnFailure", "(Ljava/lang/Object;)V", false);
+    }
+
+    /**
+     * 调用结果留在栈上，挂起时直接返回，否则带着结果跳到恢复点
+     */
+    private static void suspendPoint(MethodVisitor mv, Label resume) {
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitJumpInsn(IF_ACMPNE, resume);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitInsn(ARETURN);
+    }
+
+    // ------------------------------------------------------------------
+    // scala style
+    // ------------------------------------------------------------------
+
+    private static byte[] scalaModule() {
+        ClassWriter cw = newClass(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, SCALA_MODULE, OBJECT);
+        FieldVisitor fv = cw.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, "MODULE$", "L" + SCALA_MODULE + ";", null, null);
+        fv.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, SCALA_MODULE);
+        mv.visitMethodInsn(INVOKESPECIAL, SCALA_MODULE, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // scala 2.11及之前在构造函数中给MODULE$赋值
+        mv = cw.visitMethod(ACC_PRIVATE, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(PUTSTATIC, SCALA_MODULE, "MODULE$", "L" + SCALA_MODULE + ";");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        scalaTailrec(cw);
+        scalaMapped(cw);
+        scalaMapArray(cw);
+        scalaDeserializeLambda(cw);
+        scalaMatch(cw);
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * @tailrec：新参数先写入临时变量，再覆盖参数，最后跳回方法开头
+     */
+    private static void scalaTailrec(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "sum", "([III)I", null, null);
+        mv.visitCode();
+        Label start = new Label();
+        Label recurse = new Label();
+        mv.visitLabel(start);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitInsn(ARRAYLENGTH);
+        mv.visitJumpInsn(IF_ICMPLT, recurse);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(recurse);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ISTORE, 4);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitInsn(IALOAD);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ISTORE, 5);
+        mv.visitVarInsn(ILOAD, 4);
+        mv.visitVarInsn(ISTORE, 2);
+        mv.visitVarInsn(ILOAD, 5);
+        mv.visitVarInsn(ISTORE, 3);
+        mv.visitJumpInsn(GOTO, start);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 通过altMetafactory生成可序列化的特化函数对象，函数体是静态的$anonfun$方法
+     */
+    private static void scalaMapped(ClassWriter cw) {
+        Handle anonfun = new Handle(H_INVOKESTATIC, SCALA_MODULE, "$anonfun$mapped$1", "(I)I", false);
+        Handle altMetafactory = new Handle(H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "altMetafactory",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "mapped", "([I)[I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitInvokeDynamicInsn("apply$mcII$sp", "()L" + SCALA_FUNCTION + ";", altMetafactory,
+                Type.getType("(I)I"), anonfun, Type.getType("(I)I"), 1);
+        mv.visitMethodInsn(INVOKESTATIC, SCALA_MODULE, "mapArray", "([IL" + SCALA_FUNCTION + ";)[I", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC, "$anonfun$mapped$1", "(I)I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitInsn(IMUL);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IADD);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void scalaMapArray(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "mapArray", "([IL" + SCALA_FUNCTION + ";)[I", null, null);
+        mv.visitCode();
+        Label loop = new Label();
+        Label end = new Label();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ARRAYLENGTH);
+        mv.visitIntInsn(NEWARRAY, T_INT);
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 3);
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ARRAYLENGTH);
+        mv.visitJumpInsn(IF_ICMPGE, end);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitInsn(IALOAD);
+        mv.visitMethodInsn(INVOKEINTERFACE, SCALA_FUNCTION, "apply$mcII$sp", "(I)I", true);
+        mv.visitInsn(IASTORE);
+        mv.visitIincInsn(3, 1);
+        mv.visitJumpInsn(GOTO, loop);
+        mv.visitLabel(end);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * scala 2.12的lambda反序列化入口，使用非LambdaMetafactory的invokedynamic
+     */
+    private static void scalaDeserializeLambda(ClassWriter cw) {
+        Handle bootstrap = new Handle(H_INVOKESTATIC, "scala/runtime/LambdaDeserialize", "bootstrap",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;[Ljava/lang/invoke/MethodHandle;)Ljava/lang/invoke/CallSite;", false);
+        Handle anonfun = new Handle(H_INVOKESTATIC, SCALA_MODULE, "$anonfun$mapped$1", "(I)I", false);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, "$deserializeLambda$",
+                "(Ljava/lang/invoke/SerializedLambda;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInvokeDynamicInsn("lambdaDeserialize", "(Ljava/lang/invoke/SerializedLambda;)Ljava/lang/Object;", bootstrap, anonfun);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 模式匹配：类型判断、守卫条件失败落到下一个case，最后抛出MatchError
+     */
+    private static void scalaMatch(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "describe", "(Ljava/lang/Object;)Ljava/lang/String;", null, null);
+        mv.visitCode();
+        Label notInt = new Label();
+        Label notLongString = new Label();
+        Label matchError = new Label();
+        Label end = new Label();
+
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ASTORE, 3);
+
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitTypeInsn(INSTANCEOF, "java/lang/Integer");
+        mv.visitJumpInsn(IFEQ, notInt);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitMethodInsn(INVOKESTATIC, "scala/runtime/BoxesRunTime", "unboxToInt", "(Ljava/lang/Object;)I", false);
+        mv.visitVarInsn(ISTORE, 4);
+        mv.visitLdcInsn("int");
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitJumpInsn(GOTO, end);
+
+        mv.visitLabel(notInt);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitTypeInsn(INSTANCEOF, STRING);
+        mv.visitJumpInsn(IFEQ, notLongString);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitTypeInsn(CHECKCAST, STRING);
+        mv.visitVarInsn(ASTORE, 5);
+        mv.visitVarInsn(ALOAD, 5);
+        mv.visitMethodInsn(INVOKEVIRTUAL, STRING, "length", "()I", false);
+        mv.visitInsn(ICONST_3);
+        mv.visitJumpInsn(IF_ICMPLE, notLongString);
+        mv.visitLdcInsn("long string");
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitJumpInsn(GOTO, end);
+
+        mv.visitLabel(notLongString);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitJumpInsn(IFNONNULL, matchError);
+        mv.visitLdcInsn("null");
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitJumpInsn(GOTO, end);
+
+        mv.visitLabel(matchError);
+        mv.visitTypeInsn(NEW, "scala/MatchError");
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitMethodInsn(INVOKESPECIAL, "scala/MatchError", "<init>", "(Ljava/lang/Object;)V", false);
+        mv.visitInsn(ATHROW);
+
+        mv.visitLabel(end);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * object的伴生类中生成的静态转发方法
+     */
+    private static byte[] scalaForwarder() {
+        ClassWriter cw = newClass(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, SCALA_FORWARDER, OBJECT);
+        String[][] methods = {
+                {"sum", "([III)I"},
+                {"mapped", "([I)[I"},
+                {"describe", "(Ljava/lang/Object;)Ljava/lang/String;"}};
+        for (String[] method : methods) {
+            Type type = Type.getMethodType(method[1]);
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, method[0], method[1], null, null);
+            mv.visitCode();
+            mv.visitFieldInsn(GETSTATIC, SCALA_MODULE, "MODULE$", "L" + SCALA_MODULE + ";");
+            int slot = 0;
+            for (Type argument : type.getArgumentTypes()) {
+                mv.visitVarInsn(argument.getOpcode(ILOAD), slot);
+                slot += argument.getSize();
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCALA_MODULE, method[0], method[1], false);
+            mv.visitInsn(type.getReturnType().getOpcode(IRETURN));
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * scala 2.12的trait：默认方法加上静态的$init$
+     */
+    private static byte[] scalaTrait() {
+        ClassWriter cw = newClass(V1_8, ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT, SCALA_TRAIT, OBJECT);
+        cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "width", "()D", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "area", "()D", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKEINTERFACE, SCALA_TRAIT, "width", "()D", true);
+        mv.visitInsn(DUP2);
+        mv.visitInsn(DMUL);
+        mv.visitInsn(DRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "$init$", "(L" + SCALA_TRAIT + ";)V", null, null);
+        mv.visitCode();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] scalaTraitImpl() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, SCALA_TRAIT_IMPL, null, OBJECT, new String[]{SCALA_TRAIT});
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "width", "D", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(D)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(DLOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, SCALA_TRAIT_IMPL, "width", "D");
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, SCALA_TRAIT, "$init$", "(L" + SCALA_TRAIT + ";)V", true);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "width", "()D", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, SCALA_TRAIT_IMPL, "width", "D");
+        mv.visitInsn(DRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // 默认方法的转发
+        mv = cw.visitMethod(ACC_PUBLIC, "area", "()D", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, SCALA_TRAIT, "area", "()D", true);
+        mv.visitInsn(DRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // ------------------------------------------------------------------
+    // helpers
+    // ------------------------------------------------------------------
+
+    private static ClassWriter newClass(int version, int access, String name, String superName) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(version, access, name, null, superName, null);
+        return cw;
+    }
+
+    private static void defaultConstructor(ClassWriter cw, String superName) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static Label[] newLabels(int count) {
+        Label[] labels = new Label[count];
+        for (int i = 0; i < count; ++i) {
+            labels[i] = new Label();
+        }
+        return labels;
+    }
+
+    private static void push(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark.corpus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 反编译语料：javac生成的各种控制流，只用于生成字节码，不会被执行
+ */
+public class ControlFlowCorpus {
+
+    private final Object lock = new Object();
+
+    private int state;
+
+    public int stringSwitch(String command) {
+        switch (command) {
+            case "start":
+                return 1;
+            case "stop":
+                return 2;
+            case "restart":
+            case "reload":
+                return 3;
+            case "status":
+                return state;
+            default:
+                return -1;
+        }
+    }
+
+    public long enumSwitch(TimeUnit unit, long value) {
+        switch (unit) {
+            case NANOSECONDS:
+                return value / 1000000;
+            case MICROSECONDS:
+                return value / 1000;
+            case MILLISECONDS:
+                return value;
+            case SECONDS:
+                return value * 1000;
+            default:
+                return unit.toMillis(value);
+        }
+    }
+
+    public int tryWithResources(String text) throws IOException {
+        int lines = 0;
+        try (Reader reader = new StringReader(text);
+             BufferedReader buffered = new BufferedReader(reader)) {
+            String line;
+            while ((line = buffered.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("#")) {
+                    break;
+                }
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    public String multiCatch(String value) {
+        try {
+            return String.valueOf(Integer.parseInt(value) / value.length());
+        } catch (NumberFormatException | ArithmeticException e) {
+            return e.getMessage();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            state++;
+        }
+    }
+
+    public int nestedFinally(int value) {
+        try {
+            try {
+                if (value < 0) {
+                    return -1;
+                }
+                state += value;
+            } finally {
+                state--;
+            }
+            synchronized (lock) {
+                if (value == 0) {
+                    return 0;
+                }
+                state *= 2;
+            }
+        } finally {
+            state++;
+        }
+        return state;
+    }
+
+    public int lockLoop(Lock lock, List<Integer> values) {
+        int sum = 0;
+        outer:
+        for (Iterator<Integer> iterator = values.iterator(); iterator.hasNext(); ) {
+            Integer value = iterator.next();
+            lock.lock();
+            try {
+                for (int i = 0; i < value; ++i) {
+                    if (i == state) {
+                        continue outer;
+                    }
+                    if (sum > 1000) {
+                        break outer;
+                    }
+                    sum += i;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return sum;
+    }
+
+    public int doWhile(int[] values) {
+        int index = 0;
+        int result = 0;
+        do {
+            result = result * 31 + values[index];
+            index += values[index] > 0 ? 1 : 2;
+        } while (index < values.length && result != 0);
+        return result;
+    }
+
+    public String ternaryChain(int value) {
+        return value < 0 ? "negative" : value == 0 ? "zero" : value < 10 ? "small" : value < 100 ? "medium" : "large";
+    }
+
+    public static class Holder {
+        private static final Holder INSTANCE = new Holder();
+
+        private volatile int value;
+
+        public static Holder getInstance() {
+            return INSTANCE;
+        }
+
+        public boolean compareAndSet(int expect, int update) {
+            synchronized (this) {
+                if (value != expect) {
+                    return false;
+                }
+                value = update;
+                return true;
+            }
+        }
+    }
+}
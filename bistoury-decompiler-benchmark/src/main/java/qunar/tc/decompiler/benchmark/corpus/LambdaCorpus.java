@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark.corpus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 反编译语料：各种形式的lambda和方法引用，只用于生成字节码，不会被执行
+ */
+public class LambdaCorpus {
+
+    private final String prefix;
+
+    private int counter;
+
+    public LambdaCorpus(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public List<String> capture(List<String> values, int limit) {
+        return values.stream()
+                .filter(value -> value.length() <= limit)
+                .map(value -> prefix + value + counter)
+                .sorted(Comparator.comparing(String::length).thenComparing(Comparator.reverseOrder()))
+                .collect(Collectors.toList());
+    }
+
+    public Map<Integer, List<String>> group(List<String> values) {
+        return values.stream().collect(Collectors.groupingBy(String::length, TreeMap::new, Collectors.toList()));
+    }
+
+    public Supplier<Function<Integer, Integer>> nested(int base) {
+        return () -> x -> {
+            int result = x;
+            for (int i = 0; i < base; ++i) {
+                result = result * 31 + i;
+            }
+            return result + counter++;
+        };
+    }
+
+    public int reduce(int[] values) {
+        IntBinaryOperator operator = (left, right) -> left > right ? left - right : right - left;
+        return IntStream.of(values).map(value -> value * value).reduce(0, operator);
+    }
+
+    public <T, R> List<R> transform(List<T> values, BiFunction<Integer, T, R> function) {
+        List<R> result = new ArrayList<>();
+        for (int i = 0; i < values.size(); ++i) {
+            final int index = i;
+            result.add(Optional.ofNullable(values.get(i)).map(value -> function.apply(index, value)).orElse(null));
+        }
+        return result;
+    }
+
+    public Callable<String> anonymous(final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                Runnable runnable = () -> counter += value.length();
+                runnable.run();
+                return prefix + value;
+            }
+        };
+    }
+
+    public Function<String, LambdaCorpus> constructorReference() {
+        return LambdaCorpus::new;
+    }
+
+    public static Comparator<int[]> arrayComparator() {
+        return (left, right) -> {
+            int length = Math.min(left.length, right.length);
+            for (int i = 0; i < length; ++i) {
+                if (left[i] != right[i]) {
+                    return Integer.compare(left[i], right[i]);
+                }
+            }
+            return Integer.compare(left.length, right.length);
+        };
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * 带GC profiler运行反编译基准测试，并把耗时和每次调用的分配量记录为基线，或者与之前记录的基线对比
+ * <p>
+ * 基线与机器相关，需要在同一台机器上先用record记录调整前的结果，调整之后再compare；
+ * 耗时或分配量超过基线的比例大于阈值（默认10%，-Dbenchmark.threshold=0.1）时以非0退出
+ * <pre>
+ *     java ... DecompilerBenchmarkRunner record target/decompiler-benchmark.properties [include]
+ *     java ... DecompilerBenchmarkRunner compare target/decompiler-benchmark.properties [include]
+ * </pre>
+ */
+public class DecompilerBenchmarkRunner {
+
+    private static final String DEFAULT_INCLUDE = "qunar\\.tc\\.decompiler\\.benchmark\\..*Benchmark";
+
+    private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+
+    private static final String SCORE_SUFFIX = ".score";
+
+    private static final String ALLOC_SUFFIX = ".alloc";
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        if (args.length < 2 || !("record".equals(args[0]) || "compare".equals(args[0]))) {
+            System.err.println("usage: DecompilerBenchmarkRunner record|compare <file> [include]");
+            System.exit(2);
+        }
+
+        Path path = Paths.get(args[1]);
+        Options options = new OptionsBuilder()
+                .include(args.length > 2 ? args[2] : DEFAULT_INCLUDE)
+                .addProfiler(GCProfiler.class)
+                .build();
+        Map<String, Double> current = collect(new Runner(options).run());
+
+        if ("record".equals(args[0])) {
+            store(current, path);
+            System.out.println("benchmark baseline recorded to " + path);
+            return;
+        }
+
+        double threshold = Double.parseDouble(System.getProperty("benchmark.threshold", "0.1"));
+        Map<String, Double> baseline = load(path);
+        boolean regression = false;
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            Double base = baseline.get(entry.getKey());
+            if (base == null || base <= 0) {
+                System.out.println(String.format("%-100s %14.3f %10s", entry.getKey(), entry.getValue(), "new"));
+                continue;
+            }
+            double change = (entry.getValue() - base) / base;
+            boolean regressed = change > threshold;
+            regression |= regressed;
+            System.out.println(String.format("%-100s %14.3f %+9.1f%%%s", entry.getKey(), entry.getValue(), change * 100, regressed ? " REGRESSION" : ""));
+        }
+        if (regression) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 结果的key是benchmark方法加上参数，比如FernflowerBenchmark.decompile:group=JDK,parallel=true.score
+     */
+    private static Map<String, Double> collect(Collection<RunResult> results) {
+        Map<String, Double> values = new TreeMap<>();
+        for (RunResult result : results) {
+            String key = key(result.getParams());
+            values.put(key + SCORE_SUFFIX, result.getPrimaryResult().getScore());
+            for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+                if (entry.getKey().endsWith(ALLOC_RATE_NORM)) {
+                    values.put(key + ALLOC_SUFFIX, entry.getValue().getScore());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String key(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        int index = benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1);
+        StringBuilder key = new StringBuilder(benchmark.substring(index + 1));
+        String separator = ":";
+        for (String name : params.getParamsKeys()) {
+            key.append(separator).append(name).append('=').append(params.getParam(name));
+            separator = ",";
+        }
+        return key.toString();
+    }
+
+    private static void store(Map<String, Double> values, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            content.append(entry.getKey().replace(":", "\\:").replace("=", "\\=")).append('=').append(entry.getValue()).append('\n');
+        }
+        try (OutputStream out = Files.newOutputStream(path)) {
+            out.write(content.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static Map<String, Double> load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+        }
+        Map<String, Double> values = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            values.put(name, Double.valueOf(properties.getProperty(name)));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class DecompilerOutputRegressionTest {
+
+    @Test
+    public void parallelOutputSameAsSerial() {
+        for (DecompilerCorpus.Group group : DecompilerCorpus.Group.values()) {
+            List<CorpusClass> classes = DecompilerCorpus.load(group);
+            assertEquals(group.name(),
+                    InMemoryDecompiler.decompile(classes, InMemoryDecompiler.options(false)),
+                    InMemoryDecompiler.decompile(classes, InMemoryDecompiler.options(true)));
+        }
+    }
+
+    @Test
+    public void outputSameAsBaseline() throws IOException {
+        DecompilerOutputBaseline baseline;
+        try (InputStream in = DecompilerOutputRegressionTest.class.getResourceAsStream(DecompilerOutputBaseline.RESOURCE)) {
+            assertNotNull(in);
+            baseline = DecompilerOutputBaseline.load(in);
+        }
+
+        int compared = 0;
+        for (DecompilerCorpus.Group group : DecompilerCorpus.Group.values()) {
+            DecompilerOutputBaseline current = DecompilerOutputBaseline.compute(group);
+            // jdk或javac不同时语料不同，没有可比性
+            if (!current.sameCorpus(baseline, group)) {
+                continue;
+            }
+            assertEquals(group.name(), Collections.<String>emptyList(), current.diff(baseline, group));
+            compared++;
+        }
+        Assume.assumeTrue(compared > 0);
+    }
+}
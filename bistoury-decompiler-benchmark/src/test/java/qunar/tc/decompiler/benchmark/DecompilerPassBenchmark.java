@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.decompiler.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import qunar.tc.decompiler.benchmark.MethodPipeline.MethodState;
+import qunar.tc.decompiler.modules.decompiler.StrongConnectivityHelper;
+import qunar.tc.decompiler.modules.decompiler.stats.Statement;
+import qunar.tc.decompiler.struct.StructMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 反编译中耗时最多的几个处理步骤，每次调用处理一个分组中所有方法的对应步骤
+ * <p>
+ * 除了强连通分量之外，其余步骤都会修改输入，所以输入在每次调用之前重新准备（Level.Invocation），
+ * GC profiler统计的分配量包含了准备输入的部分，只能用于同一个步骤前后版本的对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class DecompilerPassBenchmark {
+
+    @State(Scope.Thread)
+    public static class Corpus {
+
+        @Param({"JDK", "JAVAC", "SYNTHETIC", "KOTLIN_STYLE", "SCALA_STYLE"})
+        public DecompilerCorpus.Group group;
+
+        MethodPipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pipeline = new MethodPipeline(DecompilerCorpus.load(group));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pipeline.close();
+        }
+
+        List<MethodState> start() {
+            List<StructMethod> methods = pipeline.getMethods();
+            List<MethodState> states = new ArrayList<>(methods.size());
+            for (StructMethod mt : methods) {
+                states.add(pipeline.start(mt));
+            }
+            return states;
+        }
+    }
+
+    /**
+     * 刚从字节码读取的方法
+     */
+    @State(Scope.Thread)
+    public static class Started {
+        List<MethodState> states;
+
+        @Setup(Level.Invocation)
+        public void setUp(Corpus corpus) {
+            states = corpus.start();
+        }
+    }
+
+    /**
+     * 已经构造好语句树，还没有处理finally
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        List<MethodState> states;
+
+        @Setup(Level.Invocation)
+        public void setUp(Corpus corpus) {
+            states = corpus.start();
+            for (MethodState state : states) {
+                MethodPipeline.buildGraph(state);
+                MethodPipeline.parseGraph(state);
+            }
+        }
+    }
+
+    /**
+     * 所有包含子语句的语句，强连通分量的计算不修改语句，只需要准备一次
+     */
+    @State(Scope.Thread)
+    public static class Statements {
+        List<Statement> containers;
+
+        @Setup(Level.Trial)
+        public void setUp(Corpus corpus) {
+            containers = new ArrayList<>();
+            for (MethodState state : corpus.start()) {
+                MethodPipeline.buildGraph(state);
+                MethodPipeline.parseGraph(state);
+                MethodPipeline.processFinally(state);
+                MethodPipeline.collectContainers(state.root, containers);
+            }
+        }
+    }
+
+    /**
+     * 已经生成表达式，下一步就是StackVarsProcessor中的SSA构造
+     */
+    @State(Scope.Thread)
+    public static class Expressions {
+        List<MethodState> states;
+
+        @Setup(Level.Invocation)
+        public void setUp(Corpus corpus) {
+            states = corpus.start();
+            for (MethodState state : states) {
+                MethodPipeline.buildGraph(state);
+                MethodPipeline.parseGraph(state);
+                MethodPipeline.processFinally(state);
+                MethodPipeline.processExpressions(state);
+            }
+        }
+    }
+
+    /**
+     * 控制流图的构造和DeadCodeHelper的死代码、goto清理
+     */
+    @Benchmark
+    public void deadCode(Started started, Blackhole blackhole) {
+        for (MethodState state : started.states) {
+            MethodPipeline.buildGraph(state);
+            blackhole.consume(state.graph);
+        }
+    }
+
+    @Benchmark
+    public void finallyProcessor(Parsed parsed, Blackhole blackhole) {
+        for (MethodState state : parsed.states) {
+            MethodPipeline.processFinally(state);
+            blackhole.consume(state.root);
+        }
+    }
+
+    @Benchmark
+    public void strongConnectivity(Statements statements, Blackhole blackhole) {
+        for (Statement stat : statements.containers) {
+            blackhole.consume(new StrongConnectivityHelper(stat).getComponents());
+        }
+    }
+
+    @Benchmark
+    public void ssa(Expressions expressions, Blackhole blackhole) {
+        for (MethodState state : expressions.states) {
+            blackhole.consume(MethodPipeline.splitVariables(state));
+        }
+    }
+
+    @Benchmark
+    public void ssau(Expressions expressions, Blackhole blackhole) {
+        for (MethodState state : expressions.states) {
+            blackhole.consume(MethodPipeline.splitVariablesUnified(state));
+        }
+    }
+}
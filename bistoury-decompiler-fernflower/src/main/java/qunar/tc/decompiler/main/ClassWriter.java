@@ -513,6 +513,7 @@ public class ClassWriter {
                 buffer.appendIndent(indent);
                 buffer.append("// $FF: Couldn't be decompiled");
                 buffer.appendLineSeparator();
+                appendBytecodeListing(methodWrapper, buffer, indent, null);
             }
 
             if (root != null) {
@@ -819,6 +820,7 @@ public class ClassWriter {
                     buffer.append("// $FF: Couldn't be decompiled");
                     buffer.appendLineSeparator();
                     tracer.incrementCurrentSourceLine();
+                    appendBytecodeListing(methodWrapper, buffer, indent + 1, tracer);
                 } else if (root != null) {
                     tracer.addMapping(root.getDummyExit().bytecode);
                 }
@@ -924,6 +926,21 @@ public class ClassWriter {
         buffer.appendIndent(indent).append("// $FF: ").append(comment).appendLineSeparator();
     }
 
+    private static void appendBytecodeListing(MethodWrapper methodWrapper, TextBuffer buffer, int indent, BytecodeMappingTracer tracer) {
+        if (methodWrapper.bytecodeListing == null) {
+            return;
+        }
+        for (String line : methodWrapper.bytecodeListing.split("\\r?\\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            buffer.appendIndent(indent).append("// ").append(line.trim()).appendLineSeparator();
+            if (tracer != null) {
+                tracer.incrementCurrentSourceLine();
+            }
+        }
+    }
+
     private static final StructGeneralAttribute.Key[] ANNOTATION_ATTRIBUTES = {
             StructGeneralAttribute.ATTRIBUTE_RUNTIME_VISIBLE_ANNOTATIONS, StructGeneralAttribute.ATTRIBUTE_RUNTIME_INVISIBLE_ANNOTATIONS};
     private static final StructGeneralAttribute.Key[] PARAMETER_ANNOTATION_ATTRIBUTES = {
@@ -6,6 +6,7 @@ import qunar.tc.decompiler.main.collectors.CounterContainer;
 import qunar.tc.decompiler.main.collectors.ImportCollector;
 import qunar.tc.decompiler.main.extern.IFernflowerLogger;
 import qunar.tc.decompiler.main.extern.IFernflowerPreferences;
+import qunar.tc.decompiler.main.rels.MethodTimeoutException;
 import qunar.tc.decompiler.modules.decompiler.vars.VarProcessor;
 import qunar.tc.decompiler.modules.renamer.PoolInterceptor;
 import qunar.tc.decompiler.struct.StructContext;
@@ -28,6 +29,7 @@ public class DecompilerContext {
     private VarProcessor varProcessor;
     private CounterContainer counterContainer;
     private BytecodeSourceMapper bytecodeSourceMapper;
+    private final long deadline;
 
     public DecompilerContext(Map<String, Object> properties,
                              IFernflowerLogger logger,
@@ -45,6 +47,31 @@ public class DecompilerContext {
         this.classProcessor = classProcessor;
         this.poolInterceptor = interceptor;
         this.counterContainer = new CounterContainer();
+        this.deadline = 0;
+    }
+
+    /**
+     * 单个方法使用的上下文，除了VarProcessor、CounterContainer和截止时间之外都与parent共享；
+     * 方法处理期间只读取共享部分，所以多个方法可以在不同线程中同时处理
+     */
+    private DecompilerContext(DecompilerContext parent, VarProcessor varProcessor, long deadline) {
+        this.properties = parent.properties;
+        this.logger = parent.logger;
+        this.structContext = parent.structContext;
+        this.classProcessor = parent.classProcessor;
+        this.poolInterceptor = parent.poolInterceptor;
+        this.importCollector = parent.importCollector;
+        this.bytecodeSourceMapper = parent.bytecodeSourceMapper;
+        this.varProcessor = varProcessor;
+        this.counterContainer = new CounterContainer();
+        this.deadline = deadline;
+    }
+
+    /**
+     * 创建一个方法上下文，deadline为0表示不限时
+     */
+    public DecompilerContext newMethodContext(VarProcessor varProcessor, long deadline) {
+        return new DecompilerContext(this, varProcessor, deadline);
     }
 
     // *****************************************************************************
@@ -72,6 +99,19 @@ public class DecompilerContext {
         context.bytecodeSourceMapper = new BytecodeSourceMapper();
     }
 
+    /**
+     * 在耗时的处理过程中调用，超过方法的截止时间或者线程被中断时抛出{@link MethodTimeoutException}
+     */
+    public static void checkDeadline() {
+        DecompilerContext context = getCurrentContext();
+        if (context != null && context.deadline > 0 && System.currentTimeMillis() > context.deadline) {
+            throw new MethodTimeoutException("processing time limit exceeded");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new MethodTimeoutException("processing interrupted");
+        }
+    }
+
     public static void startMethod(VarProcessor varProcessor) {
         DecompilerContext context = getCurrentContext();
         context.varProcessor = varProcessor;
@@ -36,6 +36,7 @@ public interface IFernflowerPreferences {
 
     String LOG_LEVEL = "log";
     String MAX_PROCESSING_METHOD = "mpm";
+    String PARALLEL_METHOD_PROCESSING = "pmp";
     String RENAME_ENTITIES = "ren";
     String USER_RENAMER_CLASS = "urc";
     String NEW_LINE_SEPARATOR = "nls";
@@ -79,6 +80,7 @@ public interface IFernflowerPreferences {
 
         put(LOG_LEVEL, IFernflowerLogger.Severity.INFO.name());
         put(MAX_PROCESSING_METHOD, "0");
+        put(PARALLEL_METHOD_PROCESSING, "1");
         put(RENAME_ENTITIES, "0");
         put(NEW_LINE_SEPARATOR, (InterpreterUtil.IS_WINDOWS ? "0" : "1"));
         put(INDENT_STRING, "   ");
@@ -1,38 +1,32 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package qunar.tc.decompiler.main.rels;
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Lists;
-import qunar.tc.decompiler.code.CodeConstants;
-import qunar.tc.decompiler.jdk827.List827;
 import qunar.tc.decompiler.main.DecompilerContext;
 import qunar.tc.decompiler.main.collectors.CounterContainer;
-import qunar.tc.decompiler.main.collectors.VarNamesCollector;
 import qunar.tc.decompiler.main.extern.IFernflowerLogger;
 import qunar.tc.decompiler.main.extern.IFernflowerPreferences;
 import qunar.tc.decompiler.modules.decompiler.exps.Exprent;
-import qunar.tc.decompiler.modules.decompiler.exps.VarExprent;
-import qunar.tc.decompiler.modules.decompiler.sforms.DirectGraph;
-import qunar.tc.decompiler.modules.decompiler.stats.RootStatement;
 import qunar.tc.decompiler.modules.decompiler.vars.VarProcessor;
-import qunar.tc.decompiler.modules.decompiler.vars.VarVersionPair;
 import qunar.tc.decompiler.struct.StructClass;
-import qunar.tc.decompiler.struct.StructField;
 import qunar.tc.decompiler.struct.StructMethod;
-import qunar.tc.decompiler.struct.attr.StructLocalVariableTableAttribute;
 import qunar.tc.decompiler.struct.gen.MethodDescriptor;
 import qunar.tc.decompiler.util.InterpreterUtil;
 import qunar.tc.decompiler.util.VBStyleCollection;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class ClassWrapper {
     private final StructClass classStruct;
-    private final Set<String> hiddenMembers = new HashSet<>();
+    private final Set<String> hiddenMembers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private final VBStyleCollection<Exprent, String> staticFieldInitializers = new VBStyleCollection<>();
     private final VBStyleCollection<Exprent, String> dynamicFieldInitializers = new VBStyleCollection<>();
     private final VBStyleCollection<MethodWrapper, String> methods = new VBStyleCollection<>();
@@ -46,154 +40,46 @@ public class ClassWrapper {
         DecompilerContext.setProperty(DecompilerContext.CURRENT_CLASS_WRAPPER, this);
         DecompilerContext.getLogger().startClass(classStruct.qualifiedName);
 
-        int maxSec = Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.MAX_PROCESSING_METHOD).toString());
         boolean testMode = DecompilerContext.getOption(IFernflowerPreferences.UNIT_TEST_MODE);
+        int maxSec = testMode ? 0 : Integer.parseInt(DecompilerContext.getProperty(IFernflowerPreferences.MAX_PROCESSING_METHOD).toString());
+        boolean parallel = DecompilerContext.getOption(IFernflowerPreferences.PARALLEL_METHOD_PROCESSING);
+
+        // 常量池是懒加载的，在方法并行处理之前加载
+        classStruct.getPool();
+
+        DecompilerContext context = DecompilerContext.getCurrentContext();
+        List<StructMethod> structMethods = classStruct.getMethods();
+        List<MethodProcessorRunnable> processors = new ArrayList<>(structMethods.size());
+        List<FutureTask<Void>> tasks = new ArrayList<>(structMethods.size());
+        int codeMethods = 0;
+        for (StructMethod mt : structMethods) {
+            MethodProcessorRunnable processor = new MethodProcessorRunnable(mt, context, maxSec);
+            processors.add(processor);
+            tasks.add(new FutureTask<Void>(processor, null));
+            if (mt.containsCode()) {
+                codeMethods++;
+            }
+        }
 
-        for (final StructMethod mt : classStruct.getMethods()) {
-            DecompilerContext.getLogger().startMethod(mt.getName() + " " + mt.getDescriptor());
-
-            MethodDescriptor md = MethodDescriptor.parseDescriptor(mt.getDescriptor());
-            final VarProcessor varProc = new VarProcessor(mt, md);
-            DecompilerContext.startMethod(varProc);
-
-            VarNamesCollector vc = varProc.getVarNamesCollector();
-            CounterContainer counter = DecompilerContext.getCounterContainer();
-
-            RootStatement root = null;
-
-            boolean isError = false;
-
-            try {
-                if (mt.containsCode()) {
-                    if (maxSec == 0 || testMode) {
-                        root = MethodProcessorRunnable.codeToJava(mt, md, varProc);
-                    } else {
-                        MethodProcessorRunnable mtProc = new MethodProcessorRunnable(mt, md, varProc, DecompilerContext.getCurrentContext());
-
-                        Thread mtThread = new Thread(mtProc, "Java decompiler");
-                        long stopAt = System.currentTimeMillis() + maxSec * 1000L;
-
-                        mtThread.start();
-
-                        while (!mtProc.isFinished()) {
-                            try {
-                                synchronized (mtProc.lock) {
-                                    mtProc.lock.wait(200);
-                                }
-                            } catch (InterruptedException e) {
-                                killThread(mtThread);
-                                throw e;
-                            }
-
-                            if (System.currentTimeMillis() >= stopAt) {
-                                String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
-                                DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
-                                killThread(mtThread);
-                                isError = true;
-                                break;
-                            }
-                        }
-
-                        if (!isError) {
-                            root = mtProc.getResult();
-                        }
-                    }
-                } else {
-                    boolean thisVar = !mt.hasModifier(CodeConstants.ACC_STATIC);
-
-                    int paramCount = 0;
-                    if (thisVar) {
-                        varProc.getThisVars().put(new VarVersionPair(0, 0), classStruct.qualifiedName);
-                        paramCount = 1;
-                    }
-                    paramCount += md.params.length;
-
-                    int varIndex = 0;
-                    for (int i = 0; i < paramCount; i++) {
-                        varProc.setVarName(new VarVersionPair(varIndex, 0), vc.getFreeName(varIndex));
-
-                        if (thisVar) {
-                            if (i == 0) {
-                                varIndex++;
-                            } else {
-                                varIndex += md.params[i - 1].stackSize;
-                            }
-                        } else {
-                            varIndex += md.params[i].stackSize;
-                        }
-                    }
+        if (parallel && codeMethods > 1) {
+            for (int i = 0; i < tasks.size(); i++) {
+                if (structMethods.get(i).containsCode()) {
+                    MethodProcessorExecutor.execute(tasks.get(i));
                 }
-            } catch (Throwable t) {
-                String message = "Method " + mt.getName() + " " + mt.getDescriptor() + " couldn't be decompiled.";
-                DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.WARN, t);
-                isError = true;
             }
+        }
 
-            MethodWrapper methodWrapper = new MethodWrapper(root, varProc, mt, counter);
-            methodWrapper.decompiledWithErrors = isError;
+        // 线程池从头开始取任务，调用方从尾部开始执行，已经开始或完成的任务再次run不会重复执行
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            tasks.get(i).run();
+        }
 
-            methods.addWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
+        for (int i = 0; i < structMethods.size(); i++) {
+            StructMethod mt = structMethods.get(i);
+            DecompilerContext.getLogger().startMethod(mt.getName() + " " + mt.getDescriptor());
 
-            if (!isError) {
-                // rename vars so that no one has the same name as a field
-                final VarNamesCollector namesCollector = new VarNamesCollector();
-                //classStruct.getFields().forEach(f -> namesCollector.addName(f.getName()));
-                List827.forEach(classStruct.getFields(), new Function<StructField, Void>() {
-                    @Override
-                    public Void apply(StructField input) {
-                        namesCollector.addName(input.getName());
-                        return null;
-                    }
-                });
-
-                varProc.refreshVarNames(namesCollector);
-
-                // if debug information present and should be used
-                if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
-                    StructLocalVariableTableAttribute attr = mt.getLocalVariableAttr();
-                    if (attr != null) {
-                        // only param names here
-                        varProc.setDebugVarNames(attr.getMapParamNames());
-
-                        // the rest is here
-                        methodWrapper.getOrBuildGraph().iterateExprents(new DirectGraph.ExprentIterator() {
-                            @Override
-                            public int processExprent(Exprent exprent) {
-                                List<Exprent> lst = exprent.getAllExprents(true);
-                                lst.add(exprent);
-                                /*lst.stream()
-                                        .filter(e -> e.type == Exprent.EXPRENT_VAR)
-                                        .forEach(e -> {
-                                            VarExprent varExprent = (VarExprent) e;
-                                            String name = varExprent.getDebugName(mt);
-                                            if (name != null) {
-                                                varProc.setVarName(varExprent.getVarVersionPair(), name);
-                                            }
-                                        });*/
-                                ArrayList<Exprent> list = Lists.newArrayList(lst);
-                                List827.filter(list, new Predicate<Exprent>() {
-                                    @Override
-                                    public boolean apply(Exprent e) {
-                                        return e.type == Exprent.EXPRENT_VAR;
-                                    }
-                                });
-                                List827.forEach(list, new Function<Exprent, Void>() {
-                                    @Override
-                                    public Void apply(Exprent e) {
-                                        VarExprent varExprent = (VarExprent) e;
-                                        String name = varExprent.getDebugName(mt);
-                                        if (name != null) {
-                                            varProc.setVarName(varExprent.getVarVersionPair(), name);
-                                        }
-                                        return null;
-                                    }
-                                });
-                                return 0;
-                            }
-                        });
-                    }
-                }
-            }
+            MethodWrapper methodWrapper = awaitResult(mt, tasks.get(i), processors.get(i), maxSec);
+            methods.addWithKey(methodWrapper, InterpreterUtil.makeUniqueKey(mt.getName(), mt.getDescriptor()));
 
             DecompilerContext.getLogger().endMethod();
         }
@@ -201,9 +87,37 @@ public class ClassWrapper {
         DecompilerContext.getLogger().endClass();
     }
 
-    @SuppressWarnings("deprecation")
-    private static void killThread(Thread thread) {
-        thread.stop();
+    private static MethodWrapper awaitResult(StructMethod mt, FutureTask<Void> task, MethodProcessorRunnable processor, int maxSec) {
+        try {
+            if (maxSec > 0) {
+                task.get(maxSec * 2L, TimeUnit.SECONDS);
+            } else {
+                task.get();
+            }
+            MethodWrapper result = processor.getResult();
+            if (result != null) {
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+        } catch (TimeoutException e) {
+            String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
+            DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
+            task.cancel(true);
+        } catch (ExecutionException e) {
+            String message = "Method " + mt.getName() + " " + mt.getDescriptor() + " couldn't be decompiled.";
+            DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.WARN, e.getCause());
+        } catch (CancellationException e) {
+            // ignore
+        }
+
+        MethodDescriptor md = MethodDescriptor.parseDescriptor(mt.getDescriptor());
+        VarProcessor varProc = new VarProcessor(mt, md);
+        MethodProcessorRunnable.initParameterNames(mt, md, varProc);
+        MethodWrapper methodWrapper = new MethodWrapper(null, varProc, mt, new CounterContainer());
+        methodWrapper.decompiledWithErrors = true;
+        return methodWrapper;
     }
 
     public MethodWrapper getMethodWrapper(String name, String descriptor) {
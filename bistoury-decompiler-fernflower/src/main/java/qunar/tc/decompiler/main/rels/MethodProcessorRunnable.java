@@ -1,63 +1,210 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package qunar.tc.decompiler.main.rels;
 
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
 import qunar.tc.decompiler.code.CodeConstants;
 import qunar.tc.decompiler.code.InstructionSequence;
 import qunar.tc.decompiler.code.cfg.ControlFlowGraph;
+import qunar.tc.decompiler.jdk827.List827;
 import qunar.tc.decompiler.main.DecompilerContext;
 import qunar.tc.decompiler.main.collectors.CounterContainer;
+import qunar.tc.decompiler.main.collectors.VarNamesCollector;
 import qunar.tc.decompiler.main.extern.IFernflowerLogger;
 import qunar.tc.decompiler.main.extern.IFernflowerPreferences;
 import qunar.tc.decompiler.modules.code.DeadCodeHelper;
 import qunar.tc.decompiler.modules.decompiler.*;
 import qunar.tc.decompiler.modules.decompiler.deobfuscator.ExceptionDeobfuscator;
+import qunar.tc.decompiler.modules.decompiler.exps.Exprent;
+import qunar.tc.decompiler.modules.decompiler.exps.VarExprent;
+import qunar.tc.decompiler.modules.decompiler.sforms.DirectGraph;
 import qunar.tc.decompiler.modules.decompiler.stats.RootStatement;
 import qunar.tc.decompiler.modules.decompiler.vars.VarProcessor;
+import qunar.tc.decompiler.modules.decompiler.vars.VarVersionPair;
 import qunar.tc.decompiler.struct.StructClass;
+import qunar.tc.decompiler.struct.StructField;
 import qunar.tc.decompiler.struct.StructMethod;
+import qunar.tc.decompiler.struct.attr.StructLocalVariableTableAttribute;
 import qunar.tc.decompiler.struct.gen.MethodDescriptor;
 
 import java.io.IOException;
-
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 处理单个方法，在自己的方法上下文中运行，可以由线程池或者调用方线程执行
+ * <p>
+ * 超时通过{@link DecompilerContext#checkDeadline()}在处理过程中主动检查，超时的方法降级为字节码列表
+ */
 public class MethodProcessorRunnable implements Runnable {
-    public final Object lock = new Object();
-
     private final StructMethod method;
-    private final MethodDescriptor methodDescriptor;
-    private final VarProcessor varProc;
     private final DecompilerContext parentContext;
+    private final int maxSec;
 
-    private volatile RootStatement root;
-    private volatile Throwable error;
-    private volatile boolean finished = false;
+    private MethodWrapper result;
 
-    public MethodProcessorRunnable(StructMethod method,
-                                   MethodDescriptor methodDescriptor,
-                                   VarProcessor varProc,
-                                   DecompilerContext parentContext) {
+    public MethodProcessorRunnable(StructMethod method, DecompilerContext parentContext, int maxSec) {
         this.method = method;
-        this.methodDescriptor = methodDescriptor;
-        this.varProc = varProc;
         this.parentContext = parentContext;
+        this.maxSec = maxSec;
     }
 
     @Override
     public void run() {
-        error = null;
-        root = null;
+        DecompilerContext previous = DecompilerContext.getCurrentContext();
 
+        MethodDescriptor md = MethodDescriptor.parseDescriptor(method.getDescriptor());
+        VarProcessor varProc = new VarProcessor(method, md);
+        long deadline = maxSec > 0 && method.containsCode() ? System.currentTimeMillis() + maxSec * 1000L : 0;
+        DecompilerContext.setCurrentContext(parentContext.newMethodContext(varProc, deadline));
         try {
-            DecompilerContext.setCurrentContext(parentContext);
-            root = codeToJava(method, methodDescriptor, varProc);
-        } catch (Throwable t) {
-            error = t;
+            result = processMethod(method, md, varProc);
         } finally {
-            DecompilerContext.setCurrentContext(null);
+            DecompilerContext.setCurrentContext(previous);
         }
+    }
+
+    /**
+     * 方法的处理结果，需要在{@link #run()}完成之后调用
+     */
+    public MethodWrapper getResult() {
+        return result;
+    }
 
-        finished = true;
-        synchronized (lock) {
-            lock.notifyAll();
+    private static MethodWrapper processMethod(final StructMethod mt, MethodDescriptor md, final VarProcessor varProc) {
+        StructClass cl = mt.getClassStruct();
+        CounterContainer counter = DecompilerContext.getCounterContainer();
+
+        RootStatement root = null;
+
+        boolean isError = false;
+        String bytecodeListing = null;
+
+        try {
+            if (mt.containsCode()) {
+                root = codeToJava(mt, md, varProc);
+            } else {
+                initParameterNames(mt, md, varProc);
+            }
+        } catch (MethodTimeoutException e) {
+            String message = "Processing time limit exceeded for method " + mt.getName() + ", execution interrupted.";
+            DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.ERROR);
+            isError = true;
+            bytecodeListing = listBytecode(mt);
+        } catch (Throwable t) {
+            String message = "Method " + mt.getName() + " " + mt.getDescriptor() + " couldn't be decompiled.";
+            DecompilerContext.getLogger().writeMessage(message, IFernflowerLogger.Severity.WARN, t);
+            isError = true;
+        }
+
+        MethodWrapper methodWrapper = new MethodWrapper(root, varProc, mt, counter);
+        methodWrapper.decompiledWithErrors = isError;
+        methodWrapper.bytecodeListing = bytecodeListing;
+
+        if (!isError) {
+            // rename vars so that no one has the same name as a field
+            final VarNamesCollector namesCollector = new VarNamesCollector();
+            //classStruct.getFields().forEach(f -> namesCollector.addName(f.getName()));
+            List827.forEach(cl.getFields(), new Function<StructField, Void>() {
+                @Override
+                public Void apply(StructField input) {
+                    namesCollector.addName(input.getName());
+                    return null;
+                }
+            });
+
+            varProc.refreshVarNames(namesCollector);
+
+            // if debug information present and should be used
+            if (DecompilerContext.getOption(IFernflowerPreferences.USE_DEBUG_VAR_NAMES)) {
+                StructLocalVariableTableAttribute attr = mt.getLocalVariableAttr();
+                if (attr != null) {
+                    // only param names here
+                    varProc.setDebugVarNames(attr.getMapParamNames());
+
+                    // the rest is here
+                    methodWrapper.getOrBuildGraph().iterateExprents(new DirectGraph.ExprentIterator() {
+                        @Override
+                        public int processExprent(Exprent exprent) {
+                            List<Exprent> lst = exprent.getAllExprents(true);
+                            lst.add(exprent);
+                            /*lst.stream()
+                                    .filter(e -> e.type == Exprent.EXPRENT_VAR)
+                                    .forEach(e -> {
+                                        VarExprent varExprent = (VarExprent) e;
+                                        String name = varExprent.getDebugName(mt);
+                                        if (name != null) {
+                                            varProc.setVarName(varExprent.getVarVersionPair(), name);
+                                        }
+                                    });*/
+                            ArrayList<Exprent> list = Lists.newArrayList(lst);
+                            List827.filter(list, new Predicate<Exprent>() {
+                                @Override
+                                public boolean apply(Exprent e) {
+                                    return e.type == Exprent.EXPRENT_VAR;
+                                }
+                            });
+                            List827.forEach(list, new Function<Exprent, Void>() {
+                                @Override
+                                public Void apply(Exprent e) {
+                                    VarExprent varExprent = (VarExprent) e;
+                                    String name = varExprent.getDebugName(mt);
+                                    if (name != null) {
+                                        varProc.setVarName(varExprent.getVarVersionPair(), name);
+                                    }
+                                    return null;
+                                }
+                            });
+                            return 0;
+                        }
+                    });
+                }
+            }
+        }
+
+        return methodWrapper;
+    }
+
+    /**
+     * 没有方法体或者无法处理的方法只生成参数名
+     */
+    static void initParameterNames(StructMethod mt, MethodDescriptor md, VarProcessor varProc) {
+        VarNamesCollector vc = varProc.getVarNamesCollector();
+        boolean thisVar = !mt.hasModifier(CodeConstants.ACC_STATIC);
+
+        int paramCount = 0;
+        if (thisVar) {
+            varProc.getThisVars().put(new VarVersionPair(0, 0), mt.getClassStruct().qualifiedName);
+            paramCount = 1;
+        }
+        paramCount += md.params.length;
+
+        int varIndex = 0;
+        for (int i = 0; i < paramCount; i++) {
+            varProc.setVarName(new VarVersionPair(varIndex, 0), vc.getFreeName(varIndex));
+
+            if (thisVar) {
+                if (i == 0) {
+                    varIndex++;
+                } else {
+                    varIndex += md.params[i - 1].stackSize;
+                }
+            } else {
+                varIndex += md.params[i].stackSize;
+            }
+        }
+    }
+
+    private static String listBytecode(StructMethod mt) {
+        try {
+            mt.expandData();
+            return mt.getInstructionSequence().toString(0);
+        } catch (Throwable t) {
+            DecompilerContext.getLogger().writeMessage("Method " + mt.getName() + " bytecode couldn't be listed.", IFernflowerLogger.Severity.WARN, t);
+            return null;
+        } finally {
+            mt.releaseResources();
         }
     }
 
@@ -111,10 +258,13 @@ public class MethodProcessorRunnable implements Runnable {
             ExceptionDeobfuscator.insertDummyExceptionHandlerBlocks(graph, cl.getBytecodeVersion());
         }
 
+        DecompilerContext.checkDeadline();
+
         RootStatement root = DomHelper.parseGraph(graph);
 
         FinallyProcessor fProc = new FinallyProcessor(md, varProc);
         while (fProc.iterateGraph(mt, root, graph)) {
+            DecompilerContext.checkDeadline();
             root = DomHelper.parseGraph(graph);
         }
 
@@ -128,6 +278,8 @@ public class MethodProcessorRunnable implements Runnable {
 
         ClearStructHelper.clearStatements(root);
 
+        DecompilerContext.checkDeadline();
+
         ExprProcessor proc = new ExprProcessor(md, varProc);
         proc.processStatement(root, cl);
 
@@ -136,15 +288,18 @@ public class MethodProcessorRunnable implements Runnable {
         StackVarsProcessor stackProc = new StackVarsProcessor();
 
         do {
+            DecompilerContext.checkDeadline();
             stackProc.simplifyStackVars(root, mt, cl);
             varProc.setVarVersions(root);
         }
         while (new PPandMMHelper().findPPandMM(root));
 
         while (true) {
+            DecompilerContext.checkDeadline();
             LabelHelper.cleanUpEdges(root);
 
             do {
+                DecompilerContext.checkDeadline();
                 MergeHelper.enhanceLoops(root);
             }
             while (LoopExtractHelper.extractLoops(root) || IfHelper.mergeAllIfs(root));
@@ -174,6 +329,8 @@ public class MethodProcessorRunnable implements Runnable {
             //}
         }
 
+        DecompilerContext.checkDeadline();
+
         ExitHelper.removeRedundantReturns(root);
 
         SecondaryFunctionsHelper.identifySecondaryFunctions(root, varProc);
@@ -188,14 +345,4 @@ public class MethodProcessorRunnable implements Runnable {
 
         return root;
     }
-
-    public RootStatement getResult() throws Throwable {
-        Throwable t = error;
-        if (t != null) throw t;
-        return root;
-    }
-
-    public boolean isFinished() {
-        return finished;
-    }
 }
\ No newline at end of file
@@ -118,6 +118,7 @@ public class DomHelper {
         }
 
         do {
+            DecompilerContext.checkDeadline();
 
             for (Statement stat : lstStats) {
 
@@ -352,6 +353,7 @@ public class DomHelper {
                     boolean forceall = i != 0;
 
                     while (true) {
+                        DecompilerContext.checkDeadline();
 
                         if (findSimpleStatements(general, mapExtPost)) {
                             reducibility = 0;
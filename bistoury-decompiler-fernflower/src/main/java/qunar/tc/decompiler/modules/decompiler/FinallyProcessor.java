@@ -57,6 +57,7 @@ public class FinallyProcessor {
         stack.add(root);
 
         while (!stack.isEmpty()) {
+            DecompilerContext.checkDeadline();
             Statement stat = stack.removeLast();
 
             Statement parent = stat.getParent();
@@ -117,7 +118,7 @@ public class FinallyProcessor {
     }
 
     private Record getFinallyInformation(StructMethod mt, RootStatement root, CatchAllStatement fstat) {
-        Map<BasicBlock, Boolean> mapLast = new HashMap<>();
+        Map<BasicBlock, Boolean> mapLast = new LinkedHashMap<>();
 
         BasicBlockStatement firstBlockStatement = fstat.getHandler().getBasichead();
         BasicBlock firstBasicBlock = firstBlockStatement.getBlock();
@@ -293,7 +294,7 @@ public class FinallyProcessor {
                                         int var,
                                         Record information,
                                         int bytecode_version) {
-        Set<BasicBlock> setCopy = new HashSet<>(setTry);
+        Set<BasicBlock> setCopy = new LinkedHashSet<>(setTry);
 
         int finallytype = information.firstCode;
         Map<BasicBlock, Boolean> mapLast = information.mapLast;
@@ -369,7 +370,7 @@ public class FinallyProcessor {
         setCopy.add(newhead);
         setCopy.add(newheadinit);
 
-        for (BasicBlock hd : new HashSet<>(newheadinit.getSuccExceptions())) {
+        for (BasicBlock hd : new LinkedHashSet<>(newheadinit.getSuccExceptions())) {
             ExceptionRangeCFG range = graph.getExceptionRange(hd, newheadinit);
 
             if (setCopy.containsAll(range.getProtectedRange())) {
@@ -428,7 +429,7 @@ public class FinallyProcessor {
         }
         while (index < lst.size());
 
-        Set<BasicBlock> res = new HashSet<>();
+        Set<BasicBlock> res = new LinkedHashSet<>();
 
         for (Statement st : lst) {
             res.add(((BasicBlockStatement) st).getBlock());
@@ -467,7 +468,8 @@ public class FinallyProcessor {
         }
 
         // identify start blocks
-        Set<BasicBlock> startBlocks = new HashSet<>();
+        // BasicBlock没有重写hashCode，这里的集合都按插入顺序遍历，保证每次反编译的结果一致
+        Set<BasicBlock> startBlocks = new LinkedHashSet<>();
         for (BasicBlock block : tryBlocks) {
             startBlocks.addAll(block.getSuccs());
         }
@@ -551,7 +553,7 @@ public class FinallyProcessor {
 
         List<BlockStackEntry> stack = new LinkedList<>();
 
-        Set<BasicBlock> setSample = new HashSet<>();
+        Set<BasicBlock> setSample = new LinkedHashSet<>();
 
         Map<String, BasicBlock[]> mapNext = new HashMap<>();
 
@@ -631,7 +633,7 @@ public class FinallyProcessor {
             }
 
             if (isLastBlock) {
-                Set<BasicBlock> setSuccs = new HashSet<>(blockSample.getSuccs());
+                Set<BasicBlock> setSuccs = new LinkedHashSet<>(blockSample.getSuccs());
                 setSuccs.removeAll(setSample);
 
                 for (BlockStackEntry stackent : stack) {
@@ -646,7 +648,7 @@ public class FinallyProcessor {
             }
         }
 
-        return new Area(startSample, setSample, getUniqueNext(graph, new HashSet<>(mapNext.values())));
+        return new Area(startSample, setSample, getUniqueNext(graph, new LinkedHashSet<>(mapNext.values())));
     }
 
     private static BasicBlock getUniqueNext(ControlFlowGraph graph, Set<BasicBlock[]> setNext) {
@@ -854,14 +856,14 @@ public class FinallyProcessor {
         }
 
         // collect common exception ranges of predecessors and successors
-        Set<BasicBlock> setCommonExceptionHandlers = new HashSet<>(next.getSuccExceptions());
+        Set<BasicBlock> setCommonExceptionHandlers = new LinkedHashSet<>(next.getSuccExceptions());
         for (BasicBlock pred : start.getPreds()) {
             setCommonExceptionHandlers.retainAll(pred.getSuccExceptions());
         }
 
         boolean is_outside_range = false;
 
-        Set<BasicBlock> setPredecessors = new HashSet<>(start.getPreds());
+        Set<BasicBlock> setPredecessors = new LinkedHashSet<>(start.getPreds());
 
         // replace start with next
         for (BasicBlock pred : setPredecessors) {
@@ -883,7 +885,7 @@ public class FinallyProcessor {
                     is_outside_range = true;
                 }
 
-                Set<ExceptionRangeCFG> setRemovedExceptionRanges = new HashSet<>();
+                Set<ExceptionRangeCFG> setRemovedExceptionRanges = new LinkedHashSet<>();
                 for (BasicBlock handler : block.getSuccExceptions()) {
                     setRemovedExceptionRanges.add(graph.getExceptionRange(handler, block));
                 }
@@ -21,30 +21,38 @@ import java.util.*;
 import java.util.Map.Entry;
 
 public class SimplifyExprentsHelper {
-    @SuppressWarnings("SpellCheckingInspection")
-    private static final MatchEngine class14Builder = new MatchEngine(
-            "statement type:if iftype:if exprsize:-1\n" +
-                    " exprent position:head type:if\n" +
-                    "  exprent type:function functype:eq\n" +
-                    "   exprent type:field name:$fieldname$\n" +
-                    "   exprent type:constant consttype:null\n" +
-                    " statement type:basicblock\n" +
-                    "  exprent position:-1 type:assignment ret:$assignfield$\n" +
-                    "   exprent type:var index:$var$\n" +
-                    "   exprent type:field name:$fieldname$\n" +
-                    " statement type:sequence statsize:2\n" +
-                    "  statement type:trycatch\n" +
-                    "   statement type:basicblock exprsize:1\n" +
-                    "    exprent type:assignment\n" +
-                    "     exprent type:var index:$var$\n" +
-                    "     exprent type:invocation invclass:java/lang/Class signature:forName(Ljava/lang/String;)Ljava/lang/Class;\n" +
-                    "      exprent position:0 type:constant consttype:string constvalue:$classname$\n" +
-                    "   statement type:basicblock exprsize:1\n" +
-                    "    exprent type:exit exittype:throw\n" +
-                    "  statement type:basicblock exprsize:1\n" +
-                    "   exprent type:assignment\n" +
-                    "    exprent type:field name:$fieldname$ ret:$field$\n" +
-                    "    exprent type:var index:$var$");
+    /**
+     * MatchEngine在匹配时会保存变量，方法可能在多个线程中同时处理，所以每个线程一个
+     */
+    private static final ThreadLocal<MatchEngine> class14Builder = new ThreadLocal<MatchEngine>() {
+        @SuppressWarnings("SpellCheckingInspection")
+        @Override
+        protected MatchEngine initialValue() {
+            return new MatchEngine(
+                    "statement type:if iftype:if exprsize:-1\n" +
+                            " exprent position:head type:if\n" +
+                            "  exprent type:function functype:eq\n" +
+                            "   exprent type:field name:$fieldname$\n" +
+                            "   exprent type:constant consttype:null\n" +
+                            " statement type:basicblock\n" +
+                            "  exprent position:-1 type:assignment ret:$assignfield$\n" +
+                            "   exprent type:var index:$var$\n" +
+                            "   exprent type:field name:$fieldname$\n" +
+                            " statement type:sequence statsize:2\n" +
+                            "  statement type:trycatch\n" +
+                            "   statement type:basicblock exprsize:1\n" +
+                            "    exprent type:assignment\n" +
+                            "     exprent type:var index:$var$\n" +
+                            "     exprent type:invocation invclass:java/lang/Class signature:forName(Ljava/lang/String;)Ljava/lang/Class;\n" +
+                            "      exprent position:0 type:constant consttype:string constvalue:$classname$\n" +
+                            "   statement type:basicblock exprsize:1\n" +
+                            "    exprent type:exit exittype:throw\n" +
+                            "  statement type:basicblock exprsize:1\n" +
+                            "   exprent type:assignment\n" +
+                            "    exprent type:field name:$fieldname$ ret:$field$\n" +
+                            "    exprent type:var index:$var$");
+        }
+    };
 
     private final boolean firstInvocation;
 
@@ -740,6 +748,7 @@ public class SimplifyExprentsHelper {
     }
 
     private static boolean collapseInlinedClass14(Statement stat) {
+        MatchEngine class14Builder = SimplifyExprentsHelper.class14Builder.get();
         boolean ret = class14Builder.match(stat);
         if (ret) {
             String class_name = (String) class14Builder.getVariableValue("$classname$");
@@ -2,6 +2,7 @@
 package qunar.tc.decompiler.modules.decompiler;
 
 import qunar.tc.decompiler.code.CodeConstants;
+import qunar.tc.decompiler.main.DecompilerContext;
 import qunar.tc.decompiler.modules.decompiler.exps.*;
 import qunar.tc.decompiler.modules.decompiler.sforms.*;
 import qunar.tc.decompiler.modules.decompiler.stats.DoStatement;
@@ -26,6 +27,7 @@ public class StackVarsProcessor {
         SSAUConstructorSparseEx ssau = null;
 
         while (true) {
+            DecompilerContext.checkDeadline();
             boolean found = false;
 
             SSAConstructorSparseEx ssa = new SSAConstructorSparseEx();
@@ -33,6 +35,7 @@ public class StackVarsProcessor {
 
             SimplifyExprentsHelper sehelper = new SimplifyExprentsHelper(ssau == null);
             while (sehelper.simplifyStackVarsStatement(root, setReorderedIfs, ssa, cl)) {
+                DecompilerContext.checkDeadline();
                 found = true;
             }
 
@@ -2,6 +2,7 @@
 package qunar.tc.decompiler.modules.decompiler.sforms;
 
 import qunar.tc.decompiler.code.CodeConstants;
+import qunar.tc.decompiler.main.DecompilerContext;
 import qunar.tc.decompiler.modules.decompiler.exps.AssignmentExprent;
 import qunar.tc.decompiler.modules.decompiler.exps.Exprent;
 import qunar.tc.decompiler.modules.decompiler.exps.FunctionExprent;
@@ -69,6 +70,7 @@ public class SSAConstructorSparseEx {
 
         HashSet<String> updated = new HashSet<>();
         do {
+            DecompilerContext.checkDeadline();
             // System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
             ssaStatements(dgraph, updated);
             // System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
@@ -2,6 +2,7 @@
 package qunar.tc.decompiler.modules.decompiler.sforms;
 
 import qunar.tc.decompiler.code.CodeConstants;
+import qunar.tc.decompiler.main.DecompilerContext;
 import qunar.tc.decompiler.modules.decompiler.exps.*;
 import qunar.tc.decompiler.modules.decompiler.sforms.FlattenStatementsHelper.FinallyPathWrapper;
 import qunar.tc.decompiler.modules.decompiler.stats.*;
@@ -87,6 +88,7 @@ public class SSAUConstructorSparseEx {
 
         HashSet<String> updated = new HashSet<>();
         do {
+            DecompilerContext.checkDeadline();
             //			System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
             ssaStatements(dgraph, updated, false);
             //			System.out.println("~~~~~~~~~~~~~ \r\n"+root.toJava());
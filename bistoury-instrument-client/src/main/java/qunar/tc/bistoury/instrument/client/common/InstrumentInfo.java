@@ -17,6 +17,8 @@
 
 package qunar.tc.bistoury.instrument.client.common;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.taobao.middleware.logger.Logger;
@@ -24,6 +26,7 @@ import org.objectweb.asm.Type;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.instrument.client.classpath.AppClassPathSupplier;
 import qunar.tc.bistoury.instrument.client.classpath.AppLibClassSupplier;
+import qunar.tc.bistoury.instrument.client.location.ClassPathLookup;
 
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
@@ -52,6 +55,17 @@ public class InstrumentInfo {
 
     private final Set<Class> transformedClasses = Sets.newHashSet();
 
+    /**
+     * 索引应用classpath的开销很大，第一次设置断点或监控时才创建，debugger和monitor共用
+     */
+    private final Supplier<ClassPathLookup> classPathLookup = Suppliers.memoize(new Supplier<ClassPathLookup>() {
+        @Override
+        public ClassPathLookup get() {
+            String[] currentWebClassesPath = getClassPath().toArray(new String[0]);
+            return new ClassPathLookup(false, currentWebClassesPath);
+        }
+    });
+
     private volatile boolean running = true;
 
     public InstrumentInfo(
@@ -87,6 +101,15 @@ public class InstrumentInfo {
         return appClassPathSupplier.get();
     }
 
+    public ClassPathLookup getClassPathLookup() {
+        try {
+            return classPathLookup.get();
+        } catch (Exception e) {
+            logger.error("", "cannot create classPathLookup", e);
+            throw new IllegalStateException("cannot create classPathLookup, " + e.getMessage(), e);
+        }
+    }
+
     public ClassFileBuffer getClassFileBuffer() {
         return classFileBuffer;
     }
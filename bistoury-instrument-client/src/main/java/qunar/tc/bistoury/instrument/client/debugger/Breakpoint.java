@@ -19,8 +19,10 @@ package qunar.tc.bistoury.instrument.client.debugger;
 
 import qunar.tc.bistoury.instrument.client.location.Location;
 import qunar.tc.bistoury.instrument.client.spring.el.Expression;
+import qunar.tc.bistoury.instrument.client.spring.el.StandardEvaluationContext;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author zhenyu.nie created on 2018 2018/9/21 14:23
@@ -33,12 +35,30 @@ public class Breakpoint {
 
     private final Expression condition;
 
-    private final AtomicBoolean trigger = new AtomicBoolean(false);
+    private final StandardEvaluationContext conditionContext;
+
+    private final HitPolicy policy;
+
+    private final AtomicInteger hits = new AtomicInteger(0);
+
+    private final AtomicLong sampleCount = new AtomicLong(0);
+
+    private final AtomicLong rateSecond = new AtomicLong(0);
+
+    private final AtomicInteger rateCount = new AtomicInteger(0);
+
+    private final AtomicInteger slowConditionTimes = new AtomicInteger(0);
 
     public Breakpoint(String id, Location location, Expression condition) {
+        this(id, location, condition, null, HitPolicy.ONCE);
+    }
+
+    public Breakpoint(String id, Location location, Expression condition, StandardEvaluationContext conditionContext, HitPolicy policy) {
         this.id = id;
         this.location = location;
         this.condition = condition;
+        this.conditionContext = conditionContext;
+        this.policy = policy;
     }
 
     public String getId() {
@@ -53,7 +73,50 @@ public class Breakpoint {
         return condition;
     }
 
+    public StandardEvaluationContext getConditionContext() {
+        return conditionContext;
+    }
+
+    public HitPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 按采样和限速决定这次命中是否拿快照，快照次数用完后不再触发
+     */
     public boolean trigger() {
-        return trigger.compareAndSet(false, true);
+        if (policy.getSampleEvery() > 1 && sampleCount.incrementAndGet() % policy.getSampleEvery() != 0) {
+            return false;
+        }
+        if (policy.getMaxPerSecond() > 0 && !acquireRate()) {
+            return false;
+        }
+        return hits.incrementAndGet() <= policy.getMaxHits();
+    }
+
+    public boolean isExhausted() {
+        return hits.get() >= policy.getMaxHits();
+    }
+
+    private boolean acquireRate() {
+        long second = System.currentTimeMillis() / 1000;
+        long current = rateSecond.get();
+        if (current != second && rateSecond.compareAndSet(current, second)) {
+            rateCount.set(0);
+        }
+        return rateCount.incrementAndGet() <= policy.getMaxPerSecond();
+    }
+
+    /**
+     * 记录一次条件表达式执行超时，返回连续超时的次数
+     */
+    int markSlowCondition() {
+        return slowConditionTimes.incrementAndGet();
+    }
+
+    void resetSlowCondition() {
+        if (slowConditionTimes.get() != 0) {
+            slowConditionTimes.set(0);
+        }
     }
 }
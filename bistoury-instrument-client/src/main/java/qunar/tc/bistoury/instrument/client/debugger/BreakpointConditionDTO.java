@@ -22,11 +22,12 @@ import java.util.Map;
 /**
  * 判断断点条件是否为真时使用的rootObject
  * 持有运行时类的上下文。同时也变相规定了程序所接受的断点条件的编写规范。
+ * 条件表达式只通过字段读取属性，类和字段需要是public的，表达式才能被编译成直接读取字段的字节码
  */
-class BreakpointConditionDTO {
-    private Map<String, Object> localVariables;
-    private Map<String, Object> fields;
-    private Map<String, Object> staticFields;
+public class BreakpointConditionDTO {
+    public Map<String, Object> localVariables;
+    public Map<String, Object> fields;
+    public Map<String, Object> staticFields;
 
     public Map<String, Object> getLocalVariables() {
         return localVariables;
@@ -18,11 +18,14 @@
 package qunar.tc.bistoury.instrument.client.debugger;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
 import org.objectweb.asm.Opcodes;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author keli.wang
@@ -31,11 +34,13 @@ final class ClassMetadata {
     private final List<ClassField> fields;
     private final List<ClassField> staticFields;
     private final Multimap<String, LocalVariable> variables;
+    private final SetMultimap<Integer, String> lineMethods;
 
     public ClassMetadata() {
         fields = Lists.newArrayList();
         staticFields = Lists.newArrayList();
         variables = ArrayListMultimap.create();
+        lineMethods = HashMultimap.create();
     }
 
     public void addField(final ClassField field) {
@@ -50,6 +55,17 @@ final class ClassMetadata {
         variables.put(methodId, variable);
     }
 
+    public void addLine(final String methodId, final int line) {
+        lineMethods.put(line, methodId);
+    }
+
+    /**
+     * @return 行号表中包含这一行的方法，构造函数中的字段初始化等情况下会有多个
+     */
+    public Set<String> getMethodsOfLine(final int line) {
+        return lineMethods.get(line);
+    }
+
     public List<ClassField> getFields() {
         return fields;
     }
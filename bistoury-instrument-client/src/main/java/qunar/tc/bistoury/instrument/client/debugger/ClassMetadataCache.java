@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.debugger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * 按类缓存断点增强用的元数据（字段、局部变量、行号表），同一个类上连续设置断点时不再重复分析字节码
+ * <p>
+ * 缓存项带有字节码的hash，类被其它方式重新增强后字节码变化，下次查询时重新分析；
+ * 断点增强不改变字段、局部变量和行号，增强后的字节码直接沿用原来的元数据
+ */
+public final class ClassMetadataCache {
+
+    private static final int MAX_CACHED_CLASSES = 256;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private static final Cache<Class<?>, Entry> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(MAX_CACHED_CLASSES)
+            .build();
+
+    private ClassMetadataCache() {
+    }
+
+    static ClassMetadata get(final Class<?> clazz, final byte[] classBytes) {
+        final HashCode hash = HASH_FUNCTION.hashBytes(classBytes);
+        if (clazz != null) {
+            final Entry entry = cache.getIfPresent(clazz);
+            if (entry != null && entry.hash.equals(hash)) {
+                return entry.metadata;
+            }
+        }
+
+        final ClassMetadata metadata = new ClassMetadata();
+        new ClassReader(classBytes).accept(new MetadataCollector(metadata), ClassReader.SKIP_FRAMES);
+        if (clazz != null) {
+            cache.put(clazz, new Entry(hash, metadata));
+        }
+        return metadata;
+    }
+
+    /**
+     * 断点增强后的字节码沿用增强前的元数据
+     */
+    static void update(final Class<?> clazz, final byte[] classBytes, final ClassMetadata metadata) {
+        if (clazz != null) {
+            cache.put(clazz, new Entry(HASH_FUNCTION.hashBytes(classBytes), metadata));
+        }
+    }
+
+    /**
+     * 监控等其它增强会改变方法结构，增强后直接丢弃缓存
+     */
+    public static void invalidate(final Class<?> clazz) {
+        if (clazz != null) {
+            cache.invalidate(clazz);
+        }
+    }
+
+    public static void clear() {
+        cache.invalidateAll();
+    }
+
+    private static final class Entry {
+        private final HashCode hash;
+        private final ClassMetadata metadata;
+
+        private Entry(final HashCode hash, final ClassMetadata metadata) {
+            this.hash = hash;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -23,7 +23,7 @@ public interface Debugger {
 
     boolean startup(InstrumentInfo instrumentInfo, SnapshotReceiver receiver);
 
-    String registerBreakpoint(final String source, final int line, final String breakpointCondition);
+    String registerBreakpoint(final String source, final int line, final String breakpointCondition, final HitPolicy policy);
 
     void unRegisterBreakpoint(final String source, final int line, String breakpointId);
 
@@ -33,6 +33,8 @@ import java.util.Objects;
 import java.util.concurrent.locks.Lock;
 
 /**
+ * 转换结果先记在transformer上，retransform成功后再通过{@link #commit(Class)}写入ClassFileBuffer
+ *
  * @author keli.wang
  * @since 2017/3/15
  */
@@ -42,11 +44,22 @@ class DebuggerClassFileTransformer extends Transformer {
     private final ClassFileBuffer classFileBuffer;
     private final String source;
     private final String debugClassName;
+    private final int line;
+    private final boolean selective;
+
+    private byte[] transformed;
+    private ClassMetadata transformedMetadata;
+    private boolean selectiveApplied;
 
-    DebuggerClassFileTransformer(ClassFileBuffer classFileBuffer, String source, ResolvedSourceLocation location) {
+    /**
+     * @param selective 是否尝试只重写断点所在的方法，为false时整个类重写并重新计算帧
+     */
+    DebuggerClassFileTransformer(ClassFileBuffer classFileBuffer, String source, ResolvedSourceLocation location, boolean selective) {
         this.classFileBuffer = classFileBuffer;
         this.source = source;
         this.debugClassName = signatureToClassName(location.getClassSignature());
+        this.line = location.getAdjustedLineNumber();
+        this.selective = selective;
     }
 
     @Override
@@ -62,21 +75,62 @@ class DebuggerClassFileTransformer extends Transformer {
         Lock lock = classFileBuffer.getLock();
         lock.lock();
         try {
-            final ClassReader classReader = new ClassReader(classFileBuffer.getClassBuffer(classBeingRedefined, classBytes));
-            final ClassMetadata classMetadata = new ClassMetadata();
-            classReader.accept(new MetadataCollector(classMetadata), ClassReader.SKIP_FRAMES);
+            final byte[] current = classFileBuffer.getClassBuffer(classBeingRedefined, classBytes);
+            final ClassReader classReader = new ClassReader(current);
+            final ClassMetadata classMetadata = ClassMetadataCache.get(classBeingRedefined, current);
 
-            final ClassWriter classWriter = new ClassWriter(computeFlag(classReader));
-            final ClassVisitor classVisitor = new DebuggerClassVisitor(new CheckClassAdapter(classWriter), source, classMetadata);
-            classReader.accept(classVisitor, ClassReader.SKIP_FRAMES);
-            byte[] bytes = classWriter.toByteArray();
-            classFileBuffer.setClassBuffer(classBeingRedefined, bytes);
+            byte[] bytes = null;
+            if (selective && canTransformSelectively(classReader)) {
+                try {
+                    final ClassWriter classWriter = newSelectiveWriter(classReader);
+                    classReader.accept(new DebuggerClassVisitor(classWriter, source, line, classMetadata, true), ClassReader.EXPAND_FRAMES);
+                    bytes = classWriter.toByteArray();
+                    selectiveApplied = true;
+                } catch (RuntimeException e) {
+                    LOG.warn("selective debug transform failed, transform whole class, class: {}, line: {}", className, line, e);
+                }
+            }
+            if (bytes == null) {
+                final ClassWriter classWriter = new ClassWriter(computeFlag(classReader));
+                final ClassVisitor classVisitor = new DebuggerClassVisitor(new CheckClassAdapter(classWriter), source, line, classMetadata, false);
+                classReader.accept(classVisitor, ClassReader.SKIP_FRAMES);
+                bytes = classWriter.toByteArray();
+            }
+            transformed = bytes;
+            transformedMetadata = classMetadata;
             return bytes;
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * @return 转换结果是否来自增量转换，增量转换的结果被jvm拒绝时可以整个类重写再试一次
+     */
+    boolean isSelectiveApplied() {
+        return selectiveApplied;
+    }
+
+    /**
+     * retransform成功后调用，把转换结果写入ClassFileBuffer
+     *
+     * @return 没有转换过这个类时返回false
+     */
+    boolean commit(final Class<?> clazz) {
+        if (transformed == null) {
+            return false;
+        }
+        Lock lock = classFileBuffer.getLock();
+        lock.lock();
+        try {
+            classFileBuffer.setClassBuffer(clazz, transformed);
+            ClassMetadataCache.update(clazz, transformed, transformedMetadata);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private String signatureToClassName(final String signature) {
         return Type.getType(signature).getInternalName();
     }
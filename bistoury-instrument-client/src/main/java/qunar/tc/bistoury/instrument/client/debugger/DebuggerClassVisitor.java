@@ -20,23 +20,38 @@ package qunar.tc.bistoury.instrument.client.debugger;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.AnalyzerAdapter;
+import org.objectweb.asm.util.CheckMethodAdapter;
+
+import java.util.Set;
 
 /**
+ * 只增强行号表中包含断点行的方法，其它方法原样交给下游；
+ * 增量模式下下游直接是共享常量池的ClassWriter，其它方法的字节码会被直接复制，增强的方法经过CheckMethodAdapter检查
+ *
  * @author keli.wang
  * @since 2017/3/15
  */
 class DebuggerClassVisitor extends ClassVisitor {
     private final String source;
+    private final int line;
     private final ClassMetadata classMetadata;
+    private final Set<String> methods;
+    private final boolean selective;
 
     private String className;
 
     public DebuggerClassVisitor(final ClassVisitor cv,
                                 final String source,
-                                final ClassMetadata classMetadata) {
+                                final int line,
+                                final ClassMetadata classMetadata,
+                                final boolean selective) {
         super(Opcodes.ASM5, cv);
         this.source = source;
+        this.line = line;
         this.classMetadata = classMetadata;
+        this.methods = classMetadata.getMethodsOfLine(line);
+        this.selective = selective;
     }
 
     @Override
@@ -60,11 +75,23 @@ class DebuggerClassVisitor extends ClassVisitor {
                 super.visitMethod(access, name,
                         desc, signature,
                         exceptions);
+        if (!methods.contains(name + desc)) {
+            return originalMV;
+        }
+
+        if (!selective) {
+            return new DebuggerMethodVisitor(
+                    source, line, className,
+                    name, desc,
+                    access,
+                    classMetadata, originalMV, null);
+        }
 
+        final AnalyzerAdapter analyzer = new AnalyzerAdapter(className, access, name, desc, new CheckMethodAdapter(originalMV));
         return new DebuggerMethodVisitor(
-                source, className,
+                source, line, className,
                 name, desc,
                 access,
-                classMetadata, originalMV);
+                classMetadata, analyzer, analyzer);
     }
 }
@@ -17,22 +17,29 @@
 
 package qunar.tc.bistoury.instrument.client.debugger;
 
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.commons.AdviceAdapter;
-import qunar.tc.bistoury.instrument.client.location.Location;
+import org.objectweb.asm.commons.AnalyzerAdapter;
 import qunar.tc.bistoury.instrument.spy.BistourySpys1;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author keli.wang
  * @since 2017/3/15
  * DefaultDebugger形式使用的字节码修改类
+ * <p>
+ * analyzer不为空时增量维护帧：断点代码插在这一行原有的帧之后，插入代码结尾的跳转目标使用插入位置的帧，
+ * 插入位置不可达拿不到帧时抛出IllegalStateException，由调用方回退到重新计算帧
+ * <p>
+ * 不对局部变量重新编号，增强前后局部变量表不变，缓存的类元数据在增强后可以继续使用
  */
-class DebuggerMethodVisitor extends AdviceAdapter {
+class DebuggerMethodVisitor extends MethodVisitor implements Opcodes {
 
     private static final String SPY_NAME = Type.getInternalName(BistourySpys1.class);
     private static final String THROWABLE_INTERNALNAME = Type.getInternalName(Throwable.class);
@@ -42,24 +49,32 @@ class DebuggerMethodVisitor extends AdviceAdapter {
     private static final String ENDRECEIVE_METHOD_DESC = "(Ljava/lang/String;I)V";
 
     private final String source;
+    private final int breakpointLine;
     private final String className;
     private final String methodUniqueName;
     private final int access;
     private final ClassMetadata classMetadata;
+    private final AnalyzerAdapter analyzer;
+
+    private boolean pending;
 
     DebuggerMethodVisitor(final String source,
+                          final int breakpointLine,
                           final String className,
                           final String methodName,
                           final String desc,
                           final int access,
                           final ClassMetadata classMetadata,
-                          final MethodVisitor mv) {
-        super(ASM5, mv, access, methodName, desc);
+                          final MethodVisitor mv,
+                          final AnalyzerAdapter analyzer) {
+        super(ASM5, mv);
         this.source = source;
+        this.breakpointLine = breakpointLine;
         this.className = className;
         this.methodUniqueName = methodName + desc;
         this.access = access;
         this.classMetadata = classMetadata;
+        this.analyzer = analyzer;
     }
 
     /**
@@ -70,15 +85,151 @@ class DebuggerMethodVisitor extends AdviceAdapter {
     @Override
     public void visitLineNumber(final int line, final Label start) {
         super.visitLineNumber(line, start);
-        Location location = new Location(source, line);
-        if (GlobalDebugContext.hasBreakpointSet(location)) {
-            final Label breakpointLabel = new Label();
-            breakpointSwitch(source, line, breakpointLabel);
-            captureSnapshot(line);
-            isHit(source, line, breakpointLabel);
-            processForBreakpoint(source, line);
-            super.visitLabel(breakpointLabel);
+        if (line != breakpointLine) {
+            return;
+        }
+        if (analyzer == null) {
+            insertBreakpoint();
+        } else {
+            //ClassReader在行号之后才访问这个位置的帧，等帧或者下一条指令到来时再插入
+            pending = true;
+        }
+    }
+
+    private void insertPending() {
+        if (pending) {
+            pending = false;
+            insertBreakpoint();
+        }
+    }
+
+    private void insertBreakpoint() {
+        final int line = breakpointLine;
+        final Label breakpointLabel = new Label();
+        Object[] locals = null;
+        Object[] stack = null;
+        if (analyzer != null) {
+            if (analyzer.locals == null) {
+                throw new IllegalStateException("frame unavailable at line " + line + " of " + methodUniqueName);
+            }
+            locals = toFrameTypes(analyzer.locals);
+            stack = toFrameTypes(analyzer.stack);
+        }
+
+        breakpointSwitch(source, line, breakpointLabel);
+        captureSnapshot(line, locals);
+        isHit(source, line, breakpointLabel);
+        processForBreakpoint(source, line);
+        super.visitLabel(breakpointLabel);
+        if (analyzer != null) {
+            //插入的代码不改变局部变量和操作数栈，跳转目标的帧与插入位置相同
+            super.visitFrame(F_NEW, locals.length, locals, stack.length, stack);
+        }
+    }
+
+    /**
+     * AnalyzerAdapter中long和double占两项，帧中只占一项
+     */
+    private static Object[] toFrameTypes(final List<Object> types) {
+        final List<Object> result = new ArrayList<>(types.size());
+        for (int i = 0; i < types.size(); i++) {
+            final Object type = types.get(i);
+            result.add(type);
+            if (Opcodes.LONG.equals(type) || Opcodes.DOUBLE.equals(type)) {
+                i++;
+            }
         }
+        return result.toArray();
+    }
+
+    @Override
+    public void visitFrame(final int type, final int nLocal, final Object[] local, final int nStack, final Object[] stack) {
+        super.visitFrame(type, nLocal, local, nStack, stack);
+        insertPending();
+    }
+
+    @Override
+    public void visitLabel(final Label label) {
+        insertPending();
+        super.visitLabel(label);
+    }
+
+    @Override
+    public void visitInsn(final int opcode) {
+        insertPending();
+        super.visitInsn(opcode);
+    }
+
+    @Override
+    public void visitIntInsn(final int opcode, final int operand) {
+        insertPending();
+        super.visitIntInsn(opcode, operand);
+    }
+
+    @Override
+    public void visitVarInsn(final int opcode, final int var) {
+        insertPending();
+        super.visitVarInsn(opcode, var);
+    }
+
+    @Override
+    public void visitTypeInsn(final int opcode, final String type) {
+        insertPending();
+        super.visitTypeInsn(opcode, type);
+    }
+
+    @Override
+    public void visitFieldInsn(final int opcode, final String owner, final String name, final String desc) {
+        insertPending();
+        super.visitFieldInsn(opcode, owner, name, desc);
+    }
+
+    @Override
+    public void visitMethodInsn(final int opcode, final String owner, final String name, final String desc, final boolean itf) {
+        insertPending();
+        super.visitMethodInsn(opcode, owner, name, desc, itf);
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(final String name, final String desc, final Handle bsm, final Object... bsmArgs) {
+        insertPending();
+        super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+    }
+
+    @Override
+    public void visitJumpInsn(final int opcode, final Label label) {
+        insertPending();
+        super.visitJumpInsn(opcode, label);
+    }
+
+    @Override
+    public void visitLdcInsn(final Object cst) {
+        insertPending();
+        super.visitLdcInsn(cst);
+    }
+
+    @Override
+    public void visitIincInsn(final int var, final int increment) {
+        insertPending();
+        super.visitIincInsn(var, increment);
+    }
+
+    @Override
+    public void visitTableSwitchInsn(final int min, final int max, final Label dflt, final Label... labels) {
+        insertPending();
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+        insertPending();
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(final String desc, final int dims) {
+        insertPending();
+        super.visitMultiANewArrayInsn(desc, dims);
     }
 
     private void breakpointSwitch(String source, int line, Label breakpointLabel) {
@@ -89,10 +240,14 @@ class DebuggerMethodVisitor extends AdviceAdapter {
         super.visitJumpInsn(IFEQ, breakpointLabel);
     }
 
-    private void captureSnapshot(int line) {
-        addLocals(line);
+    private void captureSnapshot(int line, Object[] locals) {
+        //构造函数中调用super之前this还没有初始化，不能作为参数传递，也不能读取字段
+        final boolean thisInitialized = locals == null || locals.length == 0 || locals[0] != Opcodes.UNINITIALIZED_THIS;
+        addLocals(line, thisInitialized);
         addStaticFields();
-        addFields();
+        if (thisInitialized) {
+            addFields();
+        }
     }
 
     private void isHit(final String source, final int line, final Label breakpointLabel) {
@@ -118,9 +273,12 @@ class DebuggerMethodVisitor extends AdviceAdapter {
     }
 
 
-    private void addLocals(final int line) {
+    private void addLocals(final int line, final boolean thisInitialized) {
         final Collection<LocalVariable> variables = classMetadata.getVariables().get(methodUniqueName);
         for (final LocalVariable var : variables) {
+            if (!thisInitialized && var.getIndex() == 0) {
+                continue;
+            }
             if (line >= var.getStart() && line < var.getEnd()) {
                 super.visitLdcInsn(var.getName());
                 super.visitVarInsn(Type.getType(var.getDesc()).getOpcode(ILOAD), var.getIndex());
@@ -213,6 +371,7 @@ class DebuggerMethodVisitor extends AdviceAdapter {
 
     @Override
     public void visitMaxs(int maxStack, int maxLocals) {
+        insertPending();
         super.visitMaxs(Math.max(maxStack, 4), maxLocals);
     }
 
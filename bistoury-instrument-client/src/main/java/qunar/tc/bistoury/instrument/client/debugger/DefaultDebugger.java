@@ -24,14 +24,12 @@ import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.common.Status;
 import qunar.tc.bistoury.instrument.client.common.InstrumentInfo;
-import qunar.tc.bistoury.instrument.client.location.ClassPathLookup;
 import qunar.tc.bistoury.instrument.client.location.FormatMessage;
 import qunar.tc.bistoury.instrument.client.location.Location;
 import qunar.tc.bistoury.instrument.client.location.ResolvedSourceLocation;
 import qunar.tc.bistoury.instrument.client.spring.el.Expression;
 
 import java.io.File;
-import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
 import java.util.Set;
@@ -54,8 +52,6 @@ public class DefaultDebugger implements Debugger {
 
     private SnapshotReceiver receiver;
 
-    private ClassPathLookup classPathLookup;
-
     private volatile Status status = Status.notStart;
 
     @Override
@@ -78,38 +74,23 @@ public class DefaultDebugger implements Debugger {
 
         GlobalDebugContext.initSnapshotReceiver(receiver);
 
-        classPathLookup = createClassPathLookup();
-        if (classPathLookup == null) {
-            status = Status.error;
-            return false;
-        }
-
         status = Status.started;
         logger.info("qdebugger started");
         return true;
     }
 
     @Override
-    public synchronized String registerBreakpoint(String source, int line, String breakpointCondition) {
+    public synchronized String registerBreakpoint(String source, int line, String breakpointCondition, HitPolicy policy) {
+        Preconditions.checkNotNull(policy, "hit policy not allowed null");
         lock.lock();
         try {
-            return doRegisterBreakpoint(source, line, breakpointCondition);
+            return doRegisterBreakpoint(source, line, breakpointCondition, policy);
         } finally {
             lock.unlock();
         }
     }
 
 
-    private ClassPathLookup createClassPathLookup() {
-        try {
-            String[] currentWebClassesPath = instrumentInfo.getClassPath().toArray(new String[0]);
-            return new ClassPathLookup(false, currentWebClassesPath);
-        } catch (Exception e) {
-            logger.warn("cannot create classPathLookup", e);
-        }
-        return null;
-    }
-
     @Override
     public synchronized void unRegisterBreakpoint(String source, int line, String breakpointId) {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(source), "source is empty");
@@ -130,6 +111,7 @@ public class DefaultDebugger implements Debugger {
         try {
             status = Status.closed;
             GlobalDebugContext.destroy();
+            ClassMetadataCache.clear();
         } finally {
             lock.unlock();
         }
@@ -140,11 +122,11 @@ public class DefaultDebugger implements Debugger {
         Preconditions.checkState(instrumentInfo.isRunning(), "qinstrument not running");
     }
 
-    private String doRegisterBreakpoint(String source, int line, String breakpointCondition) {
+    private String doRegisterBreakpoint(String source, int line, String breakpointCondition, HitPolicy policy) {
         ensureStarted();
 
         final String path = new File(source).getPath().replace(File.separatorChar, '/');
-        final ResolvedSourceLocation location = classPathLookup.resolveSourceLocation(path, line);
+        final ResolvedSourceLocation location = instrumentInfo.getClassPathLookup().resolveSourceLocation(path, line);
         final FormatMessage error = location.getErrorMessage();
         if (error != null) {
             final String message = String.format(error.getFormat(), (Object[]) error.getParameters());
@@ -155,7 +137,8 @@ public class DefaultDebugger implements Debugger {
             final Location realLocation = new Location(source, adjustedLineNumber);
 
             Expression expression = GlobalDebugContext.prepareBreakpointCondition(breakpointCondition);
-            AddBreakpointResult addBreakpointResult = GlobalDebugContext.addBreakpoint(realLocation, expression);
+            Class<?> clazz = findClass(location);
+            AddBreakpointResult addBreakpointResult = GlobalDebugContext.addBreakpoint(realLocation, expression, policy, clazz.getClassLoader());
             String id = addBreakpointResult.getId();
             if (!addBreakpointResult.isNewId()) {
                 receiver.refreshBreakpointExpireTime(id);
@@ -163,9 +146,9 @@ public class DefaultDebugger implements Debugger {
             }
 
             try {
-                boolean success = instrument(source, realLocation, location);
+                boolean success = instrument(source, realLocation, location, clazz);
                 if (success) {
-                    receiver.initBreakPoint(id, realLocation.getSource(), realLocation.getLine());
+                    receiver.initBreakPoint(id, realLocation.getSource(), realLocation.getLine(), policy.getMaxHits());
                     return id;
                 } else {
                     logger.warn("instrument failed. source: {}, line: {}", source, line);
@@ -181,19 +164,45 @@ public class DefaultDebugger implements Debugger {
         }
     }
 
-    private boolean instrument(String source, Location realLocation, ResolvedSourceLocation location) throws UnmodifiableClassException, ClassNotFoundException {
+    private Class<?> findClass(ResolvedSourceLocation location) {
+        try {
+            return instrumentInfo.signatureToClass(location.getClassSignature());
+        } catch (ClassNotFoundException e) {
+            logger.warn("register breakpoint failed, class not found: {}", location.getClassSignature());
+            throw new IllegalStateException("register breakpoint fail, " + e.getMessage(), e);
+        }
+    }
+
+    private boolean instrument(String source, Location realLocation, ResolvedSourceLocation location, Class<?> clazz) throws UnmodifiableClassException {
         if (instrumented.contains(realLocation)) {
             return true;
         }
 
-        ClassFileTransformer transformer = new DebuggerClassFileTransformer(instrumentInfo.getClassFileBuffer(), source, location);
+        DebuggerClassFileTransformer transformer = new DebuggerClassFileTransformer(instrumentInfo.getClassFileBuffer(), source, location, true);
+        try {
+            retransform(clazz, transformer);
+        } catch (VerifyError | ClassFormatError e) {
+            if (!transformer.isSelectiveApplied()) {
+                throw e;
+            }
+            //增量维护的帧没有通过jvm校验，整个类重写并重新计算帧再试一次
+            logger.warn("selective debug transform rejected, transform whole class, source: {}, line: {}", source, location.getAdjustedLineNumber(), e);
+            transformer = new DebuggerClassFileTransformer(instrumentInfo.getClassFileBuffer(), source, location, false);
+            retransform(clazz, transformer);
+        }
+
+        if (!transformer.commit(clazz)) {
+            return false;
+        }
+        instrumented.add(realLocation);
+        instrumentInfo.addTransformedClasses(clazz);
+        return true;
+    }
+
+    private void retransform(Class<?> clazz, DebuggerClassFileTransformer transformer) throws UnmodifiableClassException {
+        inst.addTransformer(transformer, true);
         try {
-            Class<?> clazz = instrumentInfo.signatureToClass(location.getClassSignature());
-            inst.addTransformer(transformer, true);
             inst.retransformClasses(clazz);
-            instrumented.add(realLocation);
-            instrumentInfo.addTransformedClasses(clazz);
-            return true;
         } finally {
             inst.removeTransformer(transformer);
         }
@@ -18,6 +18,8 @@
 package qunar.tc.bistoury.instrument.client.debugger;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
@@ -26,6 +28,7 @@ import qunar.tc.bistoury.instrument.client.spring.el.*;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author keli.wang
@@ -46,8 +49,23 @@ public final class GlobalDebugContext {
 
     private static SnapshotReceiver snapshotReceiver;
 
+    private static final int MAX_CACHED_CONDITIONS = 256;
+
+    //条件表达式单次执行的时间预算，连续多次超过预算的断点会被停用
+    private static final long CONDITION_BUDGET_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            Long.parseLong(System.getProperty("bistoury.debug.condition.budget.micros", "500")));
+
+    private static final int MAX_SLOW_CONDITION_TIMES = 3;
+
+    //编译使用当前类的classloader，使用线程的context classloader时应用线程中看不到BreakpointConditionDTO，无法编译；
+    //MIXED模式下编译后的表达式执行出错会退回解释执行，不会导致断点失败
     private final static SpelExpressionParser parser = new SpelExpressionParser(
-            new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE, null));
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, GlobalDebugContext.class.getClassLoader()));
+
+    //相同的条件表达式共享同一个解析和编译结果
+    private static final Cache<String, Expression> conditions = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_CONDITIONS)
+            .build();
 
 
     private GlobalDebugContext() {
@@ -67,19 +85,23 @@ public final class GlobalDebugContext {
         synchronized (breakpoints) {
             breakpoints.clear();
             breakpointId.remove();
+            conditions.invalidateAll();
         }
     }
 
-    static AddBreakpointResult addBreakpoint(Location location, Expression condition) {
+    static AddBreakpointResult addBreakpoint(Location location, Expression condition, HitPolicy policy, ClassLoader classLoader) {
         synchronized (breakpoints) {
             Breakpoint oldBreakpoint = breakpoints.get(location);
-            if (oldBreakpoint != null && oldBreakpoint.getCondition() == null && condition == null) {
-                return new AddBreakpointResult(oldBreakpoint.getId(), false);
-            } else if (oldBreakpoint != null && oldBreakpoint.getCondition() != null && condition != null) {
-                String oldConditionStr = oldBreakpoint.getCondition().getExpressionString();
-                String newConditionStr = condition.getExpressionString();
-                if (objectEquals(oldConditionStr, newConditionStr)) {
+            //条件和命中策略都相同时复用原来的断点
+            if (oldBreakpoint != null && oldBreakpoint.getPolicy().equals(policy)) {
+                if (oldBreakpoint.getCondition() == null && condition == null) {
                     return new AddBreakpointResult(oldBreakpoint.getId(), false);
+                } else if (oldBreakpoint.getCondition() != null && condition != null) {
+                    String oldConditionStr = oldBreakpoint.getCondition().getExpressionString();
+                    String newConditionStr = condition.getExpressionString();
+                    if (objectEquals(oldConditionStr, newConditionStr)) {
+                        return new AddBreakpointResult(oldBreakpoint.getId(), false);
+                    }
                 }
             }
 
@@ -89,7 +111,8 @@ public final class GlobalDebugContext {
             } else {
                 id = UUID.randomUUID().toString() + CONDITION_BREAKPOINT_SUFFIX;
             }
-            Breakpoint breakpoint = new Breakpoint(id, location, condition);
+            StandardEvaluationContext conditionContext = condition == null ? null : createConditionContext(classLoader);
+            Breakpoint breakpoint = new Breakpoint(id, location, condition, conditionContext, policy);
             breakpoints.put(location, breakpoint);
             if (oldBreakpoint != null) {
                 snapshotReceiver.remove(oldBreakpoint.getId());
@@ -137,7 +160,12 @@ public final class GlobalDebugContext {
         }
 
         try {
-            return parser.parseRaw(condition);
+            Expression expression = conditions.getIfPresent(condition);
+            if (expression == null) {
+                expression = parser.parseRaw(condition);
+                conditions.put(condition, expression);
+            }
+            return expression;
         } catch (Exception e) {
             LOG.warn("条件表达式：{}解析出错，请检查表达式, 原因：{}", condition, e.getMessage());
             throw new IllegalArgumentException("register breakpoint fail, illegal breakpoint condition: [" + condition + "], " + e.getMessage(), e);
@@ -170,7 +198,7 @@ public final class GlobalDebugContext {
             return doBreak(breakpoint);
         }
 
-        STATE state = checkCondition(breakpoint.getCondition());
+        STATE state = checkCondition(breakpoint);
         switch (state) {
             case HIT:
                 return doBreak(breakpoint);
@@ -178,6 +206,13 @@ public final class GlobalDebugContext {
                 removeBreakpoint(breakpoint);
                 snapshotReceiver.endFail(breakpoint.getId());
                 return false;
+            case SLOW:
+                LOG.warn("debug condition disabled, evaluate cost more than {}us for {} times: [{}]",
+                        TimeUnit.NANOSECONDS.toMicros(CONDITION_BUDGET_NANOS), MAX_SLOW_CONDITION_TIMES,
+                        breakpoint.getCondition().getExpressionString());
+                removeBreakpoint(breakpoint);
+                snapshotReceiver.endFail(breakpoint.getId());
+                return false;
             case MISS:
                 return false;
             default:
@@ -187,7 +222,9 @@ public final class GlobalDebugContext {
 
     private static boolean doBreak(Breakpoint breakpoint) {
         if (breakpoint.trigger()) {
-            removeBreakpoint(breakpoint);
+            if (breakpoint.isExhausted()) {
+                removeBreakpoint(breakpoint);
+            }
             breakpointId.set(breakpoint.getId());
             return true;
         } else {
@@ -200,30 +237,55 @@ public final class GlobalDebugContext {
      *
      * @return 如果断点条件满足，返回true，否则返回false。各种异常情况为false
      */
-    private static STATE checkCondition(Expression expression) {
+    private static STATE checkCondition(Breakpoint breakpoint) {
+        Expression expression = breakpoint.getCondition();
         try {
             BreakpointConditionDTO rootObject = SnapshotCapture.get();
-            StandardEvaluationContext context = new StandardEvaluationContext(rootObject);
-            return expression.getValue(context, Boolean.class) ? STATE.HIT : STATE.MISS;
+            long start = System.nanoTime();
+            boolean hit = expression.getValue(breakpoint.getConditionContext(), rootObject, Boolean.class);
+            if (System.nanoTime() - start > CONDITION_BUDGET_NANOS) {
+                if (breakpoint.markSlowCondition() >= MAX_SLOW_CONDITION_TIMES) {
+                    return STATE.SLOW;
+                }
+            } else {
+                breakpoint.resetSlowCondition();
+            }
+            return hit ? STATE.HIT : STATE.MISS;
         } catch (EvaluationException e) {
-            System.err.println("error debug condition evaluate: [" + expression.getExpressionString() + "], " + e.getMessage());
+            LOG.warn("error debug condition evaluate: [{}], {}", expression.getExpressionString(), e.getMessage());
             return STATE.FAIL;
         } catch (ParseException e) {
-            System.err.println("error debug condition parse: [" + expression.getExpressionString() + "], " + e.getMessage());
+            LOG.warn("error debug condition parse: [{}], {}", expression.getExpressionString(), e.getMessage());
             return STATE.FAIL;
         } catch (Throwable e) {
-            System.err.println("error debug condition error: [" + expression.getExpressionString() + "], " + e.getMessage());
+            LOG.warn("error debug condition error: [{}], {}", expression.getExpressionString(), e.getMessage());
             return STATE.FAIL;
         }
     }
 
+    /**
+     * 每个条件断点一个context，root object在执行时传入；type locator使用断点所在类的classloader，
+     * 其它accessor和resolver也在这里提前初始化，之后多个应用线程并发执行时context只读
+     */
+    private static StandardEvaluationContext createConditionContext(ClassLoader classLoader) {
+        StandardEvaluationContext context = new StandardEvaluationContext();
+        context.setTypeLocator(new StandardTypeLocator(classLoader));
+        context.getPropertyAccessors();
+        context.getMethodResolvers();
+        context.getConstructorResolvers();
+        context.getTypeConverter();
+        context.getTypeComparator();
+        context.getOperatorOverloader();
+        return context;
+    }
+
     static void unRegisterBreakpoint(String source, int line, String breakpointId) {
         Location location = new Location(source, line);
         removeBreakpoint(location, breakpointId);
     }
 
     private enum STATE {
-        HIT, MISS, FAIL
+        HIT, MISS, FAIL, SLOW
     }
 
 }
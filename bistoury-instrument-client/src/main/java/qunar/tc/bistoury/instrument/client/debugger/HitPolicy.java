@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.debugger;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * 断点的命中策略：最多拿多少次快照，每多少次命中采样一次，每秒最多采样多少次
+ * <p>
+ * 一次增强可以拿到多次快照，快照次数用完后断点自动移除
+ */
+public final class HitPolicy {
+
+    public static final int MAX_HITS = 20;
+
+    public static final HitPolicy ONCE = new HitPolicy(1, 1, 0);
+
+    private final int maxHits;
+
+    private final int sampleEvery;
+
+    private final int maxPerSecond;
+
+    private HitPolicy(int maxHits, int sampleEvery, int maxPerSecond) {
+        this.maxHits = maxHits;
+        this.sampleEvery = sampleEvery;
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * @param maxHits      最多拿多少次快照
+     * @param sampleEvery  每多少次命中采样一次，1表示每次命中都采样
+     * @param maxPerSecond 每秒最多采样多少次，0表示不限制
+     */
+    public static HitPolicy of(int maxHits, int sampleEvery, int maxPerSecond) {
+        Preconditions.checkArgument(maxHits > 0 && maxHits <= MAX_HITS, "hits should between 1 and %s", MAX_HITS);
+        Preconditions.checkArgument(sampleEvery > 0, "sample should be positive");
+        Preconditions.checkArgument(maxPerSecond >= 0, "rate should not be negative");
+        if (maxHits == 1 && sampleEvery == 1 && maxPerSecond == 0) {
+            return ONCE;
+        }
+        return new HitPolicy(maxHits, sampleEvery, maxPerSecond);
+    }
+
+    public int getMaxHits() {
+        return maxHits;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public int getMaxPerSecond() {
+        return maxPerSecond;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HitPolicy that = (HitPolicy) o;
+        return maxHits == that.maxHits && sampleEvery == that.sampleEvery && maxPerSecond == that.maxPerSecond;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(maxHits, sampleEvery, maxPerSecond);
+    }
+
+    @Override
+    public String toString() {
+        return "HitPolicy{" +
+                "maxHits=" + maxHits +
+                ", sampleEvery=" + sampleEvery +
+                ", maxPerSecond=" + maxPerSecond +
+                '}';
+    }
+}
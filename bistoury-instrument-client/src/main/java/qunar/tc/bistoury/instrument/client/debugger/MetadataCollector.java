@@ -64,6 +64,7 @@ final class MetadataCollector extends ClassVisitor {
             @Override
             public void visitLineNumber(final int line, final Label start) {
                 labelLineMapping.put(start.toString(), line);
+                classMetadata.addLine(methodUniqueName, line);
             }
 
             @Override
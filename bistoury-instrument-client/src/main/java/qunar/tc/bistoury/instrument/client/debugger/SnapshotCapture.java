@@ -74,7 +74,7 @@ public final class SnapshotCapture {
     }
 
 
-    static synchronized BreakpointConditionDTO get() {
+    static BreakpointConditionDTO get() {
         BreakpointConditionDTO breakpointConditionDTO = new BreakpointConditionDTO();
         breakpointConditionDTO.setFields(fields.get());
         breakpointConditionDTO.setLocalVariables(localVariables.get());
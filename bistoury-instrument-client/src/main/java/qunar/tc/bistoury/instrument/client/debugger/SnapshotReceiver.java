@@ -23,7 +23,7 @@ public interface SnapshotReceiver {
 
     void refreshBreakpointExpireTime(String breakpointId);
 
-    void initBreakPoint(String breakpointId, String source, int line);
+    void initBreakPoint(String breakpointId, String source, int line, int maxHits);
 
     void putLocalVariables(String breakpointId, Map<String, Object> localVariables);
 
@@ -35,6 +35,9 @@ import java.security.ProtectionDomain;
 public abstract class Transformer implements ClassFileTransformer {
     private static final Logger logger = BistouryLoggger.getLogger();
 
+    //只重写需要增强的方法，其它方法直接复制原来的字节码，帧增量维护，不用为了计算公共父类去加载其它类；设置为false时整个类重写并重新计算帧
+    private static final boolean SELECTIVE = !"false".equalsIgnoreCase(System.getProperty("bistoury.instrument.selective"));
+
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
         try {
@@ -62,5 +65,20 @@ public abstract class Transformer implements ClassFileTransformer {
         return flag;
     }
 
+    /**
+     * 1.7以下的类不强制要求帧，仍然按原来的方式整个类重写
+     */
+    protected boolean canTransformSelectively(ClassReader classReader) {
+        return SELECTIVE && classReader.readShort(6) >= Opcodes.V1_7;
+    }
+
+    /**
+     * 增量转换时ClassWriter共享ClassReader的常量池，没有修改的方法不经过任何adapter，直接复制字节码；
+     * 帧由各个visitor自己维护，只需要计算max stack和max locals
+     */
+    protected ClassWriter newSelectiveWriter(ClassReader classReader) {
+        return new ClassWriter(classReader, ClassWriter.COMPUTE_MAXS);
+    }
+
     protected abstract byte[] transform(String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException;
 }
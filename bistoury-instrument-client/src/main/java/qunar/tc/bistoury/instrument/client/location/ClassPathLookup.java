@@ -16,6 +16,12 @@
 
 package qunar.tc.bistoury.instrument.client.location;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 
@@ -32,12 +38,17 @@ import java.util.*;
  * be loaded in the future. From JVMTI and JNI perspective this code just doesn't exist, so the
  * debugger can't tell whether the breakpoint is valid. This class enumerates the resources that an
  * application *could* load directly.
+ * <p>
+ * <p>同一个实例由debugger和monitor共用，可以并发调用：索引在构造时建好，之后只读；
+ * {@link ClassResourcesIndexer}的查询方法是同步的；行号表缓存是guava cache，
+ * 缓存的{@link SourceFileMapper}构造完成后只读，并发构造同一个文件的mapper只会多算一次，结果相同。
  */
 public final class ClassPathLookup {
     private static final Logger LOG = BistouryLoggger.getLogger();
 
     private static final String JAVA_CLASS_PATH = "java.class.path";
     private static final String JAVA_EXTENSION = ".java";
+    private static final int MAX_CACHED_SOURCE_FILES = 256;
     /**
      * Enables indexing of classes specified in Java class path.
      */
@@ -52,7 +63,13 @@ public final class ClassPathLookup {
      * Indexes classes available to the application. Each instance of {@link ClassResourcesIndexer}
      * corresponds to a different source (e.g. different .jar file).
      */
-    private Collection<ClassResourcesIndexer> classResourcesIndexers;
+    private final Collection<ClassResourcesIndexer> classResourcesIndexers;
+    /**
+     * 按源文件缓存解析好的行号表，debugger和monitor共用；class文件内容变化时重新解析
+     */
+    private final Cache<String, CachedMapper> mappers = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_SOURCE_FILES)
+            .build();
 
     /**
      * Class constructor.
@@ -78,7 +95,7 @@ public final class ClassPathLookup {
         this.useDefaultClassPath = useDefaultClassPath;
         this.extraClassPath = extraClassPath;
 
-        indexApplicationResources();
+        this.classResourcesIndexers = indexApplicationResources();
     }
 
     /**
@@ -186,13 +203,13 @@ public final class ClassPathLookup {
 
         // Retrieve the class resources matching the source file. There might be several of those
         // if the source file contains inner or static classes or multiple outer classes.
-        Collection<InputStream> resources = new ArrayList<>();
+        Collection<byte[]> resources = new ArrayList<>();
         for (ClassResourcesIndexer indexer : classResourcesIndexers) {
             Collection<String> resourcePaths = indexer.mapSourceFile(sourcePath);
             if (resourcePaths != null) {
                 for (String resourcePath : resourcePaths) {
-                    try {
-                        resources.add(indexer.getSource().getResource(resourcePath));
+                    try (InputStream resource = indexer.getSource().getResource(resourcePath)) {
+                        resources.add(ByteStreams.toByteArray(resource));
                     } catch (IOException e) {
                         LOG.warn("Failed to open application resource {}",
                                 resourcePath, e);
@@ -206,15 +223,40 @@ public final class ClassPathLookup {
                     new FormatMessage(Messages.SOURCE_FILE_NOT_FOUND_IN_EXECUTABLE));
         }
 
+        return getMapper(sourcePath, resources).map(lineNumber);
+    }
+
+    private SourceFileMapper getMapper(String sourcePath, Collection<byte[]> resources) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (byte[] resource : resources) {
+            hasher.putInt(resource.length).putBytes(resource);
+        }
+        HashCode hash = hasher.hash();
+
+        CachedMapper cached = mappers.getIfPresent(sourcePath);
+        if (cached != null && cached.hash.equals(hash)) {
+            return cached.mapper;
+        }
         SourceFileMapper mapper = new SourceFileMapper(resources);
-        return mapper.map(lineNumber);
+        mappers.put(sourcePath, new CachedMapper(hash, mapper));
+        return mapper;
+    }
+
+    private static final class CachedMapper {
+        private final HashCode hash;
+        private final SourceFileMapper mapper;
+
+        private CachedMapper(HashCode hash, SourceFileMapper mapper) {
+            this.hash = hash;
+            this.mapper = mapper;
+        }
     }
 
     /**
      * Finds paths of all .class and .jar files listed through JVM class path and
      * {@code extraClassPath}.
      */
-    private void indexApplicationResources() {
+    private Collection<ClassResourcesIndexer> indexApplicationResources() {
         // Merge JVM class path and extra class path. Preserve order of elements in the list,
         // but remove any potential duplicates.
         Set<String> effectiveClassPath = new LinkedHashSet<>();
@@ -230,9 +272,10 @@ public final class ClassPathLookup {
 
         //Indexes resources (.class files and other files) that the application may load.
         ResourceIndexer resourceIndexer = new ResourceIndexer(effectiveClassPath);
-        classResourcesIndexers = new ArrayList<>();
+        List<ClassResourcesIndexer> indexers = new ArrayList<>();
         for (ResourceIndexer.ResourcesSource source : resourceIndexer.getSources()) {
-            classResourcesIndexers.add(new ClassResourcesIndexer(source));
+            indexers.add(new ClassResourcesIndexer(source));
         }
+        return Collections.unmodifiableList(indexers);
     }
 }
@@ -20,8 +20,6 @@ import com.taobao.middleware.logger.Logger;
 import org.objectweb.asm.*;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.SortedMap;
@@ -121,32 +119,30 @@ final class SourceFileMapper {
      * List of statements in the mapped source file sorted by line number. This includes all the
      * class resources provided in the constructor.
      */
-    private SortedMap<Integer, ResolvedSourceLocation> statements = new TreeMap<>();
+    private final SortedMap<Integer, ResolvedSourceLocation> statements = new TreeMap<>();
 
     /**
      * Signatures of all the classes found in the mapped source file.
      */
-    private Set<String> classes = new HashSet<>();
+    private final Set<String> classes = new HashSet<>();
 
     /**
      * Loads set of specified classes. For each class we load the methods and the line number table.
      * Those are stored for subsequent queries.
      * <p>
      * <p>No Java classes are actually loaded during this process.
+     * <p>
+     * <p>The mapper is read only once constructed, so it may be cached and queried concurrently.
      *
-     * @param classResources resources of all Java classes defined in the mapped source file
+     * @param classResources contents of all Java classes defined in the mapped source file
      */
-    public SourceFileMapper(Iterable<InputStream> classResources) {
-        for (InputStream classResource : classResources) {
-            try {
-                loadClass(classResource);
-            } catch (IOException e) {
-                LOG.warn("Class file could not be loaded for source line mapping", e);
-            }
+    public SourceFileMapper(Iterable<byte[]> classResources) {
+        for (byte[] classResource : classResources) {
+            loadClass(classResource);
         }
     }
 
-    private void loadClass(InputStream resource) throws IOException {
+    private void loadClass(byte[] resource) {
         ClassReader classReader;
         classReader = new ClassReader(resource);
 
@@ -18,7 +18,6 @@
 package qunar.tc.bistoury.instrument.client.metrics;
 
 import com.codahale.metrics.Metric;
-import com.google.common.base.Strings;
 import qunar.tc.bistoury.clientside.common.monitor.MetricsData;
 import qunar.tc.bistoury.clientside.common.monitor.MetricsSnapshot;
 
@@ -46,12 +45,9 @@ public abstract class AbstractProcessorMetricsReportor implements MetricsReporto
         //默认打开所有指标
         // $name|type|tag|value
         List<MetricsData> metrics = new ArrayList<>();
-        for (Map.Entry<MetricKey, Metric> e : this.metrics.metricCache.asMap().entrySet()) {
+        for (Map.Entry<MetricKey, Metric> e : this.metrics.select(name).entrySet()) {
             MetricKey key = e.getKey();
             Metric value = e.getValue();
-            if (!Strings.isNullOrEmpty(name) && !name.equals(key.name)) {
-                continue;
-            }
             MetricsData metricsData = processor.process(key, value);
             metrics.add(metricsData);
         }
@@ -60,6 +56,7 @@ public abstract class AbstractProcessorMetricsReportor implements MetricsReporto
 
     @Override
     public MetricsSnapshot report(final String name) {
+        metrics.tick(System.currentTimeMillis());
         MetricsSnapshot snapshot = new MetricsSnapshot();
         prepare(name, snapshot);
         doStore(name, snapshot);
@@ -49,4 +49,11 @@ class DeltaCounter extends com.codahale.metrics.Counter implements Delta {
     public long getCount() {
         return value[1].get();
     }
+
+    /**
+     * 累计值，getCount返回的是最近一次tick计算的差值
+     */
+    long getTotal() {
+        return super.getCount();
+    }
 }
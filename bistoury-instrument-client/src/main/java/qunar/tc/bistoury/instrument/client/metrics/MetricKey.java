@@ -28,7 +28,8 @@ public class MetricKey {
     // 指标名
     final String name;
 
-    private static final Interner<String> interner = Interners.newStrongInterner();
+    //弱引用，被淘汰的指标名可以回收
+    private static final Interner<String> interner = Interners.newWeakInterner();
 
     private static final int MAX_TAG_STRING_LENGTH = 500;
 
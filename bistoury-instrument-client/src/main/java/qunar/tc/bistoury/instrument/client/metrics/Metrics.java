@@ -18,43 +18,65 @@
 package qunar.tc.bistoury.instrument.client.metrics;
 
 import com.codahale.metrics.Metric;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Lists;
+import com.google.common.base.Function;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.clientside.common.monitor.MetricType;
-import qunar.tc.bistoury.common.NamedThreadFactory;
 import qunar.tc.bistoury.instrument.client.metrics.adapter.CounterAdapter;
 import qunar.tc.bistoury.instrument.client.metrics.adapter.ResettableTimer;
 import qunar.tc.bistoury.instrument.client.metrics.adapter.ResettableTimerAdapter;
 
-import java.util.Calendar;
-import java.util.List;
-import java.util.concurrent.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 指标数量有上限，连续多个汇报周期没有更新的指标会被淘汰；
+ * 差值计数器在每分钟第一次汇报时计算差值，不再单独起线程
+ *
  * @author: leix.xie
  * @date: 2018/12/27 15:31
  * @describe：
  */
 public class Metrics {
+    private static final Logger logger = BistouryLoggger.getLogger();
 
     public static final Metrics INSTANCE = new Metrics();
 
-    public final Cache<MetricKey, Metric> metricCache = CacheBuilder.newBuilder().build();
-    public final List<Delta> deltas = Lists.newCopyOnWriteArrayList();
-    private long lastUpdate = 0;
-    private Calendar calendar = Calendar.getInstance();
+    //指标数量上限，达到上限后新的指标不再注册，直到有空闲指标被淘汰
+    static final int MAX_METRICS = 3000;
+
+    //连续这么多个汇报周期没有更新的指标会被淘汰
+    static final int MAX_IDLE_REPORTS = 10;
+
+    private static final Function<MetricHolder, Metric> GET_METRIC = new Function<MetricHolder, Metric>() {
+        @Override
+        public Metric apply(MetricHolder input) {
+            return input.metric;
+        }
+    };
+
+    private final ConcurrentMap<MetricKey, MetricHolder> metrics = new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
 
-    private ScheduledExecutorService executor;
+    private final AtomicLong lastTickMinute = new AtomicLong();
+
+    private final AtomicBoolean overflowLogged = new AtomicBoolean(false);
 
     Metrics() {
-        initScheduler();
     }
 
     public static void destroy() {
-        if (INSTANCE.executor != null) {
-            INSTANCE.executor.shutdownNow();
-        }
+        INSTANCE.metrics.clear();
+        INSTANCE.size.set(0);
     }
 
     public static DeltaKeyWrapper<Counter> counter(final String name) {
@@ -88,72 +110,121 @@ public class Metrics {
 
     @SuppressWarnings("unchecked")
     protected <T extends Metric> T getOrAdd(MetricKey key, MetricBuilder<T> builder) {
-        final Metric metric = metricCache.getIfPresent(key);
-
-        if (builder.isInstance(metric)) {
-            return (T) metric;
-        } else if (metric == null) {
-            try {
-                boolean delta = false;
-                boolean keep = false;
-                if (DeltaKeyWrapper.class.isInstance(key)) {
-                    DeltaKeyWrapper<T> _key = (DeltaKeyWrapper<T>) key;
-                    delta = _key.delta;
-                    keep = _key.keep;
-                }
-                return register(key, builder.newMetric(delta, keep));
-            } catch (IllegalArgumentException e) {//被别人并发抢注了
-                final Metric added = metricCache.getIfPresent(key);//这个地方是一定有值的，因为只有注册的方法，并没有移除的方法,上面出异常证明已经注册过了.
-                if (builder.isInstance(added)) {
-                    return (T) added;
+        MetricHolder holder = metrics.get(key);
+        if (holder == null) {
+            if (size.get() >= MAX_METRICS) {
+                //超过上限的指标共用同一个溢出指标，不会被汇报
+                if (overflowLogged.compareAndSet(false, true)) {
+                    logger.warn("metrics count reach limit {}, new metric will not be reported, key: {}", MAX_METRICS, key);
                 }
+                return builder.overflow();
+            }
+            boolean delta = false;
+            boolean keep = false;
+            if (DeltaKeyWrapper.class.isInstance(key)) {
+                DeltaKeyWrapper<T> _key = (DeltaKeyWrapper<T>) key;
+                delta = _key.delta;
+                keep = _key.keep;
+            }
+            T metric = builder.newMetric(delta, keep);
+            MetricHolder created = new MetricHolder(metric);
+            holder = metrics.putIfAbsent(key, created);
+            if (holder == null) {
+                size.incrementAndGet();
+                return metric;
             }
         }
 
+        if (builder.isInstance(holder.metric)) {
+            return (T) holder.metric;
+        }
         throw new IllegalArgumentException(key + " is already used for a different type of metric");
     }
 
-    <T extends Metric> T register(final MetricKey key, final T metric) throws IllegalArgumentException {
-        try {
-            return (T) metricCache.get(key, new Callable<Metric>() {
-                @Override
-                public Metric call() throws Exception {
-                    if (Delta.class.isInstance(metric)) {
-                        deltas.add((Delta) metric);
-                    }
-                    return metric;
-                }
-            });
-        } catch (ExecutionException e) {
-            throw new IllegalArgumentException("fail to register metric,metric key:" + key);
+    /**
+     * @param name 为空时返回所有指标
+     */
+    Map<MetricKey, Metric> select(String name) {
+        if (Strings.isNullOrEmpty(name)) {
+            return Maps.transformValues(metrics, GET_METRIC);
+        }
+        MetricKey key = new MetricKey(name);
+        MetricHolder holder = metrics.get(key);
+        return holder == null ? ImmutableMap.<MetricKey, Metric>of() : ImmutableMap.of(key, holder.metric);
+    }
+
+    /**
+     * 每分钟第一次汇报时调用，计算差值计数器的差值并淘汰空闲指标，同一分钟内多次调用只生效一次
+     */
+    void tick(long now) {
+        long minute = TimeUnit.MILLISECONDS.toMinutes(now);
+        long last = lastTickMinute.get();
+        if (minute <= last || !lastTickMinute.compareAndSet(last, minute)) {
+            return;
         }
 
+        overflowLogged.set(false);
+        for (Map.Entry<MetricKey, MetricHolder> entry : metrics.entrySet()) {
+            MetricHolder holder = entry.getValue();
+            //淘汰前刚拿到指标的线程会把数据记到淘汰的指标上，空闲指标丢掉这一次更新可以接受
+            if (holder.tick() >= MAX_IDLE_REPORTS && metrics.remove(entry.getKey(), holder)) {
+                size.decrementAndGet();
+            }
+        }
     }
 
-    private void initScheduler() {
-        executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("agent-metrics", true));
-        executor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                long current = System.currentTimeMillis();
-                if (current - lastUpdate < 50000L) {
-                    return;
-                }
-                calendar.setTimeInMillis(current);
-                if (calendar.get(Calendar.SECOND) > 10) {
-                    return;
-                }
-                lastUpdate = current;
-                for (Delta delta : deltas) {
-                    delta.tick();
-                }
+    private static final class MetricHolder {
+        private final Metric metric;
+        private long lastTotal;
+        private int idleReports;
+
+        private MetricHolder(Metric metric) {
+            this.metric = metric;
+        }
+
+        /**
+         * 只在tick中调用
+         *
+         * @return 连续没有更新的汇报周期数
+         */
+        private int tick() {
+            if (metric instanceof Delta) {
+                ((Delta) metric).tick();
+            }
+            long total = totalOf(metric);
+            if (total != lastTotal) {
+                lastTotal = total;
+                idleReports = 0;
+            } else {
+                idleReports++;
+            }
+            return idleReports;
+        }
+
+        private static long totalOf(Metric metric) {
+            if (metric instanceof DeltaCounter) {
+                return ((DeltaCounter) metric).getTotal();
+            }
+            if (metric instanceof com.codahale.metrics.Counter) {
+                return ((com.codahale.metrics.Counter) metric).getCount();
+            }
+            if (metric instanceof ResettableTimer) {
+                return ((ResettableTimer) metric).getCount();
             }
-        }, 0, 2, TimeUnit.SECONDS);
+            return 0;
+        }
     }
 
     protected interface MetricBuilder<T extends Metric> {
 
         MetricBuilder<com.codahale.metrics.Counter> COUNTERS = new MetricBuilder<com.codahale.metrics.Counter>() {
+            private final com.codahale.metrics.Counter overflow = new com.codahale.metrics.Counter();
+
+            @Override
+            public com.codahale.metrics.Counter overflow() {
+                return overflow;
+            }
+
             @Override
             public com.codahale.metrics.Counter newMetric(boolean delta, boolean keep) {
                 return delta ? new DeltaCounter(keep) : new com.codahale.metrics.Counter();
@@ -166,6 +237,13 @@ public class Metrics {
         };
 
         MetricBuilder<ResettableTimer> TIMERS = new MetricBuilder<ResettableTimer>() {
+            private final ResettableTimer overflow = new ResettableTimer();
+
+            @Override
+            public ResettableTimer overflow() {
+                return overflow;
+            }
+
             @Override
             public ResettableTimer newMetric(boolean delta, boolean keep) {
                 return new ResettableTimer();
@@ -179,6 +257,11 @@ public class Metrics {
 
         T newMetric(boolean delta, boolean keep);
 
+        /**
+         * 指标数量达到上限后返回的共享指标
+         */
+        T overflow();
+
         boolean isInstance(Metric metric);
     }
 }
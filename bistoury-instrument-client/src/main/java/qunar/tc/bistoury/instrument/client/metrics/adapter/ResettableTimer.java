@@ -78,6 +78,10 @@ public class ResettableTimer implements Metric {
         return meter.getOneMinuteRate();
     }
 
+    public long getCount() {
+        return meter.getCount();
+    }
+
     public StatsBuffer getBuffer() {
         return timer;
     }
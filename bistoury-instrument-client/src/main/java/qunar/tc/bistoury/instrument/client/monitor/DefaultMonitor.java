@@ -18,22 +18,35 @@
 package qunar.tc.bistoury.instrument.client.monitor;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
 import com.taobao.middleware.logger.Logger;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
+import qunar.tc.bistoury.common.NamedThreadFactory;
 import qunar.tc.bistoury.common.Status;
 import qunar.tc.bistoury.instrument.client.common.ClassFileBuffer;
 import qunar.tc.bistoury.instrument.client.common.InstrumentInfo;
-import qunar.tc.bistoury.instrument.client.location.ClassPathLookup;
+import qunar.tc.bistoury.instrument.client.debugger.ClassMetadataCache;
 import qunar.tc.bistoury.instrument.client.location.FormatMessage;
 import qunar.tc.bistoury.instrument.client.location.ResolvedSourceLocation;
 
 import java.io.File;
-import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 
 /**
+ * 监控的添加和移除先记录到GlobalMonitorContext，再在一个很短的窗口内合并，
+ * 同一批涉及的类只调用一次retransformClasses，每个类按当前生效的全部监控重新生成字节码
+ *
  * @author: leix.xie
  * @date: 2018/12/28 14:13
  * @describe：
@@ -41,18 +54,35 @@ import java.util.concurrent.locks.Lock;
 public class DefaultMonitor implements Monitor {
     private static final Logger logger = BistouryLoggger.getLogger();
 
+    private static final long BATCH_WINDOW_MS = 50;
+
+    private static final long BATCH_TIMEOUT_SECONDS = 30;
+
     private InstrumentInfo instrumentInfo;
 
     private Instrumentation inst;
 
     private Lock lock;
 
-    private ClassPathLookup classPathLookup;
-
     private ClassFileBuffer classFileBuffer;
 
+    private ScheduledExecutorService executor;
+
+    //等待下一次retransform的类，value为等待结果的请求
+    private final Map<Class<?>, PendingClass> pending = Maps.newHashMap();
+
+    //被监控增强过的类，只在lock下访问
+    private final Map<Class<?>, MonitoredClass> monitoredClasses = Maps.newHashMap();
+
     private volatile Status status = Status.notStart;
 
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
     @Override
     public synchronized boolean startup(InstrumentInfo instrumentInfo) {
         if (status == Status.started) {
@@ -66,84 +96,200 @@ public class DefaultMonitor implements Monitor {
         this.inst = instrumentInfo.getInstrumentation();
         this.lock = instrumentInfo.getLock();
         this.classFileBuffer = instrumentInfo.getClassFileBuffer();
-
-        this.classPathLookup = createClassPathLookup();
-        if (classPathLookup == null) {
-            status = Status.error;
-            return false;
-        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("qmonitor-retransform", true));
         status = Status.started;
         logger.info("qmonitor started");
         return true;
     }
 
     @Override
-    public synchronized String addMonitor(String source, int line) {
-        lock.lock();
+    public String addMonitor(String source, int line) {
+        ensureStarted();
+        final ResolvedSourceLocation location = resolve(source, line);
+        final Class<?> clazz = findClass(location);
+        if (!GlobalMonitorContext.addMonitor(location)) {
+            return "success";
+        }
+
         try {
-            return doAddMonitor(source, line);
-        } finally {
-            lock.unlock();
+            await(submit(clazz, location, source));
+            return "success";
+        } catch (Throwable e) {
+            logger.error("instrument error. source: {}, line: {}", source, line, e);
+            if (GlobalMonitorContext.removeMonitor(location)) {
+                submit(clazz, location, source);
+            }
+            throw new IllegalStateException("add monitor error, " + e.getMessage(), e);
         }
     }
 
     @Override
-    public void removeMonitor(String source, int line, String monitorId) {
+    public boolean removeMonitor(String source, int line, String monitorId) {
+        ensureStarted();
+        final ResolvedSourceLocation location = resolve(source, line);
+        if (!GlobalMonitorContext.removeMonitor(location)) {
+            return true;
+        }
 
+        final Class<?> clazz = findClass(location);
+        try {
+            await(submit(clazz, location, source));
+        } catch (Throwable e) {
+            logger.error("remove monitor error. source: {}, line: {}", source, line, e);
+            throw new IllegalStateException("remove monitor error, " + e.getMessage(), e);
+        }
+        return !isInstrumented(clazz, GlobalMonitorContext.methodKey(location.getMethodName(), location.getMethodDesc()));
     }
 
-    private String doAddMonitor(String source, int line) {
-        ensureStarted();
+    private boolean isInstrumented(Class<?> clazz, String methodKey) {
+        lock.lock();
+        try {
+            MonitoredClass monitoredClass = monitoredClasses.get(clazz);
+            return monitoredClass != null && monitoredClass.isInstrumented(methodKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private synchronized ResolvedSourceLocation resolve(String source, int line) {
         final String path = new File(source).getPath().replace(File.separatorChar, '/');
-        final ResolvedSourceLocation location = classPathLookup.resolveSourceLocation(path, line);
+        final ResolvedSourceLocation location = instrumentInfo.getClassPathLookup().resolveSourceLocation(path, line);
         final FormatMessage errorMsg = location.getErrorMessage();
         if (errorMsg != null) {
             final String message = String.format(errorMsg.getFormat(), errorMsg.getParameters());
-            logger.error("add monitor failed. error message: {}", message);
-            throw new IllegalStateException("add monitor failed, " + message);
-        } else {
-            if (GlobalMonitorContext.check(location)) {
-                return "success";
-            } else {
-                GlobalMonitorContext.addMonitor(location);
+            logger.error("monitor failed. error message: {}", message);
+            throw new IllegalStateException("monitor failed, " + message);
+        }
+        return location;
+    }
+
+    private Class<?> findClass(ResolvedSourceLocation location) {
+        try {
+            return instrumentInfo.signatureToClass(location.getClassSignature());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private SettableFuture<Void> submit(Class<?> clazz, ResolvedSourceLocation location, String source) {
+        SettableFuture<Void> future = SettableFuture.create();
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                executor.schedule(flushTask, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
             }
+            PendingClass pendingClass = pending.get(clazz);
+            if (pendingClass == null) {
+                pendingClass = new PendingClass(location.getClassSignature(), source);
+                pending.put(clazz, pendingClass);
+            }
+            pendingClass.futures.add(future);
+        }
+        return future;
+    }
+
+    private static void await(SettableFuture<Void> future) throws Throwable {
+        try {
+            future.get(BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("wait retransform timeout");
+        }
+    }
 
-            try {
-                boolean success = instrument(source, location, location.getAdjustedLineNumber());
-                if (!success) {
-                    logger.error("instrument failed. source: {}, line: {}", source, line);
-                    throw new IllegalStateException("register breakpoint fail, instrument fail");
+    private void flush() {
+        Map<Class<?>, PendingClass> batch;
+        synchronized (pending) {
+            batch = Maps.newHashMap(pending);
+            pending.clear();
+        }
+
+        lock.lock();
+        try {
+            Map<Class<?>, MonitoredClass> changed = Maps.newHashMap();
+            for (Map.Entry<Class<?>, PendingClass> entry : batch.entrySet()) {
+                Class<?> clazz = entry.getKey();
+                MonitoredClass monitoredClass = monitoredClasses.get(clazz);
+                if (monitoredClass == null) {
+                    monitoredClass = new MonitoredClass(clazz, entry.getValue().classSignature, entry.getValue().source);
                 }
-                return "success";
-            } catch (Throwable e) {
-                logger.error("instrument error. source: {}, line: {}", source, line, e);
-                throw new IllegalStateException("add monitor error, " + e.getMessage(), e);
+                if (monitoredClass.prepare()) {
+                    changed.put(clazz, monitoredClass);
+                } else {
+                    entry.getValue().complete(null);
+                }
+            }
+            if (!changed.isEmpty()) {
+                retransform(changed, batch);
             }
+        } catch (Throwable e) {
+            logger.error("", "qmonitor retransform error", e);
+            for (PendingClass pendingClass : batch.values()) {
+                pendingClass.complete(e);
+            }
+        } finally {
+            lock.unlock();
         }
-
     }
 
-    private boolean instrument(String source, ResolvedSourceLocation location, final int line) throws UnmodifiableClassException, ClassNotFoundException {
-        ClassFileTransformer transformer = new MonitorClassFileTransformer(classFileBuffer, source, location, line);
+    private void retransform(Map<Class<?>, MonitoredClass> changed, Map<Class<?>, PendingClass> batch) throws Exception {
+        ensureStarted();
+        MonitorClassFileTransformer transformer = new MonitorClassFileTransformer(classFileBuffer, changed, true);
         try {
-            Class<?> clazz = instrumentInfo.signatureToClass(location.getClassSignature());
-            inst.addTransformer(transformer, true);
-            inst.retransformClasses(clazz);
+            retransform(changed, transformer);
+        } catch (VerifyError | ClassFormatError e) {
+            if (!transformer.isSelectiveApplied()) {
+                throw e;
+            }
+            //增量维护的帧没有通过jvm校验，一批类都没有生效，整个类重写并重新计算帧再试一次
+            logger.warn("selective monitor transform rejected, transform whole classes: {}", changed.keySet(), e);
+            retransform(changed, new MonitorClassFileTransformer(classFileBuffer, changed, false));
+        }
+
+        for (MonitoredClass monitoredClass : changed.values()) {
+            Class<?> clazz = monitoredClass.getClazz();
+            PendingClass pendingClass = batch.get(clazz);
+            if (!monitoredClass.isTransformed()) {
+                pendingClass.complete(new IllegalStateException("instrument fail"));
+                continue;
+            }
+            commit(monitoredClass);
             instrumentInfo.addTransformedClasses(clazz);
-            return true;
+            if (monitoredClass.isRestored()) {
+                monitoredClasses.remove(clazz);
+            } else {
+                monitoredClasses.put(clazz, monitoredClass);
+            }
+            pendingClass.complete(null);
+        }
+    }
+
+    private void retransform(Map<Class<?>, MonitoredClass> changed, MonitorClassFileTransformer transformer) throws UnmodifiableClassException {
+        inst.addTransformer(transformer, true);
+        boolean success = false;
+        try {
+            inst.retransformClasses(changed.keySet().toArray(new Class<?>[0]));
+            success = true;
         } finally {
             inst.removeTransformer(transformer);
+            if (!success) {
+                //retransform失败时所有类都保持原来的字节码
+                for (MonitoredClass monitoredClass : changed.values()) {
+                    monitoredClass.discard();
+                }
+            }
         }
     }
 
-    private ClassPathLookup createClassPathLookup() {
+    private void commit(MonitoredClass monitoredClass) {
+        Lock bufferLock = classFileBuffer.getLock();
+        bufferLock.lock();
         try {
-            String[] currentWebClassesPath = instrumentInfo.getClassPath().toArray(new String[0]);
-            return new ClassPathLookup(false, currentWebClassesPath);
-        } catch (Exception e) {
-            logger.error("", "cannot create classPathLookup", e);
+            classFileBuffer.setClassBuffer(monitoredClass.getClazz(), monitoredClass.commit());
+            ClassMetadataCache.invalidate(monitoredClass.getClazz());
+        } finally {
+            bufferLock.unlock();
         }
-        return null;
     }
 
     private void ensureStarted() {
@@ -154,12 +300,43 @@ public class DefaultMonitor implements Monitor {
     @Override
     public synchronized void destroy() {
         logger.info("start destroy qmonitor");
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        synchronized (pending) {
+            for (PendingClass pendingClass : pending.values()) {
+                pendingClass.complete(new IllegalStateException("qmonitor closed"));
+            }
+            pending.clear();
+        }
         lock.lock();
         try {
             status = Status.closed;
+            monitoredClasses.clear();
             GlobalMonitorContext.destroy();
         } finally {
             lock.unlock();
         }
     }
+
+    private static final class PendingClass {
+        private final String classSignature;
+        private final String source;
+        private final List<SettableFuture<Void>> futures = Lists.newArrayList();
+
+        private PendingClass(String classSignature, String source) {
+            this.classSignature = classSignature;
+            this.source = source;
+        }
+
+        private void complete(Throwable error) {
+            for (SettableFuture<Void> future : futures) {
+                if (error == null) {
+                    future.set(null);
+                } else {
+                    future.setException(error);
+                }
+            }
+        }
+    }
 }
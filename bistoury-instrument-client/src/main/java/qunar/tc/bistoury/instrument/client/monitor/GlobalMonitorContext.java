@@ -17,32 +17,79 @@
 
 package qunar.tc.bistoury.instrument.client.monitor;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import qunar.tc.bistoury.instrument.client.location.ResolvedSourceLocation;
 
 import java.util.Map;
 
 /**
+ * 按类记录当前生效的监控，类重新增强时根据这里的方法列表生成字节码
+ *
  * @author: leix.xie
  * @date: 2019/1/15 20:01
  * @describe：
  */
 public class GlobalMonitorContext {
-    private static final Map<String, Boolean> monitors = Maps.newHashMap();
-    private static final String SEPARATOR = "|";
+    private static final Map<String, Map<String, Integer>> monitors = Maps.newHashMap();
+
+    /**
+     * @return 方法之前没有监控时返回true
+     */
+    public static boolean addMonitor(final ResolvedSourceLocation location) {
+        synchronized (monitors) {
+            Map<String, Integer> methods = monitors.get(location.getClassSignature());
+            if (methods == null) {
+                methods = Maps.newHashMap();
+                monitors.put(location.getClassSignature(), methods);
+            }
+            String key = methodKey(location.getMethodName(), location.getMethodDesc());
+            if (methods.containsKey(key)) {
+                return false;
+            }
+            methods.put(key, location.getAdjustedLineNumber());
+            return true;
+        }
+    }
 
-    public static void addMonitor(final ResolvedSourceLocation location) {
+    /**
+     * @return 方法之前有监控时返回true
+     */
+    public static boolean removeMonitor(final ResolvedSourceLocation location) {
         synchronized (monitors) {
-            monitors.put(location.getClassSignature() + SEPARATOR + location.getMethodName() + SEPARATOR + location.getMethodDesc(), true);
+            Map<String, Integer> methods = monitors.get(location.getClassSignature());
+            if (methods == null) {
+                return false;
+            }
+            boolean removed = methods.remove(methodKey(location.getMethodName(), location.getMethodDesc())) != null;
+            if (methods.isEmpty()) {
+                monitors.remove(location.getClassSignature());
+            }
+            return removed;
         }
     }
 
     public static boolean check(final ResolvedSourceLocation location) {
         synchronized (monitors) {
-            return monitors.containsKey(location.getClassSignature() + SEPARATOR + location.getMethodName() + SEPARATOR + location.getMethodDesc());
+            Map<String, Integer> methods = monitors.get(location.getClassSignature());
+            return methods != null && methods.containsKey(methodKey(location.getMethodName(), location.getMethodDesc()));
         }
     }
 
+    /**
+     * @return 类中有监控的方法，key为方法名加描述符，value为监控的行号
+     */
+    public static Map<String, Integer> getMonitors(final String classSignature) {
+        synchronized (monitors) {
+            Map<String, Integer> methods = monitors.get(classSignature);
+            return methods == null ? ImmutableMap.<String, Integer>of() : ImmutableMap.copyOf(methods);
+        }
+    }
+
+    public static String methodKey(final String methodName, final String methodDesc) {
+        return methodName + methodDesc;
+    }
+
     public static void destroy() {
         synchronized (monitors) {
             monitors.clear();
@@ -29,7 +29,10 @@ public interface Monitor {
 
     String addMonitor(final String source, final int line);
 
-    void removeMonitor(final String source, final int line, String monitorId);
+    /**
+     * @return 监控代码已经从类中移除时返回true；类在监控之后被其它功能增强过时，监控代码在重置前会一直保留，返回false
+     */
+    boolean removeMonitor(final String source, final int line, String monitorId);
 
     void destroy();
 }
@@ -17,23 +17,23 @@
 
 package qunar.tc.bistoury.instrument.client.monitor;
 
-import com.google.common.base.Objects;
 import com.taobao.middleware.logger.Logger;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.Type;
 import org.objectweb.asm.util.CheckClassAdapter;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 import qunar.tc.bistoury.instrument.client.common.ClassFileBuffer;
 import qunar.tc.bistoury.instrument.client.debugger.Transformer;
-import qunar.tc.bistoury.instrument.client.location.ResolvedSourceLocation;
 
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 /**
+ * 一次retransform处理一批类，每个类按当前生效的全部监控重新生成字节码，结果记在{@link MonitoredClass}中，不修改ClassFileBuffer
+ *
  * @author: leix.xie
  * @date: 2018/12/26 19:48
  * @describe：
@@ -42,19 +42,29 @@ public class MonitorClassFileTransformer extends Transformer {
     private static final Logger LOG = BistouryLoggger.getLogger();
 
     private final ClassFileBuffer classFileBuffer;
-    private final String source;
-    private String monitorClassName;
-    private String methodName;
-    private String methodDesc;
-    private int line;
+    private final Map<Class<?>, MonitoredClass> classes;
+    private final boolean selective;
+
+    private volatile boolean selectiveApplied;
 
-    MonitorClassFileTransformer(ClassFileBuffer classFileBuffer, final String source, final ResolvedSourceLocation location, final int line) {
+    MonitorClassFileTransformer(ClassFileBuffer classFileBuffer, final Map<Class<?>, MonitoredClass> classes) {
+        this(classFileBuffer, classes, true);
+    }
+
+    /**
+     * @param selective 是否尝试只重写被监控的方法，为false时整个类重写并重新计算帧
+     */
+    MonitorClassFileTransformer(ClassFileBuffer classFileBuffer, final Map<Class<?>, MonitoredClass> classes, boolean selective) {
         this.classFileBuffer = classFileBuffer;
-        this.source = source;
-        this.methodDesc = location.getMethodDesc();
-        this.methodName = location.getMethodName();
-        this.line = line;
-        this.monitorClassName = signatureToClassName(location.getClassSignature());
+        this.classes = classes;
+        this.selective = selective;
+    }
+
+    /**
+     * @return 是否有类使用了增量转换的结果，增量转换的结果被jvm拒绝时可以整个类重写再试一次
+     */
+    boolean isSelectiveApplied() {
+        return selectiveApplied;
     }
 
     @Override
@@ -62,26 +72,45 @@ public class MonitorClassFileTransformer extends Transformer {
                                final Class<?> classBeingRedefined,
                                final ProtectionDomain protectionDomain,
                                final byte[] classBytes) throws IllegalClassFormatException {
-        if (!Objects.equal(className, monitorClassName)) {
+        if (classBeingRedefined == null) {
+            return null;
+        }
+        MonitoredClass monitoredClass = classes.get(classBeingRedefined);
+        if (monitoredClass == null) {
             return null;
         }
-        LOG.info("monitor class: {}", className);
+        LOG.info("monitor class: {}, methods: {}", className, monitoredClass.getTarget().keySet());
         Lock lock = classFileBuffer.getLock();
         lock.lock();
         try {
-            final ClassReader classReader = new ClassReader(classFileBuffer.getClassBuffer(classBeingRedefined, classBytes));
-            final ClassWriter classWriter = new ClassWriter(computeFlag(classReader));
-            final ClassVisitor classVisitor = new MonitorClassVisitor(new CheckClassAdapter(classWriter), source, methodName, methodDesc, line);
-            classReader.accept(classVisitor, ClassReader.SKIP_FRAMES);
-            byte[] bytes = classWriter.toByteArray();
-            classFileBuffer.setClassBuffer(classBeingRedefined, bytes);
+            final byte[] current = classFileBuffer.getClassBuffer(classBeingRedefined, classBytes);
+            MonitoredClass.Transform transform = monitoredClass.plan(current);
+            Map<String, Integer> methods = transform.getMethods();
+            byte[] bytes = methods.isEmpty() ? transform.getFrom() : instrument(transform.getFrom(), monitoredClass.getSource(), methods);
+            //ClassFileBuffer在retransform成功后才更新
+            monitoredClass.transformed(transform, bytes);
             return bytes;
         } finally {
             lock.unlock();
         }
     }
 
-    private String signatureToClassName(final String signature) {
-        return Type.getType(signature).getInternalName();
+    private byte[] instrument(byte[] from, String source, Map<String, Integer> methods) {
+        final ClassReader classReader = new ClassReader(from);
+        if (selective && canTransformSelectively(classReader)) {
+            try {
+                final ClassWriter classWriter = newSelectiveWriter(classReader);
+                classReader.accept(new MonitorClassVisitor(classWriter, source, methods, true), ClassReader.EXPAND_FRAMES);
+                byte[] bytes = classWriter.toByteArray();
+                selectiveApplied = true;
+                return bytes;
+            } catch (RuntimeException e) {
+                LOG.warn("selective monitor transform failed, transform whole class, source: {}", source, e);
+            }
+        }
+        final ClassWriter classWriter = new ClassWriter(computeFlag(classReader));
+        final ClassVisitor classVisitor = new MonitorClassVisitor(new CheckClassAdapter(classWriter), source, methods);
+        classReader.accept(classVisitor, ClassReader.SKIP_FRAMES);
+        return classWriter.toByteArray();
     }
 }
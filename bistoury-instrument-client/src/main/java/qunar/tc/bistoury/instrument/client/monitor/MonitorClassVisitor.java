@@ -23,6 +23,8 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 
+import java.util.Map;
+
 /**
  * @author: leix.xie
  * @date: 2018/12/26 19:34
@@ -32,16 +34,24 @@ public class MonitorClassVisitor extends ClassVisitor {
     private static final Logger logger = BistouryLoggger.getLogger();
     private String source;
     private String className;
-    private String methodName;
-    private String methodDesc;
-    private int line;
+    private Map<String, Integer> methods;
+    private final boolean frames;
+
+    /**
+     * @param methods 需要监控的方法，key为方法名加描述符，value为行号，同一个类的多个监控一次增强
+     */
+    public MonitorClassVisitor(final ClassVisitor cv, final String source, final Map<String, Integer> methods) {
+        this(cv, source, methods, false);
+    }
 
-    public MonitorClassVisitor(final ClassVisitor cv, final String source, final String methodName, final String methodDesc, final int line) {
+    /**
+     * @param frames 是否为生成的监控方法写入帧，下游不重新计算帧时需要
+     */
+    public MonitorClassVisitor(final ClassVisitor cv, final String source, final Map<String, Integer> methods, final boolean frames) {
         super(Opcodes.ASM5, cv);
         this.source = source;
-        this.methodName = methodName;
-        this.methodDesc = methodDesc;
-        this.line = line;
+        this.methods = methods;
+        this.frames = frames;
     }
 
     @Override
@@ -57,9 +67,10 @@ public class MonitorClassVisitor extends ClassVisitor {
 
     @Override
     public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-        if (name.equals(methodName) && desc.equals(methodDesc)) {
+        Integer line = methods.get(GlobalMonitorContext.methodKey(name, desc));
+        if (line != null) {
             logger.debug("visit method, name: {}, desc: {}", name, desc);
-            MonitorMethodVisitor monitorMV = new MonitorMethodVisitor(access, desc, signature, exceptions, className, name, line, cv);
+            MonitorMethodVisitor monitorMV = new MonitorMethodVisitor(access, desc, signature, exceptions, className, name, line, cv, frames);
             return monitorMV;
         } else {
             final MethodVisitor methodVisitor = super.visitMethod(access, name, desc, signature, exceptions);
@@ -18,6 +18,7 @@
 package qunar.tc.bistoury.instrument.client.monitor;
 
 import org.objectweb.asm.*;
+import org.objectweb.asm.util.CheckMethodAdapter;
 import qunar.tc.bistoury.instrument.client.common.Access;
 import qunar.tc.bistoury.instrument.client.util.DescDeal;
 import qunar.tc.bistoury.instrument.spy.BistourySpys1;
@@ -34,6 +35,7 @@ public class MonitorMethodVisitor extends MethodVisitor implements Opcodes {
     private final String MONITOR_KEY;
     private static final String SPY_NAME = Type.getInternalName(BistourySpys1.class);
     private static final String RUNTIME_EXCEPTION = Type.getInternalName(RuntimeException.class);
+    private static final String THROWABLE = Type.getInternalName(Throwable.class);
     private static final String START_DESC = Type.getMethodDescriptor(Type.getType(Long.class));
     private static final String STOP_DESC = Type.getMethodDescriptor(Type.getType(void.class), Type.getType(String.class), Type.getType(Long.class));
     private static final String EXCEPTION_DESC = Type.getMethodDescriptor(Type.getType(void.class), Type.getType(String.class));
@@ -50,9 +52,17 @@ public class MonitorMethodVisitor extends MethodVisitor implements Opcodes {
     private final String methodName;
     private final int totalParameterSize;
     private final int startOfVarIndex;
+    private final Object[] frameLocals;
 
     public MonitorMethodVisitor(int access, String desc, String signature, String[] exceptions, String className, String method, int line, ClassVisitor cv) {
-        super(ASM5, cv.visitMethod(Access.of(access).remove(ACC_PUBLIC).remove(ACC_PROTECTED).remove(ACC_SYNCHRONIZED).add(ACC_PRIVATE).add(ACC_FINAL).get(), DescDeal.generateNewName(method), desc, signature, exceptions));
+        this(access, desc, signature, exceptions, className, method, line, cv, false);
+    }
+
+    /**
+     * @param frames 为生成的监控方法写入帧，原方法的帧随原来的字节码一起保留
+     */
+    public MonitorMethodVisitor(int access, String desc, String signature, String[] exceptions, String className, String method, int line, ClassVisitor cv, boolean frames) {
+        super(ASM5, check(cv.visitMethod(Access.of(access).remove(ACC_PUBLIC).remove(ACC_PROTECTED).remove(ACC_SYNCHRONIZED).add(ACC_PRIVATE).add(ACC_FINAL).get(), DescDeal.generateNewName(method), desc, signature, exceptions), frames));
         this.className = className;
         this.parameterTypes = Type.getArgumentTypes(desc);
         this.returnType = Type.getReturnType(desc);
@@ -71,10 +81,18 @@ public class MonitorMethodVisitor extends MethodVisitor implements Opcodes {
             System.arraycopy(exceptions, 0, newMethodExceptions, 1, exceptions.length);
         }
         newExceptionsLen = newMethodExceptions.length;
-        monitorMethod = cv.visitMethod(access, method, desc, signature, newMethodExceptions);
+        this.frameLocals = frames ? computeFrameLocals() : null;
+        monitorMethod = check(cv.visitMethod(access, method, desc, signature, newMethodExceptions), frames);
         addGeneratedAnnotation();
     }
 
+    /**
+     * 写入帧时下游直接是ClassWriter，没有经过CheckClassAdapter，在这里检查增强的两个方法
+     */
+    private static MethodVisitor check(MethodVisitor mv, boolean frames) {
+        return frames ? new CheckMethodAdapter(mv) : mv;
+    }
+
     private void addGeneratedAnnotation() {
         AnnotationVisitor av = monitorMethod.visitAnnotation(AGENT_GENERATED_DESC, true);
         av.visitEnd();
@@ -164,6 +182,7 @@ public class MonitorMethodVisitor extends MethodVisitor implements Opcodes {
         emitCatchBlocks(scopeVarIndex, exceptionHandlers);
 
         monitorMethod.visitLabel(handlerOfFinally);
+        visitFrame(THROWABLE);
         monitorMethod.visitVarInsn(ASTORE, returnVarIndex);
         //finally
         monitorMethod.visitLabel(endOfFinally);
@@ -175,14 +194,57 @@ public class MonitorMethodVisitor extends MethodVisitor implements Opcodes {
 
         if (!hasReturn) {
             monitorMethod.visitLabel(end);
+            visitFrame();
             monitorMethod.visitInsn(RETURN);
         }
     }
 
+    /**
+     * 跳转目标处的帧，局部变量只到startTime为止，返回值和异常变量在这些位置没有确定的类型
+     */
+    private void visitFrame(String... stack) {
+        if (frameLocals != null) {
+            monitorMethod.visitFrame(F_NEW, frameLocals.length, frameLocals, stack.length, stack);
+        }
+    }
+
+    private Object[] computeFrameLocals() {
+        Object[] locals = new Object[startOfVarIndex + parameterTypes.length + 1];
+        int index = 0;
+        if (startOfVarIndex == 1) {
+            locals[index++] = className;
+        }
+        for (Type parameterType : parameterTypes) {
+            locals[index++] = toFrameType(parameterType);
+        }
+        locals[index] = Type.getInternalName(Long.class);
+        return locals;
+    }
+
+    private static Object toFrameType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.BYTE:
+            case Type.CHAR:
+            case Type.SHORT:
+            case Type.INT:
+                return INTEGER;
+            case Type.FLOAT:
+                return FLOAT;
+            case Type.LONG:
+                return LONG;
+            case Type.DOUBLE:
+                return DOUBLE;
+            default:
+                return type.getInternalName();
+        }
+    }
+
     private void emitCatchBlocks(int scopeVarIndex, Label[] exceptionHandlers) {
         //catch blocks
         for (int i = 0; i < newExceptionsLen; i++) {
             monitorMethod.visitLabel(exceptionHandlers[i]);
+            visitFrame(newMethodExceptions[i]);
             //ex
             int exceptionVarIndex = scopeVarIndex + 1;
             monitorMethod.visitVarInsn(ASTORE, exceptionVarIndex);
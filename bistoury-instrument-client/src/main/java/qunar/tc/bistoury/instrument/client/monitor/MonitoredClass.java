@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.monitor;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.taobao.middleware.logger.Logger;
+import qunar.tc.bistoury.attach.common.BistouryLoggger;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 记录一个类在监控增强前后的字节码，监控全部移除时恢复成增强前的字节码
+ * <p>
+ * transformer中只生成这次增强的结果，retransform成功后才{@link #commit()}，失败时{@link #discard()}，已经生效的状态不变
+ * <p>
+ * 只在instrument lock下访问
+ */
+class MonitoredClass {
+    private static final Logger logger = BistouryLoggger.getLogger();
+
+    private final Class<?> clazz;
+
+    private final String classSignature;
+
+    private final String source;
+
+    //第一次添加监控时ClassFileBuffer中的字节码，可能已经包含断点等其它增强
+    private byte[] baseBytes;
+
+    //最近一次监控增强生成的字节码
+    private byte[] lastBytes;
+
+    //lastBytes中已经监控的方法
+    private Set<String> instrumented = ImmutableSet.of();
+
+    //监控之后类又被其它功能增强过，不能再从baseBytes重新生成，只能追加监控
+    private boolean layered;
+
+    private Map<String, Integer> target = ImmutableMap.of();
+
+    //这次增强生成的结果，还没有生效
+    private Transform pending;
+
+    MonitoredClass(Class<?> clazz, String classSignature, String source) {
+        this.clazz = clazz;
+        this.classSignature = classSignature;
+        this.source = source;
+    }
+
+    Class<?> getClazz() {
+        return clazz;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * 取当前生效的监控作为这次增强的目标
+     *
+     * @return 目标和已经增强的方法不一致时返回true，需要重新增强
+     */
+    boolean prepare() {
+        target = GlobalMonitorContext.getMonitors(classSignature);
+        pending = null;
+        return !target.keySet().equals(instrumented);
+    }
+
+    Map<String, Integer> getTarget() {
+        return target;
+    }
+
+    /**
+     * 根据ClassFileBuffer中当前的字节码决定这次增强从哪份字节码开始、增强哪些方法，不修改已经生效的状态
+     */
+    Transform plan(byte[] current) {
+        if (lastBytes == null) {
+            return new Transform(current, current, false, target);
+        }
+        if (!layered && current == lastBytes) {
+            return new Transform(baseBytes, baseBytes, false, target);
+        }
+        Map<String, Integer> methods = Maps.filterKeys(target, Predicates.not(Predicates.in(instrumented)));
+        return new Transform(baseBytes, current, true, ImmutableMap.copyOf(methods));
+    }
+
+    void transformed(Transform transform, byte[] bytes) {
+        transform.bytes = bytes;
+        pending = transform;
+    }
+
+    boolean isTransformed() {
+        return pending != null;
+    }
+
+    /**
+     * retransform成功后调用，这次增强的结果生效
+     *
+     * @return 生效的字节码
+     */
+    byte[] commit() {
+        Transform transform = pending;
+        pending = null;
+        if (transform.layered && !layered) {
+            logger.warn("class {} was enhanced by others after qmonitor, removed monitors will stay until reset", clazz.getName());
+        }
+        baseBytes = transform.base;
+        layered = transform.layered;
+        if (layered) {
+            instrumented = ImmutableSet.copyOf(Sets.union(instrumented, target.keySet()));
+        } else {
+            instrumented = ImmutableSet.copyOf(target.keySet());
+        }
+        lastBytes = transform.bytes;
+        return lastBytes;
+    }
+
+    /**
+     * retransform失败时调用，丢弃这次增强的结果
+     */
+    void discard() {
+        pending = null;
+    }
+
+    /**
+     * @return 方法的监控代码仍然在生效的字节码中
+     */
+    boolean isInstrumented(String methodKey) {
+        return instrumented.contains(methodKey);
+    }
+
+    /**
+     * @return 监控已经全部移除并且恢复成了增强前的字节码
+     */
+    boolean isRestored() {
+        return lastBytes != null && !layered && instrumented.isEmpty();
+    }
+
+    static final class Transform {
+        private final byte[] base;
+
+        private final byte[] from;
+
+        private final boolean layered;
+
+        private final Map<String, Integer> methods;
+
+        private byte[] bytes;
+
+        private Transform(byte[] base, byte[] from, boolean layered, Map<String, Integer> methods) {
+            this.base = base;
+            this.from = from;
+            this.layered = layered;
+            this.methods = methods;
+        }
+
+        byte[] getFrom() {
+            return from;
+        }
+
+        Map<String, Integer> getMethods() {
+            return methods;
+        }
+    }
+}
@@ -25,7 +25,7 @@ package qunar.tc.bistoury.instrument.client.spring.el;
  * @author Andy Clement
  * @since 4.1
  */
-abstract class CompiledExpression {
+public abstract class CompiledExpression {
 
     /**
      * Subclasses of CompiledExpression generated by SpelCompiler will provide an
@@ -32,7 +32,7 @@ import java.math.BigInteger;
  * @author Giovanni Dall'Oglio Risso
  * @since 3.0
  */
-abstract class Operator extends SpelNodeImpl {
+public abstract class Operator extends SpelNodeImpl {
 
 	private final String operatorName;
 
@@ -20,6 +20,7 @@ import com.taobao.middleware.logger.Logger;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import qunar.tc.bistoury.attach.common.BistouryLoggger;
 
 import java.io.File;
@@ -61,6 +62,12 @@ class SpelCompiler implements Opcodes {
 
     private static final Logger logger = BistouryLoggger.getLogger();
 
+    static final String COMPILED_EXPRESSION_NAME = Type.getInternalName(CompiledExpression.class);
+
+    static final String EVALUATION_CONTEXT_NAME = Type.getInternalName(EvaluationContext.class);
+
+    static final String EVALUATION_EXCEPTION_NAME = Type.getInternalName(EvaluationException.class);
+
     // A compiler is created for each classloader, it manages a child class loader of that
     // classloader and the child is used to load the compiled expressions.
     private static final Map<ClassLoader, SpelCompiler> compilers =
@@ -125,16 +132,16 @@ class SpelCompiler implements Opcodes {
      */
     @SuppressWarnings("unchecked")
     private Class<? extends CompiledExpression> createExpressionClass(SpelNodeImpl expressionToCompile) {
-        // Create class outline 'spel/ExNNN extends org.springframework.expression.spel.CompiledExpression'
-        String clazzName = "qunar/tc/bistoury/instrument/client/debugger/Ex" + getNextSuffix();
+        // Create class outline 'spel/ExNNN extends qunar.tc.bistoury.instrument.client.spring.el.CompiledExpression'
+        String clazzName = "spel/Ex" + getNextSuffix();
         ClassWriter cw = new ExpressionClassWriter();
-        cw.visit(V1_5, ACC_PUBLIC, clazzName, null, "qunar/tc/bistoury/instrument/client/debugger/CompiledExpression", null);
+        cw.visit(V1_5, ACC_PUBLIC, clazzName, null, COMPILED_EXPRESSION_NAME, null);
 
         // Create default constructor
         MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
         mv.visitCode();
         mv.visitVarInsn(ALOAD, 0);
-        mv.visitMethodInsn(INVOKESPECIAL, "qunar/tc/bistoury/instrument/client/debugger/CompiledExpression",
+        mv.visitMethodInsn(INVOKESPECIAL, COMPILED_EXPRESSION_NAME,
                 "<init>", "()V", false);
         mv.visitInsn(RETURN);
         mv.visitMaxs(1, 1);
@@ -142,8 +149,8 @@ class SpelCompiler implements Opcodes {
 
         // Create getValue() method
         mv = cw.visitMethod(ACC_PUBLIC, "getValue",
-                "(Ljava/lang/Object;Lqunar/tc/bistoury/instrument/client/debugger/EvaluationContext;)Ljava/lang/Object;", null,
-                new String[]{"qunar/tc/bistoury/instrument/client/debugger/EvaluationException"});
+                "(Ljava/lang/Object;L" + EVALUATION_CONTEXT_NAME + ";)Ljava/lang/Object;", null,
+                new String[]{EVALUATION_EXCEPTION_NAME});
         mv.visitCode();
 
         CodeFlow cf = new CodeFlow(clazzName, cw);
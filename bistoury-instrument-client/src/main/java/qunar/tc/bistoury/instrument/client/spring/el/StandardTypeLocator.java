@@ -29,7 +29,7 @@ import java.util.List;
  * @author Juergen Hoeller
  * @since 3.0
  */
-class StandardTypeLocator implements TypeLocator {
+public class StandardTypeLocator implements TypeLocator {
 
     private final ClassLoader classLoader;
 
@@ -147,7 +147,7 @@ class VariableReference extends SpelNodeImpl {
 		else {
 			mv.visitVarInsn(ALOAD, 2);
 			mv.visitLdcInsn(name);
-			mv.visitMethodInsn(INVOKEINTERFACE, "org/springframework/expression/EvaluationContext", "lookupVariable", "(Ljava/lang/String;)Ljava/lang/Object;",true);
+			mv.visitMethodInsn(INVOKEINTERFACE, SpelCompiler.EVALUATION_CONTEXT_NAME, "lookupVariable", "(Ljava/lang/String;)Ljava/lang/Object;",true);
 		}
 		CodeFlow.insertCheckCast(mv,this.exitTypeDescriptor);
 		cf.pushDescriptor(this.exitTypeDescriptor);
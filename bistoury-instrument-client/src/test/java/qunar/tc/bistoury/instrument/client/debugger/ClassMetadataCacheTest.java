@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.debugger;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 字节码不变时命中缓存，类被重新定义或主动失效后重新分析
+ */
+public class ClassMetadataCacheTest {
+
+    private byte[] original;
+
+    private byte[] redefined;
+
+    @Before
+    public void before() throws Exception {
+        ClassMetadataCache.clear();
+        original = classBytes(Original.class);
+        redefined = classBytes(Redefined.class);
+    }
+
+    @Test
+    public void sameBytesShouldHit() {
+        ClassMetadata metadata = ClassMetadataCache.get(Original.class, original);
+        Assert.assertEquals(Lists.newArrayList("count"), fieldNames(metadata));
+        Assert.assertSame(metadata, ClassMetadataCache.get(Original.class, original.clone()));
+    }
+
+    @Test
+    public void redefinedClassShouldMiss() {
+        ClassMetadata metadata = ClassMetadataCache.get(Original.class, original);
+
+        //同一个类换了字节码，比如被其它agent重新定义
+        ClassMetadata redefinedMetadata = ClassMetadataCache.get(Original.class, redefined);
+        Assert.assertNotSame(metadata, redefinedMetadata);
+        Assert.assertEquals(Lists.newArrayList("count", "name"), fieldNames(redefinedMetadata));
+        Assert.assertSame(redefinedMetadata, ClassMetadataCache.get(Original.class, redefined));
+
+        //换回原来的字节码也要重新分析
+        ClassMetadata restored = ClassMetadataCache.get(Original.class, original);
+        Assert.assertNotSame(metadata, restored);
+        Assert.assertEquals(Lists.newArrayList("count"), fieldNames(restored));
+    }
+
+    @Test
+    public void updatedBytesShouldReuseMetadata() {
+        ClassMetadata metadata = ClassMetadataCache.get(Original.class, original);
+        ClassMetadataCache.update(Original.class, redefined, metadata);
+
+        Assert.assertSame(metadata, ClassMetadataCache.get(Original.class, redefined));
+        Assert.assertNotSame(metadata, ClassMetadataCache.get(Original.class, original));
+    }
+
+    @Test
+    public void invalidateShouldMiss() {
+        ClassMetadata metadata = ClassMetadataCache.get(Original.class, original);
+        ClassMetadata other = ClassMetadataCache.get(Redefined.class, redefined);
+
+        ClassMetadataCache.invalidate(Original.class);
+        Assert.assertNotSame(metadata, ClassMetadataCache.get(Original.class, original));
+        Assert.assertSame(other, ClassMetadataCache.get(Redefined.class, redefined));
+
+        ClassMetadataCache.clear();
+        Assert.assertNotSame(other, ClassMetadataCache.get(Redefined.class, redefined));
+    }
+
+    @Test
+    public void nullClassShouldNotBeCached() {
+        ClassMetadata metadata = ClassMetadataCache.get(null, original);
+        Assert.assertEquals(Lists.newArrayList("count"), fieldNames(metadata));
+        Assert.assertNotSame(metadata, ClassMetadataCache.get(null, original));
+
+        ClassMetadataCache.update(null, original, metadata);
+        ClassMetadataCache.invalidate(null);
+        Assert.assertNotSame(metadata, ClassMetadataCache.get(Original.class, original));
+    }
+
+    private static byte[] classBytes(Class<?> clazz) throws Exception {
+        String name = clazz.getName();
+        try (InputStream in = clazz.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    private static List<String> fieldNames(ClassMetadata metadata) {
+        List<String> names = Lists.newArrayList();
+        for (ClassField field : metadata.getFields()) {
+            names.add(field.getName());
+        }
+        return names;
+    }
+
+    public static class Original {
+
+        private int count;
+    }
+
+    public static class Redefined {
+
+        private int count;
+
+        private String name;
+    }
+}
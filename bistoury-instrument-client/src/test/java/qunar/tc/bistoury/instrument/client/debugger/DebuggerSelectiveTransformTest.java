@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.debugger;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.CheckClassAdapter;
+import qunar.tc.bistoury.instrument.client.common.ClassFileBuffer;
+import qunar.tc.bistoury.instrument.client.location.ResolvedSourceLocation;
+
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 增量转换的结果在每一个断点行上都要能通过校验：构造函数调用super之前、long/double局部变量、行首操作数栈不为空
+ */
+public class DebuggerSelectiveTransformTest {
+
+    private static final String SIGNATURE = "L" + Sample.class.getName().replace('.', '/') + ";";
+
+    private byte[] original;
+
+    @Before
+    public void before() throws Exception {
+        ClassMetadataCache.clear();
+        try (InputStream in = Sample.class.getResourceAsStream("DebuggerSelectiveTransformTest$Sample.class")) {
+            original = ByteStreams.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void everyLineShouldPassVerification() throws Exception {
+        Map<Integer, String> lines = lines(original);
+        Assert.assertFalse(lines.isEmpty());
+        for (Map.Entry<Integer, String> entry : lines.entrySet()) {
+            byte[] bytes = transform(entry.getKey(), entry.getValue());
+            verify(bytes, "line " + entry.getKey() + " of " + entry.getValue());
+        }
+    }
+
+    @Test
+    public void untouchedMethodsShouldBeCopied() throws Exception {
+        int line = firstLine(original, "voidMethod");
+        byte[] bytes = transform(line, "voidMethod");
+        verify(bytes, "voidMethod");
+
+        //只有断点所在的方法被重写
+        Assert.assertEquals(Sets.newHashSet("voidMethod(I)V"), changedMethods(original, bytes));
+    }
+
+    @Test
+    public void wholeClassTransformShouldPassVerification() throws Exception {
+        int line = firstLine(original, "longAndDouble");
+        DebuggerClassFileTransformer transformer = newTransformer(line, "longAndDouble", false);
+        byte[] bytes = transformer.transform(Sample.class.getName().replace('.', '/'), Sample.class, null, original);
+        Assert.assertFalse(transformer.isSelectiveApplied());
+        verify(bytes, "whole class");
+    }
+
+    private byte[] transform(int line, String method) throws Exception {
+        DebuggerClassFileTransformer transformer = newTransformer(line, method, true);
+        byte[] bytes = transformer.transform(Sample.class.getName().replace('.', '/'), Sample.class, null, original);
+        Assert.assertNotNull(bytes);
+        Assert.assertTrue("selective transform failed at line " + line + " of " + method, transformer.isSelectiveApplied());
+        return bytes;
+    }
+
+    private static DebuggerClassFileTransformer newTransformer(int line, String method, boolean selective) {
+        return new DebuggerClassFileTransformer(new MapClassFileBuffer(), "Sample.java",
+                new ResolvedSourceLocation(SIGNATURE, method, line), selective);
+    }
+
+    static void verify(byte[] bytes, String message) throws Exception {
+        StringWriter out = new StringWriter();
+        CheckClassAdapter.verify(new ClassReader(bytes), Sample.class.getClassLoader(), false, new PrintWriter(out));
+        Assert.assertEquals(message + "\n" + out, "", out.toString());
+
+        //由jvm再校验一次
+        Class<?> clazz = Class.forName(Sample.class.getName(), true, new DefineClassLoader(Sample.class.getName(), bytes));
+        Assert.assertNotSame(Sample.class, clazz);
+    }
+
+    private static Map<Integer, String> lines(byte[] bytes) {
+        final Map<Integer, String> lines = new TreeMap<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, final String name, String desc, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM5) {
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        lines.put(line, name);
+                    }
+                };
+            }
+        }, 0);
+        return lines;
+    }
+
+    private static int firstLine(byte[] bytes, String method) {
+        for (Map.Entry<Integer, String> entry : lines(bytes).entrySet()) {
+            if (entry.getValue().equals(method)) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalArgumentException(method);
+    }
+
+    private static Set<String> changedMethods(byte[] before, byte[] after) {
+        Map<String, String> beforeCode = methodCode(before);
+        Map<String, String> afterCode = methodCode(after);
+        Assert.assertEquals(beforeCode.keySet(), afterCode.keySet());
+        Set<String> changed = Sets.newHashSet();
+        for (Map.Entry<String, String> entry : beforeCode.entrySet()) {
+            if (!entry.getValue().equals(afterCode.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    private static Map<String, String> methodCode(byte[] bytes) {
+        final Map<String, String> code = new TreeMap<>();
+        final org.objectweb.asm.tree.ClassNode node = new org.objectweb.asm.tree.ClassNode();
+        new ClassReader(bytes).accept(node, 0);
+        for (org.objectweb.asm.tree.MethodNode method : node.methods) {
+            StringWriter out = new StringWriter();
+            org.objectweb.asm.util.TraceMethodVisitor trace = new org.objectweb.asm.util.TraceMethodVisitor(new org.objectweb.asm.util.Textifier());
+            method.accept(trace);
+            trace.p.print(new PrintWriter(out));
+            code.put(method.name + method.desc, out.toString());
+        }
+        return code;
+    }
+
+    static class DefineClassLoader extends ClassLoader {
+
+        private final String name;
+
+        private final byte[] bytes;
+
+        DefineClassLoader(String name, byte[] bytes) {
+            super(DefineClassLoader.class.getClassLoader());
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!this.name.equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                }
+                return clazz;
+            }
+        }
+    }
+
+    private static class MapClassFileBuffer implements ClassFileBuffer {
+
+        private final Lock lock = new ReentrantLock();
+
+        @Override
+        public byte[] getClassBuffer(Class clazz, byte[] defaultBuffer) {
+            return defaultBuffer;
+        }
+
+        @Override
+        public void setClassBuffer(Class clazz, byte[] buffer) {
+        }
+
+        @Override
+        public Lock getLock() {
+            return lock;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    public static class Base {
+
+        public Base(int value) {
+        }
+    }
+
+    public static class Sample extends Base {
+
+        private static String name = "sample";
+
+        private long total;
+
+        private double ratio;
+
+        public Sample(int value) {
+            super(
+                    twice(
+                            value));
+            total = value;
+        }
+
+        public Sample(long start, double ratio) {
+            this((int) start);
+            this.total = start;
+            this.ratio = ratio;
+        }
+
+        private static int twice(int value) {
+            return value * 2;
+        }
+
+        public long longAndDouble(long a, double b) {
+            long sum = a + (long) b;
+            double product = a * b;
+            if (sum > product) {
+                sum += 1;
+            }
+            float f = (float) product;
+            return sum + (long) f;
+        }
+
+        public int nonEmptyStack(int a, int b) {
+            return Math.max(a,
+                    twice(b))
+                    + new Sample(
+                    a).value(
+                    b);
+        }
+
+        private int value(int b) {
+            return (int) total + b;
+        }
+
+        public void voidMethod(int a) {
+            if (a > 0) {
+                total += a;
+            }
+            ratio = a;
+        }
+
+        public String loop(String[] values) {
+            StringBuilder sb = new StringBuilder();
+            for (String value : values) {
+                sb.append(value).append(name);
+            }
+            return sb.toString();
+        }
+
+        public static int tryCatch(String s) {
+            try {
+                return Integer.parseInt(s);
+            } catch (NumberFormatException e) {
+                return -1;
+            } finally {
+                name = s;
+            }
+        }
+
+        public synchronized double ternary(boolean flag, double d) {
+            return flag
+                    ? d
+                    : ratio;
+        }
+    }
+}
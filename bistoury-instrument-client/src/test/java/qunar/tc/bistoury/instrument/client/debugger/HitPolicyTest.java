@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.debugger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import qunar.tc.bistoury.instrument.client.location.Location;
+
+/**
+ * 断点的命中策略：快照次数、采样和限速
+ */
+public class HitPolicyTest {
+
+    private static final Location LOCATION = new Location("Test.java", 10);
+
+    @Test
+    public void defaultPolicyShouldBeOnce() {
+        Assert.assertSame(HitPolicy.ONCE, HitPolicy.of(1, 1, 0));
+        Assert.assertEquals(HitPolicy.of(3, 2, 1), HitPolicy.of(3, 2, 1));
+
+        Breakpoint breakpoint = new Breakpoint("id", LOCATION, null);
+        Assert.assertTrue(breakpoint.trigger());
+        Assert.assertTrue(breakpoint.isExhausted());
+        Assert.assertFalse(breakpoint.trigger());
+    }
+
+    @Test
+    public void illegalPolicyShouldBeRejected() {
+        assertIllegal(0, 1, 0);
+        assertIllegal(HitPolicy.MAX_HITS + 1, 1, 0);
+        assertIllegal(1, 0, 0);
+        assertIllegal(1, 1, -1);
+    }
+
+    @Test
+    public void breakpointShouldStopAfterMaxHits() {
+        Breakpoint breakpoint = breakpoint(HitPolicy.of(3, 1, 0));
+        for (int i = 0; i < 2; ++i) {
+            Assert.assertTrue(breakpoint.trigger());
+            Assert.assertFalse(breakpoint.isExhausted());
+        }
+        Assert.assertTrue(breakpoint.trigger());
+        Assert.assertTrue(breakpoint.isExhausted());
+        Assert.assertFalse(breakpoint.trigger());
+    }
+
+    @Test
+    public void breakpointShouldSampleOneInEvery() {
+        Breakpoint breakpoint = breakpoint(HitPolicy.of(2, 3, 0));
+        int triggered = 0;
+        for (int i = 1; i <= 6; ++i) {
+            boolean hit = breakpoint.trigger();
+            Assert.assertEquals(i % 3 == 0, hit);
+            if (hit) {
+                ++triggered;
+            }
+        }
+        Assert.assertEquals(2, triggered);
+        Assert.assertTrue(breakpoint.isExhausted());
+    }
+
+    @Test
+    public void breakpointShouldBeRateLimited() {
+        Breakpoint breakpoint = breakpoint(HitPolicy.of(HitPolicy.MAX_HITS, 1, 2));
+        int triggered = 0;
+        for (int i = 0; i < 10; ++i) {
+            if (breakpoint.trigger()) {
+                ++triggered;
+            }
+        }
+        //跨过秒的边界时最多多拿一秒的量
+        Assert.assertTrue(triggered >= 2 && triggered <= 4);
+        Assert.assertFalse(breakpoint.isExhausted());
+    }
+
+    private static Breakpoint breakpoint(HitPolicy policy) {
+        return new Breakpoint("id", LOCATION, null, null, policy);
+    }
+
+    private static void assertIllegal(int maxHits, int sampleEvery, int maxPerSecond) {
+        try {
+            HitPolicy.of(maxHits, sampleEvery, maxPerSecond);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.location;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * debugger和monitor共用同一个ClassPathLookup，并发解析的结果要和单线程一致
+ */
+public class ClassPathLookupConcurrencyTest {
+
+    private static final String SOURCE = "qunar/tc/bistoury/instrument/client/location/ClassPathLookupConcurrencyTest.java";
+
+    private static final int MAX_LINE = 120;
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void concurrentResolveMatchesSerial() throws Exception {
+        String classes = new File(ClassPathLookupConcurrencyTest.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        List<String> expected = resolveAll(new ClassPathLookup(false, new String[]{classes}));
+        Assert.assertTrue(expected.contains(describe(ClassPathLookupConcurrencyTest.class, "describe")));
+
+        final ClassPathLookup shared = new ClassPathLookup(false, new String[]{classes});
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws Exception {
+                        start.await();
+                        return resolveAll(shared);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<List<String>> future : futures) {
+                Assert.assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> resolveAll(ClassPathLookup lookup) {
+        List<String> result = new ArrayList<>(MAX_LINE);
+        for (int line = 1; line <= MAX_LINE; line++) {
+            ResolvedSourceLocation location = lookup.resolveSourceLocation(SOURCE, line);
+            if (location.getErrorMessage() != null) {
+                result.add(location.getErrorMessage().getFormat());
+            } else {
+                result.add(location.getClassSignature() + "#" + location.getMethodName());
+            }
+        }
+        return result;
+    }
+
+    private static String describe(Class<?> clazz, String method) {
+        return "L" + clazz.getName().replace('.', '/') + ";#" + method;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.metrics;
+
+import com.codahale.metrics.Counter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.instrument.client.metrics.adapter.ResettableTimer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标数量上限、空闲指标淘汰以及每分钟一次的差值计算
+ */
+public class MetricsTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private Metrics metrics;
+
+    private long now;
+
+    @Before
+    public void before() {
+        metrics = new Metrics();
+        now = TimeUnit.MINUTES.toMillis(TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void overCapShouldReturnSharedOverflowMetric() {
+        for (int i = 0; i < Metrics.MAX_METRICS; ++i) {
+            metrics.getOrAdd(new MetricKey("counter" + i), Metrics.MetricBuilder.COUNTERS);
+        }
+        Assert.assertEquals(Metrics.MAX_METRICS, metrics.select(null).size());
+
+        Counter first = metrics.getOrAdd(new MetricKey("overflow1"), Metrics.MetricBuilder.COUNTERS);
+        Counter second = metrics.getOrAdd(new MetricKey("overflow2"), Metrics.MetricBuilder.COUNTERS);
+        Assert.assertSame(first, second);
+        Assert.assertSame(Metrics.MetricBuilder.COUNTERS.overflow(), first);
+
+        ResettableTimer timer = metrics.getOrAdd(new MetricKey("overflow3"), Metrics.MetricBuilder.TIMERS);
+        Assert.assertSame(Metrics.MetricBuilder.TIMERS.overflow(), timer);
+
+        Assert.assertEquals(Metrics.MAX_METRICS, metrics.select(null).size());
+        Assert.assertTrue(metrics.select("overflow1").isEmpty());
+
+        //已注册的指标不受上限影响
+        Counter registered = metrics.getOrAdd(new MetricKey("counter0"), Metrics.MetricBuilder.COUNTERS);
+        Assert.assertNotSame(first, registered);
+    }
+
+    @Test
+    public void idleMetricShouldBeEvicted() {
+        Counter idle = metrics.getOrAdd(new MetricKey("idle"), Metrics.MetricBuilder.COUNTERS);
+        Counter active = metrics.getOrAdd(new MetricKey("active"), Metrics.MetricBuilder.COUNTERS);
+        idle.inc();
+
+        for (int i = 0; i < Metrics.MAX_IDLE_REPORTS; ++i) {
+            active.inc();
+            metrics.tick(now + i * MINUTE);
+        }
+        Assert.assertEquals(1, metrics.select("idle").size());
+
+        active.inc();
+        metrics.tick(now + Metrics.MAX_IDLE_REPORTS * MINUTE);
+        Assert.assertTrue(metrics.select("idle").isEmpty());
+        Assert.assertEquals(1, metrics.select("active").size());
+
+        //淘汰后可以重新注册，空出的名额也可以再用
+        Counter again = metrics.getOrAdd(new MetricKey("idle"), Metrics.MetricBuilder.COUNTERS);
+        Assert.assertNotSame(idle, again);
+        Assert.assertEquals(2, metrics.select(null).size());
+    }
+
+    @Test
+    public void tickShouldTakeEffectOncePerMinute() {
+        Counter counter = metrics.getOrAdd(deltaKey("delta"), Metrics.MetricBuilder.COUNTERS);
+        Assert.assertTrue(counter instanceof DeltaCounter);
+
+        counter.inc(3);
+        metrics.tick(now);
+        Assert.assertEquals(3, counter.getCount());
+
+        counter.inc(5);
+        metrics.tick(now + 1000);
+        metrics.tick(now + MINUTE - 1);
+        Assert.assertEquals(3, counter.getCount());
+
+        metrics.tick(now + MINUTE);
+        Assert.assertEquals(5, counter.getCount());
+
+        //时间回退不会重复计算
+        counter.inc(7);
+        metrics.tick(now);
+        Assert.assertEquals(5, counter.getCount());
+    }
+
+    private static DeltaKeyWrapper<Object> deltaKey(String name) {
+        return new DeltaKeyWrapper<Object>(name) {
+            @Override
+            public Object get() {
+                return null;
+            }
+        }.delta();
+    }
+}
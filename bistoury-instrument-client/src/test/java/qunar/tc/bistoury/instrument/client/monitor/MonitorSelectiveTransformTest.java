@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.monitor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.CheckClassAdapter;
+import qunar.tc.bistoury.instrument.client.common.ClassFileBuffer;
+import qunar.tc.bistoury.instrument.client.location.ResolvedSourceLocation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 增量转换生成的监控方法自己写入帧，void和有返回值、long/double参数、静态和同步方法都要能通过校验
+ */
+public class MonitorSelectiveTransformTest {
+
+    private static final String SIGNATURE = "L" + Sample.class.getName().replace('.', '/') + ";";
+
+    private byte[] original;
+
+    @Before
+    public void before() throws Exception {
+        GlobalMonitorContext.destroy();
+        try (InputStream in = Sample.class.getResourceAsStream("MonitorSelectiveTransformTest$Sample.class")) {
+            original = ByteStreams.toByteArray(in);
+        }
+    }
+
+    @After
+    public void after() {
+        GlobalMonitorContext.destroy();
+    }
+
+    @Test
+    public void eachMethodShouldPassVerification() throws Exception {
+        for (String[] method : methods(original)) {
+            GlobalMonitorContext.destroy();
+            GlobalMonitorContext.addMonitor(new ResolvedSourceLocation(SIGNATURE, method[0], 1, method[1]));
+            verify(transform(true), method[0] + method[1]);
+        }
+    }
+
+    @Test
+    public void allMethodsInOneTransformShouldPassVerification() throws Exception {
+        for (String[] method : methods(original)) {
+            GlobalMonitorContext.addMonitor(new ResolvedSourceLocation(SIGNATURE, method[0], 1, method[1]));
+        }
+        verify(transform(true), "all methods");
+    }
+
+    @Test
+    public void wholeClassTransformShouldPassVerification() throws Exception {
+        GlobalMonitorContext.addMonitor(new ResolvedSourceLocation(SIGNATURE, "longAndDouble", 1, "(JD)D"));
+        verify(transform(false), "whole class");
+    }
+
+    private byte[] transform(boolean selective) throws Exception {
+        MonitoredClass monitoredClass = new MonitoredClass(Sample.class, SIGNATURE, "Sample.java");
+        Assert.assertTrue(monitoredClass.prepare());
+        MonitorClassFileTransformer transformer = new MonitorClassFileTransformer(new MapClassFileBuffer(),
+                ImmutableMap.<Class<?>, MonitoredClass>of(Sample.class, monitoredClass), selective);
+        byte[] bytes = transformer.transform(Sample.class.getClassLoader(), Sample.class.getName().replace('.', '/'),
+                Sample.class, null, original);
+        Assert.assertNotNull(bytes);
+        Assert.assertEquals(selective, transformer.isSelectiveApplied());
+        return bytes;
+    }
+
+    private static void verify(byte[] bytes, String message) throws Exception {
+        StringWriter out = new StringWriter();
+        CheckClassAdapter.verify(new ClassReader(bytes), Sample.class.getClassLoader(), false, new PrintWriter(out));
+        Assert.assertEquals(message + "\n" + out, "", out.toString());
+
+        //由jvm再校验一次
+        Class<?> clazz = Class.forName(Sample.class.getName(), true, new DefineClassLoader(Sample.class.getName(), bytes));
+        Assert.assertNotSame(Sample.class, clazz);
+    }
+
+    /**
+     * @return 除构造函数以外的所有方法，[name, desc]
+     */
+    private static List<String[]> methods(byte[] bytes) throws IOException {
+        final List<String[]> methods = new ArrayList<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                if (!name.startsWith("<")) {
+                    methods.add(new String[]{name, desc});
+                }
+                return null;
+            }
+        }, 0);
+        Assert.assertFalse(methods.isEmpty());
+        return methods;
+    }
+
+    private static class DefineClassLoader extends ClassLoader {
+
+        private final String name;
+
+        private final byte[] bytes;
+
+        DefineClassLoader(String name, byte[] bytes) {
+            super(DefineClassLoader.class.getClassLoader());
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!this.name.equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                }
+                return clazz;
+            }
+        }
+    }
+
+    private static class MapClassFileBuffer implements ClassFileBuffer {
+
+        private final Lock lock = new ReentrantLock();
+
+        @Override
+        public byte[] getClassBuffer(Class clazz, byte[] defaultBuffer) {
+            return defaultBuffer;
+        }
+
+        @Override
+        public void setClassBuffer(Class clazz, byte[] buffer) {
+        }
+
+        @Override
+        public Lock getLock() {
+            return lock;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    public static class Sample {
+
+        private long total;
+
+        public void voidMethod(int a) {
+            total += a;
+        }
+
+        public int intMethod(int a, int b) {
+            return a + b;
+        }
+
+        public double longAndDouble(long a, double b) {
+            long sum = a + (long) b;
+            return sum * b;
+        }
+
+        public long longReturn(double d, long l, int i) throws IOException {
+            if (i < 0) {
+                throw new IOException("negative");
+            }
+            return (long) d + l + i;
+        }
+
+        public String objectReturn(String[] values, Object other) {
+            return values.length > 0 ? values[0] : String.valueOf(other);
+        }
+
+        public static float staticMethod(float f, boolean flag, char c, short s, byte b) {
+            return flag ? f + c + s + b : f;
+        }
+
+        public static void staticVoid() {
+        }
+
+        public synchronized boolean synchronizedMethod(long l) throws InterruptedException, IOException {
+            total = l;
+            return total > 0;
+        }
+
+        protected int[] arrayReturn(int[][] matrix) {
+            return matrix[0];
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.instrument.client.monitor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.instrument.client.common.ClassFileBuffer;
+import qunar.tc.bistoury.instrument.client.location.ResolvedSourceLocation;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 监控增强的状态：retransform成功才生效，失败时保持原状，监控全部移除后恢复成增强前的字节码
+ */
+public class MonitoredClassTest {
+
+    private static final String SIGNATURE = "L" + Sample.class.getName().replace('.', '/') + ";";
+
+    private static final ResolvedSourceLocation ADD = new ResolvedSourceLocation(SIGNATURE, "add", 10, "(II)I");
+
+    private static final ResolvedSourceLocation MUL = new ResolvedSourceLocation(SIGNATURE, "mul", 20, "(JJ)J");
+
+    private byte[] original;
+
+    private MapClassFileBuffer buffer;
+
+    private MonitoredClass monitoredClass;
+
+    @Before
+    public void before() throws Exception {
+        GlobalMonitorContext.destroy();
+        try (InputStream in = Sample.class.getResourceAsStream("MonitoredClassTest$Sample.class")) {
+            original = ByteStreams.toByteArray(in);
+        }
+        buffer = new MapClassFileBuffer();
+        monitoredClass = new MonitoredClass(Sample.class, SIGNATURE, "Sample.java");
+    }
+
+    @After
+    public void after() {
+        GlobalMonitorContext.destroy();
+    }
+
+    @Test
+    public void commitOnlyAfterRetransform() throws Exception {
+        GlobalMonitorContext.addMonitor(ADD);
+        Assert.assertTrue(monitoredClass.prepare());
+        byte[] bytes = transform();
+
+        Assert.assertTrue(monitoredClass.isTransformed());
+        Assert.assertFalse(Arrays.equals(original, bytes));
+        Assert.assertNull(buffer.classes.get(Sample.class));
+        Assert.assertFalse(monitoredClass.isInstrumented(key(ADD)));
+
+        commit();
+        Assert.assertSame(bytes, buffer.classes.get(Sample.class));
+        Assert.assertTrue(monitoredClass.isInstrumented(key(ADD)));
+        Assert.assertFalse(monitoredClass.prepare());
+    }
+
+    @Test
+    public void discardKeepsPreviousState() throws Exception {
+        GlobalMonitorContext.addMonitor(ADD);
+        Assert.assertTrue(monitoredClass.prepare());
+        transform();
+        monitoredClass.discard();
+
+        Assert.assertFalse(monitoredClass.isTransformed());
+        Assert.assertFalse(monitoredClass.isInstrumented(key(ADD)));
+        Assert.assertFalse(monitoredClass.isRestored());
+        Assert.assertNull(buffer.classes.get(Sample.class));
+
+        //下一次增强仍然从原始字节码开始
+        Assert.assertTrue(monitoredClass.prepare());
+        transform();
+        commit();
+        Assert.assertTrue(monitoredClass.isInstrumented(key(ADD)));
+    }
+
+    @Test
+    public void batchInstrumentsAllTargets() throws Exception {
+        GlobalMonitorContext.addMonitor(ADD);
+        GlobalMonitorContext.addMonitor(MUL);
+        Assert.assertTrue(monitoredClass.prepare());
+        transform();
+        commit();
+
+        Assert.assertTrue(monitoredClass.isInstrumented(key(ADD)));
+        Assert.assertTrue(monitoredClass.isInstrumented(key(MUL)));
+    }
+
+    @Test
+    public void removeAllRestoresBaseBytes() throws Exception {
+        GlobalMonitorContext.addMonitor(ADD);
+        GlobalMonitorContext.addMonitor(MUL);
+        monitoredClass.prepare();
+        transform();
+        commit();
+
+        GlobalMonitorContext.removeMonitor(ADD);
+        Assert.assertTrue(monitoredClass.prepare());
+        transform();
+        commit();
+        Assert.assertFalse(monitoredClass.isInstrumented(key(ADD)));
+        Assert.assertTrue(monitoredClass.isInstrumented(key(MUL)));
+        Assert.assertFalse(monitoredClass.isRestored());
+
+        GlobalMonitorContext.removeMonitor(MUL);
+        Assert.assertTrue(monitoredClass.prepare());
+        transform();
+        commit();
+        Assert.assertTrue(monitoredClass.isRestored());
+        Assert.assertSame(original, buffer.classes.get(Sample.class));
+    }
+
+    @Test
+    public void layeredClassKeepsRemovedProbes() throws Exception {
+        GlobalMonitorContext.addMonitor(ADD);
+        monitoredClass.prepare();
+        transform();
+        commit();
+
+        //其它功能在监控之后又增强了这个类
+        byte[] enhanced = buffer.classes.get(Sample.class).clone();
+        buffer.classes.put(Sample.class, enhanced);
+
+        GlobalMonitorContext.removeMonitor(ADD);
+        GlobalMonitorContext.addMonitor(MUL);
+        Assert.assertTrue(monitoredClass.prepare());
+        transform();
+        commit();
+
+        Assert.assertTrue(monitoredClass.isInstrumented(key(ADD)));
+        Assert.assertTrue(monitoredClass.isInstrumented(key(MUL)));
+
+        GlobalMonitorContext.removeMonitor(MUL);
+        monitoredClass.prepare();
+        transform();
+        commit();
+        Assert.assertFalse(monitoredClass.isRestored());
+        Assert.assertTrue(monitoredClass.isInstrumented(key(MUL)));
+    }
+
+    private byte[] transform() throws Exception {
+        MonitorClassFileTransformer transformer = new MonitorClassFileTransformer(buffer,
+                ImmutableMap.<Class<?>, MonitoredClass>of(Sample.class, monitoredClass));
+        byte[] bytes = transformer.transform(Sample.class.getClassLoader(), Sample.class.getName().replace('.', '/'),
+                Sample.class, null, original);
+        Assert.assertNotNull(bytes);
+        return bytes;
+    }
+
+    private void commit() {
+        buffer.setClassBuffer(Sample.class, monitoredClass.commit());
+    }
+
+    private static String key(ResolvedSourceLocation location) {
+        return GlobalMonitorContext.methodKey(location.getMethodName(), location.getMethodDesc());
+    }
+
+    private static class MapClassFileBuffer implements ClassFileBuffer {
+
+        private final Map<Class<?>, byte[]> classes = new HashMap<>();
+
+        private final Lock lock = new ReentrantLock();
+
+        @Override
+        public byte[] getClassBuffer(Class clazz, byte[] defaultBuffer) {
+            byte[] bytes = classes.get(clazz);
+            return bytes == null ? defaultBuffer : bytes;
+        }
+
+        @Override
+        public void setClassBuffer(Class clazz, byte[] buffer) {
+            classes.put(clazz, buffer);
+        }
+
+        @Override
+        public Lock getLock() {
+            return lock;
+        }
+
+        @Override
+        public void destroy() {
+            classes.clear();
+        }
+    }
+
+    private static class Sample {
+
+        int add(int a, int b) {
+            return a + b;
+        }
+
+        long mul(long a, long b) {
+            return a * b;
+        }
+    }
+}
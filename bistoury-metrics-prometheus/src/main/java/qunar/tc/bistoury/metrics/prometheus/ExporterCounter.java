@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import qunar.tc.bistoury.serverside.metrics.BistouryCounter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可增可减的计数器，与原有实现一致以gauge类型输出
+ */
+class ExporterCounter implements BistouryCounter {
+
+    private final LongAdder value = new LongAdder();
+
+    private final byte[] prefix;
+
+    private final String graphiteName;
+
+    private ExporterCounter(byte[] prefix, String graphiteName) {
+        this.prefix = prefix;
+        this.graphiteName = graphiteName;
+    }
+
+    @Override
+    public void inc() {
+        value.increment();
+    }
+
+    @Override
+    public void inc(long n) {
+        value.add(n);
+    }
+
+    @Override
+    public void dec() {
+        value.decrement();
+    }
+
+    @Override
+    public void dec(long n) {
+        value.add(-n);
+    }
+
+    static class Family extends MetricFamily<ExporterCounter> {
+
+        Family(String name, String[] labelNames) {
+            super(name, labelNames, "gauge");
+        }
+
+        @Override
+        String kind() {
+            return "counter";
+        }
+
+        @Override
+        ExporterCounter newChild(String[] labelValues) {
+            return new ExporterCounter(samplePrefix(name, labelValues), graphiteName(name, labelValues));
+        }
+
+        @Override
+        void writeChildSamples(ExporterCounter child, TextBuffer buffer) {
+            buffer.append(child.prefix).append(child.value.sum()).append('\n');
+        }
+
+        @Override
+        void writeChildGraphite(ExporterCounter child, TextBuffer buffer, long timestampSeconds) {
+            writeGraphiteLine(buffer, child.graphiteName, child.value.sum(), timestampSeconds);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import com.google.common.base.Supplier;
+
+/**
+ * 采集时才调用supplier取值的gauge
+ */
+class ExporterGauge {
+
+    private volatile Supplier<Double> supplier;
+
+    private final byte[] prefix;
+
+    private final String graphiteName;
+
+    private ExporterGauge(byte[] prefix, String graphiteName) {
+        this.prefix = prefix;
+        this.graphiteName = graphiteName;
+    }
+
+    void setSupplier(Supplier<Double> supplier) {
+        this.supplier = supplier;
+    }
+
+    double get() {
+        Supplier<Double> current = supplier;
+        if (current == null) {
+            return 0;
+        }
+        Double value = current.get();
+        return value == null ? Double.NaN : value;
+    }
+
+    static class Family extends MetricFamily<ExporterGauge> {
+
+        Family(String name, String[] labelNames) {
+            super(name, labelNames, "gauge");
+        }
+
+        @Override
+        String kind() {
+            return "gauge";
+        }
+
+        @Override
+        ExporterGauge newChild(String[] labelValues) {
+            return new ExporterGauge(samplePrefix(name, labelValues), graphiteName(name, labelValues));
+        }
+
+        @Override
+        void writeChildSamples(ExporterGauge child, TextBuffer buffer) {
+            buffer.append(child.prefix).append(child.get()).append('\n');
+        }
+
+        @Override
+        void writeChildGraphite(ExporterGauge child, TextBuffer buffer, long timestampSeconds) {
+            writeGraphiteLine(buffer, child.graphiteName, child.get(), timestampSeconds);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import qunar.tc.bistoury.serverside.metrics.BistouryMeter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以summary类型输出_count和_sum，不计算分位数
+ */
+class ExporterMeter implements BistouryMeter {
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final byte[] countPrefix;
+
+    private final byte[] sumPrefix;
+
+    private final String countGraphiteName;
+
+    private final String sumGraphiteName;
+
+    private ExporterMeter(byte[] countPrefix, byte[] sumPrefix, String countGraphiteName, String sumGraphiteName) {
+        this.countPrefix = countPrefix;
+        this.sumPrefix = sumPrefix;
+        this.countGraphiteName = countGraphiteName;
+        this.sumGraphiteName = sumGraphiteName;
+    }
+
+    @Override
+    public void mark() {
+        count.increment();
+        sum.increment();
+    }
+
+    @Override
+    public void mark(long n) {
+        count.increment();
+        sum.add(n);
+    }
+
+    static class Family extends MetricFamily<ExporterMeter> {
+
+        Family(String name, String[] labelNames) {
+            super(name, labelNames, "summary");
+        }
+
+        @Override
+        String kind() {
+            return "meter";
+        }
+
+        @Override
+        ExporterMeter newChild(String[] labelValues) {
+            return new ExporterMeter(samplePrefix(name + "_count", labelValues), samplePrefix(name + "_sum", labelValues),
+                    graphiteName(name + "_count", labelValues), graphiteName(name + "_sum", labelValues));
+        }
+
+        @Override
+        void writeChildSamples(ExporterMeter child, TextBuffer buffer) {
+            buffer.append(child.countPrefix).append(child.count.sum()).append('\n');
+            buffer.append(child.sumPrefix).append(child.sum.sum()).append('\n');
+        }
+
+        @Override
+        void writeChildGraphite(ExporterMeter child, TextBuffer buffer, long timestampSeconds) {
+            writeGraphiteLine(buffer, child.countGraphiteName, child.count.sum(), timestampSeconds);
+            writeGraphiteLine(buffer, child.sumGraphiteName, child.sum.sum(), timestampSeconds);
+        }
+    }
+}
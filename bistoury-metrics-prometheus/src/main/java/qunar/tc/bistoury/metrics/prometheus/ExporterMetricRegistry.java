@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import com.google.common.base.Supplier;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.bistoury.common.NamedThreadFactory;
+import qunar.tc.bistoury.serverside.metrics.BistouryCounter;
+import qunar.tc.bistoury.serverside.metrics.BistouryMeter;
+import qunar.tc.bistoury.serverside.metrics.BistouryMetricRegistry;
+import qunar.tc.bistoury.serverside.metrics.BistouryTimer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 不依赖simpleclient的指标实现
+ * <p>
+ * 指标按名称只创建一次，返回的对象已经绑定label值，记录时只有LongAdder的累加；
+ * 采集时直接把exposition格式写入复用的缓冲区
+ */
+public class ExporterMetricRegistry implements BistouryMetricRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExporterMetricRegistry.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ConcurrentMap<String, MetricFamily<?>> families = new ConcurrentHashMap<>();
+
+    private final TextBuffer scrapeBuffer = new TextBuffer();
+
+    private final TextBuffer graphiteBuffer = new TextBuffer();
+
+    @Override
+    public void newGauge(String name, String[] tags, String[] values, Supplier<Double> supplier) {
+        family(name, tags, ExporterGauge.Family.class, n -> new ExporterGauge.Family(n, tags)).child(values).setSupplier(supplier);
+    }
+
+    @Override
+    public BistouryCounter newCounter(String name, String[] tags, String[] values) {
+        return family(name, tags, ExporterCounter.Family.class, n -> new ExporterCounter.Family(n, tags)).child(values);
+    }
+
+    @Override
+    public BistouryMeter newMeter(String name, String[] tags, String[] values) {
+        return family(name, tags, ExporterMeter.Family.class, n -> new ExporterMeter.Family(n, tags)).child(values);
+    }
+
+    @Override
+    public BistouryTimer newTimer(String name, String[] tags, String[] values) {
+        return family(name, tags, ExporterTimer.Family.class, n -> new ExporterTimer.Family(n, tags)).child(values);
+    }
+
+    @Override
+    public void remove(String name, String[] tags, String[] values) {
+        MetricFamily<?> family = families.get(name);
+        if (family != null) {
+            family.remove(values);
+        }
+    }
+
+    private <F extends MetricFamily<?>> F family(String name, String[] tags, Class<F> type, Function<String, F> factory) {
+        MetricFamily<?> family = families.get(name);
+        if (family == null) {
+            family = families.computeIfAbsent(name, factory);
+        }
+        if (!type.isInstance(family)) {
+            throw new IllegalArgumentException("metric " + name + " already registered as " + family.kind());
+        }
+        if (!family.isLabelNamesMatch(tags)) {
+            throw new IllegalArgumentException("metric " + name + " already registered with different label names");
+        }
+        return type.cast(family);
+    }
+
+    /**
+     * 以exposition格式输出所有指标
+     */
+    public void scrape(OutputStream out) throws IOException {
+        synchronized (scrapeBuffer) {
+            fillScrapeBuffer();
+            scrapeBuffer.writeTo(out);
+        }
+    }
+
+    private void fillScrapeBuffer() {
+        scrapeBuffer.reset();
+        for (MetricFamily<?> family : families.values()) {
+            family.writeExposition(scrapeBuffer);
+        }
+    }
+
+    public void startHttpServer(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 3);
+        server.setExecutor(Executors.newSingleThreadExecutor(new NamedThreadFactory("bistoury-metrics-http", true)));
+        server.createContext("/", exchange -> {
+            try {
+                synchronized (scrapeBuffer) {
+                    fillScrapeBuffer();
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    exchange.sendResponseHeaders(200, scrapeBuffer.size());
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        scrapeBuffer.writeTo(out);
+                    }
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        logger.info("metrics http server started, port: {}", port);
+    }
+
+    public void startGraphite(String host, int port, int intervalSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("bistoury-metrics-graphite", true));
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                pushGraphite(host, port);
+            } catch (Exception e) {
+                logger.warn("push metrics to graphite error, {}:{}", host, port, e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void pushGraphite(String host, int port) throws IOException {
+        long timestamp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        graphiteBuffer.reset();
+        for (MetricFamily<?> family : families.values()) {
+            family.writeGraphite(graphiteBuffer, timestamp);
+        }
+        try (Socket socket = new Socket(host, port); OutputStream out = socket.getOutputStream()) {
+            graphiteBuffer.writeTo(out);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import qunar.tc.bistoury.serverside.metrics.BistouryTimer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定分桶的histogram，单位毫秒；记录时只需要找到对应的桶累加，输出时再计算累计值和总数
+ */
+class ExporterTimer implements BistouryTimer {
+
+    static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    //最后一个是+Inf
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+
+    private final LongAdder sum = new LongAdder();
+
+    private final byte[][] bucketPrefixes;
+
+    private final byte[] countPrefix;
+
+    private final byte[] sumPrefix;
+
+    private final String countGraphiteName;
+
+    private final String sumGraphiteName;
+
+    private ExporterTimer(byte[][] bucketPrefixes, byte[] countPrefix, byte[] sumPrefix, String countGraphiteName, String sumGraphiteName) {
+        for (int i = 0; i < buckets.length; ++i) {
+            buckets[i] = new LongAdder();
+        }
+        this.bucketPrefixes = bucketPrefixes;
+        this.countPrefix = countPrefix;
+        this.sumPrefix = sumPrefix;
+        this.countGraphiteName = countGraphiteName;
+        this.sumGraphiteName = sumGraphiteName;
+    }
+
+    @Override
+    public void update(long duration, TimeUnit unit) {
+        long millis = unit.toMillis(duration);
+        int index = 0;
+        while (index < BUCKETS.length && millis > BUCKETS[index]) {
+            ++index;
+        }
+        buckets[index].increment();
+        sum.add(millis);
+    }
+
+    static class Family extends MetricFamily<ExporterTimer> {
+
+        Family(String name, String[] labelNames) {
+            super(name, labelNames, "histogram");
+        }
+
+        @Override
+        String kind() {
+            return "timer";
+        }
+
+        @Override
+        ExporterTimer newChild(String[] labelValues) {
+            byte[][] bucketPrefixes = new byte[BUCKETS.length + 1][];
+            for (int i = 0; i < BUCKETS.length; ++i) {
+                bucketPrefixes[i] = samplePrefix(name + "_bucket", labelValues, "le", BUCKETS[i] + ".0");
+            }
+            bucketPrefixes[BUCKETS.length] = samplePrefix(name + "_bucket", labelValues, "le", "+Inf");
+            return new ExporterTimer(bucketPrefixes, samplePrefix(name + "_count", labelValues), samplePrefix(name + "_sum", labelValues),
+                    graphiteName(name + "_count", labelValues), graphiteName(name + "_sum", labelValues));
+        }
+
+        @Override
+        void writeChildSamples(ExporterTimer child, TextBuffer buffer) {
+            long count = 0;
+            for (int i = 0; i < child.buckets.length; ++i) {
+                count += child.buckets[i].sum();
+                buffer.append(child.bucketPrefixes[i]).append(count).append('\n');
+            }
+            buffer.append(child.countPrefix).append(count).append('\n');
+            buffer.append(child.sumPrefix).append(child.sum.sum()).append('\n');
+        }
+
+        @Override
+        void writeChildGraphite(ExporterTimer child, TextBuffer buffer, long timestampSeconds) {
+            long count = 0;
+            for (LongAdder bucket : child.buckets) {
+                count += bucket.sum();
+            }
+            writeGraphiteLine(buffer, child.countGraphiteName, count, timestampSeconds);
+            writeGraphiteLine(buffer, child.sumGraphiteName, child.sum.sum(), timestampSeconds);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * 同名指标的集合，每组label值对应一个child；child创建时预先生成好输出用的前缀，采集时只需要拼接数值
+ */
+abstract class MetricFamily<C> {
+
+    private static final Pattern GRAPHITE_INVALID_CHARS = Pattern.compile("[^a-zA-Z0-9_-]");
+
+    final String name;
+
+    private final String[] labelNames;
+
+    private final byte[] header;
+
+    private final ConcurrentMap<LabelValues, C> children = new ConcurrentHashMap<>();
+
+    private volatile C noLabelChild;
+
+    MetricFamily(String name, String[] labelNames, String type) {
+        this.name = Preconditions.checkNotNull(name, "name");
+        this.labelNames = labelNames == null ? new String[0] : labelNames.clone();
+        this.header = ("# HELP " + name + " " + name + "\n# TYPE " + name + " " + type + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 指标种类，用于同名指标类型冲突时的提示
+     */
+    abstract String kind();
+
+    abstract C newChild(String[] labelValues);
+
+    abstract void writeChildSamples(C child, TextBuffer buffer);
+
+    abstract void writeChildGraphite(C child, TextBuffer buffer, long timestampSeconds);
+
+    C child(String[] labelValues) {
+        if (labelNames.length == 0 && (labelValues == null || labelValues.length == 0)) {
+            C child = noLabelChild;
+            if (child == null) {
+                child = children.computeIfAbsent(LabelValues.EMPTY, key -> newChild(key.values));
+                noLabelChild = child;
+            }
+            return child;
+        }
+
+        Preconditions.checkArgument(labelValues != null && labelValues.length == labelNames.length,
+                "metric %s label values %s not match label names %s", name, Arrays.toString(labelValues), Arrays.toString(labelNames));
+        LabelValues key = new LabelValues(labelValues);
+        C child = children.get(key);
+        if (child == null) {
+            child = children.computeIfAbsent(new LabelValues(labelValues.clone()), k -> newChild(k.values));
+        }
+        return child;
+    }
+
+    void remove(String[] labelValues) {
+        if (labelNames.length == 0) {
+            children.remove(LabelValues.EMPTY);
+            noLabelChild = null;
+        } else if (labelValues != null) {
+            children.remove(new LabelValues(labelValues));
+        }
+    }
+
+    boolean isLabelNamesMatch(String[] names) {
+        return Arrays.equals(labelNames, names == null ? new String[0] : names);
+    }
+
+    void writeExposition(TextBuffer buffer) {
+        if (children.isEmpty()) {
+            return;
+        }
+        buffer.append(header);
+        for (C child : children.values()) {
+            writeChildSamples(child, buffer);
+        }
+    }
+
+    void writeGraphite(TextBuffer buffer, long timestampSeconds) {
+        for (C child : children.values()) {
+            writeChildGraphite(child, buffer, timestampSeconds);
+        }
+    }
+
+    /**
+     * 生成"sampleName{a="x",b="y"} "形式的样本前缀
+     */
+    byte[] samplePrefix(String sampleName, String[] labelValues, String extraLabelName, String extraLabelValue) {
+        StringBuilder sb = new StringBuilder(sampleName);
+        boolean hasLabel = labelNames.length > 0 || extraLabelName != null;
+        if (hasLabel) {
+            sb.append('{');
+            for (int i = 0; i < labelNames.length; ++i) {
+                appendLabel(sb, labelNames[i], labelValues[i]).append(',');
+            }
+            if (extraLabelName != null) {
+                appendLabel(sb, extraLabelName, extraLabelValue).append(',');
+            }
+            sb.setCharAt(sb.length() - 1, '}');
+        }
+        return sb.append(' ').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    byte[] samplePrefix(String sampleName, String[] labelValues) {
+        return samplePrefix(sampleName, labelValues, null, null);
+    }
+
+    /**
+     * graphite格式的名称，与simpleclient的graphite bridge保持一致：name.label1.value1.label2.value2
+     */
+    String graphiteName(String sampleName, String[] labelValues) {
+        StringBuilder sb = new StringBuilder(sampleName);
+        for (int i = 0; i < labelNames.length; ++i) {
+            sb.append('.').append(labelNames[i]).append('.')
+                    .append(GRAPHITE_INVALID_CHARS.matcher(labelValues[i]).replaceAll("_"));
+        }
+        return sb.toString();
+    }
+
+    static void writeGraphiteLine(TextBuffer buffer, String name, long value, long timestampSeconds) {
+        buffer.append(name).append(' ').append(value).append(' ').append(timestampSeconds).append('\n');
+    }
+
+    static void writeGraphiteLine(TextBuffer buffer, String name, double value, long timestampSeconds) {
+        buffer.append(name).append(' ').append(value).append(' ').append(timestampSeconds).append('\n');
+    }
+
+    private static StringBuilder appendLabel(StringBuilder sb, String name, String value) {
+        sb.append(name).append("=\"");
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+
+    private static final class LabelValues {
+        private static final LabelValues EMPTY = new LabelValues(new String[0]);
+
+        private final String[] values;
+        private final int hash;
+
+        private LabelValues(String[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            LabelValues that = (LabelValues) o;
+            return hash == that.hash && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
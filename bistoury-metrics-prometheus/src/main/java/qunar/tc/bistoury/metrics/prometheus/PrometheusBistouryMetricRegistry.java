@@ -18,12 +18,8 @@
 package qunar.tc.bistoury.metrics.prometheus;
 
 import com.google.common.base.Supplier;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import io.prometheus.client.*;
-import io.prometheus.client.bridge.Graphite;
-import io.prometheus.client.exporter.HTTPServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import qunar.tc.bistoury.serverside.configuration.DynamicConfig;
 import qunar.tc.bistoury.serverside.configuration.DynamicConfigLoader;
 import qunar.tc.bistoury.serverside.configuration.local.LocalDynamicConfig;
@@ -33,177 +29,77 @@ import qunar.tc.bistoury.serverside.metrics.BistouryMetricRegistry;
 import qunar.tc.bistoury.serverside.metrics.BistouryTimer;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Objects;
 
 /**
+ * 默认使用{@link ExporterMetricRegistry}，monitor.exporter配置为simpleclient时使用原有的simpleclient实现
+ *
  * @author leix.xie
  * @date 2019/7/8 15:46
  * @describe
  */
 public class PrometheusBistouryMetricRegistry implements BistouryMetricRegistry {
 
-    private static final LoadingCache<Key, Collector> CACHE = CacheBuilder.newBuilder()
-            .build(new CacheLoader<Key, Collector>() {
-                @Override
-                public Collector load(Key key) {
-                    return key.create();
-                }
-            });
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusBistouryMetricRegistry.class);
+
+    private static final int GRAPHITE_INTERVAL_SECONDS = 60;
 
+    private final BistouryMetricRegistry delegate;
 
     public PrometheusBistouryMetricRegistry() {
         DynamicConfig<LocalDynamicConfig> config = DynamicConfigLoader.load("prometheus.properties", false);
         String type = config.getString("monitor.type", "prometheus");
+        boolean useSimpleclient = "simpleclient".equals(config.getString("monitor.exporter", "bistoury"));
+        ExporterMetricRegistry exporter = useSimpleclient ? null : new ExporterMetricRegistry();
+        SimpleclientMetricRegistry simpleclient = useSimpleclient ? new SimpleclientMetricRegistry() : null;
+        this.delegate = useSimpleclient ? simpleclient : exporter;
+
         if ("prometheus".equals(type)) {
             String action = config.getString("monitor.action", "metrics");
             if ("metrics".equals(action)) {
+                int port = config.getInt("monitor.port", 3333);
                 try {
-                    HTTPServer server = new HTTPServer(config.getInt("monitor.port", 3333));
+                    if (useSimpleclient) {
+                        simpleclient.startHttpServer(port);
+                    } else {
+                        exporter.startHttpServer(port);
+                    }
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    logger.error("start metrics http server error, port: {}", port, e);
                 }
             }
         } else if ("graphite".equals(type)) {
             String host = config.getString("graphite.host");
             int port = config.getInt("graphite.port");
-            Graphite graphite = new Graphite(host, port);
-            graphite.start(CollectorRegistry.defaultRegistry, 60);
+            if (useSimpleclient) {
+                simpleclient.startGraphite(host, port, GRAPHITE_INTERVAL_SECONDS);
+            } else {
+                exporter.startGraphite(host, port, GRAPHITE_INTERVAL_SECONDS);
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private static <M extends Collector> M cacheFor(Key<M> key) {
-        return (M) CACHE.getUnchecked(key);
-    }
-
     @Override
     public void newGauge(String name, String[] tags, String[] values, Supplier<Double> supplier) {
-        final PrometheusBistouryGauge gauge = cacheFor(new GuageKey(name, tags));
-        gauge.labels(values).setSupplier(supplier);
+        delegate.newGauge(name, tags, values, supplier);
     }
 
     @Override
     public BistouryCounter newCounter(String name, String[] tags, String[] values) {
-        final Gauge gauge = cacheFor(new CounterKey(name, tags));
-        return new PrometheusBistouryCounter(gauge, values);
+        return delegate.newCounter(name, tags, values);
     }
 
     @Override
     public BistouryMeter newMeter(String name, String[] tags, String[] values) {
-        final Summary summary = cacheFor(new MeterKey(name, tags));
-        return new PrometheusBistouryMeter(summary, values);
+        return delegate.newMeter(name, tags, values);
     }
 
     @Override
     public BistouryTimer newTimer(String name, String[] tags, String[] values) {
-        final Summary summary = cacheFor(new TimerKey(name, tags));
-        return new PrometheusBistouryTimer(summary, values);
+        return delegate.newTimer(name, tags, values);
     }
 
     @Override
     public void remove(String name, String[] tags, String[] values) {
-        final Collector collector = CACHE.getIfPresent(new SimpleCollectorKey(name, tags));
-        if (collector == null) return;
-        CollectorRegistry.defaultRegistry.unregister(collector);
-    }
-
-    private static abstract class Key<M extends Collector> {
-        final String name;
-        final String[] tags;
-
-        Key(String name, String[] tags) {
-            this.name = name;
-            this.tags = tags;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o)
-                return true;
-            if (o == null || getClass() != o.getClass())
-                return false;
-
-            Key key = (Key) o;
-
-            if (!Objects.equals(name, key.name))
-                return false;
-            return Arrays.equals(tags, key.tags);
-        }
-
-        @Override
-        public int hashCode() {
-            int result = name != null ? name.hashCode() : 0;
-            result = 31 * result + (tags != null ? Arrays.hashCode(tags) : 0);
-            return result;
-        }
-
-        public abstract M create();
-    }
-
-    private static class SimpleCollectorKey extends Key<SimpleCollector> {
-
-        SimpleCollectorKey(final String name, final String[] tags) {
-            super(name, tags);
-        }
-
-        @Override
-        public SimpleCollector create() {
-            return null;
-        }
-    }
-
-    private static class GuageKey extends Key<PrometheusBistouryGauge> {
-        GuageKey(final String name, final String[] tags) {
-            super(name, tags);
-        }
-
-        @Override
-        public PrometheusBistouryGauge create() {
-            return PrometheusBistouryGauge.build().name(name).help(name).labelNames(tags).create().register();
-        }
-    }
-
-    private static class CounterKey extends Key<Gauge> {
-        CounterKey(final String name, final String[] tags) {
-            super(name, tags);
-        }
-
-        @Override
-        public Gauge create() {
-            return Gauge.build().name(name).help(name).labelNames(tags).create().register();
-        }
-    }
-
-    private static class MeterKey extends Key<Summary> {
-
-        MeterKey(final String name, final String[] tags) {
-            super(name, tags);
-        }
-
-        @Override
-        public Summary create() {
-            return Summary.build().name(name).help(name).labelNames(tags).create().register();
-        }
-    }
-
-    private static class TimerKey extends Key<Summary> {
-
-        TimerKey(final String name, final String[] tags) {
-            super(name, tags);
-        }
-
-        @Override
-        public Summary create() {
-            return Summary.build()
-                    .name(name)
-                    .help(name)
-                    .labelNames(tags)
-                    .quantile(0.5, 0.05)
-                    .quantile(0.75, 0.05)
-                    .quantile(0.99, 0.05)
-                    .create()
-                    .register();
-        }
+        delegate.remove(name, tags, values);
     }
 }
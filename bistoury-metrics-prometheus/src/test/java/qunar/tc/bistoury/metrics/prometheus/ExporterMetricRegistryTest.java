@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import org.junit.Assert;
+import org.junit.Test;
+import qunar.tc.bistoury.serverside.metrics.BistouryCounter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+public class ExporterMetricRegistryTest {
+
+    private static final String[] TAGS = {"app"};
+
+    @Test
+    public void testScrape() throws IOException {
+        ExporterMetricRegistry registry = new ExporterMetricRegistry();
+        BistouryCounter counter = registry.newCounter("test_counter", TAGS, new String[]{"a\"b"});
+        counter.inc(3);
+        counter.dec();
+        Assert.assertSame(counter, registry.newCounter("test_counter", TAGS, new String[]{"a\"b"}));
+
+        registry.newMeter("test_meter", new String[0], new String[0]).mark(5);
+        registry.newTimer("test_timer", TAGS, new String[]{"x"}).update(3, TimeUnit.MILLISECONDS);
+        registry.newTimer("test_timer", TAGS, new String[]{"x"}).update(2, TimeUnit.MINUTES);
+        registry.newGauge("test_gauge", new String[0], new String[0], () -> 1.5);
+
+        String text = scrape(registry);
+        Assert.assertTrue(text.contains("# TYPE test_counter gauge\ntest_counter{app=\"a\\\"b\"} 2\n"));
+        Assert.assertTrue(text.contains("test_meter_count 1\ntest_meter_sum 5\n"));
+        Assert.assertTrue(text.contains("# TYPE test_timer histogram\n"));
+        Assert.assertTrue(text.contains("test_timer_bucket{app=\"x\",le=\"2.0\"} 0\n"));
+        Assert.assertTrue(text.contains("test_timer_bucket{app=\"x\",le=\"5.0\"} 1\n"));
+        Assert.assertTrue(text.contains("test_timer_bucket{app=\"x\",le=\"+Inf\"} 2\n"));
+        Assert.assertTrue(text.contains("test_timer_count{app=\"x\"} 2\ntest_timer_sum{app=\"x\"} 120003\n"));
+        Assert.assertTrue(text.contains("test_gauge 1.5\n"));
+
+        registry.remove("test_counter", TAGS, new String[]{"a\"b"});
+        Assert.assertFalse(scrape(registry).contains("test_counter"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeConflict() {
+        ExporterMetricRegistry registry = new ExporterMetricRegistry();
+        registry.newCounter("test_conflict", TAGS, new String[]{"a"});
+        registry.newTimer("test_conflict", TAGS, new String[]{"a"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLabelValuesNotMatch() {
+        new ExporterMetricRegistry().newCounter("test_labels", TAGS, new String[0]);
+    }
+
+    private static String scrape(ExporterMetricRegistry registry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registry.scrape(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.metrics.prometheus;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import qunar.tc.bistoury.serverside.metrics.BistouryCounter;
+import qunar.tc.bistoury.serverside.metrics.BistouryTimer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比simpleclient实现和{@link ExporterMetricRegistry}的记录和采集开销
+ * <p>
+ * lookup系列每次都按名称获取指标，与proxy和ui中Metrics.counter(name).inc()的用法一致；bound系列使用提前获取好的指标
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MetricRegistryBenchmark {
+
+    private static final String[] TAGS = {"app", "command"};
+
+    private static final String[] VALUES = {"bistoury_ui", "heapHisto"};
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private SimpleclientMetricRegistry simpleclient;
+
+    private ExporterMetricRegistry exporter;
+
+    private BistouryTimer simpleclientTimer;
+
+    private BistouryTimer exporterTimer;
+
+    private BistouryCounter simpleclientCounter;
+
+    private BistouryCounter exporterCounter;
+
+    @Setup
+    public void setUp() {
+        simpleclient = new SimpleclientMetricRegistry();
+        exporter = new ExporterMetricRegistry();
+        simpleclientTimer = simpleclient.newTimer("benchmark_timer", TAGS, VALUES);
+        exporterTimer = exporter.newTimer("benchmark_timer", TAGS, VALUES);
+        simpleclientCounter = simpleclient.newCounter("benchmark_counter", TAGS, VALUES);
+        exporterCounter = exporter.newCounter("benchmark_counter", TAGS, VALUES);
+
+        for (int i = 0; i < 200; ++i) {
+            String[] values = {"app" + i, "command" + (i % 10)};
+            simpleclient.newTimer("benchmark_scrape_timer", TAGS, values).update(i, TimeUnit.MILLISECONDS);
+            exporter.newTimer("benchmark_scrape_timer", TAGS, values).update(i, TimeUnit.MILLISECONDS);
+            simpleclient.newCounter("benchmark_scrape_counter", TAGS, values).inc(i);
+            exporter.newCounter("benchmark_scrape_counter", TAGS, values).inc(i);
+        }
+    }
+
+    @Benchmark
+    public void simpleclientCounterLookup() {
+        simpleclient.newCounter("benchmark_counter", TAGS, VALUES).inc();
+    }
+
+    @Benchmark
+    public void exporterCounterLookup() {
+        exporter.newCounter("benchmark_counter", TAGS, VALUES).inc();
+    }
+
+    @Benchmark
+    public void simpleclientCounterBound() {
+        simpleclientCounter.inc();
+    }
+
+    @Benchmark
+    public void exporterCounterBound() {
+        exporterCounter.inc();
+    }
+
+    @Benchmark
+    public void simpleclientTimerLookup() {
+        simpleclient.newTimer("benchmark_timer", TAGS, VALUES).update(nextDuration(), TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public void exporterTimerLookup() {
+        exporter.newTimer("benchmark_timer", TAGS, VALUES).update(nextDuration(), TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public void simpleclientTimerBound() {
+        simpleclientTimer.update(nextDuration(), TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public void exporterTimerBound() {
+        exporterTimer.update(nextDuration(), TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void simpleclientScrape() throws IOException {
+        Writer writer = new OutputStreamWriter(NULL_OUTPUT);
+        TextFormat.write004(writer, CollectorRegistry.defaultRegistry.metricFamilySamples());
+        writer.flush();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void exporterScrape() throws IOException {
+        exporter.scrape(NULL_OUTPUT);
+    }
+
+    private static long nextDuration() {
+        return ThreadLocalRandom.current().nextInt(1000);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MetricRegistryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
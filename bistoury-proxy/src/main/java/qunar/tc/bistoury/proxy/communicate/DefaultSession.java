@@ -25,6 +25,7 @@ import qunar.tc.bistoury.proxy.communicate.ui.RequestData;
 import qunar.tc.bistoury.proxy.communicate.ui.UiConnection;
 import qunar.tc.bistoury.proxy.communicate.ui.UiResponses;
 import qunar.tc.bistoury.remoting.protocol.Datagram;
+import qunar.tc.bistoury.remoting.protocol.RequestIds;
 import qunar.tc.bistoury.remoting.protocol.ResponseCode;
 
 /**
@@ -44,8 +45,8 @@ public class DefaultSession implements Session {
 
     private final SettableFuture<State> resultFuture = SettableFuture.create();
 
-    public DefaultSession(String id, RequestData requestData, AgentConnection agentConnection, UiConnection uiConnection) {
-        this.id = id;
+    public DefaultSession(long id, RequestData requestData, AgentConnection agentConnection, UiConnection uiConnection) {
+        this.id = RequestIds.format(id);
         this.requestData = requestData;
         this.agentConnection = agentConnection;
         this.uiConnection = uiConnection;
@@ -49,6 +49,7 @@ public class DefaultSessionManager implements SessionManager {
     @Autowired
     private IdGenerator sessionIdGenerator;
 
+    //id在生成时格式化一次，之后请求和响应中都是字符串形式，直接以字符串为key，查找时不需要解析
     private final ConcurrentMap<String, Session> sessions = Maps.newConcurrentMap();
 
     private final ConcurrentMap<Connection, Set<Session>> uiConnectionToSessionsMapping = Maps.newConcurrentMap();
@@ -57,8 +58,8 @@ public class DefaultSessionManager implements SessionManager {
 
     @Override
     public Session create(RequestData requestData, AgentConnection agentConnection, UiConnection uiConnection) {
-        String id = sessionIdGenerator.generateId();
-        Session session = new DefaultSession(id, requestData, agentConnection, uiConnection);
+        Session session = new DefaultSession(sessionIdGenerator.nextId(), requestData, agentConnection, uiConnection);
+        String id = session.getId();
         Session oldSession = sessions.putIfAbsent(id, session);
         if (oldSession != null) {
             return oldSession;
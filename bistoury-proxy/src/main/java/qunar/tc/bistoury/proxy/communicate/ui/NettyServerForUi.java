@@ -91,6 +91,7 @@ public class NettyServerForUi implements NettyServer {
 
     @Override
     public void start() {
+        final RSAEncryption rsa = createRsaEncryption();
         ServerBootstrap bootstrap = new ServerBootstrap()
                 .option(ChannelOption.SO_KEEPALIVE, true)
                 .option(ChannelOption.SO_REUSEADDR, true)
@@ -109,7 +110,7 @@ public class NettyServerForUi implements NettyServer {
                                 .addLast(new HttpObjectAggregator(1024 * 1024))
                                 .addLast(new WebSocketServerProtocolHandler("/ws"))
                                 .addLast(new WebSocketFrameAggregator(1024 * 1024 * 1024))
-                                .addLast(new RequestDecoder(new DefaultRequestEncryption(new RSAEncryption(RSA_PUBLIC_KEY, RSA_PRIVATE_KEY))))
+                                .addLast(new RequestDecoder(new DefaultRequestEncryption(rsa)))
                                 .addLast(new WebSocketEncoder())
                                 .addLast(new TabHandler())
                                 .addLast(new HostsValidatorHandler(new AppCenterServerFinder(appServerService)))
@@ -125,6 +126,15 @@ public class NettyServerForUi implements NettyServer {
         }
     }
 
+    private RSAEncryption createRsaEncryption() {
+        try {
+            return new RSAEncryption(RSA_PUBLIC_KEY, RSA_PRIVATE_KEY);
+        } catch (Exception e) {
+            logger.error("load rsa key fail", e);
+            throw Throwables.propagate(e);
+        }
+    }
+
     @Override
     public boolean isActive() {
         return channel.isActive();
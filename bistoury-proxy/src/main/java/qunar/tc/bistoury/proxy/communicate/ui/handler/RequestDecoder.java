@@ -20,7 +20,6 @@ package qunar.tc.bistoury.proxy.communicate.ui.handler;
 import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
@@ -35,9 +34,10 @@ import java.io.IOException;
 import java.util.List;
 
 /**
+ * 解密状态按连接保存，每个连接一个实例
+ *
  * @author zhenyu.nie created on 2019 2019/5/16 15:43
  */
-@ChannelHandler.Sharable
 public class RequestDecoder extends MessageToMessageDecoder<WebSocketFrame> {
 
     private final RequestEncryption encryption;
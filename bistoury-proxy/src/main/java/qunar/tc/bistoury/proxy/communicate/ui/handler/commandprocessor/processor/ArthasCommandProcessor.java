@@ -51,13 +51,11 @@ public class ArthasCommandProcessor extends AbstractCommand<String> {
     private static final String DEFAULT_RELEASE_INFO_PATH = "../webapps/releaseInfo.properties";
     private static final String DEFAULT = "default";
     private static final int QDEBUG_JARDEBUG_LENGTH = 1;
-    private static final int QDEBUG_ADD_WITH_CONDITION_LENGTH = 6;
-    private static final int QDEBUG_ADD_NO_CONDITION_LENGTH = 4;
+    private static final String QDEBUG_ADD_CONDITION_OPTION = "-c";
     private static final int QDEBUG_REF_LENGTH = 2;
     private static final int QDEBUG_REF_ADDRESS_INDEX = 1;
     private static final int CORE_COMMAND_INDEX = 0;
     private static final int QDEBUG_ADD_SOURCE_INDEX = 2;
-    private static final int QDEBUG_ADD_CONDITION_INDEX = 5;
     private static final int QMONITRO_ADD_SOURCE_INDEX = 2;
     private String defaultCmInfoFilePath = DEFAULT_RELEASE_INFO_PATH;
     private Conf conf;
@@ -98,7 +96,10 @@ public class ArthasCommandProcessor extends AbstractCommand<String> {
 
     private String encodeCommand(String command, final String appcode) {
         List<String> strs = Lists.newArrayList(SPACE_SPLITTER.splitToList(command));
-        if (strs.size() != QDEBUG_ADD_NO_CONDITION_LENGTH && strs.size() != QDEBUG_ADD_WITH_CONDITION_LENGTH && strs.size() != QDEBUG_REF_LENGTH && strs.size() != QDEBUG_JARDEBUG_LENGTH) {
+        if (strs.size() > QDEBUG_ADD_SOURCE_INDEX && BistouryConstants.REQ_DEBUG_ADD.equals(strs.get(CORE_COMMAND_INDEX))) {
+            return encodeDebugAdd(strs);
+        }
+        if (strs.size() != QDEBUG_REF_LENGTH && strs.size() != QDEBUG_JARDEBUG_LENGTH) {
             return command;
         }
 
@@ -108,13 +109,8 @@ public class ArthasCommandProcessor extends AbstractCommand<String> {
                 strs.set(QDEBUG_REF_ADDRESS_INDEX, encode(strs.get(QDEBUG_REF_ADDRESS_INDEX)));
                 strs.add(encode(conf.getString(appcode, defaultCmInfoFilePath)));
                 return SPACE_JOINER.join(strs);
-            case BistouryConstants.REQ_DEBUG_ADD:
-                strs.set(QDEBUG_ADD_SOURCE_INDEX, encode(strs.get(QDEBUG_ADD_SOURCE_INDEX)));
-                if (strs.size() == QDEBUG_ADD_WITH_CONDITION_LENGTH) {
-                    strs.set(QDEBUG_ADD_CONDITION_INDEX, encode(strs.get(QDEBUG_ADD_CONDITION_INDEX)));
-                }
-                return SPACE_JOINER.join(strs);
             case BistouryConstants.REQ_MONITOR_ADD:
+            case BistouryConstants.REQ_MONITOR_REMOVE:
                 strs.set(QMONITRO_ADD_SOURCE_INDEX, encode(strs.get(QMONITRO_ADD_SOURCE_INDEX)));
                 return SPACE_JOINER.join(strs);
             case BistouryConstants.REQ_JAR_DEBUG:
@@ -123,6 +119,20 @@ public class ArthasCommandProcessor extends AbstractCommand<String> {
         }
     }
 
+    /**
+     * qdebugadd id source line [-n hits] [-s sample] [-r rate] [-c condition]，条件放在最后，-c之后的内容都属于条件
+     */
+    private static String encodeDebugAdd(List<String> strs) {
+        strs.set(QDEBUG_ADD_SOURCE_INDEX, encode(strs.get(QDEBUG_ADD_SOURCE_INDEX)));
+        int conditionIndex = strs.indexOf(QDEBUG_ADD_CONDITION_OPTION) + 1;
+        if (conditionIndex > 0 && conditionIndex < strs.size()) {
+            String condition = SPACE_JOINER.join(strs.subList(conditionIndex, strs.size()));
+            strs.subList(conditionIndex, strs.size()).clear();
+            strs.add(encode(condition));
+        }
+        return SPACE_JOINER.join(strs);
+    }
+
     private static String encode(String input) {
         try {
             return URLEncoder.encode(input, "utf8");
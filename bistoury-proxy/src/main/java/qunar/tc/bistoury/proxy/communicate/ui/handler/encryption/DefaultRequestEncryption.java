@@ -18,15 +18,28 @@
 package qunar.tc.bistoury.proxy.communicate.ui.handler.encryption;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
 import qunar.tc.bistoury.common.JacksonSerializer;
 import qunar.tc.bistoury.proxy.communicate.ui.RequestData;
+import qunar.tc.bistoury.serverside.agile.Base64;
+import qunar.tc.bistoury.serverside.common.encryption.Encryption;
 import qunar.tc.bistoury.serverside.common.encryption.EncryptionUtils;
 import qunar.tc.bistoury.serverside.common.encryption.RSAEncryption;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.util.Map;
 
 /**
+ * 请求格式为{"0": rsa加密的会话密钥, "1": des加密的数据}或者{"0": rsa加密的会话密钥, "2": iv, "3": aes-gcm加密的数据}
+ * <p>
+ * aes-gcm时前端在一个websocket连接上只生成一次会话密钥，rsa解密的结果按密文缓存，同一个连接只需要做一次rsa解密；
+ * des密钥太弱，不在连接上复用，每个请求都带新的密钥，每次都做rsa解密。每个连接一个实例，只在连接的event loop线程中使用
+ *
  * @author zhenyu.nie created on 2019 2019/5/16 15:53
  */
 public class DefaultRequestEncryption implements RequestEncryption {
@@ -39,9 +52,21 @@ public class DefaultRequestEncryption implements RequestEncryption {
 
     private static final String KEY_INDEX = "0";
     private static final String DATA_INDEX = "1";
+    private static final String IV_INDEX = "2";
+    private static final String GCM_DATA_INDEX = "3";
+
+    private static final int GCM_TAG_BITS = 128;
 
     private final RSAEncryption rsa;
 
+    private String encryptedSessionKey;
+
+    private String sessionKey;
+
+    private SecretKey aesKey;
+
+    private Cipher gcmCipher;
+
     public DefaultRequestEncryption(RSAEncryption rsa) {
         this.rsa = rsa;
     }
@@ -50,10 +75,49 @@ public class DefaultRequestEncryption implements RequestEncryption {
     public RequestData<String> decrypt(String in) throws IOException {
         Map<String, Object> map = JacksonSerializer.deSerialize(in, mapReference);
         String rsaData = (String) map.get(KEY_INDEX);
-        String data = (String) map.get(DATA_INDEX);
+        String gcmData = (String) map.get(GCM_DATA_INDEX);
 
-        String desKey = rsa.decrypt(rsaData);
-        String requestStr = EncryptionUtils.decryptDes(data, desKey);
+        String requestStr;
+        try {
+            if (rsaData == null) {
+                throw new IllegalArgumentException("no session key");
+            }
+            if (gcmData != null) {
+                updateSessionKey(rsaData);
+                requestStr = decryptGcm((String) map.get(IV_INDEX), gcmData);
+            } else {
+                requestStr = EncryptionUtils.decryptDes((String) map.get(DATA_INDEX), rsa.decrypt(rsaData));
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Encryption.DecryptException(e);
+        }
         return JacksonSerializer.deSerialize(requestStr, inputType);
     }
+
+    private void updateSessionKey(String rsaData) throws IOException {
+        if (rsaData.equals(encryptedSessionKey)) {
+            return;
+        }
+
+        encryptedSessionKey = null;
+        sessionKey = rsa.decrypt(rsaData);
+        encryptedSessionKey = rsaData;
+        aesKey = null;
+    }
+
+    private String decryptGcm(String iv, String data) throws Exception {
+        if (iv == null) {
+            throw new IllegalArgumentException("no iv");
+        }
+        if (aesKey == null) {
+            aesKey = new SecretKeySpec(BaseEncoding.base16().lowerCase().decode(sessionKey), "AES");
+        }
+        if (gcmCipher == null) {
+            gcmCipher = Cipher.getInstance("AES/GCM/NoPadding");
+        }
+        gcmCipher.init(Cipher.DECRYPT_MODE, aesKey, new GCMParameterSpec(GCM_TAG_BITS, Base64.decode(iv)));
+        return new String(gcmCipher.doFinal(Base64.decode(data)), Charsets.UTF_8);
+    }
 }
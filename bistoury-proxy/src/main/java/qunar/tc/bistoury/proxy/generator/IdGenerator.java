@@ -23,5 +23,14 @@ package qunar.tc.bistoury.proxy.generator;
  * @describe
  */
 public interface IdGenerator {
+
+    /**
+     * 生成按时间有序的64位id
+     */
+    long nextId();
+
+    /**
+     * 生成id的字符串形式，与{@link #nextId()}使用同一个序列
+     */
     String generateId();
 }
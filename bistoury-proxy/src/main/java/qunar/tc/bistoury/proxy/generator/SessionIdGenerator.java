@@ -17,36 +17,83 @@
 
 package qunar.tc.bistoury.proxy.generator;
 
+import com.google.common.base.Preconditions;
+import com.google.common.net.InetAddresses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import qunar.tc.bistoury.remoting.protocol.RequestIds;
+import qunar.tc.bistoury.serverside.agile.Conf;
 import qunar.tc.bistoury.serverside.agile.LocalHost;
-import qunar.tc.bistoury.serverside.util.ServerManager;
+import qunar.tc.bistoury.serverside.configuration.DynamicConfigLoader;
 
-import java.sql.Timestamp;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 时间 + 节点 + 序列号组成的64位id，格式见{@link RequestIds}
+ * <p>
+ * 节点取global.properties中的server.node.id(0-1023)，未配置时取本机ipv4地址的低10位，
+ * 只在proxy都位于同一个/22网段且每台机器只部署一个proxy时不冲突，其它部署方式需要给每个proxy配置不同的节点；
+ * 同一毫秒内序列号用完时借用下一毫秒，时钟回拨时沿用上一个id的时间，保证单调递增
+ *
  * @author leix.xie
  * @date 2019/5/13 14:32
  * @describe
  */
 @Service
 public class SessionIdGenerator implements IdGenerator {
-    private static final String SPLITTER = ".";
-    private static final int[] codex = {2, 3, 5, 6, 8, 9, 19, 11, 12, 14, 15, 17, 18};
-    private static final AtomicInteger AUTO_INCREMENT_ID = new AtomicInteger(1);
-    private static final String LOCAL_HOST = LocalHost.getLocalHost();
-    private static final int PID = ServerManager.getPid();
 
+    private static final Logger logger = LoggerFactory.getLogger(SessionIdGenerator.class);
+
+    private static final String NODE_KEY = "server.node.id";
+
+    private static final long NODE = resolveNode(Conf.fromMap(DynamicConfigLoader.load("global.properties", false).asMap()).getInt(NODE_KEY, -1), LocalHost.getLocalHost());
+
+    private static final long NODE_PART = NODE << RequestIds.SEQUENCE_BITS;
+
+    private static final AtomicLong LAST_ID = new AtomicLong(0);
+
+    static long resolveNode(int configured, String localHost) {
+        if (configured >= 0) {
+            Preconditions.checkArgument(configured <= RequestIds.MAX_NODE, "%s must be between 0 and %s, but is %s", NODE_KEY, RequestIds.MAX_NODE, configured);
+            logger.info("session id node {}", configured);
+            return configured;
+        }
+
+        InetAddress address = InetAddresses.isInetAddress(localHost) ? InetAddresses.forString(localHost) : null;
+        long node = address instanceof Inet4Address
+                ? InetAddresses.coerceToInteger(address) & RequestIds.MAX_NODE
+                : localHost.hashCode() & RequestIds.MAX_NODE;
+        logger.warn("{} not configured, use session id node {} from local host {}, proxies outside one /22 network or on the same host must configure different nodes", NODE_KEY, node, localHost);
+        return node;
+    }
+
+    @Override
+    public long nextId() {
+        long time = System.currentTimeMillis() - RequestIds.EPOCH;
+        while (true) {
+            long last = LAST_ID.get();
+            long lastTime = last >>> RequestIds.TIME_SHIFT;
+            long next;
+            if (time > lastTime) {
+                next = (time << RequestIds.TIME_SHIFT) | NODE_PART;
+            } else if ((last & RequestIds.MAX_SEQUENCE) < RequestIds.MAX_SEQUENCE) {
+                next = last + 1;
+            } else {
+                next = ((lastTime + 1) << RequestIds.TIME_SHIFT) | NODE_PART;
+            }
+
+            if (LAST_ID.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
     public String generateId() {
-        StringBuilder sb = new StringBuilder(45);
-        long time = System.currentTimeMillis();
-        String ts = new Timestamp(time).toString();
-
-        for (int idx : codex)
-            sb.append(ts.charAt(idx));
-        sb.append(SPLITTER).append(LOCAL_HOST);
-        sb.append(SPLITTER).append(PID);
-        sb.append(SPLITTER).append(AUTO_INCREMENT_ID.getAndIncrement());
-        return sb.toString();
+        return RequestIds.format(nextId());
     }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.proxy.communicate.ui.handler.encryption;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.common.JacksonSerializer;
+import qunar.tc.bistoury.proxy.communicate.ui.RequestData;
+import qunar.tc.bistoury.serverside.agile.Base64;
+import qunar.tc.bistoury.serverside.common.encryption.Encryption;
+import qunar.tc.bistoury.serverside.common.encryption.RSAEncryption;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.DESKeySpec;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按前端的两种格式加密请求，验证proxy能解密：aes-gcm按连接复用会话密钥，des每个请求一个新密钥
+ */
+public class DefaultRequestEncryptionTest {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private CountingRSAEncryption rsa;
+
+    private DefaultRequestEncryption encryption;
+
+    @Before
+    public void before() throws Exception {
+        rsa = new CountingRSAEncryption();
+        encryption = new DefaultRequestEncryption(rsa);
+    }
+
+    @Test
+    public void gcmRequestsShouldShareSessionKey() throws Exception {
+        String key = hexKey(16);
+        String keyEnc = rsa.encrypt(key);
+
+        RequestData<String> first = encryption.decrypt(encryptGcm(keyEnc, key, request("first")));
+        RequestData<String> second = encryption.decrypt(encryptGcm(keyEnc, key, request("第二个")));
+
+        Assert.assertEquals("first", first.getCommand());
+        Assert.assertEquals("app", first.getApp());
+        Assert.assertEquals("第二个", second.getCommand());
+        Assert.assertEquals(1, rsa.decryptCount.get());
+    }
+
+    @Test
+    public void gcmSessionKeyShouldChangeWithEncryptedKey() throws Exception {
+        String firstKey = hexKey(16);
+        String secondKey = hexKey(16);
+
+        Assert.assertEquals("first", encryption.decrypt(encryptGcm(rsa.encrypt(firstKey), firstKey, request("first"))).getCommand());
+        Assert.assertEquals("second", encryption.decrypt(encryptGcm(rsa.encrypt(secondKey), secondKey, request("second"))).getCommand());
+        Assert.assertEquals(2, rsa.decryptCount.get());
+    }
+
+    @Test(expected = Encryption.DecryptException.class)
+    public void tamperedGcmRequestShouldBeRejected() throws Exception {
+        String key = hexKey(16);
+        byte[] iv = new byte[12];
+        RANDOM.nextBytes(iv);
+        byte[] encrypted = gcm(key, iv, request("command"));
+        encrypted[0] ^= 1;
+        encryption.decrypt(JacksonSerializer.serialize(ImmutableMap.of("0", rsa.encrypt(key), "2", Base64.encode(iv), "3", Base64.encode(encrypted))));
+    }
+
+    @Test(expected = Encryption.DecryptException.class)
+    public void gcmRequestWithoutIvShouldBeRejected() throws Exception {
+        String key = hexKey(16);
+        encryption.decrypt(JacksonSerializer.serialize(ImmutableMap.of("0", rsa.encrypt(key), "3", Base64.encode(new byte[32]))));
+    }
+
+    @Test
+    public void desRequestsShouldUseTheirOwnKey() throws Exception {
+        String firstKey = hexKey(4);
+        String secondKey = hexKey(4);
+
+        RequestData<String> first = encryption.decrypt(encryptDes(rsa.encrypt(firstKey), firstKey, request("first")));
+        RequestData<String> second = encryption.decrypt(encryptDes(rsa.encrypt(secondKey), secondKey, request("第二个")));
+
+        Assert.assertEquals("first", first.getCommand());
+        Assert.assertEquals("第二个", second.getCommand());
+        Assert.assertEquals(2, rsa.decryptCount.get());
+    }
+
+    @Test
+    public void desKeyShouldNotBeCachedOnConnection() throws Exception {
+        String key = hexKey(4);
+        String keyEnc = rsa.encrypt(key);
+
+        encryption.decrypt(encryptDes(keyEnc, key, request("first")));
+        encryption.decrypt(encryptDes(keyEnc, key, request("second")));
+        Assert.assertEquals(2, rsa.decryptCount.get());
+    }
+
+    @Test
+    public void desAndGcmRequestsCanBeMixed() throws Exception {
+        String gcmKey = hexKey(16);
+        String gcmKeyEnc = rsa.encrypt(gcmKey);
+        String desKey = hexKey(4);
+
+        Assert.assertEquals("gcm", encryption.decrypt(encryptGcm(gcmKeyEnc, gcmKey, request("gcm"))).getCommand());
+        Assert.assertEquals("des", encryption.decrypt(encryptDes(rsa.encrypt(desKey), desKey, request("des"))).getCommand());
+        Assert.assertEquals("gcm again", encryption.decrypt(encryptGcm(gcmKeyEnc, gcmKey, request("gcm again"))).getCommand());
+        Assert.assertEquals(2, rsa.decryptCount.get());
+    }
+
+    @Test(expected = Encryption.DecryptException.class)
+    public void requestWithoutKeyShouldBeRejected() throws Exception {
+        encryption.decrypt(JacksonSerializer.serialize(ImmutableMap.of("1", "data")));
+    }
+
+    private static String request(String command) {
+        return JacksonSerializer.serialize(ImmutableMap.of("app", "app", "type", 1, "command", command, "token", "token", "user", "user"));
+    }
+
+    private static String hexKey(int bytes) {
+        byte[] key = new byte[bytes];
+        RANDOM.nextBytes(key);
+        return BaseEncoding.base16().lowerCase().encode(key);
+    }
+
+    private static String encryptGcm(String keyEnc, String key, String content) throws Exception {
+        byte[] iv = new byte[12];
+        RANDOM.nextBytes(iv);
+        return JacksonSerializer.serialize(ImmutableMap.of("0", keyEnc, "2", Base64.encode(iv), "3", Base64.encode(gcm(key, iv, content))));
+    }
+
+    private static byte[] gcm(String key, byte[] iv, String content) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(BaseEncoding.base16().lowerCase().decode(key), "AES"), new GCMParameterSpec(128, iv));
+        return cipher.doFinal(content.getBytes(Charsets.UTF_8));
+    }
+
+    private static String encryptDes(String keyEnc, String key, String content) throws Exception {
+        Cipher cipher = Cipher.getInstance("DES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, SecretKeyFactory.getInstance("DES").generateSecret(new DESKeySpec(key.getBytes(Charsets.UTF_8))));
+        return JacksonSerializer.serialize(ImmutableMap.of("0", keyEnc, "1", Base64.encode(cipher.doFinal(content.getBytes(Charsets.UTF_8)))));
+    }
+
+    private static class CountingRSAEncryption extends RSAEncryption {
+
+        private final AtomicInteger decryptCount = new AtomicInteger();
+
+        CountingRSAEncryption() throws Exception {
+            super("/rsa-public-key.pem", "/rsa-private-key.pem");
+        }
+
+        @Override
+        public String decrypt(String source) throws DecryptException {
+            decryptCount.incrementAndGet();
+            return super.decrypt(source);
+        }
+    }
+}
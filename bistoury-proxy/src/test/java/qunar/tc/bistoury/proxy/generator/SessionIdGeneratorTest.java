@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.proxy.generator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import qunar.tc.bistoury.remoting.protocol.RequestIds;
+
+/**
+ * 节点优先取配置，未配置时取ipv4地址的低10位
+ */
+public class SessionIdGeneratorTest {
+
+    @Test
+    public void configuredNode() {
+        Assert.assertEquals(0, SessionIdGenerator.resolveNode(0, "10.0.0.1"));
+        Assert.assertEquals(RequestIds.MAX_NODE, SessionIdGenerator.resolveNode((int) RequestIds.MAX_NODE, "10.0.0.1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configuredNodeOutOfRange() {
+        SessionIdGenerator.resolveNode((int) RequestIds.MAX_NODE + 1, "10.0.0.1");
+    }
+
+    @Test
+    public void nodeFromIpv4() {
+        Assert.assertEquals(1, SessionIdGenerator.resolveNode(-1, "10.0.4.1"));
+        Assert.assertEquals(0x3FF, SessionIdGenerator.resolveNode(-1, "10.0.7.255"));
+        Assert.assertTrue(SessionIdGenerator.resolveNode(-1, "10.0.4.1") != SessionIdGenerator.resolveNode(-1, "10.0.4.2"));
+    }
+
+    @Test
+    public void nodeFromOtherHost() {
+        long node = SessionIdGenerator.resolveNode(-1, "proxy.local");
+        Assert.assertTrue(node >= 0 && node <= RequestIds.MAX_NODE);
+    }
+
+    @Test
+    public void idsIncrease() {
+        IdGenerator generator = new SessionIdGenerator();
+        long last = generator.nextId();
+        for (int i = 0; i < 10000; ++i) {
+            long id = generator.nextId();
+            Assert.assertTrue(id > last);
+            last = id;
+        }
+    }
+}
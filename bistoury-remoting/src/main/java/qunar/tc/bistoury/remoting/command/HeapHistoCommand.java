@@ -25,6 +25,11 @@ package qunar.tc.bistoury.remoting.command;
 public class HeapHistoCommand {
     private String param;
     private Long timestamp;
+    /**
+     * 不为空时返回timestamp到compareTimestamp之间内存增长最多的类
+     */
+    private Long compareTimestamp;
+    private Integer top;
     private String pid;
 
     public String getParam() {
@@ -43,6 +48,22 @@ public class HeapHistoCommand {
         this.timestamp = timestamp;
     }
 
+    public Long getCompareTimestamp() {
+        return compareTimestamp;
+    }
+
+    public void setCompareTimestamp(Long compareTimestamp) {
+        this.compareTimestamp = compareTimestamp;
+    }
+
+    public Integer getTop() {
+        return top;
+    }
+
+    public void setTop(Integer top) {
+        this.top = top;
+    }
+
     public String getPid() {
         return pid;
     }
@@ -56,6 +77,8 @@ public class HeapHistoCommand {
         return "HeapHistoCommand{" +
                 "param='" + param + '\'' +
                 ", timestamp=" + timestamp +
+                ", compareTimestamp=" + compareTimestamp +
+                ", top=" + top +
                 ", pid='" + pid + '\'' +
                 '}';
     }
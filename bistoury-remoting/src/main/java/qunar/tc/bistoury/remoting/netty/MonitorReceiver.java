@@ -28,15 +28,14 @@ import qunar.tc.bistoury.common.CharsetUtils;
  */
 public class MonitorReceiver implements ResponseHandler {
 
-    private static final String EMPTY = "";
-    private String result = EMPTY;
+    private final StringBuilder result = new StringBuilder();
 
     public MonitorReceiver() {
     }
 
     public String getAndReset() {
-        String current = result;
-        result = EMPTY;
+        String current = result.toString();
+        result.setLength(0);
         return current;
     }
 
@@ -52,7 +51,7 @@ public class MonitorReceiver implements ResponseHandler {
 
     @Override
     public void handle(String line) {
-        result += line;
+        result.append(line);
     }
 
     @Override
@@ -67,7 +66,7 @@ public class MonitorReceiver implements ResponseHandler {
 
     @Override
     public void handle(byte[] dataBytes) {
-        result += CharsetUtils.toUTF8String(dataBytes);
+        result.append(CharsetUtils.toUTF8String(dataBytes));
     }
 
     @Override
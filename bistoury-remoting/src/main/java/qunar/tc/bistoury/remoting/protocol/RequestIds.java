@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.remoting.protocol;
+
+/**
+ * 请求和session的id编解码
+ * <p>
+ * id为64位正数：41位毫秒时间(相对{@link #EPOCH}) + 10位节点 + 12位序列号，按生成时间有序；
+ * 字符串形式为定长13位的小写crockford base32，字典序与数值序一致
+ */
+public class RequestIds {
+
+    public static final long INVALID_ID = -1;
+
+    //2019-01-01 00:00:00 UTC
+    public static final long EPOCH = 1546300800000L;
+
+    public static final int NODE_BITS = 10;
+
+    public static final int SEQUENCE_BITS = 12;
+
+    public static final int TIME_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    public static final long MAX_NODE = (1L << NODE_BITS) - 1;
+
+    public static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    public static final int STRING_LENGTH = 13;
+
+    private static final char[] ALPHABET = "0123456789abcdefghjkmnpqrstvwxyz".toCharArray();
+
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        for (int i = 0; i < DECODE.length; ++i) {
+            DECODE[i] = -1;
+        }
+        for (int i = 0; i < ALPHABET.length; ++i) {
+            DECODE[ALPHABET[i]] = (byte) i;
+            DECODE[Character.toUpperCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    private RequestIds() {
+    }
+
+    public static String format(long id) {
+        char[] chars = new char[STRING_LENGTH];
+        for (int i = STRING_LENGTH - 1; i >= 0; --i) {
+            chars[i] = ALPHABET[(int) (id & 0x1F)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 解析字符串形式的id，不是本类生成的格式(比如旧版本proxy生成的id)时返回{@link #INVALID_ID}
+     */
+    public static long parse(String id) {
+        if (id == null || id.length() != STRING_LENGTH) {
+            return INVALID_ID;
+        }
+
+        long result = 0;
+        for (int i = 0; i < STRING_LENGTH; ++i) {
+            char c = id.charAt(i);
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0) {
+                return INVALID_ID;
+            }
+            result = (result << 5) | value;
+        }
+        //13位共65bit，id为正数时第一位只有低3bit有效
+        return id.charAt(0) < '8' ? result : INVALID_ID;
+    }
+
+    public static long getTimestamp(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH;
+    }
+}
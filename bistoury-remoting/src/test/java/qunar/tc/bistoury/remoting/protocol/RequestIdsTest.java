@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package qunar.tc.bistoury.remoting.protocol;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RequestIdsTest {
+
+    @Test
+    public void testFormatAndParse() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; ++i) {
+            long id = random.nextLong() >>> 1;
+            String str = RequestIds.format(id);
+            Assert.assertEquals(RequestIds.STRING_LENGTH, str.length());
+            Assert.assertEquals(id, RequestIds.parse(str));
+        }
+        Assert.assertEquals(Long.MAX_VALUE, RequestIds.parse(RequestIds.format(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testOrder() {
+        long first = (1000L << RequestIds.TIME_SHIFT) | RequestIds.MAX_SEQUENCE;
+        long second = 1001L << RequestIds.TIME_SHIFT;
+        Assert.assertTrue(RequestIds.format(first).compareTo(RequestIds.format(second)) < 0);
+        Assert.assertEquals(RequestIds.EPOCH + 1001, RequestIds.getTimestamp(second));
+    }
+
+    @Test
+    public void testParseInvalid() {
+        Assert.assertEquals(RequestIds.INVALID_ID, RequestIds.parse(null));
+        Assert.assertEquals(RequestIds.INVALID_ID, RequestIds.parse(""));
+        Assert.assertEquals(RequestIds.INVALID_ID, RequestIds.parse("9051314320001.10.1.1.1.1234.1"));
+        Assert.assertEquals(RequestIds.INVALID_ID, RequestIds.parse("8zzzzzzzzzzzz"));
+        Assert.assertEquals(RequestIds.INVALID_ID, RequestIds.parse("0000000000uuu"));
+    }
+}
@@ -53,6 +53,12 @@ public class MockZkClientImpl implements ZKClient {
         return ImmutableList.copyOf(list);
     }
 
+    @Override
+    public List<String> watchChildren(String path, Runnable onChange) throws Exception {
+        logger.info("zk mock\t watch children, path: {}", path);
+        return getChildren(path);
+    }
+
     @Override
     public boolean checkExist(String path) {
         logger.info("zk mock\t check exist, path: {}", path);
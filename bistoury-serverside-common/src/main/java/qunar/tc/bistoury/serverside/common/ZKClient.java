@@ -31,6 +31,11 @@ public interface ZKClient {
 
     List<String> getChildren(String path) throws Exception;
 
+    /**
+     * 获取子节点并注册一次性watch，子节点变化或连接状态变化时回调onChange
+     */
+    List<String> watchChildren(String path, Runnable onChange) throws Exception;
+
     boolean checkExist(String path);
 
     void addPersistentNode(String path) throws Exception;
@@ -19,11 +19,13 @@ package qunar.tc.bistoury.serverside.common;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.CuratorWatcher;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.retry.RetryNTimes;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +62,16 @@ public class ZKClientImpl implements ZKClient {
         return client.getChildren().forPath(path);
     }
 
+    @Override
+    public List<String> watchChildren(String path, final Runnable onChange) throws Exception {
+        return client.getChildren().usingWatcher(new CuratorWatcher() {
+            @Override
+            public void process(WatchedEvent event) {
+                onChange.run();
+            }
+        }).forPath(path);
+    }
+
     @Override
     public boolean checkExist(String path) {
         try {
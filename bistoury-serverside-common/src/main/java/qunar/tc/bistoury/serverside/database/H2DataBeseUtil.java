@@ -42,6 +42,13 @@ public class H2DataBeseUtil {
         return "jdbc:h2:tcp://localhost//tmp/bistoury/h2/bistoury;MODE=MYSQL;TRACE_LEVEL_SYSTEM_OUT=2;AUTO_SERVER=TRUE;";
     }
 
+    /**
+     * 进程内的h2内存库，连接全部关闭后数据仍然保留，用于测试
+     */
+    public static String getEmbeddedUrl(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MYSQL;DB_CLOSE_DELAY=-1;";
+    }
+
     public static String getPort() throws IOException {
         return Files.readFirstLine(new File(portPath), Charsets.UTF_8);
     }
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package qunar.tc.bistoury.ui.git;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.RequestBuilder;
+import com.ning.http.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.bistoury.serverside.metrics.Metrics;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * git仓库文件缓存
+ * <p>
+ * 分支、tag等ref先解析成commit id，同一个commit下的文件内容不会变化，按(项目, commit id, 路径)缓存；
+ * ref的解析结果按token缓存，过期后带上If-None-Match重新校验，顺便确认用户对仓库仍有访问权限
+ */
+class GitFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitFileCache.class);
+
+    private static final long DEFAULT_REF_FRESH_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final long MAX_FILE_CHARS = 64 * 1024 * 1024;
+
+    private static final int MAX_REFS = 10000;
+
+    private final AsyncHttpClient client;
+
+    private final long refFreshMillis;
+
+    private final Cache<RefKey, CommitRef> refs = CacheBuilder.newBuilder()
+            .maximumSize(MAX_REFS)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    private final Cache<FileKey, CachedFile> files = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_FILE_CHARS)
+            .weigher((Weigher<FileKey, CachedFile>) (key, file) -> key.path.length() + file.size)
+            .build();
+
+    GitFileCache(AsyncHttpClient client) {
+        this(client, DEFAULT_REF_FRESH_MILLIS);
+    }
+
+    GitFileCache(AsyncHttpClient client, long refFreshMillis) {
+        this.client = client;
+        this.refFreshMillis = refFreshMillis;
+    }
+
+    /**
+     * 解析ref对应的commit id，失败时返回null，由调用方按原有方式直接请求文件
+     *
+     * @param request      查询commit的请求，需要带上鉴权信息
+     * @param commitParser 从响应内容中解析commit id
+     */
+    String resolveCommit(String token, String project, String ref, RequestBuilder request, Function<String, String> commitParser) {
+        RefKey key = new RefKey(token, project, ref);
+        CommitRef cached = refs.getIfPresent(key);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.checkTime < refFreshMillis) {
+            return cached.commitId;
+        }
+
+        if (cached != null && !Strings.isNullOrEmpty(cached.eTag)) {
+            request.addHeader("If-None-Match", cached.eTag);
+        }
+
+        try {
+            Response response = client.executeRequest(request.build()).get();
+            int statusCode = response.getStatusCode();
+            if (statusCode == 304 && cached != null) {
+                refs.put(key, new CommitRef(cached.commitId, cached.eTag, now));
+                return cached.commitId;
+            } else if (statusCode == 200) {
+                String commitId = commitParser.apply(response.getResponseBody(Charsets.UTF_8.name()));
+                if (Strings.isNullOrEmpty(commitId)) {
+                    return null;
+                }
+                refs.put(key, new CommitRef(commitId, response.getHeader("ETag"), now));
+                return commitId;
+            } else {
+                refs.invalidate(key);
+                logger.info("resolve git ref fail, project: {}, ref: {}, http code: {}", project, ref, statusCode);
+                return null;
+            }
+        } catch (Exception e) {
+            Metrics.counter("resolve_git_ref_error").inc();
+            logger.error("resolve git ref error, project: {}, ref: {}", project, ref, e);
+            return null;
+        }
+    }
+
+    <T> T getFile(String project, String commitId, String path, Class<T> clazz) {
+        CachedFile file = files.getIfPresent(new FileKey(project, commitId, path));
+        if (file == null || !clazz.isInstance(file.file)) {
+            return null;
+        }
+        return clazz.cast(file.file);
+    }
+
+    void putFile(String project, String commitId, String path, Object file, int size) {
+        files.put(new FileKey(project, commitId, path), new CachedFile(file, size));
+    }
+
+    void invalidateAll() {
+        refs.invalidateAll();
+        files.invalidateAll();
+    }
+
+    private static class CommitRef {
+        private final String commitId;
+        private final String eTag;
+        private final long checkTime;
+
+        CommitRef(String commitId, String eTag, long checkTime) {
+            this.commitId = commitId;
+            this.eTag = eTag;
+            this.checkTime = checkTime;
+        }
+    }
+
+    private static class CachedFile {
+        private final Object file;
+        private final int size;
+
+        CachedFile(Object file, int size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    private static class RefKey {
+        private final String token;
+        private final String project;
+        private final String ref;
+
+        RefKey(String token, String project, String ref) {
+            this.token = token;
+            this.project = project;
+            this.ref = ref;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RefKey refKey = (RefKey) o;
+            return Objects.equals(token, refKey.token) &&
+                    Objects.equals(project, refKey.project) &&
+                    Objects.equals(ref, refKey.ref);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(token, project, ref);
+        }
+    }
+
+    private static class FileKey {
+        private final String project;
+        private final String commitId;
+        private final String path;
+
+        FileKey(String project, String commitId, String path) {
+            this.project = project;
+            this.commitId = commitId;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FileKey fileKey = (FileKey) o;
+            return Objects.equals(project, fileKey.project) &&
+                    Objects.equals(commitId, fileKey.commitId) &&
+                    Objects.equals(path, fileKey.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(project, commitId, path);
+        }
+    }
+}
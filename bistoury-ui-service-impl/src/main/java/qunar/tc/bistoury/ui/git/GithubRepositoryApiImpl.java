@@ -21,6 +21,7 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.Request;
+import com.ning.http.client.RequestBuilder;
 import com.ning.http.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +52,8 @@ public class GithubRepositoryApiImpl implements GitRepositoryApi {
 
     private AsyncHttpClient client = AsyncHttpClientHolder.getInstance();
 
+    private final GitFileCache fileCache = new GitFileCache(client);
+
     private String filePathFormat;
 
     private String gitEndPoint;
@@ -79,12 +82,21 @@ public class GithubRepositoryApiImpl implements GitRepositoryApi {
             return ResultHelper.fail(-1, "尚未设置 Github Private Token");
         }
 
+        String token = privateToken.get().getPrivateToken();
+        String commitId = fileCache.resolveCommit(token, project, ref, buildCommitRequest(token, project, ref), String::trim);
+        if (commitId != null) {
+            GitHubFile cached = fileCache.getFile(project, commitId, path, GitHubFile.class);
+            if (cached != null) {
+                return ResultHelper.success(cached);
+            }
+        }
+
         String fileUrl = buildFileUrl(project, path);
         Request request = client.prepareGet(fileUrl)
-                .addQueryParam("ref", ref)
+                .addQueryParam("ref", commitId != null ? commitId : ref)
                 .addHeader("Accept", "application/json")
                 .addHeader("'content-type", "application/json")
-                .addHeader("Authorization", "token " + privateToken.get().getPrivateToken())
+                .addHeader("Authorization", "token " + token)
                 .build();
         try {
             Response response = client.executeRequest(request).get();
@@ -92,7 +104,11 @@ public class GithubRepositoryApiImpl implements GitRepositoryApi {
             switch (statusCode) {
                 case 200:
                     String responseBody = response.getResponseBody(Charsets.UTF_8.name());
-                    return ResultHelper.success(JacksonSerializer.deSerialize(responseBody, GitHubFile.class));
+                    GitHubFile file = JacksonSerializer.deSerialize(responseBody, GitHubFile.class);
+                    if (commitId != null) {
+                        fileCache.putFile(project, commitId, path, file, responseBody.length());
+                    }
+                    return ResultHelper.success(file);
                 case 401:
                     return ResultHelper.fail("拒绝访问，请检查private token");
                 case 404:
@@ -107,6 +123,16 @@ public class GithubRepositoryApiImpl implements GitRepositoryApi {
         }
     }
 
+    /**
+     * 只返回commit id，github对带If-None-Match且返回304的请求不计入限流
+     */
+    private RequestBuilder buildCommitRequest(final String token, final String project, final String ref) {
+        return new RequestBuilder("GET")
+                .setUrl(gitEndPoint + "/repos/" + project + "/commits/" + ref)
+                .addHeader("Accept", "application/vnd.github.v3.sha")
+                .addHeader("Authorization", "token " + token);
+    }
+
     private String buildFileUrl(final String projectId, final String path) {
         StringBuilder sb = new StringBuilder();
         sb.append(gitEndPoint)
@@ -129,6 +155,7 @@ public class GithubRepositoryApiImpl implements GitRepositoryApi {
 
     @Override
     public void destroy() {
+        fileCache.invalidateAll();
         client.close();
     }
 
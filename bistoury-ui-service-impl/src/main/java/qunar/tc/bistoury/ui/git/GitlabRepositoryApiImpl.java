@@ -17,11 +17,21 @@
 
 package qunar.tc.bistoury.ui.git;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.ning.http.client.RequestBuilder;
 import org.gitlab.api.GitlabAPI;
 import org.gitlab.api.GitlabAPIException;
 import org.gitlab.api.http.Query;
-import org.gitlab.api.models.GitlabProject;
+import qunar.tc.bistoury.common.AsyncHttpClientHolder;
+import qunar.tc.bistoury.common.JacksonSerializer;
 import qunar.tc.bistoury.serverside.bean.ApiResult;
 import qunar.tc.bistoury.serverside.configuration.DynamicConfig;
 import qunar.tc.bistoury.serverside.metrics.Metrics;
@@ -33,8 +43,13 @@ import qunar.tc.bistoury.ui.service.GitPrivateTokenService;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.text.MessageFormat;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author leix.xie
@@ -43,8 +58,31 @@ import java.util.Optional;
  */
 public class GitlabRepositoryApiImpl implements GitRepositoryApi {
 
+    private static final String API_NAMESPACE = "/api/v3";
+
+    private static final TypeReference<Map<String, Object>> COMMIT_TYPE_REFERENCE = new TypeReference<Map<String, Object>>() {
+    };
+
     private GitPrivateTokenService gitPrivateTokenService;
 
+    private final GitFileCache fileCache = new GitFileCache(AsyncHttpClientHolder.getInstance());
+
+    //每个private token复用一个连接对象
+    private final LoadingCache<String, GitlabAPI> apis = CacheBuilder.newBuilder()
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build(new CacheLoader<String, GitlabAPI>() {
+                @Override
+                public GitlabAPI load(String token) {
+                    return GitlabAPI.connect(gitEndPoint, token);
+                }
+            });
+
+    //项目路径到项目id的映射基本不会变化
+    private final Cache<String, Integer> projectIds = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
     private String filePathFormat;
 
     private String gitEndPoint;
@@ -68,11 +106,24 @@ public class GitlabRepositoryApiImpl implements GitRepositoryApi {
 
     private ApiResult doFile(final String projectId, final String ref, final String filepath) throws IOException {
         try {
-            final GitlabAPI api = createGitlabApi();
-            final GitlabProject project = api.getProject(projectId);
-            final Query query = new Query().append("file_path", filepath).append("ref", ref);
-            final String url = "/projects/" + project.getId() + "/repository/files" + query.toString();
-            return ResultHelper.success(api.retrieve().to(url, GitlabFile.class));
+            final String token = getPrivateToken();
+            final GitlabAPI api = getGitlabApi(token);
+            final String project = String.valueOf(getProjectId(api, projectId));
+            final String commitId = fileCache.resolveCommit(token, project, ref, buildCommitRequest(token, project, ref), this::parseCommitId);
+            if (commitId != null) {
+                final GitlabFile cached = fileCache.getFile(project, commitId, filepath, GitlabFile.class);
+                if (cached != null) {
+                    return ResultHelper.success(cached);
+                }
+            }
+
+            final Query query = new Query().append("file_path", filepath).append("ref", commitId != null ? commitId : ref);
+            final String url = "/projects/" + project + "/repository/files" + query.toString();
+            final GitlabFile file = api.retrieve().to(url, GitlabFile.class);
+            if (commitId != null && file != null) {
+                fileCache.putFile(project, commitId, filepath, file, Strings.nullToEmpty(file.getContent()).length());
+            }
+            return ResultHelper.success(file);
         } catch (GitlabAPIException e) {
             Metrics.counter("connect_gitlab_error").inc();
             return ResultHelper.fail(-1, "连接gitlab服务器失败，请核private token", e);
@@ -81,6 +132,27 @@ public class GitlabRepositoryApiImpl implements GitRepositoryApi {
         }
     }
 
+    private Integer getProjectId(final GitlabAPI api, final String projectId) throws IOException {
+        try {
+            return projectIds.get(projectId, () -> api.getProject(projectId).getId());
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private RequestBuilder buildCommitRequest(final String token, final String project, final String ref) throws UnsupportedEncodingException {
+        return new RequestBuilder("GET")
+                .setUrl(gitEndPoint + API_NAMESPACE + "/projects/" + project + "/repository/commits/" + URLEncoder.encode(ref, Charsets.UTF_8.name()))
+                .addHeader("PRIVATE-TOKEN", token);
+    }
+
+    private String parseCommitId(final String body) {
+        Map<String, Object> commit = JacksonSerializer.deSerialize(body, COMMIT_TYPE_REFERENCE);
+        Object id = commit == null ? null : commit.get("id");
+        return id == null ? null : id.toString();
+    }
+
     private String getFilePath(String module, final String className) {
         if (".".equals(module) || Strings.isNullOrEmpty(module)) {
             module = "";
@@ -91,17 +163,23 @@ public class GitlabRepositoryApiImpl implements GitRepositoryApi {
     }
 
 
-    private GitlabAPI createGitlabApi() {
+    private String getPrivateToken() {
         String userCode = LoginContext.getLoginContext().getLoginUser();
         Optional<PrivateToken> token = gitPrivateTokenService.queryToken(userCode);
         if (!token.isPresent()) {
             throw new RuntimeException("尚未设置 Git Private Token");
         }
-        return GitlabAPI.connect(gitEndPoint, token.get().getPrivateToken());
+        return token.get().getPrivateToken();
+    }
+
+    private GitlabAPI getGitlabApi(final String token) {
+        return apis.getUnchecked(token);
     }
 
     @Override
     public void destroy() {
-
+        apis.invalidateAll();
+        projectIds.invalidateAll();
+        fileCache.invalidateAll();
     }
 }
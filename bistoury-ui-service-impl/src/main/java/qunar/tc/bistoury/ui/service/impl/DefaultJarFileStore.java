@@ -18,22 +18,26 @@
 package qunar.tc.bistoury.ui.service.impl;
 
 import com.google.common.base.Strings;
-import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Maps;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
-import com.google.common.io.ByteStreams;
+import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.Response;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import qunar.tc.bistoury.common.AsyncHttpClientHolder;
+import qunar.tc.bistoury.common.NamedThreadFactory;
 import qunar.tc.bistoury.serverside.configuration.DynamicConfig;
 import qunar.tc.bistoury.serverside.configuration.DynamicConfigLoader;
 import qunar.tc.bistoury.serverside.configuration.local.LocalDynamicConfig;
@@ -44,18 +48,38 @@ import qunar.tc.bistoury.ui.model.MavenInfo;
 import qunar.tc.bistoury.ui.service.JarFileStore;
 
 import javax.annotation.PostConstruct;
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
+ * 源码jar包存储
+ * <p>
+ * 下载时边接收边写入临时文件并计算hash，同一个jar的并发请求共用一次下载；
+ * 已下载的jar按访问顺序淘汰，总大小超过上限时删除最久未使用的文件
+ *
  * @author zhenyu.nie created on 2019 2019/4/25 19:21
  */
 @Service
@@ -75,13 +99,23 @@ public class DefaultJarFileStore implements JarFileStore {
 
     private static final String TEMP_JAR = SOURCE_JAR + TEMP_SUFFIX;
 
+    private static final int KB = 1024;
+
     private String storeDir = BistouryFileStoreUtil.getBistouryStore() + File.separator + "jar" + File.separator + "source";
 
     private String mavenHost;
 
     private int jarGuaranteePeriodDays;
 
-    private LoadingCache<MavenInfo, String> cache;
+    private long maxStoreSizeMb;
+
+    private int downloadTimeoutSeconds;
+
+    private Cache<MavenInfo, String> cache;
+
+    private final ConcurrentMap<MavenInfo, CompletableFuture<String>> downloading = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("jar-file-store", true));
 
     @PostConstruct
     public void init() {
@@ -91,12 +125,20 @@ public class DefaultJarFileStore implements JarFileStore {
         dynamicConfig.addListener(config -> {
             mavenHost = config.getString("maven.nexus.url");
             jarGuaranteePeriodDays = config.getInt("jar.guarantee.period.days", 2);
+            maxStoreSizeMb = config.getLong("jar.store.max.size.mb", 2048L);
+            downloadTimeoutSeconds = config.getInt("jar.download.timeout.seconds", 120);
         });
 
         this.cache = CacheBuilder
                 .newBuilder()
                 .expireAfterAccess(jarGuaranteePeriodDays, TimeUnit.DAYS)
+                .maximumWeight(maxStoreSizeMb * KB)
+                .weigher((Weigher<MavenInfo, String>) (mavenInfo, path) -> (int) Math.min(Integer.MAX_VALUE, Math.max(1, new File(path).length() / KB)))
                 .removalListener((RemovalListener<MavenInfo, String>) notification -> {
+                    //重新下载的jar路径不变，替换时不能删除
+                    if (notification.getCause() == RemovalCause.REPLACED) {
+                        return;
+                    }
                     File file = new File(notification.getValue());
                     if (file.exists()) {
                         if (!file.delete()) {
@@ -104,12 +146,7 @@ public class DefaultJarFileStore implements JarFileStore {
                         }
                     }
                 })
-                .build(new CacheLoader<MavenInfo, String>() {
-                    @Override
-                    public String load(MavenInfo mavenInfo) throws Exception {
-                        return fetchSourceJar(mavenInfo);
-                    }
-                });
+                .build();
 
         ensureDirCreate(storeDir);
         loadExistJarFiles(storeDir);
@@ -117,14 +154,17 @@ public class DefaultJarFileStore implements JarFileStore {
     }
 
     private void loadExistJarFiles(String dir) {
-        try {
-            Files.find(Paths.get(dir),
-                    Integer.MAX_VALUE,
-                    (path, attr) -> !attr.isDirectory() && path.toString().endsWith(JAR_SUFFIX))
-                    .forEach((path) -> {
-                        String absolutePath = path.toAbsolutePath().toString();
-                        cache.put(parseMavenInfo(absolutePath), absolutePath);
-                    });
+        try (Stream<Path> paths = Files.find(Paths.get(dir),
+                Integer.MAX_VALUE,
+                (path, attr) -> !attr.isDirectory() && path.toString().endsWith(JAR_SUFFIX))) {
+            //按修改时间从旧到新放入，超过大小上限时优先淘汰旧文件
+            List<File> files = paths.map(Path::toFile)
+                    .sorted(Comparator.comparingLong(File::lastModified))
+                    .collect(Collectors.toList());
+            for (File file : files) {
+                String absolutePath = file.getAbsolutePath();
+                cache.put(parseMavenInfo(absolutePath), absolutePath);
+            }
         } catch (Exception e) {
             throw new IllegalStateException("load dir error, " + dir, e);
         }
@@ -163,12 +203,46 @@ public class DefaultJarFileStore implements JarFileStore {
 
     @Override
     public String getJarFile(MavenInfo mavenInfo) {
-        String filePath = cache.getUnchecked(mavenInfo);
-        if (fileExpired(filePath)) {
-            cache.invalidate(mavenInfo);
-            filePath = cache.getUnchecked(mavenInfo);
+        try {
+            return getJarFileAsync(mavenInfo).get(downloadTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SourceFileNotFoundException("源文件下载中断");
+        } catch (TimeoutException e) {
+            throw new SourceFileNotFoundException("源文件下载超时");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
         }
-        return filePath;
+    }
+
+    @Override
+    public CompletableFuture<String> getJarFileAsync(MavenInfo mavenInfo) {
+        String filePath = getJarFileIfPresent(mavenInfo);
+        if (filePath != null) {
+            return CompletableFuture.completedFuture(filePath);
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = downloading.putIfAbsent(mavenInfo, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        //上一次下载可能刚好完成并从downloading中移除
+        filePath = getJarFileIfPresent(mavenInfo);
+        if (filePath != null) {
+            downloading.remove(mavenInfo, future);
+            future.complete(filePath);
+            return future;
+        }
+
+        future.whenComplete((path, e) -> downloading.remove(mavenInfo, future));
+        download(mavenInfo, future);
+        return future;
     }
 
     @Override
@@ -185,38 +259,109 @@ public class DefaultJarFileStore implements JarFileStore {
         return !Strings.isNullOrEmpty(filePath) && !new File(filePath).exists();
     }
 
-    private String fetchSourceJar(MavenInfo mavenInfo) {
+    private void download(MavenInfo mavenInfo, CompletableFuture<String> future) {
+        File tempFile = new File(getTempJarPath(mavenInfo));
         try {
-            AsyncHttpClient.BoundRequestBuilder builder = httpClient.prepareGet(getUrl(mavenInfo));
-            Response response = httpClient.executeRequest(builder.build()).get();
-            if (response.getStatusCode() != 200) {
-                logger.warn("getAll source code from maven repository fail, http code [{}]", response.getStatusCode());
-                throw new RuntimeException();
-            } else {
-                InputStream inputStream = response.getResponseBodyAsStream();
-                File tempFile = new File(getTempJarPath(mavenInfo));
-                ensureDirExist(tempFile);
-
-                try (FileOutputStream to = new FileOutputStream(tempFile)) {
-                    ByteStreams.copy(inputStream, to);
-                }
+            ensureDirExist(tempFile);
+            Request request = httpClient.prepareGet(getUrl(mavenInfo))
+                    .setRequestTimeout((int) TimeUnit.SECONDS.toMillis(downloadTimeoutSeconds))
+                    .build();
+            httpClient.executeRequest(request, new SourceJarDownloadHandler(mavenInfo, tempFile, future));
+        } catch (Exception e) {
+            logger.error("download source jar error, {}", mavenInfo, e);
+            tempFile.delete();
+            future.completeExceptionally(e);
+        }
+    }
 
-                //分析response Header，获取etag，解析文件hash
-                String eTagInHeader = response.getHeader("ETag");
-                ETag eTag = parseETag(eTagInHeader);
-                if (eTag == null) {
-                    logger.error("文件 hash 值解析错误, mavenInfo: {}, etag: {}", mavenInfo, eTagInHeader);
-                    Metrics.counter("hash_parse_error").inc();
-                    tempFile.delete();
-                    throw new SourceFileNotFoundException("源文件下载错误, 文件hashValue值解析错误");
-                }
+    /**
+     * 下载回调在http client的io线程上执行，这里只做写文件和增量计算hash，校验和重命名交给executor
+     */
+    private class SourceJarDownloadHandler implements AsyncHandler<Void> {
+
+        private final MavenInfo mavenInfo;
+
+        private final File tempFile;
+
+        private final CompletableFuture<String> future;
+
+        private ETag eTag;
+
+        private Hasher hasher;
+
+        private FileChannel channel;
+
+        SourceJarDownloadHandler(MavenInfo mavenInfo, File tempFile, CompletableFuture<String> future) {
+            this.mavenInfo = mavenInfo;
+            this.tempFile = tempFile;
+            this.future = future;
+        }
+
+        @Override
+        public STATE onStatusReceived(HttpResponseStatus responseStatus) {
+            if (responseStatus.getStatusCode() != 200) {
+                logger.warn("getAll source code from maven repository fail, http code [{}]", responseStatus.getStatusCode());
+                fail(new SourceFileNotFoundException("源文件下载失败, http code: " + responseStatus.getStatusCode()));
+                return STATE.ABORT;
+            }
+            return STATE.CONTINUE;
+        }
+
+        @Override
+        public STATE onHeadersReceived(HttpResponseHeaders headers) throws IOException {
+            //分析response Header，获取etag，解析文件hash
+            String eTagInHeader = headers.getHeaders().getFirstValue("ETag");
+            eTag = parseETag(eTagInHeader);
+            if (eTag == null) {
+                logger.error("文件 hash 值解析错误, mavenInfo: {}, etag: {}", mavenInfo, eTagInHeader);
+                Metrics.counter("hash_parse_error").inc();
+                fail(new SourceFileNotFoundException("源文件下载错误, 文件hashValue值解析错误"));
+                return STATE.ABORT;
+            }
+
+            hasher = eTag.newHasher();
+            channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return STATE.CONTINUE;
+        }
 
-                String hashValue = eTag.hashing(tempFile);
+        @Override
+        public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws IOException {
+            if (future.isDone()) {
+                return STATE.ABORT;
+            }
+
+            byte[] bytes = bodyPart.getBodyPartBytes();
+            hasher.putBytes(bytes);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return STATE.CONTINUE;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            logger.error("download source jar error, {}", mavenInfo, t);
+            fail(t);
+        }
+
+        @Override
+        public Void onCompleted() {
+            if (!future.isDone()) {
+                executor.execute(this::finish);
+            }
+            return null;
+        }
+
+        private void finish() {
+            try {
+                closeChannel();
+                String hashValue = hasher.hash().toString();
                 if (!Objects.equals(eTag.getHashValue(), hashValue)) {
                     logger.error("文件 hash 值不匹配, mavenInfo: {}, algorithm: {}, etag: {}, file: {}", mavenInfo, eTag.getAlgorithm().name(), eTag.getHashValue(), hashValue);
                     Metrics.counter("hash_not_match").inc();
-                    tempFile.delete();
-                    throw new SourceFileNotFoundException(String.format("源文件下载错误，文件hashValue值不匹配, algorithm: %s, etag: %s, file: %s", eTag.getAlgorithm().name(), eTag.getHashValue(), hashValue));
+                    fail(new SourceFileNotFoundException(String.format("源文件下载错误，文件hashValue值不匹配, algorithm: %s, etag: %s, file: %s", eTag.getAlgorithm().name(), eTag.getHashValue(), hashValue)));
+                    return;
                 }
 
                 File jarFile = new File(getSourceJarPath(mavenInfo));
@@ -224,14 +369,37 @@ public class DefaultJarFileStore implements JarFileStore {
                     logger.error("rename temp file error, temp [{}], target [{}]", tempFile, jarFile);
                     tempFile.delete();
                     if (!jarFile.exists()) {
-                        throw new SourceFileNotFoundException("源文件下载失败");
+                        fail(new SourceFileNotFoundException("源文件下载失败"));
+                        return;
                     }
                 }
 
-                return jarFile.getAbsolutePath();
+                String path = jarFile.getAbsolutePath();
+                cache.put(mavenInfo, path);
+                future.complete(path);
+            } catch (Throwable e) {
+                logger.error("save source jar error, {}", mavenInfo, e);
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable e) {
+            closeChannel();
+            if (tempFile.exists() && !tempFile.delete()) {
+                logger.warn("clear temp file [{}] fail", tempFile.getAbsolutePath());
+            }
+            future.completeExceptionally(e);
+        }
+
+        private void closeChannel() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("close temp file [{}] error", tempFile.getAbsolutePath(), e);
             }
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
         }
     }
 
@@ -320,8 +488,8 @@ public class DefaultJarFileStore implements JarFileStore {
             return hashValue;
         }
 
-        public String hashing(File file) {
-            return algorithm.func.apply(file);
+        public Hasher newHasher() {
+            return algorithm.hashFunction.get().newHasher();
         }
 
         @Override
@@ -335,18 +503,18 @@ public class DefaultJarFileStore implements JarFileStore {
 
     private enum HashAlgorithm {
 
-        MD5("MD5", hashWith(Hashing::md5)),
-        SHA1("SHA1", hashWith(Hashing::sha1)),
-        SHA256("SHA256", hashWith(Hashing::sha256));
+        MD5("MD5", Hashing::md5),
+        SHA1("SHA1", Hashing::sha1),
+        SHA256("SHA256", Hashing::sha256);
 
         private static Map<String, HashAlgorithm> mapping = initMapping();
 
         private String algorithm;
-        private Function<File, String> func;
+        private Supplier<HashFunction> hashFunction;
 
-        HashAlgorithm(String algorithm, Function<File, String> func) {
+        HashAlgorithm(String algorithm, Supplier<HashFunction> hashFunction) {
             this.algorithm = algorithm;
-            this.func = func;
+            this.hashFunction = hashFunction;
         }
 
         private static Map<String, HashAlgorithm> initMapping() {
@@ -368,19 +536,4 @@ public class DefaultJarFileStore implements JarFileStore {
                     '}';
         }
     }
-
-    private static Function<File, String> hashWith(Supplier<HashFunction> algorithm) {
-        return (file) -> {
-            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
-                Hasher hasher = algorithm.get().newHasher();
-                int b;
-                while ((b = inputStream.read()) != -1) {
-                    hasher.putByte((byte) b);
-                }
-                return hasher.hash().toString();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        };
-    }
 }
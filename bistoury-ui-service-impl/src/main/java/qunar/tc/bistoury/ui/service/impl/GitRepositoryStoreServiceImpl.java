@@ -68,6 +68,7 @@ public class GitRepositoryStoreServiceImpl implements GitRepositoryStoreService
 
     @PreDestroy
     public void destroy() {
+        gitlabRepositoryApiImpl.destroy();
         githubRepositoryApiImpl.destroy();
     }
 }
@@ -21,7 +21,6 @@ import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import qunar.tc.bistoury.common.FileUtil;
 import qunar.tc.bistoury.ui.exception.SourceFileNotFoundException;
 import qunar.tc.bistoury.ui.exception.SourceFileReadException;
 import qunar.tc.bistoury.ui.model.MavenInfo;
@@ -29,9 +28,8 @@ import qunar.tc.bistoury.ui.service.JarFileStore;
 import qunar.tc.bistoury.ui.service.MavenRepositoryService;
 
 import javax.annotation.Resource;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 /**
  * @author: leix.xie
@@ -46,6 +44,8 @@ public class MavenRepositoryServiceImpl implements MavenRepositoryService {
     @Resource
     private JarFileStore jarFileStore;
 
+    private final SourceJarCache sourceJarCache = new SourceJarCache();
+
     @Override
     public String getSourceFile(MavenInfo mavenInfo, String className) {
         try {
@@ -66,6 +66,11 @@ public class MavenRepositoryServiceImpl implements MavenRepositoryService {
         }
     }
 
+    @Override
+    public CompletableFuture<String> downSourceFileAsync(MavenInfo mavenInfo, String className) {
+        return jarFileStore.getJarFileAsync(mavenInfo).thenApply(jarFile -> loadClassSourceFile(className, jarFile));
+    }
+
     private String getSourceFile(MavenInfo mavenInfo, String className, Function<MavenInfo, String> getJarFunc) {
         String jarFile = getJarFunc.apply(mavenInfo);
         if (Strings.isNullOrEmpty(jarFile)) {
@@ -77,13 +82,8 @@ public class MavenRepositoryServiceImpl implements MavenRepositoryService {
 
     private String loadClassSourceFile(String className, String jarPath) {
         String classPath = getClassPath(className);
-        try (JarFile jarFile = new JarFile(jarPath)) {
-            JarEntry entry = jarFile.getJarEntry(classPath);
-            if (entry != null && !entry.isDirectory()) {
-                return FileUtil.read(jarFile.getInputStream(entry));
-            } else {
-                throw new RuntimeException();
-            }
+        try {
+            return sourceJarCache.read(jarPath, classPath);
         } catch (Exception e) {
             throw new SourceFileReadException("源文件读取失败", e);
         }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package qunar.tc.bistoury.ui.service.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.curator.framework.state.ConnectionState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.bistoury.common.NamedThreadFactory;
+import qunar.tc.bistoury.serverside.common.ZKClient;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * proxy目录，通过zk子节点watch维护内存中的proxy列表，读取时不访问zk，zk不可用时继续使用最后一次获取到的列表
+ * <p>
+ * 同时记录每个proxy的调用延迟和失败次数，返回的列表中健康的proxy在前，延迟低的在前
+ */
+class ProxyDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyDirectory.class);
+
+    private static final long REFRESH_INTERVAL_SECONDS = 60;
+
+    private static final int UNHEALTHY_FAILURES = 3;
+
+    private static final long UNHEALTHY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    private final ZKClient zkClient;
+
+    private final String path;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("proxy-directory", true));
+
+    private final ConcurrentMap<String, ProxyState> states = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean watching = new AtomicBoolean(false);
+
+    private volatile List<String> proxies = ImmutableList.of();
+
+    ProxyDirectory(ZKClient zkClient, String path) {
+        this.zkClient = zkClient;
+        this.path = path;
+    }
+
+    void start() {
+        refresh();
+        zkClient.addConnectionChangeListener((client, state) -> {
+            if (state == ConnectionState.RECONNECTED) {
+                //session过期后watch会丢失，重连后重新注册
+                watching.set(false);
+                scheduleRefresh();
+            }
+        });
+        executor.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    List<String> getProxies() {
+        List<String> snapshot = proxies;
+        if (snapshot.size() <= 1 || states.isEmpty()) {
+            return snapshot;
+        }
+
+        long now = System.currentTimeMillis();
+        return snapshot.stream()
+                .sorted(Comparator.comparing((String proxy) -> isUnhealthy(proxy, now)).thenComparingDouble(this::getLatency))
+                .collect(Collectors.toList());
+    }
+
+    void reportSuccess(String proxy, long latencyMillis) {
+        getState(proxy).success(latencyMillis);
+    }
+
+    void reportFailure(String proxy) {
+        getState(proxy).failure(System.currentTimeMillis());
+    }
+
+    private ProxyState getState(String proxy) {
+        return states.computeIfAbsent(proxy, key -> new ProxyState());
+    }
+
+    private boolean isUnhealthy(String proxy, long now) {
+        ProxyState state = states.get(proxy);
+        return state != null && state.isUnhealthy(now);
+    }
+
+    private double getLatency(String proxy) {
+        ProxyState state = states.get(proxy);
+        return state == null ? 0 : state.getLatency();
+    }
+
+    private void scheduleRefresh() {
+        try {
+            executor.execute(this::refresh);
+        } catch (Exception e) {
+            logger.warn("schedule proxy directory refresh fail, {}", e.getMessage());
+        }
+    }
+
+    private void onChildrenChanged() {
+        watching.set(false);
+        scheduleRefresh();
+    }
+
+    synchronized void refresh() {
+        boolean watch = watching.compareAndSet(false, true);
+        try {
+            List<String> children = watch ? zkClient.watchChildren(path, this::onChildrenChanged) : zkClient.getChildren(path);
+            List<String> newProxies = ImmutableList.copyOf(children);
+            if (!newProxies.equals(proxies)) {
+                logger.info("proxy directory changed, {}", newProxies);
+            }
+            proxies = newProxies;
+            states.keySet().retainAll(newProxies);
+        } catch (Exception e) {
+            if (watch) {
+                watching.set(false);
+            }
+            logger.error("refresh proxy directory error, keep last proxies {}", proxies, e);
+        }
+    }
+
+    private static class ProxyState {
+        private int failures = 0;
+        private long lastFailureTime = 0;
+        private double latency = 0;
+
+        synchronized void success(long latencyMillis) {
+            failures = 0;
+            latency = latency == 0 ? latencyMillis : latency + LATENCY_WEIGHT * (latencyMillis - latency);
+        }
+
+        synchronized void failure(long now) {
+            failures++;
+            lastFailureTime = now;
+        }
+
+        synchronized boolean isUnhealthy(long now) {
+            //一段时间后重新给机会
+            return failures >= UNHEALTHY_FAILURES && now - lastFailureTime < UNHEALTHY_MILLIS;
+        }
+
+        synchronized double getLatency() {
+            return latency;
+        }
+    }
+}
@@ -17,7 +17,6 @@
 
 package qunar.tc.bistoury.ui.service.impl;
 
-import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -27,6 +26,7 @@ import qunar.tc.bistoury.serverside.store.RegistryStore;
 import qunar.tc.bistoury.ui.service.ProxyService;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.util.List;
 
@@ -40,18 +40,33 @@ public class ProxyServiceImpl implements ProxyService {
 
     private ZKClient zkClient;
 
+    private ProxyDirectory proxyDirectory;
+
     @PostConstruct
     public void init() {
         zkClient = ZKClientCache.get(registryStore.getZkAddress());
+        proxyDirectory = new ProxyDirectory(zkClient, registryStore.getProxyZkPathForNewUi());
+        proxyDirectory.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        proxyDirectory.stop();
     }
 
     @Override
     public List<String> getAllProxyUrls() {
-        try {
-            return zkClient.getChildren(registryStore.getProxyZkPathForNewUi());
-        } catch (Exception e) {
-            logger.error("get all proxy server address error", e);
-            return ImmutableList.of();
-        }
+        return proxyDirectory.getProxies();
+    }
+
+    @Override
+    public void reportSuccess(String proxyUrl, long latencyMillis) {
+        proxyDirectory.reportSuccess(proxyUrl, latencyMillis);
+    }
+
+    @Override
+    public void reportFailure(String proxyUrl) {
+        logger.warn("proxy request fail, {}", proxyUrl);
+        proxyDirectory.reportFailure(proxyUrl);
     }
 }
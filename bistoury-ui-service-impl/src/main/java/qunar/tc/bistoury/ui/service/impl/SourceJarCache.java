@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package qunar.tc.bistoury.ui.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.bistoury.common.FileUtil;
+import qunar.tc.bistoury.common.JarIdentity;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 源码jar包读取缓存
+ * <p>
+ * 打开的jar包连同entry索引一起缓存，同一个jar的多次读取不需要重新解析中央目录；
+ * 读出的源码按jar+路径缓存，按字符数限制总大小，jar包重新下载后自动失效
+ */
+class SourceJarCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceJarCache.class);
+
+    private static final int MAX_OPEN_JARS = 32;
+
+    private static final long MAX_SOURCE_CHARS = 32 * 1024 * 1024;
+
+    private static final int MAX_RETRY = 2;
+
+    private final Cache<String, SourceJar> jars = CacheBuilder.newBuilder()
+            .maximumSize(MAX_OPEN_JARS)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .removalListener((RemovalListener<String, SourceJar>) notification -> notification.getValue().evict())
+            .build();
+
+    private final Cache<SourceKey, String> sources = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_SOURCE_CHARS)
+            .weigher((Weigher<SourceKey, String>) (key, source) -> key.entryName.length() + source.length())
+            .build();
+
+    /**
+     * 读取jar包中的文件，文件不存在时抛出FileNotFoundException
+     */
+    String read(String jarPath, String entryName) throws IOException {
+        for (int i = 0; i < MAX_RETRY; ++i) {
+            SourceJar jar = getJar(jarPath);
+            if (!jar.retain()) {
+                //刚好被淘汰关闭，重新打开
+                jars.asMap().remove(jarPath, jar);
+                continue;
+            }
+
+            try {
+                if (!jar.identity.equals(JarIdentity.of(jarPath))) {
+                    logger.info("source jar changed, reopen: {}", jarPath);
+                    jars.asMap().remove(jarPath, jar);
+                    continue;
+                }
+                return read(jar, entryName);
+            } finally {
+                jar.release();
+            }
+        }
+        throw new IOException("source jar is closed concurrently: " + jarPath);
+    }
+
+    private String read(SourceJar jar, String entryName) throws IOException {
+        JarEntry entry = jar.entries.get(entryName);
+        if (entry == null || entry.isDirectory()) {
+            throw new FileNotFoundException(jar.path + "!/" + entryName);
+        }
+
+        SourceKey key = new SourceKey(jar.path, jar.identity, entryName);
+        String source = sources.getIfPresent(key);
+        if (source != null) {
+            return source;
+        }
+
+        try (InputStream inputStream = jar.jarFile.getInputStream(entry)) {
+            source = FileUtil.read(inputStream);
+        }
+        sources.put(key, source);
+        return source;
+    }
+
+    private SourceJar getJar(String jarPath) throws IOException {
+        try {
+            return jars.get(jarPath, () -> SourceJar.open(jarPath));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static class SourceJar {
+        private final String path;
+        private final JarIdentity identity;
+        private final JarFile jarFile;
+        private final ImmutableMap<String, JarEntry> entries;
+        private int refCount = 0;
+        private boolean evicted = false;
+        private boolean closed = false;
+
+        private SourceJar(String path, JarIdentity identity, JarFile jarFile, ImmutableMap<String, JarEntry> entries) {
+            this.path = path;
+            this.identity = identity;
+            this.jarFile = jarFile;
+            this.entries = entries;
+        }
+
+        static SourceJar open(String path) throws IOException {
+            JarIdentity identity = JarIdentity.of(path);
+            JarFile jarFile = new JarFile(path);
+            try {
+                Map<String, JarEntry> entries = new HashMap<>();
+                Enumeration<JarEntry> enumeration = jarFile.entries();
+                while (enumeration.hasMoreElements()) {
+                    JarEntry entry = enumeration.nextElement();
+                    entries.put(entry.getName(), entry);
+                }
+                return new SourceJar(path, identity, jarFile, ImmutableMap.copyOf(entries));
+            } catch (RuntimeException e) {
+                jarFile.close();
+                throw e;
+            }
+        }
+
+        synchronized boolean retain() {
+            if (closed) {
+                return false;
+            }
+            refCount++;
+            return true;
+        }
+
+        synchronized void release() {
+            refCount--;
+            if (refCount == 0 && evicted) {
+                close();
+            }
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            if (refCount == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                logger.warn("close source jar [{}] error", path, e);
+            }
+        }
+    }
+
+    private static class SourceKey {
+        private final String jarPath;
+        private final JarIdentity identity;
+        private final String entryName;
+
+        SourceKey(String jarPath, JarIdentity identity, String entryName) {
+            this.jarPath = jarPath;
+            this.identity = identity;
+            this.entryName = entryName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SourceKey sourceKey = (SourceKey) o;
+            return Objects.equals(jarPath, sourceKey.jarPath) &&
+                    Objects.equals(identity, sourceKey.identity) &&
+                    Objects.equals(entryName, sourceKey.entryName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(jarPath, identity, entryName);
+        }
+    }
+}
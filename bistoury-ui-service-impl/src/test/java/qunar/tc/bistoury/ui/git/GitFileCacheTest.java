@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package qunar.tc.bistoury.ui.git;
+
+import com.google.common.base.Charsets;
+import com.ning.http.client.RequestBuilder;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.common.AsyncHttpClientHolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GitFileCacheTest {
+
+    private static final String COMMIT_ID = "9fceb02d0ae598e95dc970b74767f19372d61af8";
+
+    private static final String ETAG = "\"etag-1\"";
+
+    private HttpServer server;
+
+    private String url;
+
+    private final AtomicInteger status = new AtomicInteger(200);
+
+    private final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/commits/master", exchange -> {
+            String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifNoneMatch.add(String.valueOf(condition));
+            int code = status.get();
+            if (code == 200 && ETAG.equals(condition)) {
+                code = 304;
+            }
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (code == 200) {
+                byte[] body = COMMIT_ID.getBytes(Charsets.UTF_8);
+                exchange.sendResponseHeaders(code, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } else {
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/commits/master";
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void resolveCommitWithinFreshWindow() {
+        GitFileCache cache = new GitFileCache(AsyncHttpClientHolder.getInstance(), 60000);
+        Assert.assertEquals(COMMIT_ID, cache.resolveCommit("token", "project", "master", request(), String::trim));
+        Assert.assertEquals(COMMIT_ID, cache.resolveCommit("token", "project", "master", request(), String::trim));
+        Assert.assertEquals(1, ifNoneMatch.size());
+
+        //不同token需要单独校验
+        Assert.assertEquals(COMMIT_ID, cache.resolveCommit("other", "project", "master", request(), String::trim));
+        Assert.assertEquals(2, ifNoneMatch.size());
+    }
+
+    @Test
+    public void revalidateWithETag() {
+        GitFileCache cache = new GitFileCache(AsyncHttpClientHolder.getInstance(), 0);
+        Assert.assertEquals(COMMIT_ID, cache.resolveCommit("token", "project", "master", request(), String::trim));
+        Assert.assertEquals(COMMIT_ID, cache.resolveCommit("token", "project", "master", request(), String::trim));
+        Assert.assertEquals(2, ifNoneMatch.size());
+        Assert.assertEquals("null", ifNoneMatch.get(0));
+        Assert.assertEquals(ETAG, ifNoneMatch.get(1));
+    }
+
+    @Test
+    public void revalidateFail() {
+        GitFileCache cache = new GitFileCache(AsyncHttpClientHolder.getInstance(), 0);
+        Assert.assertEquals(COMMIT_ID, cache.resolveCommit("token", "project", "master", request(), String::trim));
+
+        status.set(401);
+        Assert.assertNull(cache.resolveCommit("token", "project", "master", request(), String::trim));
+
+        //失败后不再使用旧的etag
+        status.set(200);
+        Assert.assertEquals(COMMIT_ID, cache.resolveCommit("token", "project", "master", request(), String::trim));
+        Assert.assertEquals("null", ifNoneMatch.get(2));
+    }
+
+    @Test
+    public void fileCache() {
+        GitFileCache cache = new GitFileCache(AsyncHttpClientHolder.getInstance());
+        cache.putFile("project", COMMIT_ID, "src/main/java/A.java", "content", 7);
+        Assert.assertEquals("content", cache.getFile("project", COMMIT_ID, "src/main/java/A.java", String.class));
+        Assert.assertNull(cache.getFile("project", "other", "src/main/java/A.java", String.class));
+        Assert.assertNull(cache.getFile("project", COMMIT_ID, "src/main/java/A.java", Integer.class));
+    }
+
+    private RequestBuilder request() {
+        return new RequestBuilder("GET").setUrl(url);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019 Qunar, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package qunar.tc.bistoury.ui.service.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.KeeperException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import qunar.tc.bistoury.serverside.common.ZKClient;
+import qunar.tc.bistoury.serverside.common.ZKClientImpl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProxyDirectoryTest {
+
+    private static final String PATH = "/bistoury/proxy/new";
+
+    private TestingServer server;
+
+    private ZKClientImpl zkClient;
+
+    private UnreliableZKClient unreliableClient;
+
+    private ProxyDirectory directory;
+
+    @Before
+    public void before() throws Exception {
+        server = new TestingServer();
+        zkClient = new ZKClientImpl(server.getConnectString());
+        zkClient.incrementReference();
+        zkClient.addPersistentNode(PATH + "/10.0.0.1:9880:9881");
+        zkClient.addPersistentNode(PATH + "/10.0.0.2:9880:9881");
+        unreliableClient = new UnreliableZKClient(zkClient);
+        directory = new ProxyDirectory(unreliableClient, PATH);
+        directory.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        directory.stop();
+        zkClient.close();
+        server.close();
+    }
+
+    @Test
+    public void watchChildren() throws Exception {
+        Assert.assertEquals(2, directory.getProxies().size());
+
+        zkClient.addPersistentNode(PATH + "/10.0.0.3:9880:9881");
+        waitForSize(3);
+        Assert.assertTrue(directory.getProxies().contains("10.0.0.3:9880:9881"));
+
+        zkClient.deletePath(PATH + "/10.0.0.1:9880:9881");
+        waitForSize(2);
+        Assert.assertFalse(directory.getProxies().contains("10.0.0.1:9880:9881"));
+    }
+
+    @Test
+    public void keepLastProxiesWhenZkDown() throws Exception {
+        List<String> before = directory.getProxies();
+        unreliableClient.down = true;
+
+        //curator在zk不可用时会一直重试，这里模拟请求失败，主动触发一次刷新并确认刷新确实失败了
+        int failures = unreliableClient.failures.get();
+        directory.refresh();
+        Assert.assertTrue(unreliableClient.failures.get() > failures);
+        Assert.assertEquals(before, directory.getProxies());
+    }
+
+    @Test
+    public void order() {
+        String first = directory.getProxies().get(0);
+        String second = directory.getProxies().get(1);
+
+        directory.reportSuccess(first, 100);
+        directory.reportSuccess(second, 10);
+        Assert.assertEquals(ImmutableList.of(second, first), directory.getProxies());
+
+        directory.reportFailure(second);
+        directory.reportFailure(second);
+        directory.reportFailure(second);
+        Assert.assertEquals(ImmutableList.of(first, second), directory.getProxies());
+
+        directory.reportSuccess(second, 10);
+        Assert.assertEquals(ImmutableList.of(second, first), directory.getProxies());
+    }
+
+    private void waitForSize(int size) throws InterruptedException {
+        for (int i = 0; i < 100; ++i) {
+            List<String> proxies = directory.getProxies();
+            if (proxies.size() == size) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        Assert.fail("proxy directory not updated, " + directory.getProxies());
+    }
+
+    private static class UnreliableZKClient implements ZKClient {
+
+        private final ZKClient delegate;
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private volatile boolean down = false;
+
+        private UnreliableZKClient(ZKClient delegate) {
+            this.delegate = delegate;
+        }
+
+        private void checkUp() throws KeeperException {
+            if (down) {
+                failures.incrementAndGet();
+                throw new KeeperException.ConnectionLossException();
+            }
+        }
+
+        @Override
+        public void deletePath(String path) throws Exception {
+            delegate.deletePath(path);
+        }
+
+        @Override
+        public List<String> getChildren(String path) throws Exception {
+            checkUp();
+            return delegate.getChildren(path);
+        }
+
+        @Override
+        public List<String> watchChildren(String path, Runnable onChange) throws Exception {
+            checkUp();
+            return delegate.watchChildren(path, onChange);
+        }
+
+        @Override
+        public boolean checkExist(String path) {
+            return delegate.checkExist(path);
+        }
+
+        @Override
+        public void addPersistentNode(String path) throws Exception {
+            delegate.addPersistentNode(path);
+        }
+
+        @Override
+        public String addEphemeralNode(String path) throws Exception {
+            return delegate.addEphemeralNode(path);
+        }
+
+        @Override
+        public void addConnectionChangeListener(ConnectionStateListener listener) {
+            delegate.addConnectionChangeListener(listener);
+        }
+
+        @Override
+        public void incrementReference() {
+            delegate.incrementReference();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -19,6 +19,8 @@ package qunar.tc.bistoury.ui.service;
 
 import qunar.tc.bistoury.ui.model.MavenInfo;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author zhenyu.nie created on 2019 2019/4/25 19:10
  */
@@ -26,5 +28,10 @@ public interface JarFileStore {
 
     String getJarFile(MavenInfo mavenInfo);
 
+    /**
+     * 获取jar包路径，本地不存在时异步下载，同一个jar的并发请求共用一次下载
+     */
+    CompletableFuture<String> getJarFileAsync(MavenInfo mavenInfo);
+
     String getJarFileIfPresent(MavenInfo mavenInfo);
 }
@@ -19,6 +19,8 @@ package qunar.tc.bistoury.ui.service;
 
 import qunar.tc.bistoury.ui.model.MavenInfo;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author: leix.xie
  * @date: 2019/4/3 10:56
@@ -42,4 +44,13 @@ public interface MavenRepositoryService {
      * @return
      */
     String downSourceFile(MavenInfo mavenInfo, String className);
+
+    /**
+     * 从maven私服获取源文件jar包，然后读取文件内容，不阻塞调用线程
+     *
+     * @param mavenInfo
+     * @param className
+     * @return
+     */
+    CompletableFuture<String> downSourceFileAsync(MavenInfo mavenInfo, String className);
 }
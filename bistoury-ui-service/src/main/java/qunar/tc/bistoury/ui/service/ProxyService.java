@@ -21,5 +21,12 @@ import java.util.List;
 
 public interface ProxyService {
 
+    /**
+     * 获取所有proxy，健康的、延迟低的proxy排在前面
+     */
     List<String> getAllProxyUrls();
+
+    void reportSuccess(String proxyUrl, long latencyMillis);
+
+    void reportFailure(String proxyUrl);
 }
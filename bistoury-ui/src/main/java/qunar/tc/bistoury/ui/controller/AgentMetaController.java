@@ -17,16 +17,20 @@
 
 package qunar.tc.bistoury.ui.controller;
 
+import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.Request;
+import com.ning.http.client.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 import qunar.tc.bistoury.common.AsyncHttpClientHolder;
 import qunar.tc.bistoury.common.JacksonSerializer;
+import qunar.tc.bistoury.common.NamedThreadFactory;
 import qunar.tc.bistoury.serverside.bean.ApiResult;
 import qunar.tc.bistoury.serverside.configuration.DynamicConfigLoader;
 import qunar.tc.bistoury.serverside.configuration.local.LocalDynamicConfig;
@@ -36,9 +40,24 @@ import qunar.tc.bistoury.ui.util.ProxyInfo;
 import qunar.tc.bistoury.ui.util.ProxyInfoParse;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author zhenyu.nie created on 2019 2019/1/10 21:12
@@ -51,6 +70,26 @@ public class AgentMetaController {
 
     private static final AsyncHttpClient httpClient = AsyncHttpClientHolder.getInstance();
 
+    private static final int MAX_CONCURRENT_NOTIFY = 8;
+
+    private static final int MAX_PENDING_NOTIFY = 256;
+
+    private static final long NOTIFY_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final String NOTIFY_SUCCESS = "success";
+
+    private final Semaphore notifyPermits = new Semaphore(MAX_CONCURRENT_NOTIFY);
+
+    /**
+     * 排队等待发送的通知，由pendingNotifies自身加锁保护
+     */
+    private final Queue<PendingNotify> pendingNotifies = new ArrayDeque<>();
+
+    /**
+     * 通知统一在这个线程里发出，不占用请求线程和http回调线程
+     */
+    private final ExecutorService notifyExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("agent-meta-notify", true));
+
     private String proxyAgentMetaRefresh;
 
     @Resource
@@ -62,34 +101,188 @@ public class AgentMetaController {
                 .addListener(conf -> proxyAgentMetaRefresh = conf.getString("agent.meta.refresh"));
     }
 
+    @PreDestroy
+    public void destroy() {
+        notifyExecutor.shutdownNow();
+    }
+
+    /**
+     * 通知所有proxy刷新指定agent的元信息
+     * <p>
+     * 返回值：status为0时data是以proxy websocket地址为key的状态，值为success、timeout或者"fail: 原因"，
+     * 部分proxy通知失败时status仍然为0，调用方需要检查data中的状态；
+     * 以前的版本data只返回true，只判断status的调用方不受影响
+     */
     @RequestMapping("agentMetaUpdate")
     @ResponseBody
-    public ApiResult notifyAgentMetaUpdate(@RequestBody List<String> ips) {
+    public DeferredResult<ApiResult> notifyAgentMetaUpdate(@RequestBody List<String> ips) {
         logger.info("notify agent meta update, {}", ips);
 
+        DeferredResult<ApiResult> result = new DeferredResult<>(NOTIFY_TIMEOUT_MILLIS);
         if (ips == null || ips.isEmpty()) {
-            return ResultHelper.fail(-2, "no agent ip");
+            result.setResult(ResultHelper.fail(-2, "no agent ip"));
+            return result;
         }
 
-        byte[] byteIps = JacksonSerializer.serializeToBytes(ips);
         List<String> proxyWebSocketUrls = proxyService.getAllProxyUrls();
+        //并发通知所有proxy，同时进行的请求数有上限，超过上限的排队等待，不占用请求线程
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
         for (String proxyWebSocketUrl : proxyWebSocketUrls) {
             Optional<ProxyInfo> optional = ProxyInfoParse.parseProxyInfo(proxyWebSocketUrl);
             if (!optional.isPresent()) {
                 continue;
             }
             String url = buildAgentMetaRefreshUrl(optional.get());
-            doNotify(url, byteIps);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            futures.put(proxyWebSocketUrl, future);
+            submitNotify(new PendingNotify(proxyWebSocketUrl, url, ips, future));
+        }
+        notifyExecutor.execute(this::drainPendingNotifies);
+
+        result.onTimeout(() -> result.setResult(ResultHelper.success(collectNotifyResult(futures))));
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .whenComplete((ignore, e) -> result.setResult(ResultHelper.success(collectNotifyResult(futures))));
+        return result;
+    }
+
+    /**
+     * 只读取已经完成的结果，没完成的记为超时
+     */
+    private Map<String, String> collectNotifyResult(Map<String, CompletableFuture<Void>> futures) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Void>> entry : futures.entrySet()) {
+            CompletableFuture<Void> future = entry.getValue();
+            if (!future.isDone()) {
+                result.put(entry.getKey(), "timeout");
+                continue;
+            }
+            try {
+                future.join();
+                result.put(entry.getKey(), NOTIFY_SUCCESS);
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                result.put(entry.getKey(), "fail: " + cause.getMessage());
+            }
+        }
+
+        if (result.values().stream().anyMatch(status -> !NOTIFY_SUCCESS.equals(status))) {
+            logger.warn("notify agent meta update not all success, {}", result);
+        }
+        return result;
+    }
+
+    /**
+     * 队列满了之后把排队的通知按proxy合并，每个proxy只剩一个通知，带上所有排队的agent，
+     * 相当于对所有proxy做一轮全量通知，队列长度不会超过上限和proxy数量中较大的一个
+     */
+    private void submitNotify(PendingNotify notify) {
+        synchronized (pendingNotifies) {
+            if (pendingNotifies.size() < MAX_PENDING_NOTIFY) {
+                pendingNotifies.add(notify);
+                return;
+            }
+
+            Map<String, PendingNotify> merged = new LinkedHashMap<>();
+            pendingNotifies.add(notify);
+            for (PendingNotify pending : pendingNotifies) {
+                PendingNotify exist = merged.get(pending.proxy);
+                if (exist == null) {
+                    merged.put(pending.proxy, pending);
+                } else {
+                    exist.merge(pending);
+                }
+            }
+            pendingNotifies.clear();
+            pendingNotifies.addAll(merged.values());
+            logger.warn("too many pending agent meta notify, merge into {} notify", merged.size());
+        }
+    }
+
+    private void drainPendingNotifies() {
+        while (notifyPermits.tryAcquire()) {
+            PendingNotify notify;
+            synchronized (pendingNotifies) {
+                notify = pendingNotifies.poll();
+            }
+            if (notify == null) {
+                notifyPermits.release();
+                return;
+            }
+            doNotify(notify);
         }
-        return ResultHelper.success(true);
     }
 
     private String buildAgentMetaRefreshUrl(ProxyInfo proxyInfo) {
         return String.format(proxyAgentMetaRefresh, proxyInfo.getIp(), proxyInfo.getTomcatPort());
     }
 
-    private void doNotify(String url, byte[] byteIps) {
-        Request request = httpClient.preparePost(url).setBody(byteIps).build();
-        httpClient.executeRequest(request);
+    private void doNotify(PendingNotify notify) {
+        String proxy = notify.proxy;
+        AtomicBoolean released = new AtomicBoolean(false);
+        long start = System.currentTimeMillis();
+        try {
+            Request request = httpClient.preparePost(notify.url).setBody(JacksonSerializer.serializeToBytes(notify.ips)).build();
+            httpClient.executeRequest(request, new AsyncCompletionHandler<Void>() {
+                @Override
+                public Void onCompleted(Response response) {
+                    release(released);
+                    if (response.getStatusCode() == 200) {
+                        proxyService.reportSuccess(proxy, System.currentTimeMillis() - start);
+                        notify.complete(null);
+                    } else {
+                        proxyService.reportFailure(proxy);
+                        notify.complete(new IllegalStateException("http code " + response.getStatusCode()));
+                    }
+                    return null;
+                }
+
+                @Override
+                public void onThrowable(Throwable t) {
+                    release(released);
+                    proxyService.reportFailure(proxy);
+                    notify.complete(t);
+                }
+            });
+        } catch (Exception e) {
+            release(released);
+            proxyService.reportFailure(proxy);
+            notify.complete(e);
+        }
+    }
+
+    private void release(AtomicBoolean released) {
+        if (released.compareAndSet(false, true)) {
+            notifyPermits.release();
+            notifyExecutor.execute(this::drainPendingNotifies);
+        }
+    }
+
+    private static class PendingNotify {
+        private final String proxy;
+        private final String url;
+        private final Set<String> ips;
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+
+        private PendingNotify(String proxy, String url, List<String> ips, CompletableFuture<Void> future) {
+            this.proxy = proxy;
+            this.url = url;
+            this.ips = new LinkedHashSet<>(ips);
+            this.futures.add(future);
+        }
+
+        private void merge(PendingNotify other) {
+            ips.addAll(other.ips);
+            futures.addAll(other.futures);
+        }
+
+        private void complete(Throwable e) {
+            for (CompletableFuture<Void> future : futures) {
+                if (e == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
     }
 }
@@ -32,6 +32,8 @@ import qunar.tc.bistoury.serverside.util.ResultHelper;
 import qunar.tc.bistoury.ui.security.LoginContext;
 import qunar.tc.bistoury.ui.service.UserService;
 
+import java.util.List;
+
 @Controller
 public class AppController {
 
@@ -84,6 +86,12 @@ public class AppController {
         return ResultHelper.success(this.appServerService.getAppServerByAppCode(appCode));
     }
 
+    @RequestMapping("getHostsByAppCodes")
+    @ResponseBody
+    public ApiResult getHostsByAppCodes(@RequestParam(name = "appCodes") List<String> appCodes) {
+        return ResultHelper.success(this.appServerService.getAppServersByAppCodes(appCodes));
+    }
+
     @ResponseBody
     @RequestMapping("getAppInfo")
     public ApiResult getAppInfo(@RequestParam("appCode") String appCode) {
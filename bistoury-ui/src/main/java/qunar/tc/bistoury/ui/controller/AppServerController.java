@@ -19,6 +19,7 @@ package qunar.tc.bistoury.ui.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
@@ -28,6 +29,8 @@ import qunar.tc.bistoury.serverside.bean.ApiResult;
 import qunar.tc.bistoury.serverside.util.ResultHelper;
 import qunar.tc.bistoury.ui.security.LoginContext;
 
+import java.util.List;
+
 /**
  * @author leix.xie
  * @date 2019/7/3 16:35
@@ -73,4 +76,11 @@ public class AppServerController {
         String loginUser = LoginContext.getLoginContext().getLoginUser();
         return ResultHelper.success(this.appServerService.saveAppServer(appServer, loginUser));
     }
+
+    @ResponseBody
+    @RequestMapping("batchSave")
+    public ApiResult batchSaveAppServer(@RequestBody final List<AppServer> appServers) {
+        String loginUser = LoginContext.getLoginContext().getLoginUser();
+        return ResultHelper.success(this.appServerService.batchSaveAppServer(appServers, loginUser));
+    }
 }
@@ -98,7 +98,7 @@ public class ConfigController {
             }
             ProxyInfo proxyInfo = optional.get();
             String url = buildProxyAgentUrl(proxyInfo);
-            if (existAgent(url, agentIp)) {
+            if (existAgent(proxyWebSocketUrl, url, agentIp)) {
                 result.add(buildWebsocketUrl(proxyInfo));
             }
         }
@@ -112,18 +112,21 @@ public class ConfigController {
         return String.format(proxyAgent, proxyInfo.getIp(), proxyInfo.getTomcatPort());
     }
 
-    private boolean existAgent(String url, @RequestParam String agentIp) {
+    private boolean existAgent(String proxyWebSocketUrl, String url, @RequestParam String agentIp) {
         try {
             AsyncHttpClient.BoundRequestBuilder builder = httpClient.prepareGet(url);
             builder.addQueryParam("ip", agentIp);
+            long start = System.currentTimeMillis();
             Response response = httpClient.executeRequest(builder.build()).get();
             if (response.getStatusCode() == 200) {
+                proxyService.reportSuccess(proxyWebSocketUrl, System.currentTimeMillis() - start);
                 ApiResult<AgentInfo> result = JacksonSerializer.deSerialize(response.getResponseBody("utf8"), AGENT_TYPE_REFERENCE);
                 if (result.getStatus() == 0) {
                     return true;
                 }
             }
         } catch (Exception e) {
+            proxyService.reportFailure(proxyWebSocketUrl);
             logger.error("query exist agent error, agent ip [{}], url [{}]", agentIp, url, e);
         }
         return false;
@@ -17,6 +17,7 @@
 
 package qunar.tc.bistoury.ui.controller;
 
+import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +25,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 import qunar.tc.bistoury.serverside.bean.ApiResult;
 import qunar.tc.bistoury.serverside.util.ResultHelper;
 import qunar.tc.bistoury.ui.exception.SourceFileNotFoundException;
@@ -31,6 +33,9 @@ import qunar.tc.bistoury.ui.exception.SourceFileReadException;
 import qunar.tc.bistoury.ui.model.MavenInfo;
 import qunar.tc.bistoury.ui.service.MavenRepositoryService;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author: leix.xie
  * @date: 2019/4/3 10:45
@@ -41,6 +46,8 @@ import qunar.tc.bistoury.ui.service.MavenRepositoryService;
 public class MavenRepositoryApiController {
     private static final Logger logger = LoggerFactory.getLogger(MavenRepositoryApiController.class);
 
+    private static final long DOWNLOAD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(3);
+
     @Autowired
     private MavenRepositoryService mavenRepositoryService;
 
@@ -66,24 +73,35 @@ public class MavenRepositoryApiController {
 
     @ResponseBody
     @RequestMapping("downsource")
-    public ApiResult downSourceFile(@RequestParam String artifactId, @RequestParam String groupId, @RequestParam String version, @RequestParam String className) {
+    public DeferredResult<ApiResult> downSourceFile(@RequestParam String artifactId, @RequestParam String groupId, @RequestParam String version, @RequestParam String className) {
         MavenInfo mavenInfo = new MavenInfo(artifactId, groupId, version);
+        //下载jar包时不占用请求线程
+        DeferredResult<ApiResult> result = new DeferredResult<>(DOWNLOAD_TIMEOUT_MILLIS, ResultHelper.fail(-1, "源码下载超时"));
         try {
-            return ResultHelper.success(0, getFileName(className), this.mavenRepositoryService.downSourceFile(mavenInfo, className));
-        } catch (SourceFileNotFoundException e) {
-            logger.error("源码下载失败，maven: {}, class name: {}", mavenInfo, className, e);
-            return ResultHelper.fail(-1, "源码下载失败");
-        } catch (SourceFileReadException ie) {
-            logger.error("文件读取失败", ie);
-            return ResultHelper.fail(-1, "源码读取失败");
+            this.mavenRepositoryService.downSourceFileAsync(mavenInfo, className).whenComplete((content, e) -> {
+                if (e == null) {
+                    result.setResult(ResultHelper.success(0, getFileName(className), content));
+                } else {
+                    result.setResult(downloadFail(mavenInfo, className, e));
+                }
+            });
         } catch (Exception e) {
-            logger.error("源码下载失败", e);
-            Throwable cause = e.getCause();
-            if (cause instanceof SourceFileNotFoundException) {
-                return ResultHelper.fail(-1, cause.getMessage());
-            } else {
-                return ResultHelper.fail(-1, e.getMessage());
-            }
+            result.setResult(downloadFail(mavenInfo, className, e));
+        }
+        return result;
+    }
+
+    private ApiResult downloadFail(MavenInfo mavenInfo, String className, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof SourceFileNotFoundException) {
+            logger.error("源码下载失败，maven: {}, class name: {}", mavenInfo, className, cause);
+            return ResultHelper.fail(-1, Strings.isNullOrEmpty(cause.getMessage()) ? "源码下载失败" : cause.getMessage());
+        } else if (cause instanceof SourceFileReadException) {
+            logger.error("文件读取失败", cause);
+            return ResultHelper.fail(-1, "源码读取失败");
+        } else {
+            logger.error("源码下载失败", cause);
+            return ResultHelper.fail(-1, cause.getMessage());
         }
     }
 
@@ -1,14 +1,10 @@
 $(document).ready(function () {
     var debugResult = "";
-    var isReturn = false;
-    var keepRunning = false;
     var jarDebug = false;
     var decompilerFile = false;
     var downSourceAllow = false;
     var lineMapping = {};
     var linePrefix = "line";
-    var interval = 3000;
-    var addBreakpointTime = 0;
     var currentFile;
     var currentClass;
     var currentProject;
@@ -19,12 +15,11 @@ $(document).ready(function () {
     var currentAppCode;
     var currentPointId;
     var currentPoint = {};
-    window.setInterval(function () {
-        if (keepRunning) {
-            getDebugResult();
-        }
-    }, interval);
-
+    //多次命中的断点已经收到的快照
+    var snapshots = [];
+    var seenHits = 0;
+    var latestHits = 0;
+    var breakpointFinished = false;
 
     function relaodClasses() {
         var command = "jardebug -r " + $("#reload-params").val();
@@ -57,8 +52,14 @@ $(document).ready(function () {
     }
 
     function addBreakpoint() {
-        //id source line -c condition
+        //id source line -n hits -s sample -c condition，条件放在最后
         var command = "qdebugadd " + currentPoint.uuid + " " + currentPoint.source + " " + currentPoint.line;
+        if (currentPoint.hits > 1) {
+            command += (" -n " + currentPoint.hits);
+        }
+        if (currentPoint.sample > 1) {
+            command += (" -s " + currentPoint.sample);
+        }
         if (currentPoint.conditional) {
             command += (" -c " + currentPoint.conditional);
         }
@@ -69,15 +70,56 @@ $(document).ready(function () {
     function deleteBreakPoint() {
 
         var command = "qdebugremove " + currentPointId;
+        //断点移除时等待中的qdebugwait也会返回，先清掉id避免提示断点已不存在
+        currentPointId = "";
         bistouryWS.sendCommand(currentHost, 8, command, stop, handleResult);
         // send(currentHost, 8, command)
     }
 
-    function getDebugResult() {
+    //断点拿到新的快照、被移除或者等待超时时agent才返回结果，超时后重新等待
+    function waitDebugResult() {
         debugResult = "";
-        var command = "qdebugsearch " + currentPointId;
+        var command = "qdebugwait " + currentPointId + " -a " + seenHits;
         bistouryWS.sendCommand(currentHost, 8, command, stop, handleResult);
-        // send(currentHost, 8, command);
+    }
+
+    //一次等待期间断点命中了多次，拉取错过的快照
+    function getSnapshots() {
+        var command = "qdebugsnapshots " + currentPointId + " -a " + seenHits;
+        bistouryWS.sendCommand(currentHost, 8, command, stop, handleResult);
+    }
+
+    function addSnapshots(list, hits) {
+        list.forEach(function (snapshot) {
+            var snapshotHits = snapshot.hits || seenHits + 1;
+            if (snapshotHits > seenHits) {
+                seenHits = snapshotHits;
+                snapshots.push(snapshot);
+                $("#snapshot-select").append($("<option>").val(snapshots.length - 1).text("第" + snapshotHits + "次命中"));
+            }
+        });
+        seenHits = Math.max(seenHits, hits);
+        if (snapshots.length > 0) {
+            $("#snapshot-select").val(snapshots.length - 1);
+            if (snapshots.length > 1) {
+                $("#snapshot-select").show();
+            }
+            buildDebugResult(snapshots[snapshots.length - 1]);
+        }
+        if (breakpointFinished) {
+            enableBreakPoint();
+        } else {
+            bistoury.success("已收到" + seenHits + "次快照，继续等待");
+            waitDebugResult();
+        }
+    }
+
+    function resetSnapshots() {
+        snapshots = [];
+        seenHits = 0;
+        latestHits = 0;
+        breakpointFinished = false;
+        $("#snapshot-select").empty().hide();
     }
 
     function buildJarDebugPanel(result) {
@@ -491,7 +533,6 @@ $(document).ready(function () {
     }
 
     function stop(type, isReceiveCall) {
-        keepRunning = false;
         if (!isReceiveCall) {
             enableBreakPoint();
         }
@@ -505,36 +546,42 @@ $(document).ready(function () {
         if (!result) {
             return;
         }
-        keepRunning = false;
         var resType = result.type;
         if (resType == "qdebugadd") {
             var res = result.data;
             if (res.code == 0) {
                 currentPointId = res.data;
-                keepRunning = true;
-                isReturn = false;
-                addBreakpointTime = new Date().getTime();
                 bistoury.success("断点添加成功，请触发断点")
+                waitDebugResult();
             } else {
                 enableBreakPoint();
-                keepRunning = false;
                 bistoury.error("断点添加失败, " + res.message)
                 console.log(res.message);
             }
         } else if (resType == "qdebugremove") {
             var res = result.data;
             if (res.code == 0) {
-                keepRunning = false;
                 bistoury.success("断点移除成功");
                 currentPointId = "";
                 enableBreakPoint();
             } else {
-                keepRunning = false;
                 console.log(res.message);
                 bistoury.error("断点移除失败")
             }
-        } else if (resType == "qdebugsearch") {
+        } else if (resType == "qdebugsearch" || resType == "qdebugwait") {
             buildSearchResult(result)
+        } else if (resType == "qdebugsnapshots") {
+            var res = result.data;
+            if (currentPointId != res.id) {
+                return;
+            }
+            if (res.code == 0) {
+                addSnapshots(res.data, latestHits);
+            } else {
+                console.log(res.message);
+                bistoury.error("获取断点快照失败");
+                enableBreakPoint();
+            }
         } else if (resType == "qdebugreleaseinfo") {
             var res = result.data;
             if (res.code == 0) {
@@ -581,32 +628,31 @@ $(document).ready(function () {
 
     function buildSearchResult(result) {
         var res = result.data;
+        if (currentPointId != res.id) {
+            console.log("收到其它断点的调试信息")
+            return;
+        }
         if (res.code == 0) {
-            if (!isReturn && currentPointId == res.id) {
-                keepRunning = false;
-                isReturn = true;
-                buildDebugResult(res.data);
-                enableBreakPoint();
+            var snapshot = res.data;
+            //老版本agent没有命中次数，按单次断点处理
+            breakpointFinished = snapshot.finished || !(snapshot.maxHits > 1);
+            latestHits = snapshot.hits || seenHits + 1;
+            if (latestHits > seenHits + 1) {
+                getSnapshots();
             } else {
-                console.log("收到其它断点的调试信息")
+                addSnapshots([snapshot], latestHits);
             }
         } else if (res.code == 2) {
             console.log("断点数据未准备好，请触发断点。")
-            keepRunning = true;
+            waitDebugResult();
         } else if (res.code == 3) {
             console.log(res.message);
             bistoury.error("条件断点设置错误")
             enableBreakPoint();
-            keepRunning = false;
         } else {
-            if (new Date().getTime() - addBreakpointTime > 5000 && currentPointId == res.id) {
-                console.log(res.message)
-                bistoury.warning("断点已不存在")
-                enableBreakPoint();
-                keepRunning = false;
-            } else {
-                keepRunning = true;
-            }
+            console.log(res.message)
+            bistoury.warning("断点已不存在")
+            enableBreakPoint();
         }
     }
 
@@ -685,7 +731,6 @@ $(document).ready(function () {
 
     $("#back-class-table").click(function () {
         currentFile = "";
-        keepRunning = false;
         cleanDebugResult();
         if (currentPointId && currentPointId != "") {
             deleteBreakPoint();
@@ -729,18 +774,27 @@ $(document).ready(function () {
                 host: currentHost.ip,
                 source: currentClass.replace(/\./g, "/") + ".java",
                 conditional: conditional,
+                hits: parseInt($("#breakpoint-hits").val()) || 1,
+                sample: parseInt($("#breakpoint-sample").val()) || 1,
                 uuid: uuid()
             }
+            resetSnapshots();
             disableBreakPoint();
             addBreakpoint();
         }
     })
 
     $("#delete-breakpoint").click(function () {
-        keepRunning = false;
         deleteBreakPoint();
     })
 
+    $("#snapshot-select").on("change", function () {
+        var snapshot = snapshots[$(this).val()];
+        if (snapshot) {
+            buildDebugResult(snapshot);
+        }
+    })
+
     var isResizing = false;
     var lastDownX = 0;
     var flag = 0;
@@ -827,12 +881,16 @@ $(document).ready(function () {
 
     function disableBreakPoint() {
         $("#conditional-breakpoint").attr("disabled", true)
+        $("#breakpoint-hits").attr("disabled", true)
+        $("#breakpoint-sample").attr("disabled", true)
         $("#add-breakpoint").attr("disabled", true)
         $("#delete-breakpoint").show();
     }
 
     function enableBreakPoint() {
         $("#conditional-breakpoint").attr("disabled", false)
+        $("#breakpoint-hits").attr("disabled", false)
+        $("#breakpoint-sample").attr("disabled", false)
         $("#add-breakpoint").attr("disabled", false)
         $("#delete-breakpoint").hide();
         currentPointId = "";
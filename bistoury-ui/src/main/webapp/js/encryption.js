@@ -0,0 +1,106 @@
+;(function () {
+    'use strict';
+    var publicKey = '-----BEGIN PUBLIC KEY-----\n' +
+        'MIGfMA0GCSqGSIb3DQEBAQUAA4GNADCBiQKBgQCzYgJiPl4ltUdOvTIx8yu5iw0+\n' +
+        'k7jANyrVzXOJy+478EhBaf8MoHaHvbH06PfaLjmFJXsRZKv9Qq5SieQcLlnG60Uu\n' +
+        'utpen1Nf490au+nPCP++nK3L5ZBqaSCAq4GUAniARR1wWl9TYW0walBCpD2N2Swy\n' +
+        'MLu9z+Lnhd7auqYSzwIDAQAB\n' +
+        '-----END PUBLIC KEY-----';
+
+    var supportGcm = !!(window.crypto && window.crypto.subtle && window.TextEncoder);
+
+    var BistouryEncryption = function () {
+        return this;
+    }
+
+    //支持WebCrypto时每个websocket连接只生成一次aes会话密钥，proxy对同一个连接只需要做一次rsa解密；
+    //不支持时使用des，des密钥太弱，和以前一样每个请求都生成新的密钥
+    BistouryEncryption.prototype.encrypt = function (ws, content) {
+        var deferred = $.Deferred();
+        if (!supportGcm) {
+            var key = makeid(8);
+            deferred.resolve("{\"0\":\"" + encryptByRSA(key) + "\",\"1\":\"" + encryptByDES(content, key) + "\"}");
+            return deferred.promise();
+        }
+
+        var session = getSession(ws);
+        var iv = window.crypto.getRandomValues(new Uint8Array(12));
+        //按顺序加密，保证请求的发送顺序不变
+        var previous = session.last || session.aesKey;
+        session.last = previous.then(function () {
+            return session.aesKey;
+        }, function () {
+            return session.aesKey;
+        }).then(function (aesKey) {
+            return window.crypto.subtle.encrypt({name: "AES-GCM", iv: iv}, aesKey, new TextEncoder().encode(content));
+        }).then(function (encrypted) {
+            deferred.resolve(JSON.stringify({
+                "0": session.keyEnc,
+                "2": bytesToBase64(iv),
+                "3": bytesToBase64(new Uint8Array(encrypted))
+            }));
+        }, function (e) {
+            console.log(e);
+            deferred.reject();
+        });
+        return deferred.promise();
+    }
+
+    function getSession(ws) {
+        if (!ws.bistourySession) {
+            var key = makeid(32);
+            ws.bistourySession = {
+                keyEnc: encryptByRSA(key),
+                aesKey: window.crypto.subtle.importKey("raw", hexToBytes(key), {name: "AES-GCM"}, false, ["encrypt"]),
+                last: null
+            };
+        }
+        return ws.bistourySession;
+    }
+
+    function encryptByRSA(key) {
+        var crypt = new JSEncrypt();
+        crypt.setPublicKey(publicKey);
+        return crypt.encrypt(key);
+    }
+
+    function encryptByDES(message, key) {
+        var keyHex = CryptoJS.enc.Utf8.parse(key);
+        var encrypted = CryptoJS.DES.encrypt(message, keyHex, {
+            mode: CryptoJS.mode.ECB,
+            padding: CryptoJS.pad.Pkcs7
+        });
+        return encrypted.toString();
+    }
+
+    function makeid(length) {
+        var text = "";
+        var possible = "0123456789abcdef";
+        var random = window.crypto && window.crypto.getRandomValues ? window.crypto.getRandomValues(new Uint8Array(length)) : null;
+
+        for (var i = 0; i < length; i++) {
+            var index = random ? random[i] % possible.length : Math.floor(Math.random() * possible.length);
+            text += possible.charAt(index);
+        }
+
+        return text;
+    }
+
+    function hexToBytes(hex) {
+        var bytes = new Uint8Array(hex.length / 2);
+        for (var i = 0; i < bytes.length; i++) {
+            bytes[i] = parseInt(hex.substr(i * 2, 2), 16);
+        }
+        return bytes;
+    }
+
+    function bytesToBase64(bytes) {
+        var binary = "";
+        for (var i = 0; i < bytes.length; i++) {
+            binary += String.fromCharCode(bytes[i]);
+        }
+        return window.btoa(binary);
+    }
+
+    window.bistouryEncryption = new BistouryEncryption();
+}())
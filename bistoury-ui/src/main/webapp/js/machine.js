@@ -21,6 +21,14 @@ $(document).ready(function () {
         appConfig: true
     }
 
+    //按机器缓存配置文件列表和内容，请求时带上版本号，没有变化时agent不再返回内容
+    var appConfigCache = {
+        host: null,
+        version: null,
+        files: [],
+        contents: {}
+    }
+
     var threadTimeAxis = [];
     var memTimeAxis = [];
     var visuaTimeAxis = [];
@@ -427,9 +435,9 @@ $(document).ready(function () {
             var res = result.data;
             if (res.code == 0) {
                 if (resType == "appconfig") {
-                    buildAppConfigTable(res.data);
+                    buildAppConfigTable(cacheAppConfig(res.data));
                 } else if (resType == "appconfigfile") {
-                    buildFileContent(res.data, res.id);
+                    buildFileContent(cacheAppConfigFile(res.data, res.id), res.id);
                 }
             } else {
                 $("#file-content-modal").modal('hide');
@@ -495,6 +503,7 @@ $(document).ready(function () {
                 if (currentHost != data.value) {
                     keepRunning = false;
                     currentHost = data.value;
+                    resetAppConfigCache();
                 }
                 startTime = new Date().getTime();
                 currentThreadTime = new Date().getTime();
@@ -571,14 +580,55 @@ $(document).ready(function () {
         //send(currentHost, 13, "jarinfo");
     }
 
+    function resetAppConfigCache() {
+        appConfigCache = {
+            host: currentHost.ip,
+            version: null,
+            files: [],
+            contents: {}
+        }
+    }
+
+    function checkAppConfigCache() {
+        if (appConfigCache.host != currentHost.ip) {
+            resetAppConfigCache();
+        }
+    }
+
+    function cacheAppConfig(data) {
+        if (data instanceof Array) {
+            return data;
+        }
+        if (data.modified) {
+            appConfigCache.version = data.version;
+            appConfigCache.files = data.files;
+        }
+        return appConfigCache.files;
+    }
+
+    function cacheAppConfigFile(data, path) {
+        if (data == null || typeof data == "string") {
+            return data;
+        }
+        if (data.modified) {
+            appConfigCache.contents[path] = {hash: data.hash, content: data.content};
+            return data.content;
+        }
+        var cached = appConfigCache.contents[path];
+        return cached ? cached.content : null;
+    }
+
     function getAppConfigInfo() {
-        var command = "appconfig";
+        checkAppConfigCache();
+        var command = "appconfig -s " + (appConfigCache.version || "none");
         bistouryWS.sendCommand(currentHost, 13, command, keepRunningFun, handleResult);
         //send(currentHost, 14, command);
     }
 
     function getAppConfigFile(path) {
-        var command = "appconfigfile " + encodeURI(path);
+        checkAppConfigCache();
+        var cached = appConfigCache.contents[path];
+        var command = "appconfigfile -s " + (cached ? cached.hash : "none") + " " + encodeURI(path);
         bistouryWS.sendCommand(currentHost, 13, command, keepRunningFun, handleResult);
         // send(currentHost, 14, command);
     }
@@ -37,6 +37,11 @@ $(document).ready(function () {
         // send(currentHost, 40, command);
     }
 
+    function removeMonitor() {
+        var command = "qmonitorremove " + currentMonitor.uuid + " " + currentMonitor.source + " " + currentMonitor.line;
+        bistouryWS.sendCommand(currentHost, 40, command, stop, handleResult);
+    }
+
     function reportList() {
         var start = new Date($("#startDate").val()).getTime();
         var end = new Date($("#endDate").val()).getTime();
@@ -736,6 +741,16 @@ $(document).ready(function () {
                 bistoury.error("断点添加失败 " + res.message)
                 console.log(res.message);
             }
+        } else if (resType == "qmonitorremove") {
+            var res = result.data;
+            if (res.code == 0) {
+                bistoury.success("监控移除成功")
+            } else if (res.code == 1) {
+                bistoury.warning(res.message)
+            } else {
+                bistoury.error("监控移除失败 " + res.message)
+                console.log(res.message);
+            }
         } else if (resType == "qdebugreleaseinfo") {
             var res = result.data;
             if (res.code == 0) {
@@ -890,6 +905,25 @@ $(document).ready(function () {
         }
     })
 
+    $("#remove-monitor").click(function () {
+        if ($("#remove-monitor").attr("disabled") == "disabled") {
+            return;
+        }
+        var line = $("#code-line").val();
+        if (line == null || line == undefined || line == "" || line < 0) {
+            bistoury.error("请选择需要移除监控的代码行")
+            return;
+        }
+        currentMonitor = {
+            line: line,
+            app: currentHost.appCode,
+            host: currentHost.ip,
+            source: currentClass.replace(/\./g, "/") + ".java",
+            uuid: uuid()
+        }
+        removeMonitor();
+    })
+
     $("#search-monitor").click(function () {
         reportList();
     })